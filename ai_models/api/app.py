@@ -1,12 +1,273 @@
-from flask import Flask
+"""HTTP model server: loads every model once and answers predictions over HTTP.
+
+Lets the models run on other hosts than the Spring backend (ai.inference.transport=http,
+see HttpModelBackend.java). Endpoints:
+
+    GET  /health                          loaded models
+    POST /models/<model>/predict          one image: a multipart "file" upload (answered with the
+                                          full one-shot JSON) or one raw tensor
+    POST /models/<model>/predict/batch    N raw tensors back to back, or a JSON {"paths": [...]}
+                                          list of image files, answered in one model call
+    POST /predict/batch                   {"paths": [...]} (or raw tensors) through every model,
+                                          one batched call per model, for research backfills
+    POST /models/<model>/gradcam          one image file as the body, answered with its Grad-CAM
+                                          overlay as image/png; X-Classification and X-Confidence
+                                          name the explained class
+
+A raw tensor is a preprocessed 224x224x3 image as little-endian float32 in [0, 1] (HWC),
+the same bytes the backend writes into its tensor arena, so both transports see identical
+input. Batch answers are {"model_type", "labels", "results"}: one entry per item, in
+request order, with the normalized probabilities in LABELS order or {"error": ...} for an
+item that could not be read; /predict/batch entries hold each model's full result.
+
+With ?stream=true (or Accept: application/x-ndjson) batch answers are streamed as one JSON
+line per item, {"index": i, ...}, in request order. Items are then predicted in chunks of
+STREAM_CHUNK_SIZE (default 16), so the first results arrive while later ones still run; a
+chunk that fails only fails its own items. HttpModelBackend always asks for the stream.
+
+Model files come from DENSENET_MODEL_PATH and RESNET_MODEL_PATH; the server listens on
+HOST:PORT (default 0.0.0.0:5000).
+"""
+import json
+import os
+import sys
+import tempfile
+import threading
+
+import numpy as np
+from flask import Flask, Response, jsonify, request, stream_with_context
+from tensorflow.keras.models import load_model
+
+sys.path.insert(0, os.path.join(os.path.dirname(os.path.abspath(__file__)), '..', 'src'))
+
+from gradcam import write_heatmap  # noqa: E402
+from model_worker import IMAGE_SHAPE, LABELS, build_result, load_image, predict_file  # noqa: E402
+
+MODEL_FILES = {
+    'densenet': ('DenseNet121', os.environ.get(
+        'DENSENET_MODEL_PATH', '/Users/anatatar/Desktop/Licenta/deepheart/ai_models/src/densenet/densenet_model.keras')),
+    'resnet': ('ResNet', os.environ.get(
+        'RESNET_MODEL_PATH', '/Users/anatatar/Desktop/Licenta/deepheart/ai_models/src/resnet/resnet_ecg_model.keras')),
+}
+
+TENSOR_BYTES = int(np.prod(IMAGE_SHAPE)) * 4
+STREAM_CHUNK_SIZE = int(os.environ.get('STREAM_CHUNK_SIZE', '16'))
 
 app = Flask(__name__)
 
 
-@app.route('/')
-def hello_world():  # put application's code here
-    return 'Hello World!'
+class ServedModel:
+    """One loaded model; calls are serialized, the backend already batches requests"""
+
+    def __init__(self, model_type, path):
+        self.model_type = model_type
+        self.path = path
+        self.model = load_model(path, compile=False)
+        self.lock = threading.Lock()
+
+    def predict_raw(self, batch):
+        """Raw sigmoid outputs for a batch, in one model call"""
+        if len(batch) == 0:
+            return []
+        with self.lock:
+            return self.model.predict(batch, verbose=0)
+
+    def predict_tensors(self, batch):
+        return [(pred / pred.sum()).astype(float).tolist() for pred in self.predict_raw(batch)]
+
+    def predict_image(self, img_path):
+        with self.lock:
+            return predict_file(self.model, img_path, self.model_type)
+
+    def heatmap(self, img_path, out_path):
+        with self.lock:
+            return write_heatmap(self.model, img_path, out_path)
+
+
+# Loaded once at startup, before the first request
+MODELS = {name: ServedModel(model_type, path) for name, (model_type, path) in MODEL_FILES.items()}
+
+
+def _tensors(body):
+    if not body or len(body) % TENSOR_BYTES != 0:
+        raise ValueError("body must hold whole %d-byte float32 tensors, got %d bytes" % (TENSOR_BYTES, len(body)))
+    return np.frombuffer(body, dtype='<f4').reshape((-1,) + IMAGE_SHAPE)
+
+
+class Items:
+    """The items of one batch request: image paths from a JSON body, or raw tensors"""
+
+    def __init__(self, req):
+        if req.is_json:
+            paths = (req.get_json(silent=True) or {}).get('paths')
+            if not isinstance(paths, list) or not paths:
+                raise ValueError('expected {"paths": [...]} with at least one image path')
+            self.paths = [str(path) for path in paths]
+            self.tensors = None
+        else:
+            self.paths = None
+            self.tensors = _tensors(req.get_data())
+
+    def __len__(self):
+        return len(self.paths) if self.paths is not None else len(self.tensors)
+
+    def load(self, start, end):
+        """(batch, errors) for items [start, end): readable items stacked in order, errors[i] set for the rest"""
+        if self.tensors is not None:
+            return self.tensors[start:end], [None] * (end - start)
+        arrays, errors = [], []
+        for path in self.paths[start:end]:
+            try:
+                arrays.append(load_image(path)[0])
+                errors.append(None)
+            except Exception as e:
+                errors.append("could not read %s: %s" % (path, e))
+        batch = np.stack(arrays).astype('float32') if arrays else np.empty((0,) + IMAGE_SHAPE, dtype='float32')
+        return batch, errors
+
+
+def _spread(preds, errors):
+    """Per-item entries in request order: the prediction of each readable item, or its error"""
+    preds = iter(preds)
+    return [{"error": error} if error else next(preds) for error in errors]
+
+
+def _wants_stream():
+    return (request.args.get('stream', '').lower() in ('1', 'true', 'yes')
+            or 'application/x-ndjson' in request.headers.get('Accept', ''))
+
+
+def _answer(items, predict_chunk, header):
+    """Predicts the items in one call per model, or streams them chunk by chunk as NDJSON"""
+    if not _wants_stream():
+        batch, errors = items.load(0, len(items))
+        return jsonify(dict(header, results=predict_chunk(batch, errors)))
+
+    def lines():
+        for start in range(0, len(items), STREAM_CHUNK_SIZE):
+            end = min(start + STREAM_CHUNK_SIZE, len(items))
+            batch, errors = items.load(start, end)
+            try:
+                entries = predict_chunk(batch, errors)
+            except Exception as e:
+                print("Chunk %d-%d failed: %s" % (start, end, e), file=sys.stderr)
+                entries = [{"error": str(e)}] * (end - start)
+            for offset, entry in enumerate(entries):
+                line = {"index": start + offset}
+                line.update(entry if isinstance(entry, dict) else {"probabilities": entry})
+                if items.paths is not None:
+                    line["path"] = items.paths[start + offset]
+                yield json.dumps(line) + "\n"
+
+    return Response(stream_with_context(lines()), mimetype='application/x-ndjson')
+
+
+def _model(name):
+    model = MODELS.get(name)
+    if model is None:
+        return None, (jsonify({"error": "unknown model %s" % name}), 404)
+    return model, None
+
+
+@app.route('/health')
+def health():
+    return jsonify({"status": "ok", "models": {name: model.model_type for name, model in MODELS.items()}})
+
+
+@app.route('/models/<name>/predict', methods=['POST'])
+def predict(name):
+    model, error = _model(name)
+    if error:
+        return error
+
+    upload = request.files.get('file')
+    if upload is not None:
+        suffix = os.path.splitext(upload.filename or '')[1] or '.png'
+        with tempfile.NamedTemporaryFile(suffix=suffix) as tmp:
+            upload.save(tmp.name)
+            return jsonify(model.predict_image(tmp.name))
+
+    try:
+        batch = _tensors(request.get_data())
+    except ValueError as e:
+        return jsonify({"error": str(e)}), 400
+    if len(batch) != 1:
+        return jsonify({"error": "expected one tensor, got %d; use /predict/batch" % len(batch)}), 400
+    return jsonify({"model_type": model.model_type, "labels": LABELS,
+                    "probabilities": model.predict_tensors(batch)[0]})
+
+
+@app.route('/models/<name>/predict/batch', methods=['POST'])
+def predict_batch(name):
+    model, error = _model(name)
+    if error:
+        return error
+
+    try:
+        items = Items(request)
+    except ValueError as e:
+        return jsonify({"error": str(e)}), 400
+
+    def predict_chunk(batch, errors):
+        return _spread(model.predict_tensors(batch), errors)
+
+    try:
+        return _answer(items, predict_chunk, {"model_type": model.model_type, "labels": LABELS})
+    except Exception as e:
+        print("Batch of %d failed: %s" % (len(items), e), file=sys.stderr)
+        return jsonify({"error": str(e)}), 500
+
+
+@app.route('/models/<name>/gradcam', methods=['POST'])
+def gradcam(name):
+    model, error = _model(name)
+    if error:
+        return error
+
+    body = request.get_data()
+    if not body:
+        return jsonify({"error": "expected the image file as the request body"}), 400
+
+    with tempfile.TemporaryDirectory() as tmp:
+        img_path = os.path.join(tmp, 'ecg')
+        out_path = os.path.join(tmp, 'heatmap.png')
+        with open(img_path, 'wb') as f:
+            f.write(body)
+        try:
+            result = model.heatmap(img_path, out_path)
+        except Exception as e:
+            print("Grad-CAM failed: %s" % e, file=sys.stderr)
+            return jsonify({"error": str(e)}), 500
+        with open(out_path, 'rb') as f:
+            png = f.read()
+
+    return Response(png, mimetype='image/png', headers={
+        'X-Classification': result['classification'],
+        'X-Confidence': str(result['confidence'])
+    })
+
+
+@app.route('/predict/batch', methods=['POST'])
+def predict_batch_all_models():
+    try:
+        items = Items(request)
+    except ValueError as e:
+        return jsonify({"error": str(e)}), 400
+
+    def predict_chunk(batch, errors):
+        # One batched call per model; each item gets every model's full result
+        per_model = {name: [build_result(pred, model.model_type) for pred in model.predict_raw(batch)]
+                     for name, model in MODELS.items()}
+        preds = [{"models": {name: results[i] for name, results in per_model.items()}} for i in range(len(batch))]
+        return _spread(preds, errors)
+
+    try:
+        return _answer(items, predict_chunk, {"models": {name: model.model_type for name, model in MODELS.items()}})
+    except Exception as e:
+        print("Batch of %d failed: %s" % (len(items), e), file=sys.stderr)
+        return jsonify({"error": str(e)}), 500
 
 
 if __name__ == '__main__':
-    app.run()
+    # threaded: one model call per model at a time, but the models answer side by side
+    app.run(host=os.environ.get('HOST', '0.0.0.0'), port=int(os.environ.get('PORT', '5000')), threaded=True)
@@ -0,0 +1,64 @@
+"""Grad-CAM heatmaps: the regions of an ECG image that drove a model's top class.
+
+Used by the one-shot --gradcam mode of predict_densenet.py / predict_resnet.py and by the
+model server's /models/<model>/gradcam endpoint. The class activation map is taken at the
+model's last layer with a spatial output (the final convolution block, or the backbone when
+it is nested as one layer), scaled to the image and drawn over it with the jet colormap.
+"""
+import numpy as np
+import tensorflow as tf
+from matplotlib import colormaps
+from PIL import Image
+
+from model_worker import LABELS, load_image
+
+HEATMAP_ALPHA = 0.4
+
+
+def _last_feature_layer(model):
+    """The last layer whose output is a (batch, height, width, channels) feature map"""
+    for layer in reversed(model.layers):
+        try:
+            shape = layer.output.shape
+        except (AttributeError, ValueError):
+            continue
+        if len(shape) == 4:
+            return layer
+    raise ValueError("%s has no convolutional layer to explain" % model.name)
+
+
+def grad_cam(model, batch):
+    """(class_index, probabilities, cam) for a batch of one image; cam is in [0, 1] at feature-map resolution"""
+    layer = _last_feature_layer(model)
+    grad_model = tf.keras.Model(model.inputs, [layer.output, model.output])
+    with tf.GradientTape() as tape:
+        features, preds = grad_model(batch, training=False)
+        class_index = int(tf.argmax(preds[0]))
+        score = preds[:, class_index]
+    grads = tape.gradient(score, features)
+
+    # Channel weights are the mean gradients; only regions that raise the score are kept
+    weights = tf.reduce_mean(grads, axis=(0, 1, 2))
+    cam = tf.nn.relu(tf.reduce_sum(features[0] * weights, axis=-1)).numpy()
+    peak = cam.max()
+    cam = cam / peak if peak > 0 else cam
+
+    pred = np.asarray(preds[0])
+    return class_index, pred / pred.sum(), cam
+
+
+def write_heatmap(model, img_path, out_path):
+    """Write the image with the Grad-CAM of its top class overlaid as a PNG; returns the explained class"""
+    class_index, probabilities, cam = grad_cam(model, load_image(img_path).astype('float32'))
+
+    original = Image.open(img_path).convert('RGB')
+    mask = Image.fromarray(np.uint8(cam * 255)).resize(original.size, Image.Resampling.BILINEAR)
+    colored = colormaps['jet'](np.asarray(mask) / 255.0)[..., :3]
+    overlay = (1 - HEATMAP_ALPHA) * np.asarray(original) / 255.0 + HEATMAP_ALPHA * colored
+    Image.fromarray(np.uint8(np.clip(overlay, 0, 1) * 255)).save(out_path, format='PNG')
+
+    return {
+        "classification": LABELS[class_index],
+        "confidence": round(float(probabilities[class_index]) * 100, 2),
+        "heatmap": out_path
+    }
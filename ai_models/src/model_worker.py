@@ -0,0 +1,238 @@
+"""Shared prediction helpers and the long-lived worker loop.
+
+predict_densenet.py and predict_resnet.py load their model once and, when started
+with --worker, hand it to serve(). The backend talks to the worker over binary
+frames on stdin/stdout (see WorkerProtocol.java): a big-endian u32 payload length,
+then a one-byte frame type. Strings are a u16 length followed by UTF-8.
+
+    READY   worker -> backend   model_type: str, labels: u16
+    PREDICT backend -> worker   id: u32, count: u16, count x tensor_slot: u32
+    RESULT  worker -> backend   id: u32, count: u16, labels: u16,
+                                count x (status: u8, 0 -> labels x f32 | 1 -> error: str)
+    ERROR   worker -> backend   id: u32, message: str
+
+Images never travel over the pipe. The backend decodes each upload once, resizes it
+to 224x224, scales it to [0, 1] and writes it as little-endian float32 (HWC) into a
+slot of a memory-mapped tensor arena; the worker maps the same file (--arena <path>)
+and reads the slots named in the request in place.
+
+Probabilities are the normalized sigmoid outputs (fractions summing to 1) in LABELS
+order. The protocol owns file descriptor 1; everything else that prints, including
+native TensorFlow logging, is redirected to stderr, the worker's log channel.
+
+The backend sizes each worker's thread pools to the CPUs it was given (CpuPartition.java)
+through TF_NUM_INTRAOP_THREADS / TF_NUM_INTEROP_THREADS and the OpenMP/BLAS variables;
+they are applied on import, before any model is loaded.
+"""
+import os
+import struct
+import sys
+
+import numpy as np
+import tensorflow as tf
+from tensorflow.keras.preprocessing import image
+
+LABELS = ['NORM', 'MI', 'STTC', 'CD', 'HYP']
+
+
+def configure_threads():
+    """Sizes TensorFlow's thread pools from the environment; unset leaves TensorFlow's defaults."""
+    intra_op = int(os.environ.get("TF_NUM_INTRAOP_THREADS", "0"))
+    inter_op = int(os.environ.get("TF_NUM_INTEROP_THREADS", "0"))
+    if intra_op > 0:
+        tf.config.threading.set_intra_op_parallelism_threads(intra_op)
+    if inter_op > 0:
+        tf.config.threading.set_inter_op_parallelism_threads(inter_op)
+
+
+configure_threads()
+
+
+def get_clinical_description(condition):
+    """Get clinical description for each condition"""
+    descriptions = {
+        'NORM': 'Normal ECG - No significant abnormalities detected',
+        'MI': 'Myocardial Infarction - Heart attack indicators present',
+        'STTC': 'ST/T wave changes - May indicate ischemia or other cardiac conditions',
+        'CD': 'Conduction Disorders - Abnormal electrical conduction patterns',
+        'HYP': 'Hypertrophy - Enlarged heart chambers detected'
+    }
+    return descriptions.get(condition, 'Unknown condition')
+
+
+def get_confidence_level(confidence):
+    """Categorize confidence level for clinical interpretation"""
+    if confidence >= 70:
+        return {"level": "High", "clinical_action": "High confidence in diagnosis"}
+    elif confidence >= 50:
+        return {"level": "Medium", "clinical_action": "Moderate confidence - consider clinical correlation"}
+    elif confidence >= 30:
+        return {"level": "Low", "clinical_action": "Low confidence - requires clinical evaluation"}
+    else:
+        return {"level": "Very Low", "clinical_action": "Very low confidence - manual review recommended"}
+
+
+def load_image(img_path):
+    """Load and preprocess a single image into a (1, 224, 224, 3) batch"""
+    img = image.load_img(img_path, target_size=(224, 224))
+    img_array = image.img_to_array(img)
+    return np.expand_dims(img_array, axis=0) / 255.0
+
+
+def build_result(pred, model_type):
+    """Turn one raw sigmoid output vector into the JSON result the backend expects"""
+    # Use normalized probabilities for primary result (most interpretable)
+    normalized_pred = pred / pred.sum()
+    probabilities = {label: round(float(prob) * 100, 2) for label, prob in zip(LABELS, normalized_pred)}
+
+    # Primary diagnosis
+    primary_condition = max(probabilities.items(), key=lambda x: x[1])
+    confidence_info = get_confidence_level(primary_condition[1])
+
+    # Secondary conditions (above threshold)
+    threshold = 15.0  # 15% threshold for normalized probabilities
+    secondary_conditions = {label: pct for label, pct in probabilities.items()
+                            if pct >= threshold and label != primary_condition[0]}
+
+    return {
+        "classification": primary_condition[0],
+        "confidence": primary_condition[1],
+        "probabilities": probabilities,
+        "description": get_clinical_description(primary_condition[0]),
+        "confidence_level": confidence_info["level"],
+        "clinical_recommendation": confidence_info["clinical_action"],
+        "secondary_findings": secondary_conditions if secondary_conditions else None,
+        "model_info": {
+            "model_type": model_type,
+            "prediction_method": "normalized_sigmoid",
+            "timestamp": None  # Will be added by your backend
+        }
+    }
+
+
+def predict_file(model, img_path, model_type):
+    pred = model.predict(load_image(img_path), verbose=0)[0]
+    return build_result(pred, model_type)
+
+
+IMAGE_SHAPE = (224, 224, 3)
+
+
+def open_tensor_arena(path):
+    """Map the backend's tensor arena read-only as an array of (224, 224, 3) float32 slots"""
+    arena = np.memmap(path, dtype='<f4', mode='r')
+    return arena.reshape((-1,) + IMAGE_SHAPE)
+
+
+def arena_path(argv):
+    """The value following --arena on the worker command line"""
+    return argv[argv.index('--arena') + 1]
+
+
+def model_path(argv, default):
+    """The .keras file following --model on the worker command line, used to serve another model version"""
+    if '--model' in argv:
+        return argv[argv.index('--model') + 1]
+    return default
+
+
+def predict_probabilities(model, arena, slots):
+    """Run the images in the given arena slots through the model in a single call.
+
+    Returns one entry per slot, in request order: a float32 vector of normalized
+    probabilities, or an error message for slots outside the arena.
+    """
+    results = [None] * len(slots)
+    positions = []
+    for i, slot in enumerate(slots):
+        if 0 <= slot < len(arena):
+            positions.append(i)
+        else:
+            results[i] = "tensor slot %d is outside the arena" % slot
+
+    if positions:
+        valid = [slots[i] for i in positions]
+        # A single image is a zero-copy view of the mapping; a batch is gathered into one array
+        batch = arena[valid[0]:valid[0] + 1] if len(valid) == 1 else arena[valid]
+        preds = model.predict(batch, verbose=0)
+        for i, pred in zip(positions, preds):
+            results[i] = (pred / pred.sum()).astype('>f4')
+    return results
+
+
+FRAME_READY = 0
+FRAME_PREDICT = 1
+FRAME_RESULT = 2
+FRAME_ERROR = 3
+
+
+def _pack_str(text):
+    data = text.encode('utf-8')[:0xFFFF]
+    return struct.pack('>H', len(data)) + data
+
+
+def _read_exact(stream, size):
+    data = stream.read(size)
+    if len(data) < size:
+        raise EOFError
+    return data
+
+
+def _read_request(stream):
+    """Read one PREDICT frame; returns (request_id, tensor_slots)"""
+    length, = struct.unpack('>I', _read_exact(stream, 4))
+    payload = _read_exact(stream, length)
+    frame_type, request_id, count = struct.unpack_from('>BIH', payload, 0)
+    if frame_type != FRAME_PREDICT:
+        raise ValueError("unexpected frame type %d" % frame_type)
+
+    slots = list(struct.unpack_from('>%dI' % count, payload, struct.calcsize('>BIH')))
+    return request_id, slots
+
+
+def _result_frame(request_id, results):
+    parts = [struct.pack('>BIHH', FRAME_RESULT, request_id, len(results), len(LABELS))]
+    for result in results:
+        if isinstance(result, str):
+            parts.append(b'\x01' + _pack_str(result))
+        else:
+            parts.append(b'\x00' + result.tobytes())
+    return b''.join(parts)
+
+
+def open_protocol_channel():
+    """Take over stdout for frames; call before loading the model.
+
+    Keeps a private handle on the real stdout, then points fd 1 (and sys.stdout) at
+    stderr so stray prints from Python or native code can never corrupt a frame.
+    """
+    sys.stdout.flush()
+    protocol_out = os.fdopen(os.dup(1), 'wb')
+    os.dup2(2, 1)
+    sys.stdout = sys.stderr
+    return protocol_out
+
+
+def serve(model, model_type, protocol_out, tensor_arena_path):
+    """Answer prediction requests from stdin until the backend closes the pipe"""
+    requests_in = sys.stdin.buffer
+    arena = open_tensor_arena(tensor_arena_path)
+
+    def send(payload):
+        protocol_out.write(struct.pack('>I', len(payload)) + payload)
+        protocol_out.flush()
+
+    # Tell the backend the model is loaded and requests can be sent
+    send(struct.pack('>B', FRAME_READY) + _pack_str(model_type) + struct.pack('>H', len(LABELS)))
+
+    while True:
+        try:
+            request_id, slots = _read_request(requests_in)
+        except EOFError:
+            return
+
+        try:
+            send(_result_frame(request_id, predict_probabilities(model, arena, slots)))
+        except Exception as e:
+            print("Batch %d failed: %s" % (request_id, e), file=sys.stderr)
+            send(struct.pack('>BI', FRAME_ERROR, request_id) + _pack_str(str(e)))
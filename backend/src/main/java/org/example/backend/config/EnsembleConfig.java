@@ -0,0 +1,54 @@
+package org.example.backend.config;
+
+import org.example.backend.service.ensemble.CascadePolicy;
+import org.example.backend.service.ensemble.EnsembleStrategies;
+import org.example.backend.service.ensemble.EnsembleStrategy;
+import org.example.backend.service.ensemble.PrimaryModelStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Configuration
+public class EnsembleConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(EnsembleConfig.class);
+
+    // The strategy named by ai.ensemble.strategy, shared by every prediction
+    @Bean
+    public EnsembleStrategy ensembleStrategy(@Value("${ai.ensemble.enabled:true}") boolean enabled,
+                                             @Value("${ai.ensemble.strategy:average}") String strategy,
+                                             @Value("${ai.ensemble.threshold:0.5}") double threshold) {
+        EnsembleStrategy ensembleStrategy = enabled ? EnsembleStrategies.forName(strategy, threshold) : new PrimaryModelStrategy();
+        logger.info("Using ensemble strategy {}", ensembleStrategy.name());
+        return ensembleStrategy;
+    }
+
+    // Primary-first cascade; ai.cascade.escalate.classes lists the classes that always get a second opinion
+    @Bean
+    public CascadePolicy cascadePolicy(@Value("${ai.cascade.enabled:false}") boolean enabled,
+                                       @Value("${ai.cascade.primary:model1}") String primaryModelId,
+                                       @Value("${ai.cascade.confidence.threshold:0.9}") double threshold,
+                                       @Value("${ai.cascade.escalate.classes:}") String escalateClasses) {
+        if (!enabled) {
+            return CascadePolicy.DISABLED;
+        }
+        Set<String> classes = Arrays.stream(escalateClasses.split(","))
+                .map(label -> label.trim().toUpperCase(Locale.ROOT))
+                .filter(label -> !label.isEmpty())
+                .collect(Collectors.toSet());
+        for (String label : classes) {
+            if (!Arrays.asList(EnsembleStrategy.LABELS).contains(label)) {
+                throw new IllegalArgumentException("Unknown class in ai.cascade.escalate.classes: " + label);
+            }
+        }
+        logger.info("Cascade inference: {} first, others below {} confidence or for {}", primaryModelId, threshold, classes);
+        return new CascadePolicy(true, primaryModelId, threshold, classes);
+    }
+}
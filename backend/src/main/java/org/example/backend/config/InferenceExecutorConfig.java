@@ -0,0 +1,51 @@
+package org.example.backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class InferenceExecutorConfig {
+
+    // Writes finished predictions to the database, off the threads that complete model batches
+    @Bean(name = "persistenceExecutor")
+    public ThreadPoolTaskExecutor persistenceExecutor(
+            @Value("${ai.pipeline.persistence.threads:2}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("ecg-persist-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+
+    // Writes upload result streams to their clients, so a slow client never holds a pipeline thread
+    @Bean(name = "streamExecutor")
+    public ThreadPoolTaskExecutor streamExecutor(
+            @Value("${ai.upload.stream.send.threads:2}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("ecg-stream-");
+        executor.initialize();
+        return executor;
+    }
+
+    // Grad-CAM heatmaps: few low-priority threads of their own, so explanations never hold up predictions.
+    // A full queue rejects the heatmap; it is computed later, when the viewer asks for it.
+    @Bean(name = "heatmapExecutor")
+    public ThreadPoolTaskExecutor heatmapExecutor(
+            @Value("${ai.heatmap.threads:1}") int threads,
+            @Value("${ai.heatmap.queue.capacity:50}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("heatmap-");
+        executor.setThreadPriority(Thread.MIN_PRIORITY);
+        executor.initialize();
+        return executor;
+    }
+}
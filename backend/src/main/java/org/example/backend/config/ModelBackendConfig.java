@@ -0,0 +1,48 @@
+package org.example.backend.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.backend.service.inference.EcgImagePreprocessor;
+import org.example.backend.service.inference.ModelBackendRegistry;
+import org.example.backend.service.inference.TensorArena;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Configuration
+public class ModelBackendConfig {
+
+    // Shared-memory file the backend writes preprocessed images into and the workers read from.
+    // Defaults to /dev/shm when available so the mapping never touches disk.
+    @Bean(destroyMethod = "close")
+    public TensorArena tensorArena(@Value("${ai.tensor.arena.path:}") String arenaPath,
+                                   @Value("${ai.tensor.arena.slots:64}") int slots) throws IOException {
+        Path path;
+        if (!arenaPath.isBlank()) {
+            path = Path.of(arenaPath);
+        } else {
+            Path dir = Files.isDirectory(Path.of("/dev/shm")) ? Path.of("/dev/shm") : Path.of(System.getProperty("java.io.tmpdir"));
+            path = dir.resolve("deepheart-tensors-" + ProcessHandle.current().pid() + ".bin");
+        }
+        return new TensorArena(path, slots);
+    }
+
+    @Bean
+    public EcgImagePreprocessor ecgImagePreprocessor(TensorArena tensorArena,
+                                                     @Value("${ai.tensor.arena.acquire.timeout.ms:30000}") long timeoutMs) {
+        return new EcgImagePreprocessor(tensorArena, Duration.ofMillis(timeoutMs));
+    }
+
+    // One backend per enabled ai.model<N> group, each with its own dispatch threads; closed (workers stopped) on shutdown
+    @Bean(destroyMethod = "close")
+    public ModelBackendRegistry modelBackendRegistry(Environment environment,
+                                                     TensorArena tensorArena,
+                                                     MeterRegistry meterRegistry) {
+        return ModelBackendRegistry.fromEnvironment(environment, tensorArena, meterRegistry);
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.backend.config;
+
+import org.example.backend.service.inference.CircuitBreaker;
+import org.example.backend.service.inference.ModelBackend;
+import org.example.backend.service.inference.ModelBackendRegistry;
+import org.example.backend.service.inference.ResilientModelBackend;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// /actuator/health "models": circuit state per model; DOWN once no model can answer
+@Component
+public class ModelHealthIndicator implements HealthIndicator {
+
+    private final ModelBackendRegistry modelBackendRegistry;
+
+    public ModelHealthIndicator(ModelBackendRegistry modelBackendRegistry) {
+        this.modelBackendRegistry = modelBackendRegistry;
+    }
+
+    @Override
+    public Health health() {
+        Map<String, Object> circuits = new LinkedHashMap<>();
+        boolean anyAvailable = false;
+        for (ModelBackend backend : modelBackendRegistry.getBackends()) {
+            CircuitBreaker.State state = backend instanceof ResilientModelBackend resilient
+                    ? resilient.getCircuitBreaker().getState()
+                    : CircuitBreaker.State.CLOSED;
+            circuits.put(backend.getName(), state.name());
+            anyAvailable |= state != CircuitBreaker.State.OPEN;
+        }
+        Health.Builder health = anyAvailable ? Health.up() : Health.down();
+        return health.withDetails(circuits).build();
+    }
+}
@@ -0,0 +1,23 @@
+package org.example.backend.config;
+
+import org.example.backend.service.ModelWarmupService;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+// /actuator/health/readiness "modelWarmup": OUT_OF_SERVICE until every model has answered its warm-up
+@Component
+public class ModelWarmupHealthIndicator implements HealthIndicator {
+
+    private final ModelWarmupService modelWarmupService;
+
+    public ModelWarmupHealthIndicator(ModelWarmupService modelWarmupService) {
+        this.modelWarmupService = modelWarmupService;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder health = modelWarmupService.isReady() ? Health.up() : Health.outOfService();
+        return health.withDetails(modelWarmupService.getStatuses()).build();
+    }
+}
@@ -3,6 +3,8 @@ package org.example.backend.config;
 import org.example.backend.security.JwtAuthenticationFilter;
 import org.example.backend.security.JwtUtils;
 import org.example.backend.security.CustomUserDetailsService;
+import org.example.backend.security.UploadAdmissionFilter;
+import org.example.backend.service.UploadAdmissionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -33,6 +35,9 @@ public class SecurityConfig {
     @Autowired
     private CustomUserDetailsService userDetailsService;
 
+    @Autowired
+    private UploadAdmissionService uploadAdmissionService;
+
     @Bean
     public JwtAuthenticationFilter jwtAuthenticationFilter() {
         System.out.println("✅ SecurityConfig - Creating JWT Authentication Filter bean");
@@ -67,6 +72,9 @@ public class SecurityConfig {
                         .requestMatchers("/api/users/reset-password").permitAll()
                         .requestMatchers("/api/auth/**").permitAll()
 
+                        // Probes; metrics (/actuator/prometheus, /actuator/metrics) need an authenticated scraper
+                        .requestMatchers("/actuator/health/**", "/api/test/health").permitAll()
+
                         // Public file access (for ECG image viewer)
                         .requestMatchers("/api/ecg/files/**").permitAll()
 
@@ -85,6 +93,7 @@ public class SecurityConfig {
                 );
 
         http.addFilterBefore(jwtAuthenticationFilter(), UsernamePasswordAuthenticationFilter.class);
+        http.addFilterAfter(new UploadAdmissionFilter(uploadAdmissionService), JwtAuthenticationFilter.class);
         System.out.println("✅ SecurityConfig - JWT Authentication Filter registered");
 
         return http.build();
@@ -96,6 +105,7 @@ public class SecurityConfig {
         configuration.setAllowedOriginPatterns(Arrays.asList("http://localhost:*", "http://127.0.0.1:*"));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        configuration.setExposedHeaders(Arrays.asList("Retry-After"));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L); // Add cache time for preflight requests
 
@@ -1,5 +1,7 @@
 package org.example.backend.config;
 
+import org.example.backend.service.ModelWarmupService;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -10,14 +12,23 @@ import java.util.Map;
 @RequestMapping("/api/test")
 public class TestController {
 
+    private final ModelWarmupService modelWarmupService;
+
+    public TestController(ModelWarmupService modelWarmupService) {
+        this.modelWarmupService = modelWarmupService;
+    }
+
+    // Readiness probe: 503 until every model has been loaded and has answered a warm-up prediction
     @GetMapping("/health")
     public ResponseEntity<Map<String, Object>> healthCheck() {
+        boolean ready = modelWarmupService.isReady();
         Map<String, Object> response = new HashMap<>();
-        response.put("status", "OK");
-        response.put("message", "Backend is running successfully");
+        response.put("status", ready ? "OK" : "WARMING_UP");
+        response.put("message", ready ? "Backend is running successfully" : "AI models are still loading");
         response.put("timestamp", System.currentTimeMillis());
         response.put("service", "DeepHeart Backend");
-        return ResponseEntity.ok(response);
+        response.put("models", modelWarmupService.getStatuses());
+        return ResponseEntity.status(ready ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE).body(response);
     }
 
     @GetMapping("/cors")
@@ -0,0 +1,98 @@
+package org.example.backend.controller;
+
+import org.example.backend.model.BackfillRun;
+import org.example.backend.service.BackfillRunner;
+import org.example.backend.service.BackfillService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+@RestController
+@RequestMapping("/api/admin/backfill")
+@CrossOrigin(origins = "*")
+public class BackfillController {
+
+    private final BackfillService backfillService;
+    private final BackfillRunner backfillRunner;
+
+    public BackfillController(BackfillService backfillService, BackfillRunner backfillRunner) {
+        this.backfillService = backfillService;
+        this.backfillRunner = backfillRunner;
+    }
+
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<Map<String, Object>>> getRuns() {
+        return ResponseEntity.ok(backfillService.getRuns().stream().map(BackfillController::view).toList());
+    }
+
+    // Body (optional): {"ratePerSecond": 5, "batchSize": 16}; re-scores every analysed ECG into new predictions
+    @PostMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> start(@RequestBody(required = false) Map<String, Number> request) {
+        Double rate = request != null && request.get("ratePerSecond") != null ? request.get("ratePerSecond").doubleValue() : null;
+        Integer batchSize = request != null && request.get("batchSize") != null ? request.get("batchSize").intValue() : null;
+        return change(() -> backfillService.start(rate, batchSize), HttpStatus.ACCEPTED);
+    }
+
+    @PostMapping("/{runId}/pause")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> pause(@PathVariable UUID runId) {
+        return change(() -> backfillService.pause(runId), HttpStatus.OK);
+    }
+
+    @PostMapping("/{runId}/resume")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> resume(@PathVariable UUID runId) {
+        return change(() -> backfillService.resume(runId), HttpStatus.ACCEPTED);
+    }
+
+    // Applies a state change and lets this node pick up a run that is now running
+    private ResponseEntity<Map<String, Object>> change(Supplier<BackfillRun> action, HttpStatus status) {
+        try {
+            BackfillRun run = action.get();
+            if (run.getStatus() == BackfillRun.Status.RUNNING) {
+                backfillRunner.adoptRuns();
+            }
+            return ResponseEntity.status(status).body(view(run));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error(e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(error(e.getMessage()));
+        }
+    }
+
+    private static Map<String, Object> view(BackfillRun run) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("id", run.getId().toString());
+        body.put("status", run.getStatus().name());
+        body.put("scoredRecords", run.getScoredRecords());
+        body.put("failedRecords", run.getFailedRecords());
+        body.put("lastRecordId", run.getLastRecordId() != null ? run.getLastRecordId().toString() : null);
+        body.put("ratePerSecond", run.getRatePerSecond());
+        body.put("batchSize", run.getBatchSize());
+        body.put("modelVersions", run.getModelVersions());
+        body.put("node", run.getLeaseOwner());
+        body.put("lastError", run.getLastError());
+        body.put("createdAt", run.getCreatedAt().toString());
+        body.put("finishedAt", run.getFinishedAt() != null ? run.getFinishedAt().toString() : null);
+        return body;
+    }
+
+    private static Map<String, Object> error(String message) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", "ERROR");
+        body.put("error", message);
+        return body;
+    }
+}
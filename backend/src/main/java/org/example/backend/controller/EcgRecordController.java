@@ -1,26 +1,40 @@
 // File: src/main/java/org/example/backend/controller/EcgRecordController.java
 
 package org.example.backend.controller;
-import java.util.stream.StreamSupport;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.example.backend.model.EcgRecord;
 import org.example.backend.model.User;
-import org.example.backend.service.AiPredictionService;
 import org.example.backend.service.EcgRecordService;
+import org.example.backend.service.EcgUploadPipelineService;
+import org.example.backend.service.HeatmapService;
+import org.example.backend.service.UploadAdmissionService;
+import org.example.backend.service.UploadJob;
 import org.example.backend.service.UserService;
+import org.example.backend.service.inference.Priority;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.*;
-import java.time.LocalDateTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 
@@ -32,68 +46,248 @@ public class EcgRecordController {
 
     private final EcgRecordService ecgRecordService;
     private final UserService userService;
-    private final AiPredictionService aiPredictionService;
-    private final ObjectMapper objectMapper;
+    private final EcgUploadPipelineService uploadPipeline;
+    private final UploadAdmissionService admissionService;
+    private final HeatmapService heatmapService;
+    private final String uploadDirectory;
+    private final long streamTimeoutMs;
+    private final Executor streamExecutor;
 
-    private static final String[] LABELS = {"NORM", "MI", "STTC", "CD", "HYP"};
+    // An upload that was admitted as a job, or the answer explaining why it was not
+    private record Admission(UploadJob job, ResponseEntity<Map<String, Object>> rejection) {}
 
-    private static final Map<String, String> DESCRIPTIONS = Map.of(
-            "NORM", "Normal sinus rhythm detected.",
-            "MI", "Myocardial infarction detected.",
-            "STTC", "ST/T wave changes observed.",
-            "CD", "Conduction disturbances detected.",
-            "HYP", "Hypertrophy patterns identified."
-    );
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    // A heatmap still being computed: the viewer should ask again after this many seconds
+    private static final long HEATMAP_RETRY_AFTER_SECONDS = 5;
+
+    private static final Map<String, String> DESCRIPTIONS = EcgUploadPipelineService.DESCRIPTIONS;
 
     @Autowired
-    public EcgRecordController(EcgRecordService ecgRecordService, UserService userService, AiPredictionService aiPredictionService) {
+    public EcgRecordController(EcgRecordService ecgRecordService, UserService userService,
+                               EcgUploadPipelineService uploadPipeline, UploadAdmissionService admissionService,
+                               HeatmapService heatmapService,
+                               @Value("${ai.upload.directory:${user.dir}/uploads}") String uploadDirectory,
+                               @Value("${ai.upload.stream.timeout.ms:900000}") long streamTimeoutMs,
+                               @Qualifier("streamExecutor") Executor streamExecutor) {
         this.ecgRecordService = ecgRecordService;
         this.userService = userService;
-        this.aiPredictionService = aiPredictionService;
-        this.objectMapper = new ObjectMapper();
+        this.uploadPipeline = uploadPipeline;
+        this.admissionService = admissionService;
+        this.heatmapService = heatmapService;
+        this.uploadDirectory = uploadDirectory;
+        this.streamTimeoutMs = streamTimeoutMs;
+        this.streamExecutor = streamExecutor;
     }
 
     @PostMapping("/upload/single")
     public ResponseEntity<Map<String, Object>> uploadSingleEcg(
             @RequestParam("file") MultipartFile file,
             @RequestParam("patientId") UUID patientId,
-            @RequestParam(value = "notes", required = false) String notes) {
+            @RequestParam(value = "notes", required = false) String notes,
+            @RequestParam(value = "priority", required = false) String priority) {
 
-        try {
-            Map<String, Object> result = processSingleFile(file, patientId, notes);
-            return ResponseEntity.ok(result);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
-                    "status", "ERROR",
-                    "error", e.getMessage()
-            ));
-        }
+        return startUpload(new MultipartFile[]{file}, patientId, notes, priority);
     }
 
     @PostMapping("/upload")
     public ResponseEntity<Map<String, Object>> uploadMultipleEcg(
             @RequestParam("files") MultipartFile[] files,
             @RequestParam("patientId") UUID patientId,
-            @RequestParam(value = "notes", required = false) String notes) {
+            @RequestParam(value = "notes", required = false) String notes,
+            @RequestParam(value = "priority", required = false) String priority) {
 
-        List<Map<String, Object>> results = new ArrayList<>();
+        return startUpload(files, patientId, notes, priority);
+    }
+
+    /**
+     * Streaming variant of {@link #uploadMultipleEcg}: the response stays open and carries one event per file
+     * as soon as its prediction is stored, in completion order, then a summary. With
+     * {@code Accept: text/event-stream} the events are Server-Sent Events ({@code job}, {@code result},
+     * {@code done}); otherwise they are NDJSON lines with an {@code event} field. Rejected uploads get the
+     * same JSON errors as the job endpoint.
+     */
+    @PostMapping("/upload/stream")
+    public ResponseEntity<ResponseBodyEmitter> uploadMultipleEcgStreamed(
+            @RequestParam("files") MultipartFile[] files,
+            @RequestParam("patientId") UUID patientId,
+            @RequestParam(value = "notes", required = false) String notes,
+            @RequestParam(value = "priority", required = false) String priority,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+
+        Admission admission = admit(files, patientId, notes, priority);
+        if (admission.rejection() != null) {
+            // The same JSON error as the job endpoint, even though the client asked for a stream
+            ResponseBodyEmitter error = new ResponseBodyEmitter();
+            send(error, false, null, admission.rejection().getBody());
+            error.complete();
+            return ResponseEntity.status(admission.rejection().getStatusCode())
+                    .headers(admission.rejection().getHeaders())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(error);
+        }
+        return streamResults(admission.job(), accept);
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<Map<String, Object>> getJobStatus(@PathVariable UUID jobId) {
+        return uploadPipeline.getJob(jobId)
+                .map(job -> ResponseEntity.ok(jobStatus(job)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // The result stream of a job that is already running, e.g. to reconnect; finished files are sent first
+    @GetMapping("/jobs/{jobId}/stream")
+    public ResponseEntity<ResponseBodyEmitter> streamJob(@PathVariable UUID jobId,
+                                                         @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return uploadPipeline.getJob(jobId)
+                .map(job -> streamResults(job, accept))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Stores the files and answers with a job id; inference and persistence continue in the background
+    private ResponseEntity<Map<String, Object>> startUpload(MultipartFile[] files, UUID patientId, String notes,
+                                                            String priorityParam) {
+        Admission admission = admit(files, patientId, notes, priorityParam);
+        if (admission.rejection() != null) {
+            return admission.rejection();
+        }
+        return ResponseEntity.accepted().body(jobStatus(admission.job()));
+    }
 
+    // Validates the upload, takes admission and stores every file; inference starts as each file is stored
+    private Admission admit(MultipartFile[] files, UUID patientId, String notes, String priorityParam) {
+        Priority priority;
+        try {
+            priority = Priority.parse(priorityParam);
+        } catch (IllegalArgumentException e) {
+            return new Admission(null, ResponseEntity.badRequest().body(Map.of(
+                    "status", "ERROR",
+                    "error", e.getMessage()
+            )));
+        }
+
+        Optional<User> patient = userService.getUserById(patientId);
+        if (patient.isEmpty()) {
+            return new Admission(null, ResponseEntity.badRequest().body(Map.of(
+                    "status", "ERROR",
+                    "error", "Invalid patient ID"
+            )));
+        }
+
+        if (files.length > admissionService.getCapacity()) {
+            return new Admission(null, ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(Map.of(
+                    "status", "ERROR",
+                    "error", "At most " + admissionService.getCapacity() + " ECGs can be uploaded at once"
+            )));
+        }
+
+        Optional<UploadJob> admitted = uploadPipeline.createJob(patientId, notes, files.length, priority);
+        if (admitted.isEmpty()) {
+            return new Admission(null, tooManyRequests(files.length, priority));
+        }
+
+        UploadJob job = admitted.get();
         for (MultipartFile file : files) {
+            UploadJob.FileTask task = job.addFile(file.getOriginalFilename());
             try {
-                results.add(processSingleFile(file, patientId, notes));
+                processSingleFile(file, patient.get(), job, task);
             } catch (Exception e) {
-                results.add(Map.of(
-                        "fileName", file.getOriginalFilename(),
-                        "status", "ERROR",
-                        "error", e.getMessage()
-                ));
+                task.fail(e.getMessage());
             }
         }
+        return new Admission(job, null);
+    }
 
-        return ResponseEntity.ok(Map.of(
-                "results", results,
-                "totalFiles", files.length
-        ));
+    // One event per file as it finishes, then the job summary; nothing is collected on the way
+    private ResponseEntity<ResponseBodyEmitter> streamResults(UploadJob job, String accept) {
+        boolean sse = accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE);
+        ResponseBodyEmitter emitter = sse ? new SseEmitter(streamTimeoutMs) : new ResponseBodyEmitter(streamTimeoutMs);
+
+        List<UploadJob.FileTask> tasks = job.getFiles();
+        AtomicInteger remaining = new AtomicInteger(tasks.size());
+        synchronized (emitter) {
+            send(emitter, sse, "job", jobSummary(job));
+        }
+        for (UploadJob.FileTask task : tasks) {
+            // Written on the stream threads: the pipeline thread that finished the file never waits for the client
+            task.whenFinished().thenAcceptAsync(finished -> {
+                // Events of one stream are written one at a time, so the summary always comes last
+                synchronized (emitter) {
+                    send(emitter, sse, "result", fileResult(finished));
+                    if (remaining.decrementAndGet() == 0) {
+                        send(emitter, sse, "done", jobSummary(job));
+                        emitter.complete();
+                    }
+                }
+            }, streamExecutor);
+        }
+        if (tasks.isEmpty()) {
+            synchronized (emitter) {
+                send(emitter, sse, "done", jobSummary(job));
+                emitter.complete();
+            }
+        }
+        return ResponseEntity.ok()
+                .contentType(sse ? MediaType.TEXT_EVENT_STREAM : NDJSON)
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                // Keeps nginx from buffering the stream
+                .header("X-Accel-Buffering", "no")
+                .body(emitter);
+    }
+
+    // A client that went away only loses its stream; the job carries on and stays available at /jobs/{jobId}.
+    // NDJSON lines name their event in an "event" field (none for a plain JSON error)
+    private static void send(ResponseBodyEmitter emitter, boolean sse, String event, Map<String, Object> data) {
+        try {
+            if (sse) {
+                ((SseEmitter) emitter).send(SseEmitter.event().name(event).data(data, MediaType.APPLICATION_JSON));
+            } else {
+                Map<String, Object> line = new LinkedHashMap<>();
+                if (event != null) {
+                    line.put("event", event);
+                }
+                line.putAll(data);
+                emitter.send(line, MediaType.APPLICATION_JSON);
+                emitter.send("\n", MediaType.TEXT_PLAIN);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // disconnected, or the stream already completed or timed out
+        }
+    }
+
+    private static Map<String, Object> fileResult(UploadJob.FileTask task) {
+        if (task.getStage() == UploadJob.Stage.DONE) {
+            return task.getResult();
+        }
+        Map<String, Object> failure = new LinkedHashMap<>();
+        failure.put("fileName", task.getFileName());
+        failure.put("status", "ERROR");
+        failure.put("error", task.getError());
+        return failure;
+    }
+
+    private static Map<String, Object> jobSummary(UploadJob job) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("jobId", job.getId().toString());
+        summary.put("status", job.getStatus());
+        summary.put("priority", job.getPriority().name());
+        summary.put("totalFiles", job.getTotalFiles());
+        summary.put("completedFiles", job.getCompletedFiles());
+        summary.put("failedFiles", job.getFailedFiles());
+        return summary;
+    }
+
+    // Backpressure: the client should come back once enough in-flight ECGs have drained
+    private ResponseEntity<Map<String, Object>> tooManyRequests(int files, Priority priority) {
+        long retryAfter = admissionService.retryAfterSeconds(files, priority);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                .body(Map.of(
+                        "status", "ERROR",
+                        "error", "The ECG analysis queue is full, please retry in " + retryAfter + " seconds",
+                        "retryAfterSeconds", retryAfter
+                ));
     }
 
     @GetMapping("/patient/{patientId}/records")
@@ -119,7 +313,7 @@ public class EcgRecordController {
     @GetMapping("/files/{filename:.+}")
     public ResponseEntity<Resource> getFile(@PathVariable String filename) {
         try {
-            Path file = Paths.get("uploads").resolve(filename);
+            Path file = Paths.get(uploadDirectory).resolve(filename);
             Resource resource = new UrlResource(file.toUri());
             if (resource.exists() || resource.isReadable()) {
                 return ResponseEntity.ok()
@@ -133,89 +327,106 @@ public class EcgRecordController {
         }
     }
 
-    private Map<String, Object> processSingleFile(MultipartFile file, UUID patientId, String notes) throws IOException {
+    // Grad-CAM heatmap of one model's prediction; computed on the first request, then served from disk
+    @GetMapping("/{ecgId}/heatmap/{modelId}")
+    public ResponseEntity<?> getHeatmap(@PathVariable UUID ecgId, @PathVariable String modelId) {
+        CompletableFuture<String> heatmap;
+        try {
+            heatmap = heatmapService.heatmap(ecgId, modelId);
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("status", "ERROR", "error", e.getMessage()));
+        }
+
+        try {
+            String fileName = heatmap.get(heatmapService.getViewerWait().toMillis(), TimeUnit.MILLISECONDS);
+            Resource resource = new UrlResource(heatmapService.resolve(fileName).toUri());
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_PNG)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + fileName + "\"")
+                    .body(resource);
+        } catch (TimeoutException e) {
+            return ResponseEntity.accepted()
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(HEATMAP_RETRY_AFTER_SECONDS))
+                    .body(Map.of("status", "PENDING", "retryAfterSeconds", HEATMAP_RETRY_AFTER_SECONDS));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UnsupportedOperationException) {
+                return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).body(Map.of("status", "ERROR", "error", cause.getMessage()));
+            }
+            if (cause instanceof RejectedExecutionException) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(HEATMAP_RETRY_AFTER_SECONDS))
+                        .body(Map.of("status", "ERROR", "error", "Too many heatmaps are being computed, please retry"));
+            }
+            return ResponseEntity.internalServerError().body(Map.of("status", "ERROR", "error", String.valueOf(cause.getMessage())));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.internalServerError().build();
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("status", "ERROR", "error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    // Storage stage: write the upload to disk and create its Pending record
+    private void processSingleFile(MultipartFile file, User patient, UploadJob job, UploadJob.FileTask task) throws IOException {
         String originalFilename = file.getOriginalFilename();
         if (originalFilename == null || !isValidFile(originalFilename)) {
             throw new IllegalArgumentException("Unsupported file format.");
         }
 
-        String uploadDir = System.getProperty("user.dir") + "/uploads/";
-        Files.createDirectories(Paths.get(uploadDir));
+        Files.createDirectories(Paths.get(uploadDirectory));
         String filename = UUID.randomUUID() + "_" + originalFilename;
-        Path path = Paths.get(uploadDir + filename);
-        Files.copy(file.getInputStream(), path);
+        Path path = Paths.get(uploadDirectory, filename);
 
-        User patient = userService.getUserById(patientId).orElseThrow(() -> new IllegalArgumentException("Invalid patient ID"));
-        User doctor = patient.getDoctor();
+        // Hash the bytes while they are written so re-uploads can be answered from the prediction cache
+        MessageDigest sha256 = newSha256();
+        try (InputStream in = new DigestInputStream(file.getInputStream(), sha256)) {
+            Files.copy(in, path);
+        }
 
-        String predictionJson = aiPredictionService.predictEcgImage(path.toFile());
-        JsonNode predictionNode = objectMapper.readTree(predictionJson);
+        EcgRecord ecgRecord = new EcgRecord(patient, patient.getDoctor(), filename, "Pending");
+        ecgRecord.setImageDigest(HexFormat.of().formatHex(sha256.digest()));
+        ecgRecord = ecgRecordService.save(ecgRecord);
 
-        System.out.println("=== JAVA CONTROLLER DEBUG ===");
-        System.out.println("Raw AI prediction JSON: " + predictionJson);
-        System.out.println("Parsed prediction node keys: " +
-                StreamSupport.stream(
-                                Spliterators.spliteratorUnknownSize(predictionNode.fieldNames(), Spliterator.ORDERED), false)
-                        .collect(Collectors.toList())
-        );
+        uploadPipeline.submit(job, task, ecgRecord, path.toFile());
+    }
 
-        Map<String, Object> allPredictions = new LinkedHashMap<>();
+    private Map<String, Object> jobStatus(UploadJob job) {
+        List<Map<String, Object>> files = new ArrayList<>();
+        List<Map<String, Object>> results = new ArrayList<>();
 
-        if (predictionNode.has("model1")) {
-            JsonNode model1 = predictionNode.get("model1");
-            allPredictions.put("model1", Map.of(
-                    "classification", model1.get("classification").asText(),
-                    "confidence", model1.get("confidence").asDouble(),
-                    "probabilities", extractProbabilities(model1.get("probabilities"))
-            ));
-        }
+        for (UploadJob.FileTask task : job.getFiles()) {
+            Map<String, Object> file = new LinkedHashMap<>();
+            file.put("fileName", task.getFileName());
+            file.put("recordId", task.getRecordId() != null ? task.getRecordId().toString() : null);
+            file.put("stage", task.getStage().name());
+            file.put("error", task.getError());
+            files.add(file);
 
-        if (predictionNode.has("model2")) {
-            JsonNode model2 = predictionNode.get("model2");
-            allPredictions.put("model2", Map.of(
-                    "classification", model2.get("classification").asText(),
-                    "confidence", model2.get("confidence").asDouble(),
-                    "probabilities", extractProbabilities(model2.get("probabilities"))
-            ));
+            if (task.getStage() == UploadJob.Stage.DONE || task.getStage() == UploadJob.Stage.FAILED) {
+                results.add(fileResult(task));
+            }
         }
 
-        String classification = predictionNode.get("classification").asText();
-        double confidence = predictionNode.get("confidence").asDouble();
-        JsonNode probs = predictionNode.get("probabilities");
-
-        EcgRecord ecgRecord = new EcgRecord(patient, doctor, filename, "Processed");
-        ecgRecord.setNormProbability(probs.get("NORM").asDouble());
-        ecgRecord.setMiProbability(probs.get("MI").asDouble());
-        ecgRecord.setSttcProbability(probs.get("STTC").asDouble());
-        ecgRecord.setCdProbability(probs.get("CD").asDouble());
-        ecgRecord.setHypProbability(probs.get("HYP").asDouble());
-        ecgRecord = ecgRecordService.save(ecgRecord);
-
-        Map<String, Object> response = new LinkedHashMap<>();
-        response.put("id", ecgRecord.getId().toString());
-        response.put("fileName", filename);
-        response.put("classification", classification);
-        response.put("confidence", confidence);
-        response.put("probabilities", extractProbabilities(probs));
-        response.put("timestamp", LocalDateTime.now().toString());
-        response.put("patientId", patientId.toString());
-        response.put("notes", notes);
-        response.put("status", "SUCCESS");
-        response.put("description", DESCRIPTIONS.getOrDefault(classification, "Classification completed"));
-        response.put("allPredictions", allPredictions);
-
-        System.out.println("=== END JAVA CONTROLLER DEBUG ===");
-        return response;
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("jobId", job.getId().toString());
+        status.put("status", job.getStatus());
+        status.put("createdAt", job.getCreatedAt().toString());
+        status.put("priority", job.getPriority().name());
+        status.put("totalFiles", job.getTotalFiles());
+        status.put("completedFiles", job.getCompletedFiles());
+        status.put("failedFiles", job.getFailedFiles());
+        status.put("files", files);
+        status.put("results", results);
+        return status;
     }
 
-    private Map<String, Double> extractProbabilities(JsonNode probsNode) {
-        return Map.of(
-                "NORM", probsNode.get("NORM").asDouble(),
-                "MI", probsNode.get("MI").asDouble(),
-                "STTC", probsNode.get("STTC").asDouble(),
-                "CD", probsNode.get("CD").asDouble(),
-                "HYP", probsNode.get("HYP").asDouble()
-        );
+    private MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 
     private boolean isValidFile(String filename) {
@@ -0,0 +1,92 @@
+package org.example.backend.controller;
+
+import org.example.backend.service.CpuBenchmarkService;
+import org.example.backend.service.ModelVersionService;
+import org.example.backend.service.inference.ModelVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+@RestController
+@RequestMapping("/api/admin/models")
+@CrossOrigin(origins = "*")
+public class ModelAdminController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelAdminController.class);
+
+    private final ModelVersionService modelVersionService;
+    private final CpuBenchmarkService cpuBenchmarkService;
+
+    public ModelAdminController(ModelVersionService modelVersionService, CpuBenchmarkService cpuBenchmarkService) {
+        this.modelVersionService = modelVersionService;
+        this.cpuBenchmarkService = cpuBenchmarkService;
+    }
+
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Map<String, String>>> getVersions() {
+        return ResponseEntity.ok(modelVersionService.getVersions());
+    }
+
+    // Body: {"version": "2", "modelPath": "/models/densenet_v2.h5"}; answers once the new version serves all traffic
+    @PostMapping("/{modelId}/versions")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> swapVersion(@PathVariable String modelId,
+                                                           @RequestBody Map<String, String> request) {
+        try {
+            ModelVersion version = new ModelVersion(request.get("version"), request.get("modelPath"));
+            String previous = modelVersionService.swap(modelId, version);
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("status", "SUCCESS");
+            body.put("model", modelId);
+            body.put("previousVersion", previous);
+            body.put("version", version.version());
+            return ResponseEntity.ok(body);
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error(e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error(e.getMessage()));
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            return ResponseEntity.badRequest().body(error(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Switching {} to a new version failed; the previous version keeps serving", modelId, e);
+            return ResponseEntity.internalServerError().body(error(
+                    "The new version failed to start, the previous version keeps serving: " + e.getMessage()));
+        }
+    }
+
+    // Body (optional): {"images": 256, "batchSize": 8}; tries every workers x threads split, run it on an idle node
+    @PostMapping("/{modelId}/cpu-benchmark")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> benchmarkCpu(@PathVariable String modelId,
+                                          @RequestBody(required = false) Map<String, Number> request) {
+        int images = request != null && request.get("images") != null ? request.get("images").intValue() : 256;
+        int batchSize = request != null && request.get("batchSize") != null ? request.get("batchSize").intValue() : 8;
+        try {
+            return ResponseEntity.ok(cpuBenchmarkService.benchmark(modelId, images, batchSize));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error(e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error(e.getMessage()));
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            return ResponseEntity.badRequest().body(error(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("CPU benchmark of {} failed", modelId, e);
+            return ResponseEntity.internalServerError().body(error("CPU benchmark failed: " + e.getMessage()));
+        }
+    }
+
+    private static Map<String, Object> error(String message) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", "ERROR");
+        body.put("error", message);
+        return body;
+    }
+}
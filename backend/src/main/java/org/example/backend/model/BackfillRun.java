@@ -0,0 +1,118 @@
+package org.example.backend.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One re-scoring pass over the stored ECGs, e.g. after a model upgrade. Records are walked in id order
+ * and {@code lastRecordId} is the checkpoint: a run that is paused, or whose node dies, continues after
+ * it. The node running the batches holds a lease on the run, like on an {@link InferenceJob}.
+ */
+@Entity
+@Table(name = "backfill_runs")
+public class BackfillRun {
+
+    public enum Status { RUNNING, PAUSED, COMPLETED, FAILED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status = Status.RUNNING;
+
+    // Keyset cursor: the last record whose new predictions were stored; null before the first batch
+    @Column(name = "last_record_id")
+    private UUID lastRecordId;
+
+    @Column(name = "scored_records", nullable = false)
+    private long scoredRecords;
+
+    @Column(name = "failed_records", nullable = false)
+    private long failedRecords;
+
+    // Rate cap in records per second, and records sent to the models at once
+    @Column(name = "rate_per_second", nullable = false)
+    private double ratePerSecond;
+
+    @Column(name = "batch_size", nullable = false)
+    private int batchSize;
+
+    // Serving model versions when the run started, e.g. "DenseNet121=2,ResNet=1"
+    @Column(name = "model_versions")
+    private String modelVersions;
+
+    @Column(name = "lease_owner")
+    private String leaseOwner;
+
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
+    @Column(name = "last_error", length = 1024)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    // Constructors
+    public BackfillRun() {}
+
+    public BackfillRun(double ratePerSecond, int batchSize, String modelVersions) {
+        this.ratePerSecond = ratePerSecond;
+        this.batchSize = batchSize;
+        this.modelVersions = modelVersions;
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = createdAt;
+    }
+
+    // Getters and setters
+    public UUID getId() { return id; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public UUID getLastRecordId() { return lastRecordId; }
+    public void setLastRecordId(UUID lastRecordId) { this.lastRecordId = lastRecordId; }
+
+    public long getScoredRecords() { return scoredRecords; }
+    public void setScoredRecords(long scoredRecords) { this.scoredRecords = scoredRecords; }
+
+    public long getFailedRecords() { return failedRecords; }
+    public void setFailedRecords(long failedRecords) { this.failedRecords = failedRecords; }
+
+    public double getRatePerSecond() { return ratePerSecond; }
+    public void setRatePerSecond(double ratePerSecond) { this.ratePerSecond = ratePerSecond; }
+
+    public int getBatchSize() { return batchSize; }
+    public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+
+    public String getModelVersions() { return modelVersions; }
+    public void setModelVersions(String modelVersions) { this.modelVersions = modelVersions; }
+
+    public String getLeaseOwner() { return leaseOwner; }
+    public void setLeaseOwner(String leaseOwner) { this.leaseOwner = leaseOwner; }
+
+    public LocalDateTime getLeaseExpiresAt() { return leaseExpiresAt; }
+    public void setLeaseExpiresAt(LocalDateTime leaseExpiresAt) { this.leaseExpiresAt = leaseExpiresAt; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+}
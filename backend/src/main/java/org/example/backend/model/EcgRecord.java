@@ -31,6 +31,14 @@ public class EcgRecord {
     @Column(name = "date_added", nullable = false)
     private LocalDateTime dateAdded;
 
+    // SHA-256 of the uploaded image, used to recognise re-uploads of the same ECG
+    @Column(name = "image_digest", length = 64)
+    private String imageDigest;
+
+    // Versions of the models that produced the probabilities, e.g. "DenseNet121=2,ResNet=1"
+    @Column(name = "model_versions")
+    private String modelVersions;
+
     // Class probabilities
     @Column(name = "norm_prob")
     private double normProbability;
@@ -108,6 +116,22 @@ public class EcgRecord {
         this.dateAdded = dateAdded;
     }
 
+    public String getImageDigest() {
+        return imageDigest;
+    }
+
+    public void setImageDigest(String imageDigest) {
+        this.imageDigest = imageDigest;
+    }
+
+    public String getModelVersions() {
+        return modelVersions;
+    }
+
+    public void setModelVersions(String modelVersions) {
+        this.modelVersions = modelVersions;
+    }
+
     public double getNormProbability() {
         return normProbability;
     }
@@ -0,0 +1,116 @@
+package org.example.backend.model;
+
+import jakarta.persistence.*;
+import org.example.backend.service.inference.Priority;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One uploaded ECG waiting for, or going through, inference on any backend node. A node claims
+ * the job with a lease; a job whose lease runs out (its node crashed or hung) is claimed again
+ * until it has used up its attempts.
+ */
+@Entity
+@Table(name = "inference_jobs", indexes = @Index(name = "idx_inference_jobs_status", columnList = "status, available_at"))
+public class InferenceJob {
+
+    public enum Status { PENDING, RUNNING, DONE, FAILED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "record_id", nullable = false)
+    private UUID recordId;
+
+    // Stored upload; must be on storage every node can read (ai.upload.directory)
+    @Column(name = "file_path", nullable = false, length = 1024)
+    private String filePath;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Priority priority;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status = Status.PENDING;
+
+    // Claims so far, including the running one
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "lease_owner")
+    private String leaseOwner;
+
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
+    // Not claimed before this time (retry backoff)
+    @Column(name = "available_at", nullable = false)
+    private LocalDateTime availableAt;
+
+    // Combined model output of a DONE job, as returned by AiPredictionService
+    @Column(name = "result_json", length = 8192)
+    private String resultJson;
+
+    @Column(name = "last_error", length = 1024)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public InferenceJob() {}
+
+    public InferenceJob(UUID recordId, String filePath, Priority priority) {
+        this.recordId = recordId;
+        this.filePath = filePath;
+        this.priority = priority;
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = createdAt;
+        this.availableAt = createdAt;
+    }
+
+    // Getters and setters
+    public UUID getId() { return id; }
+
+    public UUID getRecordId() { return recordId; }
+    public void setRecordId(UUID recordId) { this.recordId = recordId; }
+
+    public String getFilePath() { return filePath; }
+    public void setFilePath(String filePath) { this.filePath = filePath; }
+
+    public Priority getPriority() { return priority; }
+    public void setPriority(Priority priority) { this.priority = priority; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public String getLeaseOwner() { return leaseOwner; }
+    public void setLeaseOwner(String leaseOwner) { this.leaseOwner = leaseOwner; }
+
+    public LocalDateTime getLeaseExpiresAt() { return leaseExpiresAt; }
+    public void setLeaseExpiresAt(LocalDateTime leaseExpiresAt) { this.leaseExpiresAt = leaseExpiresAt; }
+
+    public LocalDateTime getAvailableAt() { return availableAt; }
+    public void setAvailableAt(LocalDateTime availableAt) { this.availableAt = availableAt; }
+
+    public String getResultJson() { return resultJson; }
+    public void setResultJson(String resultJson) { this.resultJson = resultJson; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
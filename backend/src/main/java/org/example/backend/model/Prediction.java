@@ -1,6 +1,8 @@
 package org.example.backend.model;
 
 import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
@@ -24,9 +26,24 @@ public class Prediction {
     @Column(name = "model_name")
     private String modelName; // e.g., DenseNet121, ResNet50
 
+    @Column(name = "model_version")
+    private String modelVersion; // Version of the model (or models, for the ensemble) that answered
+
     @Column(name = "heatmap_path")
     private String heatmapPath; // Optional path to Grad-CAM image
 
+    @Column(name = "latency_ms")
+    private Long latencyMs; // Wall time of the model call, when recorded
+
+    @Column(nullable = false)
+    private boolean shadow; // Written by shadow evaluation; never shown to users
+
+    @Column(name = "backfill_run_id")
+    private UUID backfillRunId; // Set on rows written by a re-scoring backfill run
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt = LocalDateTime.now();
+
     // Constructors
     public Prediction() {}
 
@@ -53,6 +70,21 @@ public class Prediction {
     public String getModelName() { return modelName; }
     public void setModelName(String modelName) { this.modelName = modelName; }
 
+    public String getModelVersion() { return modelVersion; }
+    public void setModelVersion(String modelVersion) { this.modelVersion = modelVersion; }
+
     public String getHeatmapPath() { return heatmapPath; }
     public void setHeatmapPath(String heatmapPath) { this.heatmapPath = heatmapPath; }
+
+    public Long getLatencyMs() { return latencyMs; }
+    public void setLatencyMs(Long latencyMs) { this.latencyMs = latencyMs; }
+
+    public boolean isShadow() { return shadow; }
+    public void setShadow(boolean shadow) { this.shadow = shadow; }
+
+    public UUID getBackfillRunId() { return backfillRunId; }
+    public void setBackfillRunId(UUID backfillRunId) { this.backfillRunId = backfillRunId; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
 }
@@ -0,0 +1,40 @@
+package org.example.backend.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "prediction_cache")
+public class PredictionCacheEntry {
+
+    // SHA-256 of the uploaded image bytes, hex encoded
+    @Id
+    @Column(length = 64)
+    private String digest;
+
+    // Combined model output exactly as returned by AiPredictionService
+    @Column(name = "result_json", nullable = false, length = 8192)
+    private String resultJson;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Constructors
+    public PredictionCacheEntry() {}
+
+    public PredictionCacheEntry(String digest, String resultJson) {
+        this.digest = digest;
+        this.resultJson = resultJson;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Getters and setters
+    public String getDigest() { return digest; }
+    public void setDigest(String digest) { this.digest = digest; }
+
+    public String getResultJson() { return resultJson; }
+    public void setResultJson(String resultJson) { this.resultJson = resultJson; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
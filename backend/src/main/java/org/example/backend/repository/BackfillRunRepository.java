@@ -0,0 +1,28 @@
+package org.example.backend.repository;
+
+import jakarta.persistence.LockModeType;
+import org.example.backend.model.BackfillRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface BackfillRunRepository extends JpaRepository<BackfillRun, UUID> {
+
+    List<BackfillRun> findAllByOrderByCreatedAtDesc();
+
+    boolean existsByStatusIn(List<BackfillRun.Status> statuses);
+
+    // Locks the run so nodes adopting it at the same time take turns; must run inside a transaction
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM BackfillRun r WHERE r.id = :id")
+    Optional<BackfillRun> lockById(@Param("id") UUID id);
+
+    @Query("SELECT r.id FROM BackfillRun r WHERE r.status = org.example.backend.model.BackfillRun.Status.RUNNING"
+            + " ORDER BY r.createdAt")
+    List<UUID> findRunningIds();
+}
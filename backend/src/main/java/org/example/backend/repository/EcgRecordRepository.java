@@ -2,7 +2,10 @@ package org.example.backend.repository;
 
 import org.example.backend.model.EcgRecord;
 import org.example.backend.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -24,4 +27,11 @@ public interface EcgRecordRepository extends JpaRepository<EcgRecord, UUID> {
     List<EcgRecord> findByDoctorAndDateAddedBetween(User doctor, LocalDateTime start, LocalDateTime end);
 
     List<EcgRecord> findByDoctorAndDateAddedAfter(User doctor, LocalDateTime start);
-}
\ No newline at end of file
+
+    /**
+     * Keyset page for backfills: the analysed records after {@code afterId} in id order. Walking the primary
+     * key keeps every page as cheap as the first, however far the backfill has got.
+     */
+    @Query("SELECT r FROM EcgRecord r WHERE r.id > :afterId AND r.status <> 'Pending' ORDER BY r.id")
+    List<EcgRecord> findBackfillPage(@Param("afterId") UUID afterId, Pageable page);
+}
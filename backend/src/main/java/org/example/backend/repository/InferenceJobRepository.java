@@ -0,0 +1,43 @@
+package org.example.backend.repository;
+
+import jakarta.persistence.LockModeType;
+import jakarta.transaction.Transactional;
+import org.example.backend.model.InferenceJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface InferenceJobRepository extends JpaRepository<InferenceJob, UUID> {
+
+    /**
+     * Locks up to {@code limit} jobs that are ready to run, or whose lease has expired, most urgent
+     * and oldest first. Rows another node has locked are skipped rather than waited for, so nodes
+     * claiming at the same time get different jobs. Must run inside a transaction.
+     */
+    @Query(value = "SELECT * FROM inference_jobs"
+            + " WHERE (status = 'PENDING' AND available_at <= :now)"
+            + " OR (status = 'RUNNING' AND lease_expires_at < :now)"
+            + " ORDER BY CASE priority WHEN 'STAT' THEN 0 WHEN 'ROUTINE' THEN 1 ELSE 2 END, created_at"
+            + " LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<InferenceJob> lockClaimable(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    // Locks one job so its lease cannot be taken over while its outcome is stored; must run inside a transaction
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT j FROM InferenceJob j WHERE j.id = :id")
+    Optional<InferenceJob> lockById(@Param("id") UUID id);
+
+    long countByStatus(InferenceJob.Status status);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM InferenceJob j WHERE j.status IN (org.example.backend.model.InferenceJob.Status.DONE,"
+            + " org.example.backend.model.InferenceJob.Status.FAILED) AND j.updatedAt < :cutoff")
+    int deleteFinishedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,18 @@
+package org.example.backend.repository;
+
+import jakarta.transaction.Transactional;
+import org.example.backend.model.PredictionCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface PredictionCacheRepository extends JpaRepository<PredictionCacheEntry, String> {
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM PredictionCacheEntry p WHERE p.createdAt < :cutoff")
+    int deleteOlderThan(@Param("cutoff") LocalDateTime cutoff);
+}
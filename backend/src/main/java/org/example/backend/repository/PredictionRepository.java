@@ -4,8 +4,14 @@ import org.example.backend.model.Prediction;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface PredictionRepository extends JpaRepository<Prediction, UUID> {
     List<Prediction> findByEcgRecordId(UUID ecgRecordId);
+
+    boolean existsByEcgRecordIdAndHeatmapPath(UUID ecgRecordId, String heatmapPath);
+
+    // Heatmaps are shared by records with the same image; any row for the file names the class it explains
+    Optional<Prediction> findFirstByHeatmapPath(String heatmapPath);
 }
\ No newline at end of file
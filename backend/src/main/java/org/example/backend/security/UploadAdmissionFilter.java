@@ -0,0 +1,86 @@
+package org.example.backend.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.example.backend.service.UploadAdmissionService;
+import org.example.backend.service.inference.Priority;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns ECG uploads away while the node is saturated, before the multipart body (up to
+ * {@code spring.servlet.multipart.max-request-size}) is read. The controller still admits
+ * each upload by its exact file count; this only avoids buffering uploads that cannot be taken.
+ * Only the query string is looked at for {@code priority}, since reading form fields would parse
+ * the body; uploads that send their priority as a form field are checked as ROUTINE here.
+ * Runs after the JWT filter and only turns away authenticated uploads.
+ */
+public class UploadAdmissionFilter extends OncePerRequestFilter {
+
+    private final UploadAdmissionService admissionService;
+
+    public UploadAdmissionFilter(UploadAdmissionService admissionService) {
+        this.admissionService = admissionService;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || !request.getRequestURI().startsWith("/api/ecg/upload");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain)
+            throws ServletException, IOException {
+
+        // Requests without a signed-in user are left to authorization, so they get 401 rather than 429
+        Priority priority = queryPriority(request);
+        if (!isAuthenticated() || !admissionService.isSaturated(priority)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long retryAfter = admissionService.retryAfterSeconds(1, priority);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"status\":\"ERROR\",\"error\":\"The ECG analysis queue is full, please retry in "
+                + retryAfter + " seconds\",\"retryAfterSeconds\":" + retryAfter + "}");
+    }
+
+    private static boolean isAuthenticated() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken);
+    }
+
+    // An invalid priority is let through for the controller to reject with 400
+    private static Priority queryPriority(HttpServletRequest request) {
+        String query = request.getQueryString();
+        if (query == null) {
+            return Priority.ROUTINE;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.startsWith("priority=")) {
+                try {
+                    return Priority.parse(URLDecoder.decode(pair.substring("priority=".length()), StandardCharsets.UTF_8));
+                } catch (IllegalArgumentException e) {
+                    return Priority.STAT;
+                }
+            }
+        }
+        return Priority.ROUTINE;
+    }
+}
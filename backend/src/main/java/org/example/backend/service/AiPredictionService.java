@@ -2,121 +2,287 @@ package org.example.backend.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.backend.service.ensemble.CascadePolicy;
+import org.example.backend.service.ensemble.EnsembleStrategy;
+import org.example.backend.service.inference.EcgImagePreprocessor;
+import org.example.backend.service.inference.ModelBackend;
+import org.example.backend.service.inference.ModelBackendRegistry;
+import org.example.backend.service.inference.ModelOutput;
+import org.example.backend.service.inference.ModelUnavailableException;
+import org.example.backend.service.inference.PreparedImage;
+import org.example.backend.service.inference.Priority;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class AiPredictionService {
 
+    private static final Logger logger = LoggerFactory.getLogger(AiPredictionService.class);
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    // Enabled models from ai.model<N>.*, each with its own workers and concurrency limit
+    private final ModelBackendRegistry modelBackendRegistry;
+
+    // Combines the per-model probabilities (ai.ensemble.strategy)
+    private final EnsembleStrategy ensembleStrategy;
+
+    // Decodes each upload once into the shared tensor arena that every model reads
+    private final EcgImagePreprocessor imagePreprocessor;
+
+    // Whether an ensemble with a failed model still answers from the models that did
+    private final boolean degradedModeEnabled;
+
+    // Whether a confident primary model may answer without the others (ai.cascade.*)
+    private final CascadePolicy cascadePolicy;
+
+    // Runs the ai.shadow model next to the ensemble on spare capacity; its answers are only stored
+    private final ShadowEvaluationService shadowEvaluation;
+
+    public AiPredictionService(ModelBackendRegistry modelBackendRegistry, EnsembleStrategy ensembleStrategy,
+                               EcgImagePreprocessor imagePreprocessor,
+                               @Value("${ai.ensemble.degraded.enabled:true}") boolean degradedModeEnabled,
+                               CascadePolicy cascadePolicy,
+                               ShadowEvaluationService shadowEvaluation) {
+        this.modelBackendRegistry = modelBackendRegistry;
+        this.ensembleStrategy = ensembleStrategy;
+        this.imagePreprocessor = imagePreprocessor;
+        this.degradedModeEnabled = degradedModeEnabled;
+        this.cascadePolicy = cascadePolicy;
+        this.shadowEvaluation = shadowEvaluation;
+    }
+
     public String predictEcgImage(File imageFile) {
-        try {
-            System.out.println("Starting dual model prediction for: " + imageFile.getAbsolutePath());
+        return predictEcgImageAsync(imageFile).join();
+    }
 
-            String denseNetResult = runDenseNetPrediction(imageFile);
+    /**
+     * Same result as {@link #predictEcgImage(File)}, without tying up the calling thread
+     * while the models run.
+     */
+    public CompletableFuture<String> predictEcgImageAsync(File imageFile) {
+        return predictEcgImageAsync(imageFile, Priority.ROUTINE);
+    }
 
-            String resNetResult = runResNetPrediction(imageFile);
+    /**
+     * Same as {@link #predictEcgImageAsync(File)}, queued in the given priority lane of every model.
+     */
+    public CompletableFuture<String> predictEcgImageAsync(File imageFile, Priority priority) {
+        return predictEcgImageAsync(imageFile, priority, null);
+    }
 
-            return combineModelResults(denseNetResult, resNetResult);
+    /**
+     * Same as {@link #predictEcgImageAsync(File, Priority)} for the ECG record {@code recordId}, which
+     * lets the shadow model, if configured, store its comparison against that record.
+     */
+    public CompletableFuture<String> predictEcgImageAsync(File imageFile, Priority priority, UUID recordId) {
+        List<ModelBackend> backends = modelBackendRegistry.getBackends();
+        if (backends.isEmpty()) {
+            return CompletableFuture.completedFuture(errorJson("No AI models are enabled"));
+        }
+        logger.info("Starting {}-model prediction for: {}", backends.size(), imageFile.getAbsolutePath());
 
+        PreparedImage image;
+        try {
+            image = imagePreprocessor.prepare(imageFile, priority);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.completedFuture(errorJson("Prediction interrupted"));
         } catch (Exception e) {
-            e.printStackTrace();
-            return "{\"error\": \"Prediction failed: " + e.getMessage() + "\"}";
+            logger.error("Could not preprocess {}", imageFile.getName(), e);
+            return CompletableFuture.completedFuture(errorJson("Could not read image: " + e.getMessage()));
         }
+
+        Optional<ModelBackend> primary = cascadePolicy.enabled() && backends.size() > 1
+                ? modelBackendRegistry.getBackend(cascadePolicy.primaryModelId())
+                : Optional.empty();
+        CompletableFuture<String> result = primary.isPresent()
+                ? predictCascade(primary.get(), backends, image)
+                : runAll(backends, image).thenApply(runs -> combineModelResults(runs, "full_ensemble", null));
+
+        CompletableFuture<String> answer = result.exceptionally(e -> {
+            logger.error("Prediction failed for {}", imageFile.getName(), e);
+            return errorJson("Prediction failed: " + e.getMessage());
+        });
+
+        // The answer does not wait for the shadow model; the tensor slot is returned once both are done
+        CompletableFuture<Void> shadow = modelBackendRegistry.getShadowBackend().isPresent()
+                ? shadowEvaluation.evaluate(recordId, image, answer)
+                : CompletableFuture.completedFuture(null);
+        CompletableFuture.allOf(answer, shadow).whenComplete((ignored, error) -> image.close());
+        return answer;
     }
 
-    // DenseNet prediction method
-    private String runDenseNetPrediction(File imageFile) {
-        try {
-            System.out.println("🔬 Running DenseNet prediction...");
-
-            ProcessBuilder pb = new ProcessBuilder(
-                    "python3",
-                    "/Users/anatatar/Desktop/Licenta/deepheart/ai_models/src/predict_densenet.py",
-                    imageFile.getAbsolutePath()
-            );
-            pb.redirectErrorStream(true);
-
-            Process process = pb.start();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            StringBuilder output = new StringBuilder();
-            String line;
-
-            while ((line = reader.readLine()) != null) {
-                System.out.println("DenseNet says: " + line);
-                output.append(line).append("\n");
-            }
+    // All models run side by side on the same tensor; the upload waits only for the slowest one
+    private CompletableFuture<List<ModelRun>> runAll(List<ModelBackend> backends, PreparedImage image) {
+        List<CompletableFuture<ModelRun>> runs = backends.stream()
+                .map(backend -> runPrediction(backend, image))
+                .toList();
+        return CompletableFuture.allOf(runs.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> runs.stream().map(CompletableFuture::join).toList());
+    }
 
-            int exitCode = process.waitFor();
-            System.out.println("DenseNet exited with code: " + exitCode);
+    // The primary model first; the others only when its answer is unsure, disagreement-prone or missing
+    private CompletableFuture<String> predictCascade(ModelBackend primary, List<ModelBackend> backends, PreparedImage image) {
+        return runPrediction(primary, image).thenCompose(primaryRun -> {
+            String reason = primaryRun.output().isFailed()
+                    ? CascadePolicy.PRIMARY_UNAVAILABLE
+                    : cascadePolicy.escalationReason(primaryRun.output().probabilities());
+
+            Map<String, Object> cascade = new LinkedHashMap<>();
+            cascade.put("primary_model", primary.getName());
+            cascade.put("confidence_threshold", roundPercent(cascadePolicy.confidenceThreshold() * 100.0));
+            if (!primaryRun.output().isFailed()) {
+                cascade.put("primary_confidence", roundPercent(max(primaryRun.output().probabilities()) * 100.0));
+            }
 
-            String result = output.toString().trim();
-            System.out.println("DenseNet result: " + result);
+            if (reason == null) {
+                logger.debug("{} is confident enough for {}; skipping the other models", primary.getName(), image.source().getName());
+                return CompletableFuture.completedFuture(combineModelResults(List.of(primaryRun), "primary_only", cascade));
+            }
 
-            return result;
+            cascade.put("escalation_reason", reason);
+            List<ModelBackend> others = backends.stream().filter(backend -> backend != primary).toList();
+            return runAll(others, image).thenApply(otherRuns -> {
+                List<ModelRun> runs = new ArrayList<>();
+                runs.add(primaryRun);
+                runs.addAll(otherRuns);
+                return combineModelResults(runs, "escalated", cascade);
+            });
+        });
+    }
 
-        } catch (IOException | InterruptedException e) {
-            e.printStackTrace();
-            return "{\"error\": \"DenseNet prediction failed: " + e.getMessage() + "\"}";
+    private static float max(float[] values) {
+        float max = values[0];
+        for (float value : values) {
+            max = Math.max(max, value);
         }
+        return max;
     }
 
-    // ResNet prediction method
-    private String runResNetPrediction(File imageFile) {
-        try {
-            System.out.println("Running ResNet prediction...");
-
-            ProcessBuilder pb = new ProcessBuilder(
-                    "python3",
-                    "/Users/anatatar/Desktop/Licenta/deepheart/ai_models/src/predict_resnet.py",
-                    imageFile.getAbsolutePath()
-            );
-            pb.redirectErrorStream(true);
-
-            Process process = pb.start();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            StringBuilder output = new StringBuilder();
-            String line;
-
-            while ((line = reader.readLine()) != null) {
-                System.out.println("ResNet says: " + line);
-                output.append(line).append("\n");
-            }
-
-            int exitCode = process.waitFor();
-            System.out.println("ResNet exited with code: " + exitCode);
+    private CompletableFuture<ModelRun> runPrediction(ModelBackend backend, PreparedImage image) {
+        logger.debug("Queueing {} prediction for {}", backend.getName(), image.source().getName());
+        long start = System.nanoTime();
+
+        return backend.predict(image)
+                .thenApply(output -> new ModelRun(backend, output, output.isFailed() ? "failed" : "ok", elapsedMs(start)))
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    String status;
+                    String message;
+                    if (cause instanceof ModelUnavailableException unavailable) {
+                        // Refused without running; the breaker or bulkhead already logged why
+                        status = unavailable.getStatus();
+                        message = cause.getMessage();
+                    } else if (cause instanceof TimeoutException) {
+                        status = "timeout";
+                        message = backend.getName() + " did not answer in time";
+                        logger.error("{} prediction timed out", backend.getName());
+                    } else {
+                        status = "failed";
+                        message = backend.getName() + " prediction failed: " + cause.getMessage();
+                        logger.error("{} prediction failed", backend.getName(), cause);
+                    }
+                    return new ModelRun(backend, ModelOutput.failed(message), status, elapsedMs(start));
+                });
+    }
 
-            String result = output.toString().trim();
-            System.out.println("ResNet result: " + result);
+    private static long elapsedMs(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
 
-            return result;
+    /**
+     * Prediction cache key for an image: its digest combined with the version every enabled model
+     * serves, so a version swap stops earlier predictions from being reused. Null when the digest is.
+     */
+    public String cacheKey(String imageDigest) {
+        if (imageDigest == null) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(imageDigest);
+        for (ModelBackend backend : modelBackendRegistry.getBackends()) {
+            key.append('|').append(backend.getId()).append('=').append(backend.getVersion());
+        }
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(key.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
 
-        } catch (IOException | InterruptedException e) {
-            e.printStackTrace();
-            return "{\"error\": \"ResNet prediction failed: " + e.getMessage() + "\"}";
+    // "DenseNet121=2,ResNet=1" from a prediction's model_versions, or null when it has none
+    static String modelVersions(JsonNode prediction) {
+        JsonNode versions = prediction.path("model_versions");
+        if (!versions.isObject() || versions.isEmpty()) {
+            return null;
         }
+        StringJoiner joined = new StringJoiner(",");
+        versions.fields().forEachRemaining(entry -> joined.add(entry.getKey() + "=" + entry.getValue().asText()));
+        return joined.toString();
     }
 
-    // Combine results from both models
-    private String combineModelResults(String denseNetResult, String resNetResult) {
+    private String errorJson(String message) {
+        return objectMapper.createObjectNode().put("error", message).toString();
+    }
+
+    // Combine results from all models; failed models are left out in degraded mode.
+    // inferencePath is full_ensemble, primary_only or escalated; cascade explains the cascade's decision
+    private String combineModelResults(List<ModelRun> allRuns, String inferencePath, Map<String, Object> cascade) {
         try {
-            // Parse JSON results
-            JsonNode denseNetJson = objectMapper.readTree(denseNetResult);
-            JsonNode resNetJson = objectMapper.readTree(resNetResult);
+            List<ModelRun> runs = allRuns.stream().filter(run -> !run.output().isFailed()).toList();
+            Map<String, Object> unavailableModels = new LinkedHashMap<>();
+            for (ModelRun run : allRuns) {
+                if (run.output().isFailed()) {
+                    unavailableModels.put(run.backend().getName(), Map.of("status", run.status(), "error", run.output().error()));
+                }
+            }
 
-            // Create combined result
-            Map<String, Object> combinedResult = new HashMap<>();
+            if (runs.isEmpty() || (!unavailableModels.isEmpty() && !degradedModeEnabled)) {
+                ModelRun failed = allRuns.stream().filter(run -> run.output().isFailed()).findFirst().orElseThrow();
+                Map<String, Object> error = new HashMap<>();
+                error.put("error", failed.output().error());
+                error.put("unavailable_models", unavailableModels);
+                return objectMapper.writeValueAsString(error);
+            }
 
-            // Add individual model results
-            combinedResult.put("model1", denseNetJson);  // Keep "model1" for compatibility
-            combinedResult.put("model2", resNetJson);
+            Map<String, Object> combinedResult = new HashMap<>();
+            List<String> modelIds = new ArrayList<>();
+            List<String> modelNames = new ArrayList<>();
+            Map<String, Long> modelTimings = new LinkedHashMap<>();
+            Map<String, String> modelVersions = new LinkedHashMap<>();
+
+            // Individual model results stay under their ids ("model1", "model2", ...) for the frontend
+            for (ModelRun run : runs) {
+                ModelBackend backend = run.backend();
+                combinedResult.put(backend.getId(),
+                        createModelResult(backend.getName(), run.output().probabilities(), run.output().version()));
+                modelIds.add(backend.getId());
+                modelNames.add(backend.getName());
+                modelTimings.put(backend.getName(), run.wallTimeMs());
+                modelVersions.put(backend.getName(), run.output().version());
+            }
 
-            // Create ensemble prediction (average probabilities)
-            Map<String, Object> ensemblePrediction = createEnsemblePrediction(denseNetJson, resNetJson);
+            Map<String, Object> ensemblePrediction = createEnsemblePrediction(runs);
             combinedResult.put("ensemble", ensemblePrediction);
 
             // Primary result (for backward compatibility)
@@ -126,93 +292,153 @@ public class AiPredictionService {
             combinedResult.put("description", ensemblePrediction.get("description"));
 
             // Add metadata
-            combinedResult.put("prediction_method", "dual_model_ensemble");
-            combinedResult.put("models_used", new String[]{"DenseNet121", "ResNet"});
+            if (unavailableModels.isEmpty()) {
+                combinedResult.put("prediction_method", runs.size() > 1 ? "multi_model_ensemble" : "single_model");
+            } else {
+                logger.warn("Degraded prediction without {}", unavailableModels.keySet());
+                combinedResult.put("prediction_method", runs.size() > 1 ? "degraded_ensemble" : "degraded_single_model");
+                combinedResult.put("degraded", true);
+                combinedResult.put("unavailable_models", unavailableModels);
+            }
+            combinedResult.put("model_ids", modelIds);
+            combinedResult.put("models_used", modelNames);
+            combinedResult.put("model_timings_ms", modelTimings);
+            // The version of every model that answered, as it served this ECG (a swap may land mid-upload)
+            combinedResult.put("model_versions", modelVersions);
+            combinedResult.put("inference_path", inferencePath);
+            if (cascade != null) {
+                combinedResult.put("cascade", cascade);
+            }
 
             return objectMapper.writeValueAsString(combinedResult);
 
         } catch (Exception e) {
-            e.printStackTrace();
-            return "{\"error\": \"Failed to combine model results: " + e.getMessage() + "\"}";
+            logger.error("Failed to combine model results", e);
+            return errorJson("Failed to combine model results: " + e.getMessage());
         }
     }
 
-    // Create ensemble prediction by averaging probabilities
-    private Map<String, Object> createEnsemblePrediction(JsonNode denseNet, JsonNode resNet) {
-        try {
-            Map<String, Object> ensemble = new HashMap<>();
-
-            // Get probabilities from both models
-            JsonNode denseNetProbs = denseNet.get("probabilities");
-            JsonNode resNetProbs = resNet.get("probabilities");
+    // One model's result, in the shape the one-shot prediction scripts print
+    private Map<String, Object> createModelResult(String modelName, float[] probabilities, String version) {
+        String[] labels = EnsembleStrategy.LABELS;
+        Map<String, Double> percentages = new HashMap<>();
+        int primary = 0;
+        for (int label = 0; label < labels.length; label++) {
+            percentages.put(labels[label], roundPercent(probabilities[label] * 100.0));
+            if (probabilities[label] > probabilities[primary]) {
+                primary = label;
+            }
+        }
 
-            // Average the probabilities
-            Map<String, Double> avgProbs = new HashMap<>();
-            String[] labels = {"NORM", "MI", "STTC", "CD", "HYP"};
+        String primaryCondition = labels[primary];
+        double confidence = percentages.get(primaryCondition);
 
-            for (String label : labels) {
-                double denseNetProb = denseNetProbs.get(label).asDouble();
-                double resNetProb = resNetProbs.get(label).asDouble();
-                avgProbs.put(label, Math.round((denseNetProb + resNetProb) / 2.0 * 100.0) / 100.0);
+        // Secondary conditions (15% threshold on normalized probabilities)
+        Map<String, Double> secondaryFindings = new HashMap<>();
+        percentages.forEach((label, percent) -> {
+            if (percent >= 15.0 && !label.equals(primaryCondition)) {
+                secondaryFindings.put(label, percent);
             }
+        });
+
+        Map<String, Object> modelInfo = new HashMap<>();
+        modelInfo.put("model_type", modelName);
+        modelInfo.put("prediction_method", "normalized_sigmoid");
+        modelInfo.put("model_version", version);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("classification", primaryCondition);
+        result.put("confidence", confidence);
+        result.put("probabilities", percentages);
+        result.put("description", getDescription(primaryCondition));
+        result.put("confidence_level", getConfidenceLevel(confidence));
+        result.put("clinical_recommendation", getClinicalRecommendation(confidence, "diagnosis"));
+        result.put("secondary_findings", secondaryFindings.isEmpty() ? null : secondaryFindings);
+        result.put("model_info", modelInfo);
+        return result;
+    }
 
-            // Find primary diagnosis
-            String primaryCondition = avgProbs.entrySet().stream()
-                    .max(Map.Entry.comparingByValue())
-                    .get().getKey();
-
-            double primaryConfidence = avgProbs.get(primaryCondition);
-
-            // Determine confidence level
-            String confidenceLevel;
-            String clinicalRecommendation;
-            if (primaryConfidence >= 70) {
-                confidenceLevel = "High";
-                clinicalRecommendation = "High confidence in ensemble diagnosis";
-            } else if (primaryConfidence >= 50) {
-                confidenceLevel = "Medium";
-                clinicalRecommendation = "Moderate confidence - consider clinical correlation";
-            } else if (primaryConfidence >= 30) {
-                confidenceLevel = "Low";
-                clinicalRecommendation = "Low confidence - requires clinical evaluation";
-            } else {
-                confidenceLevel = "Very Low";
-                clinicalRecommendation = "Very low confidence - manual review recommended";
-            }
+    // Create ensemble prediction with the configured strategy
+    private Map<String, Object> createEnsemblePrediction(List<ModelRun> runs) {
+        Map<String, Object> ensemble = new HashMap<>();
 
-            // Build ensemble result
-            ensemble.put("classification", primaryCondition);
-            ensemble.put("confidence", primaryConfidence);
-            ensemble.put("probabilities", avgProbs);
-            ensemble.put("description", getDescription(primaryCondition));
-            ensemble.put("confidence_level", confidenceLevel);
-            ensemble.put("clinical_recommendation", clinicalRecommendation);
-
-            // Add model agreement info
-            String denseNetPrimary = denseNet.get("classification").asText();
-            String resNetPrimary = resNet.get("classification").asText();
-            boolean agree = denseNetPrimary.equals(resNetPrimary);
-
-            Map<String, Object> agreement = new HashMap<>();
-            agreement.put("models_agree", agree);
-            agreement.put("densenet_primary", denseNetPrimary);
-            agreement.put("resnet_primary", resNetPrimary);
-            if (agree) {
-                agreement.put("agreement_note", "Both models agree on primary diagnosis");
-            } else {
-                agreement.put("agreement_note", "Models disagree on primary diagnosis - ensemble used");
+        String[] labels = EnsembleStrategy.LABELS;
+        int models = runs.size();
+        double[][] probabilities = new double[models][labels.length];
+        double[] weights = new double[models];
+
+        for (int m = 0; m < models; m++) {
+            float[] output = runs.get(m).output().probabilities();
+            for (int label = 0; label < labels.length; label++) {
+                probabilities[m][label] = output[label] * 100.0;
             }
-            ensemble.put("model_agreement", agreement);
+            weights[m] = runs.get(m).backend().getWeight();
+        }
 
-            return ensemble;
+        double[] combined = new double[labels.length];
+        int primary = ensembleStrategy.combine(probabilities, weights, models, combined);
 
-        } catch (Exception e) {
-            Map<String, Object> errorResult = new HashMap<>();
-            errorResult.put("error", "Failed to create ensemble: " + e.getMessage());
-            return errorResult;
+        Map<String, Double> avgProbs = new HashMap<>();
+        for (int label = 0; label < labels.length; label++) {
+            avgProbs.put(labels[label], roundPercent(combined[label]));
+        }
+
+        String primaryCondition = labels[primary];
+        double primaryConfidence = avgProbs.get(primaryCondition);
+
+        // Build ensemble result
+        ensemble.put("classification", primaryCondition);
+        ensemble.put("confidence", primaryConfidence);
+        ensemble.put("probabilities", avgProbs);
+        ensemble.put("description", getDescription(primaryCondition));
+        ensemble.put("confidence_level", getConfidenceLevel(primaryConfidence));
+        ensemble.put("clinical_recommendation", getClinicalRecommendation(primaryConfidence, "ensemble diagnosis"));
+        ensemble.put("strategy", ensembleStrategy.name());
+
+        // Add model agreement info
+        Map<String, String> primaries = new LinkedHashMap<>();
+        for (int m = 0; m < models; m++) {
+            primaries.put(runs.get(m).backend().getName(), labels[EnsembleStrategy.argmax(probabilities[m])]);
+        }
+        boolean agree = primaries.values().stream().distinct().count() == 1;
+
+        Map<String, Object> agreement = new HashMap<>();
+        agreement.put("models_agree", agree);
+        agreement.put("primary_by_model", primaries);
+        if (models == 1) {
+            agreement.put("agreement_note", "Single model prediction");
+        } else if (agree) {
+            agreement.put("agreement_note", "All models agree on primary diagnosis");
+        } else {
+            agreement.put("agreement_note", "Models disagree on primary diagnosis - ensemble used");
         }
+        ensemble.put("model_agreement", agreement);
+
+        return ensemble;
+    }
+
+    private static double roundPercent(double percent) {
+        return Math.round(percent * 100.0) / 100.0;
+    }
+
+    // Determine confidence level
+    private String getConfidenceLevel(double confidence) {
+        if (confidence >= 70) return "High";
+        if (confidence >= 50) return "Medium";
+        if (confidence >= 30) return "Low";
+        return "Very Low";
+    }
+
+    private String getClinicalRecommendation(double confidence, String subject) {
+        if (confidence >= 70) return "High confidence in " + subject;
+        if (confidence >= 50) return "Moderate confidence - consider clinical correlation";
+        if (confidence >= 30) return "Low confidence - requires clinical evaluation";
+        return "Very low confidence - manual review recommended";
     }
 
+    // Model output together with how the call ended (ok, failed, timeout, circuit_open, overloaded) and how long it took
+    private record ModelRun(ModelBackend backend, ModelOutput output, String status, long wallTimeMs) {}
+
     // Helper method to get clinical descriptions
     private String getDescription(String condition) {
         switch (condition) {
@@ -0,0 +1,241 @@
+package org.example.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.backend.model.BackfillRun;
+import org.example.backend.model.EcgRecord;
+import org.example.backend.model.Prediction;
+import org.example.backend.repository.EcgRecordRepository;
+import org.example.backend.service.inference.Priority;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs the active backfill on this node, batch by batch: a keyset page of records after the run's
+ * checkpoint is sent to the models as {@link Priority#BULK} work (through the prediction cache), the new
+ * predictions and the moved cursor are stored together, and the next batch waits until the run's rate cap
+ * allows it. Before each batch the run yields while live uploads hold more than {@code ai.backfill.max.load}
+ * of the admission capacity.
+ * <p>
+ * Every {@code ai.backfill.poll.interval.ms} an idle, warmed-up node adopts a running run that no live node
+ * holds, so runs continue after a restart or on another node.
+ */
+@Service
+public class BackfillRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(BackfillRunner.class);
+
+    // Keyset start: sorts before every record id
+    private static final UUID FIRST = new UUID(0, 0);
+
+    // New predictions of one batch and how many of its records could not be scored
+    record Batch(List<Prediction> predictions, int scored, int failed) {}
+
+    private final BackfillService backfillService;
+    private final EcgRecordRepository ecgRecordRepository;
+    private final EcgUploadPipelineService uploadPipeline;
+    private final UploadAdmissionService admissionService;
+    private final ModelWarmupService modelWarmupService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Path uploadDirectory;
+    private final String nodeId;
+    private final double maxLoad;
+    private final long yieldMs;
+
+    // The run this node is working on, if any
+    private volatile UUID active;
+
+    private final Counter scoredRecords;
+    private final Counter failedRecords;
+    private final Counter yields;
+
+    public BackfillRunner(BackfillService backfillService,
+                          EcgRecordRepository ecgRecordRepository,
+                          EcgUploadPipelineService uploadPipeline,
+                          UploadAdmissionService admissionService,
+                          ModelWarmupService modelWarmupService,
+                          MeterRegistry meterRegistry,
+                          @Value("${ai.upload.directory:${user.dir}/uploads}") String uploadDirectory,
+                          @Value("${ai.queue.node.id:}") String nodeId,
+                          @Value("${ai.backfill.max.load:0.5}") double maxLoad,
+                          @Value("${ai.backfill.yield.ms:1000}") long yieldMs) {
+        this.backfillService = backfillService;
+        this.ecgRecordRepository = ecgRecordRepository;
+        this.uploadPipeline = uploadPipeline;
+        this.admissionService = admissionService;
+        this.modelWarmupService = modelWarmupService;
+        this.uploadDirectory = Paths.get(uploadDirectory);
+        this.nodeId = nodeId.isBlank() ? InferenceQueueWorker.defaultNodeId() : nodeId;
+        this.maxLoad = maxLoad;
+        this.yieldMs = yieldMs;
+
+        this.scoredRecords = recordCounter(meterRegistry, "scored");
+        this.failedRecords = recordCounter(meterRegistry, "failed");
+        this.yields = Counter.builder("backfill.yields")
+                .description("Backfill pauses to leave model capacity to live uploads")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts working on a running backfill that no live node holds: a new or resumed run, or one whose
+     * node stopped. Called on a schedule, and right after an admin starts or resumes a run.
+     */
+    @Scheduled(fixedDelayString = "${ai.backfill.poll.interval.ms:30000}")
+    public synchronized void adoptRuns() {
+        if (active != null || !modelWarmupService.isReady()) {
+            return;
+        }
+        for (UUID runId : backfillService.findRunning()) {
+            Optional<BackfillRun> adopted = backfillService.adopt(runId, nodeId);
+            if (adopted.isPresent()) {
+                active = runId;
+                Thread runner = new Thread(() -> runToEnd(adopted.get()), "backfill-" + runId);
+                runner.setDaemon(true);
+                runner.start();
+                return;
+            }
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    // Works through the run until it completes, fails, is paused or is taken over by another node
+    void runToEnd(BackfillRun run) {
+        UUID runId = run.getId();
+        UUID cursor = run.getLastRecordId();
+        logger.info("Backfill run {} running on {} after record {}", runId, nodeId, cursor);
+        try {
+            while (yieldToLiveTraffic(runId)) {
+                long start = System.nanoTime();
+                List<EcgRecord> page = ecgRecordRepository.findBackfillPage(cursor != null ? cursor : FIRST,
+                        PageRequest.of(0, run.getBatchSize()));
+                if (page.isEmpty()) {
+                    backfillService.finish(runId, nodeId);
+                    return;
+                }
+
+                Batch batch = score(runId, page);
+                cursor = page.get(page.size() - 1).getId();
+                if (!backfillService.checkpoint(runId, nodeId, cursor, batch.predictions(), batch.scored(), batch.failed())) {
+                    break;
+                }
+                scoredRecords.increment(batch.scored());
+                failedRecords.increment(batch.failed());
+                if (!pace(runId, start, page.size(), run.getRatePerSecond())) {
+                    break;
+                }
+            }
+            logger.info("Backfill run {} was paused or taken over; {} stops after record {}", runId, nodeId, cursor);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Backfill run {} failed after record {}", runId, cursor, e);
+            backfillService.fail(runId, nodeId, e.getMessage());
+        } finally {
+            active = null;
+        }
+    }
+
+    // Sends the whole page to the models at once; the scheduler batches it behind live traffic
+    Batch score(UUID runId, List<EcgRecord> page) {
+        List<CompletableFuture<String>> results = new ArrayList<>(page.size());
+        for (EcgRecord record : page) {
+            File file = uploadDirectory.resolve(record.getFilename()).toFile();
+            results.add(file.isFile()
+                    ? uploadPipeline.infer(record, file, Priority.BULK)
+                    : CompletableFuture.failedFuture(new FileNotFoundException("Stored upload " + file + " is missing")));
+        }
+
+        List<Prediction> predictions = new ArrayList<>();
+        int scored = 0;
+        for (int i = 0; i < page.size(); i++) {
+            EcgRecord record = page.get(i);
+            try {
+                JsonNode prediction = objectMapper.readTree(results.get(i).join());
+                if (prediction.has("error")) {
+                    logger.debug("Backfill could not score record {}: {}", record.getId(), prediction.get("error").asText());
+                    continue;
+                }
+                predictions.addAll(predictions(runId, record, prediction));
+                scored++;
+            } catch (Exception e) {
+                logger.debug("Backfill could not score record {}: {}", record.getId(), e.getMessage());
+            }
+        }
+        return new Batch(predictions, scored, page.size() - scored);
+    }
+
+    // One row for the ensemble and one per model that answered, next to the record's original result
+    static List<Prediction> predictions(UUID runId, EcgRecord record, JsonNode prediction) {
+        List<Prediction> rows = new ArrayList<>();
+        Prediction ensemble = new Prediction(record, prediction.get("classification").asText(),
+                prediction.get("confidence").asDouble(), "ensemble", null);
+        ensemble.setModelVersion(AiPredictionService.modelVersions(prediction));
+        rows.add(ensemble);
+
+        for (JsonNode modelId : prediction.path("model_ids")) {
+            JsonNode model = prediction.get(modelId.asText());
+            if (model == null || !model.has("classification")) {
+                continue;
+            }
+            JsonNode modelInfo = model.path("model_info");
+            Prediction row = new Prediction(record, model.get("classification").asText(),
+                    model.get("confidence").asDouble(), modelInfo.path("model_type").asText(modelId.asText()), null);
+            row.setModelVersion(modelInfo.path("model_version").asText(null));
+            rows.add(row);
+        }
+        rows.forEach(row -> row.setBackfillRunId(runId));
+        return rows;
+    }
+
+    // Waits while live uploads use more than max.load of the admission capacity; false once the run is lost
+    private boolean yieldToLiveTraffic(UUID runId) throws InterruptedException {
+        while (admissionService.getInFlight() > maxLoad * admissionService.getCapacity()) {
+            yields.increment();
+            Thread.sleep(yieldMs);
+            if (!backfillService.renew(runId, nodeId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Rate cap: a batch of n records takes at least n / ratePerSecond seconds; the lease is renewed meanwhile
+    private boolean pace(UUID runId, long start, int records, double ratePerSecond) throws InterruptedException {
+        long remainingMs = (long) (records / ratePerSecond * 1000) - (System.nanoTime() - start) / 1_000_000;
+        while (remainingMs > 0) {
+            long slice = Math.min(remainingMs, yieldMs);
+            Thread.sleep(slice);
+            remainingMs -= slice;
+            if (remainingMs > 0 && !backfillService.renew(runId, nodeId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Counter recordCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("backfill.records")
+                .description("Stored ECGs re-scored by backfill runs, by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
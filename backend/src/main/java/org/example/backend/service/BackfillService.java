@@ -0,0 +1,227 @@
+package org.example.backend.service;
+
+import jakarta.transaction.Transactional;
+import org.example.backend.model.BackfillRun;
+import org.example.backend.model.Prediction;
+import org.example.backend.repository.BackfillRunRepository;
+import org.example.backend.repository.PredictionRepository;
+import org.example.backend.service.inference.ModelBackend;
+import org.example.backend.service.inference.ModelBackendRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.UUID;
+
+/**
+ * Backfill runs, kept in the {@code backfill_runs} table: admin-started passes that re-score the stored
+ * ECGs with the serving models and write the answers as new {@code predictions} rows, leaving the records'
+ * original results untouched. {@link BackfillRunner} does the work; this class owns the run's state.
+ * <p>
+ * One run may be active at a time. The node running it holds a lease of {@code ai.backfill.lease.ms} and
+ * renews it while it works; a run whose node dies is adopted by another node once the lease expires and
+ * continues from its checkpoint. Checkpoints and state changes are only accepted from the lease holder.
+ */
+@Service
+public class BackfillService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BackfillService.class);
+
+    private static final List<BackfillRun.Status> ACTIVE = List.of(BackfillRun.Status.RUNNING, BackfillRun.Status.PAUSED);
+
+    private final BackfillRunRepository backfillRunRepository;
+    private final PredictionRepository predictionRepository;
+    private final ModelBackendRegistry modelBackendRegistry;
+    private final Duration lease;
+    private final double defaultRatePerSecond;
+    private final int defaultBatchSize;
+
+    public BackfillService(BackfillRunRepository backfillRunRepository,
+                           PredictionRepository predictionRepository,
+                           ModelBackendRegistry modelBackendRegistry,
+                           @Value("${ai.backfill.lease.ms:120000}") long leaseMs,
+                           @Value("${ai.backfill.rate.per.second:5}") double defaultRatePerSecond,
+                           @Value("${ai.backfill.batch.size:16}") int defaultBatchSize) {
+        this.backfillRunRepository = backfillRunRepository;
+        this.predictionRepository = predictionRepository;
+        this.modelBackendRegistry = modelBackendRegistry;
+        this.lease = Duration.ofMillis(leaseMs);
+        this.defaultRatePerSecond = defaultRatePerSecond;
+        this.defaultBatchSize = defaultBatchSize;
+    }
+
+    /**
+     * Starts a run over every analysed record; null settings take the configured defaults. Throws
+     * {@link IllegalStateException} while another run is running or paused.
+     */
+    @Transactional
+    public BackfillRun start(Double ratePerSecond, Integer batchSize) {
+        double rate = ratePerSecond != null ? ratePerSecond : defaultRatePerSecond;
+        int size = batchSize != null ? batchSize : defaultBatchSize;
+        if (rate <= 0 || size <= 0) {
+            throw new IllegalArgumentException("ratePerSecond and batchSize must be positive");
+        }
+        if (backfillRunRepository.existsByStatusIn(ACTIVE)) {
+            throw new IllegalStateException("Another backfill run is active; resume or wait for it");
+        }
+        BackfillRun run = backfillRunRepository.save(new BackfillRun(rate, size, servingVersions()));
+        logger.info("Backfill run {} started: {} records/s in batches of {}, models {}",
+                run.getId(), rate, size, run.getModelVersions());
+        return run;
+    }
+
+    // The node running it stops at its next checkpoint; the batch in flight is scored again on resume
+    @Transactional
+    public BackfillRun pause(UUID runId) {
+        BackfillRun run = find(runId);
+        if (run.getStatus() != BackfillRun.Status.RUNNING) {
+            throw new IllegalStateException("Backfill run " + runId + " is " + run.getStatus() + ", not RUNNING");
+        }
+        run.setStatus(BackfillRun.Status.PAUSED);
+        release(run);
+        return backfillRunRepository.save(run);
+    }
+
+    // Continues a paused or failed run from its checkpoint
+    @Transactional
+    public BackfillRun resume(UUID runId) {
+        BackfillRun run = find(runId);
+        if (run.getStatus() != BackfillRun.Status.PAUSED && run.getStatus() != BackfillRun.Status.FAILED) {
+            throw new IllegalStateException("Backfill run " + runId + " is " + run.getStatus() + ", not PAUSED or FAILED");
+        }
+        if (run.getStatus() == BackfillRun.Status.FAILED && backfillRunRepository.existsByStatusIn(ACTIVE)) {
+            throw new IllegalStateException("Another backfill run is active; resume or wait for it");
+        }
+        run.setStatus(BackfillRun.Status.RUNNING);
+        run.setLastError(null);
+        run.setFinishedAt(null);
+        release(run);
+        return backfillRunRepository.save(run);
+    }
+
+    public List<BackfillRun> getRuns() {
+        return backfillRunRepository.findAllByOrderByCreatedAtDesc();
+    }
+
+    public List<UUID> findRunning() {
+        return backfillRunRepository.findRunningIds();
+    }
+
+    /**
+     * Takes the lease of a running run that no node holds, or whose node stopped renewing it.
+     */
+    @Transactional
+    public Optional<BackfillRun> adopt(UUID runId, String owner) {
+        LocalDateTime now = LocalDateTime.now();
+        Optional<BackfillRun> locked = backfillRunRepository.lockById(runId);
+        if (locked.isEmpty() || locked.get().getStatus() != BackfillRun.Status.RUNNING) {
+            return Optional.empty();
+        }
+        BackfillRun run = locked.get();
+        if (run.getLeaseOwner() != null && !run.getLeaseOwner().equals(owner) && run.getLeaseExpiresAt().isAfter(now)) {
+            return Optional.empty();
+        }
+        if (run.getLeaseOwner() != null && !run.getLeaseOwner().equals(owner)) {
+            logger.warn("Backfill run {} lease held by {} expired; continuing it after record {}",
+                    runId, run.getLeaseOwner(), run.getLastRecordId());
+        }
+        run.setLeaseOwner(owner);
+        run.setLeaseExpiresAt(now.plus(lease));
+        run.setUpdatedAt(now);
+        return Optional.of(backfillRunRepository.save(run));
+    }
+
+    /**
+     * Extends the lease. Returns false once the run was paused or taken over; the caller must stop.
+     */
+    @Transactional
+    public boolean renew(UUID runId, String owner) {
+        Optional<BackfillRun> held = held(runId, owner);
+        held.ifPresent(run -> {
+            extend(run);
+            backfillRunRepository.save(run);
+        });
+        return held.isPresent();
+    }
+
+    /**
+     * Stores a batch's new predictions and moves the cursor past it in one transaction, so a resumed run
+     * neither skips nor re-scores a record. Returns false, storing nothing, if the caller lost the run.
+     */
+    @Transactional
+    public boolean checkpoint(UUID runId, String owner, UUID lastRecordId, List<Prediction> predictions,
+                              int scored, int failed) {
+        Optional<BackfillRun> held = held(runId, owner);
+        if (held.isEmpty()) {
+            return false;
+        }
+        predictionRepository.saveAll(predictions);
+        BackfillRun run = held.get();
+        run.setLastRecordId(lastRecordId);
+        run.setScoredRecords(run.getScoredRecords() + scored);
+        run.setFailedRecords(run.getFailedRecords() + failed);
+        extend(run);
+        backfillRunRepository.save(run);
+        return true;
+    }
+
+    @Transactional
+    public void finish(UUID runId, String owner) {
+        held(runId, owner).ifPresent(run -> {
+            run.setStatus(BackfillRun.Status.COMPLETED);
+            run.setFinishedAt(LocalDateTime.now());
+            release(run);
+            backfillRunRepository.save(run);
+            logger.info("Backfill run {} completed: {} records re-scored, {} failed",
+                    runId, run.getScoredRecords(), run.getFailedRecords());
+        });
+    }
+
+    @Transactional
+    public void fail(UUID runId, String owner, String error) {
+        held(runId, owner).ifPresent(run -> {
+            run.setStatus(BackfillRun.Status.FAILED);
+            run.setLastError(error != null && error.length() > 1024 ? error.substring(0, 1024) : error);
+            release(run);
+            backfillRunRepository.save(run);
+        });
+    }
+
+    private BackfillRun find(UUID runId) {
+        return backfillRunRepository.findById(runId)
+                .orElseThrow(() -> new NoSuchElementException("Unknown backfill run " + runId));
+    }
+
+    private Optional<BackfillRun> held(UUID runId, String owner) {
+        return backfillRunRepository.lockById(runId)
+                .filter(run -> run.getStatus() == BackfillRun.Status.RUNNING && owner.equals(run.getLeaseOwner()));
+    }
+
+    private void extend(BackfillRun run) {
+        LocalDateTime now = LocalDateTime.now();
+        run.setLeaseExpiresAt(now.plus(lease));
+        run.setUpdatedAt(now);
+    }
+
+    private static void release(BackfillRun run) {
+        run.setLeaseOwner(null);
+        run.setLeaseExpiresAt(null);
+        run.setUpdatedAt(LocalDateTime.now());
+    }
+
+    // Same format as a record's model_versions, e.g. "DenseNet121=2,ResNet=1"
+    private String servingVersions() {
+        StringJoiner versions = new StringJoiner(",");
+        for (ModelBackend backend : modelBackendRegistry.getBackends()) {
+            versions.add(backend.getName() + "=" + backend.getVersion());
+        }
+        return versions.toString();
+    }
+}
@@ -0,0 +1,183 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.backend.service.inference.CpuPartition;
+import org.example.backend.service.inference.EcgImagePreprocessor;
+import org.example.backend.service.inference.ModelBackend;
+import org.example.backend.service.inference.ModelBackendRegistry;
+import org.example.backend.service.inference.ModelOutput;
+import org.example.backend.service.inference.ModelWorkerPool;
+import org.example.backend.service.inference.PreparedImage;
+import org.example.backend.service.inference.PythonModelBackend;
+import org.example.backend.service.inference.ResilientModelBackend;
+import org.example.backend.service.inference.SyntheticEcg;
+import org.example.backend.service.inference.WorkerRecyclePolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Finds the workers x threads split of this node's CPUs that gives a model the most throughput. For every
+ * worker count up to {@code ai.worker.cpu.benchmark.max.workers}, a throwaway pool of the model's serving
+ * version is started on a {@link CpuPartition} of that many groups, warmed up, and kept busy with
+ * {@code images} synthetic ECGs in batches; the split with the highest images per second wins. The serving
+ * workers stay up meanwhile and compete for the same CPUs, so run it on a node that takes no traffic and use
+ * the result for {@code ai.worker.pool.size} and {@code ai.worker.cpu.threads}.
+ */
+@Service
+public class CpuBenchmarkService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CpuBenchmarkService.class);
+
+    // Throughput of one split; error is set instead when its workers could not run the model
+    public record Split(int workers, int threads, Double imagesPerSecond, String error) {}
+
+    public record Result(String model, int cpus, int images, int batchSize, List<Split> splits, Split best) {}
+
+    private final ModelBackendRegistry modelBackendRegistry;
+    private final EcgImagePreprocessor imagePreprocessor;
+    private final MeterRegistry meterRegistry;
+    private final List<Integer> cpus;
+    private final int maxWorkers;
+    private final int interOpThreads;
+    private final String taskset;
+    private final Duration batchTimeout;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public CpuBenchmarkService(ModelBackendRegistry modelBackendRegistry,
+                               EcgImagePreprocessor imagePreprocessor,
+                               MeterRegistry meterRegistry,
+                               @Value("${ai.worker.cpu.list:}") String cpuList,
+                               @Value("${ai.worker.cpu.benchmark.max.workers:4}") int maxWorkers,
+                               @Value("${ai.worker.cpu.interop.threads:1}") int interOpThreads,
+                               @Value("${ai.worker.cpu.pin:false}") boolean pin,
+                               @Value("${ai.worker.cpu.taskset.path:taskset}") String tasksetPath,
+                               @Value("${ai.worker.cpu.benchmark.timeout.ms:300000}") long timeoutMs) {
+        this.modelBackendRegistry = modelBackendRegistry;
+        this.imagePreprocessor = imagePreprocessor;
+        this.meterRegistry = meterRegistry;
+        this.cpus = cpuList.isBlank() ? CpuPartition.availableCpus() : CpuPartition.parseCpuList(cpuList);
+        this.maxWorkers = Math.max(1, maxWorkers);
+        this.interOpThreads = interOpThreads;
+        this.taskset = pin ? tasksetPath : null;
+        this.batchTimeout = Duration.ofMillis(timeoutMs);
+    }
+
+    /**
+     * Benchmarks model {@code modelId} ("model1", ..., or "shadow"). Blocks until every split has run.
+     *
+     * @throws NoSuchElementException        if no such model is enabled
+     * @throws UnsupportedOperationException if the model is not served by local Python workers
+     * @throws IllegalStateException         if a benchmark is already running
+     */
+    public Result benchmark(String modelId, int images, int batchSize) throws Exception {
+        if (images < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("images and batchSize must be positive");
+        }
+        ModelBackend backend = find(modelId)
+                .orElseThrow(() -> new NoSuchElementException("No enabled model " + modelId));
+        ModelBackend served = backend instanceof ResilientModelBackend resilient ? resilient.getDelegate() : backend;
+        if (!(served instanceof PythonModelBackend python)) {
+            throw new UnsupportedOperationException(backend.getName() + " is not served by local worker processes");
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A CPU benchmark is already running");
+        }
+
+        File synthetic = null;
+        try {
+            synthetic = SyntheticEcg.writeTempPng();
+            List<Split> splits = new ArrayList<>();
+            try (PreparedImage image = imagePreprocessor.prepare(synthetic)) {
+                for (int workers = 1; workers <= Math.min(maxWorkers, cpus.size()); workers++) {
+                    splits.add(run(python, workers, cpus.size() / workers, image, images, batchSize));
+                }
+            }
+            Split best = splits.stream()
+                    .filter(split -> split.imagesPerSecond() != null)
+                    .max(Comparator.comparingDouble(Split::imagesPerSecond))
+                    .orElse(null);
+            logger.info("CPU benchmark of {} on {} CPUs: best split {}", backend.getName(), cpus.size(), best);
+            return new Result(backend.getName(), cpus.size(), images, batchSize, splits, best);
+        } finally {
+            if (synthetic != null) {
+                synthetic.delete();
+            }
+            running.set(false);
+        }
+    }
+
+    // One throwaway pool: every worker loads the model and answers once, then all of them share the images
+    private Split run(PythonModelBackend backend, int workers, int threads, PreparedImage image, int images,
+                      int batchSize) {
+        CpuPartition partition = CpuPartition.of(cpus, workers, threads, interOpThreads, taskset);
+        ExecutorService clients = Executors.newFixedThreadPool(workers);
+        try (ModelWorkerPool pool = new ModelWorkerPool(backend.getName() + "-benchmark", backend.getWorkerCommand(),
+                workers, 1, batchTimeout, WorkerRecyclePolicy.DISABLED, partition, meterRegistry)) {
+            AtomicInteger warmups = new AtomicInteger(workers);
+            drive(pool, clients, workers, () -> warmups.getAndDecrement() > 0 ? List.of(image) : List.of());
+
+            AtomicInteger remaining = new AtomicInteger(images);
+            long start = System.nanoTime();
+            drive(pool, clients, workers, () -> {
+                int count = Math.min(batchSize, remaining.getAndAdd(-batchSize));
+                return count > 0 ? Collections.nCopies(count, image) : List.of();
+            });
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Split split = new Split(workers, threads, images / seconds, null);
+            logger.info("CPU benchmark of {}: {} workers x {} threads, {} images/s", backend.getName(), workers, threads,
+                    String.format("%.1f", split.imagesPerSecond()));
+            return split;
+        } catch (Exception e) {
+            String error = e instanceof CompletionException && e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            logger.warn("CPU benchmark of {} with {} workers x {} threads failed: {}", backend.getName(), workers, threads, error);
+            return new Split(workers, threads, null, error);
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    // Runs one client per worker, each sending the batches it is handed until it gets an empty one
+    private static void drive(ModelWorkerPool pool, ExecutorService clients, int workers,
+                              Supplier<List<PreparedImage>> batches) {
+        List<CompletableFuture<Void>> running = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            running.add(CompletableFuture.runAsync(() -> {
+                try {
+                    for (List<PreparedImage> batch = batches.get(); !batch.isEmpty(); batch = batches.get()) {
+                        if (pool.predictBatch(batch).stream().anyMatch(ModelOutput::isFailed)) {
+                            throw new IllegalStateException(pool.getModelName() + " returned a failed prediction");
+                        }
+                    }
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, clients));
+        }
+        CompletableFuture.allOf(running.toArray(CompletableFuture[]::new)).join();
+    }
+
+    private Optional<ModelBackend> find(String modelId) {
+        if (ModelVersionService.SHADOW_ID.equals(modelId)) {
+            return modelBackendRegistry.getShadowBackend();
+        }
+        return modelBackendRegistry.getBackend(modelId);
+    }
+}
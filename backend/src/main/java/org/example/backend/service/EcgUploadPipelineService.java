@@ -0,0 +1,286 @@
+package org.example.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.backend.model.EcgRecord;
+import org.example.backend.model.InferenceJob;
+import org.example.backend.service.inference.Priority;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs uploaded ECGs through the inference and persistence stages after the
+ * request thread has stored the file and created a Pending {@link EcgRecord}.
+ * Clients follow progress through the {@link UploadJob} returned at upload time. Jobs are only
+ * created while {@link UploadAdmissionService} has room for all of their files.
+ * <p>
+ * With {@code ai.queue.enabled} the inference stage runs on whichever node claims the ECG from the
+ * {@link InferenceJobQueue} ({@link InferenceQueueWorker}); this node then only collects the outcome.
+ */
+@Service
+public class EcgUploadPipelineService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EcgUploadPipelineService.class);
+
+    // Finished jobs stay queryable this long so clients can still pick up their results
+    private static final Duration FINISHED_JOB_RETENTION = Duration.ofHours(1);
+    // Full per-file results of a finished job are reduced to summaries after this long
+    private static final Duration FULL_RESULT_RETENTION = Duration.ofMinutes(5);
+
+    public static final Map<String, String> DESCRIPTIONS = Map.of(
+            "NORM", "Normal sinus rhythm detected.",
+            "MI", "Myocardial infarction detected.",
+            "STTC", "ST/T wave changes observed.",
+            "CD", "Conduction disturbances detected.",
+            "HYP", "Hypertrophy patterns identified."
+    );
+
+    private final AiPredictionService aiPredictionService;
+    private final PredictionCacheService predictionCacheService;
+    private final EcgRecordService ecgRecordService;
+    private final Executor persistenceExecutor;
+    private final UploadAdmissionService admissionService;
+    private final HeatmapService heatmapService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<UUID, UploadJob> jobs = new ConcurrentHashMap<>();
+
+    // Cluster queue (ai.queue.enabled): this node's uploads waiting in inference_jobs, by job id
+    private final InferenceJobQueue inferenceJobQueue;
+    private final boolean queueEnabled;
+    private final Map<UUID, QueuedTask> queued = new ConcurrentHashMap<>();
+
+    private record QueuedTask(UploadJob job, UploadJob.FileTask task, EcgRecord record) {}
+
+    public EcgUploadPipelineService(AiPredictionService aiPredictionService,
+                                    PredictionCacheService predictionCacheService,
+                                    EcgRecordService ecgRecordService,
+                                    @Qualifier("persistenceExecutor") Executor persistenceExecutor,
+                                    UploadAdmissionService admissionService,
+                                    HeatmapService heatmapService,
+                                    InferenceJobQueue inferenceJobQueue,
+                                    @Value("${ai.queue.enabled:false}") boolean queueEnabled) {
+        this.aiPredictionService = aiPredictionService;
+        this.predictionCacheService = predictionCacheService;
+        this.ecgRecordService = ecgRecordService;
+        this.persistenceExecutor = persistenceExecutor;
+        this.admissionService = admissionService;
+        this.heatmapService = heatmapService;
+        this.inferenceJobQueue = inferenceJobQueue;
+        this.queueEnabled = queueEnabled;
+    }
+
+    public Optional<UploadJob> createJob(UUID patientId, String notes, int totalFiles) {
+        return createJob(patientId, notes, totalFiles, Priority.ROUTINE);
+    }
+
+    /**
+     * Creates a job for the upload, or returns empty when the node is too busy to take all of its
+     * files at this priority.
+     */
+    public Optional<UploadJob> createJob(UUID patientId, String notes, int totalFiles, Priority priority) {
+        purgeFinishedJobs();
+        if (!admissionService.tryAcquire(totalFiles, priority)) {
+            logger.warn("Rejecting {} upload of {} files: {} ECGs already in flight, limit {}",
+                    priority, totalFiles, admissionService.getInFlight(), admissionService.limit(priority));
+            return Optional.empty();
+        }
+        UploadJob job = new UploadJob(patientId, notes, totalFiles, priority, admissionService::release);
+        jobs.put(job.getId(), job);
+        return Optional.of(job);
+    }
+
+    public Optional<UploadJob> getJob(UUID jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    /**
+     * Hands a stored file and its Pending record to the inference stage and returns immediately.
+     * With the cluster queue enabled the ECG is queued for whichever node has free model capacity.
+     */
+    public void submit(UploadJob job, UploadJob.FileTask task, EcgRecord record, File storedFile) {
+        task.setRecordId(record.getId());
+        task.setStage(UploadJob.Stage.INFERENCE);
+
+        if (queueEnabled) {
+            try {
+                InferenceJob queuedJob = inferenceJobQueue.enqueue(record.getId(), storedFile.getAbsolutePath(), job.getPriority());
+                queued.put(queuedJob.getId(), new QueuedTask(job, task, record));
+            } catch (Exception e) {
+                fail(task, record, "Could not queue the ECG for analysis: " + e.getMessage());
+            }
+            return;
+        }
+
+        infer(record, storedFile, job.getPriority())
+                .thenAcceptAsync(predictionJson -> persist(job, task, record, predictionJson), persistenceExecutor)
+                .exceptionally(e -> {
+                    fail(task, record, e.getMessage());
+                    return null;
+                });
+    }
+
+    // Identical images (same digest) reuse a cached or in-flight prediction of the serving model versions
+    CompletableFuture<String> infer(EcgRecord record, File storedFile, Priority priority) {
+        return predictionCacheService.getOrCompute(aiPredictionService.cacheKey(record.getImageDigest()),
+                () -> aiPredictionService.predictEcgImageAsync(storedFile, priority, record.getId()));
+    }
+
+    /**
+     * Completes the upload tasks of this node whose queued ECGs were analysed, here or on another node.
+     * The analysing node has already stored the outcome on the record.
+     */
+    @Scheduled(fixedDelayString = "${ai.queue.poll.interval.ms:500}")
+    public void collectQueuedResults() {
+        if (queued.isEmpty()) {
+            return;
+        }
+        for (InferenceJob finished : inferenceJobQueue.findFinished(queued.keySet())) {
+            QueuedTask queuedTask = queued.remove(finished.getId());
+            if (queuedTask == null) {
+                continue;
+            }
+            if (finished.getStatus() == InferenceJob.Status.FAILED) {
+                queuedTask.task().fail(finished.getLastError());
+                continue;
+            }
+            queuedTask.task().setStage(UploadJob.Stage.PERSISTENCE);
+            try {
+                JsonNode predictionNode = objectMapper.readTree(finished.getResultJson());
+                applyPrediction(queuedTask.record(), predictionNode, false);
+                queuedTask.task().complete(response(queuedTask.job(), queuedTask.record(), predictionNode));
+            } catch (Exception e) {
+                queuedTask.task().fail("Unreadable prediction: " + e.getMessage());
+                continue;
+            }
+            scheduleHeatmaps(queuedTask.record());
+        }
+    }
+
+    // Persistence stage: store the probabilities on the record and build the per-file result
+    private void persist(UploadJob job, UploadJob.FileTask task, EcgRecord record, String predictionJson) {
+        task.setStage(UploadJob.Stage.PERSISTENCE);
+        try {
+            JsonNode predictionNode = objectMapper.readTree(predictionJson);
+            if (predictionNode.has("error")) {
+                fail(task, record, predictionNode.get("error").asText());
+                return;
+            }
+            applyPrediction(record, predictionNode, true);
+            task.complete(response(job, record, predictionNode));
+        } catch (Exception e) {
+            fail(task, record, "Failed to persist prediction: " + e.getMessage());
+            return;
+        }
+        scheduleHeatmaps(record);
+    }
+
+    // Heatmaps are a later, lower-priority stage: the file's result is already final and nothing here may change it
+    private void scheduleHeatmaps(EcgRecord record) {
+        try {
+            heatmapService.schedule(record);
+        } catch (Exception e) {
+            logger.warn("Could not queue the heatmaps of record {}: {}", record.getId(), e.getMessage());
+        }
+    }
+
+    // Copies the ensemble probabilities onto the record, and stores it if asked to
+    void applyPrediction(EcgRecord record, JsonNode predictionNode, boolean save) {
+        JsonNode probs = predictionNode.get("probabilities");
+        record.setNormProbability(probs.get("NORM").asDouble());
+        record.setMiProbability(probs.get("MI").asDouble());
+        record.setSttcProbability(probs.get("STTC").asDouble());
+        record.setCdProbability(probs.get("CD").asDouble());
+        record.setHypProbability(probs.get("HYP").asDouble());
+        record.setModelVersions(AiPredictionService.modelVersions(predictionNode));
+        record.setStatus("Processed");
+        if (save) {
+            ecgRecordService.save(record);
+        }
+    }
+
+    private Map<String, Object> response(UploadJob job, EcgRecord record, JsonNode predictionNode) {
+        Map<String, Object> allPredictions = new LinkedHashMap<>();
+
+        // One entry per model that took part ("model1", "model2", ...)
+        for (JsonNode modelId : predictionNode.path("model_ids")) {
+            JsonNode model = predictionNode.get(modelId.asText());
+            if (model == null) {
+                continue;
+            }
+            allPredictions.put(modelId.asText(), Map.of(
+                    "classification", model.get("classification").asText(),
+                    "confidence", model.get("confidence").asDouble(),
+                    "probabilities", extractProbabilities(model.get("probabilities"))
+            ));
+        }
+
+        String classification = predictionNode.get("classification").asText();
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("id", record.getId().toString());
+        response.put("fileName", record.getFilename());
+        response.put("classification", classification);
+        response.put("confidence", predictionNode.get("confidence").asDouble());
+        response.put("probabilities", extractProbabilities(predictionNode.get("probabilities")));
+        response.put("timestamp", LocalDateTime.now().toString());
+        response.put("patientId", job.getPatientId().toString());
+        response.put("notes", job.getNotes());
+        response.put("status", "SUCCESS");
+        response.put("description", DESCRIPTIONS.getOrDefault(classification, "Classification completed"));
+        response.put("allPredictions", allPredictions);
+        response.put("modelVersions", record.getModelVersions());
+        return response;
+    }
+
+    private void fail(UploadJob.FileTask task, EcgRecord record, String error) {
+        markFailed(record, error);
+        task.fail(error);
+    }
+
+    void markFailed(EcgRecord record, String error) {
+        logger.error("Upload pipeline failed for {}: {}", record.getFilename(), error);
+        try {
+            record.setStatus("Failed");
+            ecgRecordService.save(record);
+        } catch (Exception e) {
+            logger.error("Could not mark ECG record {} as failed", record.getId(), e);
+        }
+    }
+
+    private Map<String, Double> extractProbabilities(JsonNode probsNode) {
+        return Map.of(
+                "NORM", probsNode.get("NORM").asDouble(),
+                "MI", probsNode.get("MI").asDouble(),
+                "STTC", probsNode.get("STTC").asDouble(),
+                "CD", probsNode.get("CD").asDouble(),
+                "HYP", probsNode.get("HYP").asDouble()
+        );
+    }
+
+    // Both windows start when a job's last file finished, however long the job ran
+    void purgeFinishedJobs() {
+        LocalDateTime now = LocalDateTime.now();
+        jobs.values().removeIf(job -> finishedBefore(job, now.minus(FINISHED_JOB_RETENTION)));
+        jobs.values().stream()
+                .filter(job -> finishedBefore(job, now.minus(FULL_RESULT_RETENTION)))
+                .forEach(UploadJob::compactResults);
+    }
+
+    private static boolean finishedBefore(UploadJob job, LocalDateTime time) {
+        return job.getFinishedAt() != null && job.getFinishedAt().isBefore(time);
+    }
+}
@@ -0,0 +1,230 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.backend.model.EcgRecord;
+import org.example.backend.model.Prediction;
+import org.example.backend.repository.EcgRecordRepository;
+import org.example.backend.repository.PredictionRepository;
+import org.example.backend.service.inference.Heatmap;
+import org.example.backend.service.inference.ModelBackend;
+import org.example.backend.service.inference.ModelBackendRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Grad-CAM heatmaps of each model's prediction, a low-priority stage after the upload pipeline. With
+ * {@code ai.heatmap.enabled} every model's heatmap is queued once an upload's prediction has been returned;
+ * heatmaps that were not computed then are computed when the viewer first asks for them.
+ * <p>
+ * A heatmap is a PNG next to the upload, named after the image digest and the model version, so re-uploads
+ * of the same ECG share it until the model is swapped. Heatmaps run on the {@code heatmapExecutor} threads,
+ * never on the models' dispatch threads, and queuing them is skipped while more than {@code ai.heatmap.max.load}
+ * of the admission capacity is in flight.
+ */
+@Service
+public class HeatmapService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HeatmapService.class);
+
+    private final ModelBackendRegistry modelBackendRegistry;
+    private final UploadAdmissionService admissionService;
+    private final EcgRecordRepository ecgRecordRepository;
+    private final PredictionRepository predictionRepository;
+    private final Executor heatmapExecutor;
+    private final Path uploadDirectory;
+    private final boolean enabled;
+    private final double maxLoad;
+    private final Duration timeout;
+    private final Duration viewerWait;
+
+    // Heatmaps being computed, by file name; a second request for the same file waits for the first
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter computed;
+    private final Counter reused;
+    private final Counter shed;
+    private final Counter failures;
+
+    public HeatmapService(ModelBackendRegistry modelBackendRegistry,
+                          UploadAdmissionService admissionService,
+                          EcgRecordRepository ecgRecordRepository,
+                          PredictionRepository predictionRepository,
+                          @Qualifier("heatmapExecutor") Executor heatmapExecutor,
+                          MeterRegistry meterRegistry,
+                          @Value("${ai.upload.directory:${user.dir}/uploads}") String uploadDirectory,
+                          @Value("${ai.heatmap.enabled:false}") boolean enabled,
+                          @Value("${ai.heatmap.max.load:0.5}") double maxLoad,
+                          @Value("${ai.heatmap.timeout.ms:120000}") long timeoutMs,
+                          @Value("${ai.heatmap.viewer.wait.ms:10000}") long viewerWaitMs) {
+        this.modelBackendRegistry = modelBackendRegistry;
+        this.admissionService = admissionService;
+        this.ecgRecordRepository = ecgRecordRepository;
+        this.predictionRepository = predictionRepository;
+        this.heatmapExecutor = heatmapExecutor;
+        this.uploadDirectory = Paths.get(uploadDirectory);
+        this.enabled = enabled;
+        this.maxLoad = maxLoad;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.viewerWait = Duration.ofMillis(viewerWaitMs);
+
+        this.computed = outcomeCounter(meterRegistry, "computed");
+        this.reused = outcomeCounter(meterRegistry, "reused");
+        this.shed = outcomeCounter(meterRegistry, "shed");
+        this.failures = outcomeCounter(meterRegistry, "failed");
+    }
+
+    /**
+     * Queues the heatmap of every model for a record whose prediction has just been returned. Never blocks:
+     * under load, or when the heatmap queue is full, the heatmaps are left for the viewer to request.
+     */
+    public void schedule(EcgRecord record) {
+        if (!enabled || record.getId() == null) {
+            return;
+        }
+        if (admissionService.getInFlight() > maxLoad * admissionService.getCapacity()) {
+            shed.increment();
+            return;
+        }
+        for (ModelBackend backend : modelBackendRegistry.getBackends()) {
+            heatmap(record, backend).exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (!(cause instanceof RejectedExecutionException) && !(cause instanceof UnsupportedOperationException)) {
+                    logger.warn("Could not compute the {} heatmap of record {}: {}",
+                            backend.getName(), record.getId(), cause.getMessage());
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * The file name (in the upload directory) of a model's heatmap for a record, computing it first if it
+     * does not exist yet. Fails with {@link NoSuchElementException} for an unknown record or model, and
+     * completes exceptionally with {@link UnsupportedOperationException} for a model without heatmaps.
+     */
+    public CompletableFuture<String> heatmap(UUID recordId, String modelId) {
+        EcgRecord record = ecgRecordRepository.findById(recordId)
+                .orElseThrow(() -> new NoSuchElementException("Unknown ECG record " + recordId));
+        ModelBackend backend = modelBackendRegistry.getBackend(modelId)
+                .orElseThrow(() -> new NoSuchElementException("Unknown model " + modelId));
+        return heatmap(record, backend);
+    }
+
+    public Path resolve(String fileName) {
+        return uploadDirectory.resolve(fileName);
+    }
+
+    // How long the heatmap endpoint waits for a heatmap being computed before answering "pending"
+    public Duration getViewerWait() {
+        return viewerWait;
+    }
+
+    private CompletableFuture<String> heatmap(EcgRecord record, ModelBackend backend) {
+        String fileName = fileName(record, backend);
+        if (Files.exists(resolve(fileName))) {
+            reused.increment();
+            link(record, backend, fileName);
+            return CompletableFuture.completedFuture(fileName);
+        }
+
+        CompletableFuture<String> flight = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(fileName, flight);
+        if (existing != null) {
+            return existing.thenApply(name -> {
+                link(record, backend, name);
+                return name;
+            });
+        }
+
+        try {
+            heatmapExecutor.execute(() -> {
+                try {
+                    compute(record, backend, fileName);
+                    flight.complete(fileName);
+                } catch (Throwable e) {
+                    if (!(e instanceof UnsupportedOperationException)) {
+                        failures.increment();
+                    }
+                    flight.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(fileName, flight);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            shed.increment();
+            inFlight.remove(fileName, flight);
+            flight.completeExceptionally(e);
+        }
+        return flight;
+    }
+
+    // Writes to a temporary file first, so a half-written heatmap is never served or taken for a cached one
+    private void compute(EcgRecord record, ModelBackend backend, String fileName) throws Exception {
+        Path image = resolve(record.getFilename());
+        Path output = resolve(fileName);
+        Path partial = resolve(fileName + ".tmp");
+        long start = System.nanoTime();
+        try {
+            Heatmap heatmap = backend.writeHeatmap(image.toFile(), partial.toFile(), timeout);
+            Files.move(partial, output, StandardCopyOption.REPLACE_EXISTING);
+            computed.increment();
+            logger.debug("{} heatmap of record {} took {} ms", backend.getName(), record.getId(),
+                    (System.nanoTime() - start) / 1_000_000);
+            save(record, backend, fileName, heatmap);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    // Records reuse the heatmap of an identical image: copy the explained class from the row that has it
+    private void link(EcgRecord record, ModelBackend backend, String fileName) {
+        try {
+            if (predictionRepository.existsByEcgRecordIdAndHeatmapPath(record.getId(), fileName)) {
+                return;
+            }
+            predictionRepository.findFirstByHeatmapPath(fileName).ifPresent(source -> save(record, backend, fileName,
+                    new Heatmap(source.getClassName(), source.getConfidence())));
+        } catch (Exception e) {
+            logger.warn("Could not link heatmap {} to record {}", fileName, record.getId(), e);
+        }
+    }
+
+    private void save(EcgRecord record, ModelBackend backend, String fileName, Heatmap heatmap) {
+        Prediction prediction = new Prediction(ecgRecordRepository.getReferenceById(record.getId()),
+                heatmap.classification(), heatmap.confidence(), backend.getName(), fileName);
+        prediction.setModelVersion(backend.getVersion());
+        predictionRepository.save(prediction);
+    }
+
+    // <digest>_<model>_<version>.gradcam.png; records stored before digests existed use their id
+    static String fileName(EcgRecord record, ModelBackend backend) {
+        String image = record.getImageDigest() != null ? record.getImageDigest() : record.getId().toString();
+        String version = backend.getVersion() != null ? backend.getVersion() : "default";
+        return image + "_" + backend.getId() + "_" + version.replaceAll("[^A-Za-z0-9.-]", "-") + ".gradcam.png";
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("inference.heatmaps")
+                .description("Grad-CAM heatmap requests by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,213 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.transaction.Transactional;
+import org.example.backend.model.InferenceJob;
+import org.example.backend.repository.InferenceJobRepository;
+import org.example.backend.service.inference.Priority;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The cluster-wide inference queue, kept in the {@code inference_jobs} table. Nodes claim jobs
+ * with {@code SELECT ... FOR UPDATE SKIP LOCKED}, so every job goes to exactly one node, and hold
+ * them under a lease of {@code ai.queue.lease.ms}. A job whose node crashes becomes claimable again
+ * once the lease expires; after {@code ai.queue.max.attempts} claims it fails for good. Results are
+ * only accepted from the node that still holds the lease.
+ * <p>
+ * Without {@code ai.queue.enabled} the table is left alone: no pending-jobs gauge and no cleanup.
+ */
+@Service
+public class InferenceJobQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceJobQueue.class);
+
+    /**
+     * Jobs claimed by one call, and jobs found with an expired lease and no attempts left, whose
+     * records the caller should mark failed.
+     */
+    public record Claim(List<InferenceJob> claimed, List<InferenceJob> abandoned) {}
+
+    private final InferenceJobRepository inferenceJobRepository;
+    private final boolean enabled;
+    private final Duration lease;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Duration retention;
+    private final Counter claimedJobs;
+    private final Counter retriedJobs;
+    private final Counter failedJobs;
+    // Last count of PENDING jobs, so a metrics scrape never queries the table
+    private final AtomicLong pendingJobs = new AtomicLong();
+
+    public InferenceJobQueue(InferenceJobRepository inferenceJobRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${ai.queue.enabled:false}") boolean enabled,
+                             @Value("${ai.queue.lease.ms:120000}") long leaseMs,
+                             @Value("${ai.queue.max.attempts:3}") int maxAttempts,
+                             @Value("${ai.queue.retry.backoff.ms:5000}") long retryBackoffMs,
+                             @Value("${ai.queue.retention.hours:24}") long retentionHours) {
+        this.inferenceJobRepository = inferenceJobRepository;
+        this.enabled = enabled;
+        this.lease = Duration.ofMillis(leaseMs);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoff = Duration.ofMillis(retryBackoffMs);
+        this.retention = Duration.ofHours(retentionHours);
+        this.claimedJobs = jobCounter(meterRegistry, "inference.jobs.claimed", "Queued inference jobs claimed by this node");
+        this.retriedJobs = jobCounter(meterRegistry, "inference.jobs.retried", "Queued inference jobs put back for another attempt");
+        this.failedJobs = jobCounter(meterRegistry, "inference.jobs.failed", "Queued inference jobs that used up their attempts");
+        if (enabled) {
+            Gauge.builder("inference.jobs.pending", pendingJobs, AtomicLong::get)
+                    .description("Inference jobs waiting in the cluster-wide queue")
+                    .register(meterRegistry);
+        }
+    }
+
+    public InferenceJob enqueue(UUID recordId, String filePath, Priority priority) {
+        return inferenceJobRepository.save(new InferenceJob(recordId, filePath, priority));
+    }
+
+    /**
+     * Claims up to {@code limit} jobs for {@code owner}. Every claim counts as an attempt.
+     */
+    @Transactional
+    public Claim claim(String owner, int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<InferenceJob> claimed = new ArrayList<>();
+        List<InferenceJob> abandoned = new ArrayList<>();
+        for (InferenceJob job : inferenceJobRepository.lockClaimable(now, limit)) {
+            if (job.getStatus() == InferenceJob.Status.RUNNING && job.getAttempts() >= maxAttempts) {
+                logger.warn("Inference job {} lost its lease on {} after {} attempts; giving up",
+                        job.getId(), job.getLeaseOwner(), job.getAttempts());
+                finish(job, InferenceJob.Status.FAILED, now);
+                job.setLastError("No node finished the ECG analysis after " + job.getAttempts() + " attempts");
+                failedJobs.increment();
+                abandoned.add(job);
+                continue;
+            }
+            if (job.getStatus() == InferenceJob.Status.RUNNING) {
+                logger.warn("Inference job {} lease held by {} expired; reclaiming it", job.getId(), job.getLeaseOwner());
+            }
+            job.setStatus(InferenceJob.Status.RUNNING);
+            job.setLeaseOwner(owner);
+            job.setLeaseExpiresAt(now.plus(lease));
+            job.setAttempts(job.getAttempts() + 1);
+            job.setUpdatedAt(now);
+            claimed.add(job);
+        }
+        inferenceJobRepository.saveAll(claimed);
+        inferenceJobRepository.saveAll(abandoned);
+        claimedJobs.increment(claimed.size());
+        return new Claim(claimed, abandoned);
+    }
+
+    /**
+     * Stores the result of a job this node still holds, running {@code onHeld} (e.g. saving the prediction
+     * on the record) first in the same transaction while the job row is locked. Returns false if the lease
+     * was lost, in which case another node owns the job and neither the result nor {@code onHeld} is applied.
+     */
+    @Transactional
+    public boolean complete(UUID jobId, String owner, String resultJson, Runnable onHeld) {
+        Optional<InferenceJob> held = held(jobId, owner);
+        held.ifPresent(job -> {
+            onHeld.run();
+            job.setResultJson(resultJson);
+            finish(job, InferenceJob.Status.DONE, LocalDateTime.now());
+            inferenceJobRepository.save(job);
+        });
+        return held.isPresent();
+    }
+
+    /**
+     * Puts a failed job of this node back in the queue after a backoff that grows with its attempts,
+     * or fails it for good once its attempts are used up or the error is not {@code retryable}.
+     * Returns true if the failure is final.
+     */
+    @Transactional
+    public boolean retryOrFail(UUID jobId, String owner, String error, boolean retryable) {
+        Optional<InferenceJob> held = held(jobId, owner);
+        if (held.isEmpty()) {
+            return false;
+        }
+        InferenceJob job = held.get();
+        LocalDateTime now = LocalDateTime.now();
+        job.setLastError(error);
+        boolean last = !retryable || job.getAttempts() >= maxAttempts;
+        if (last) {
+            finish(job, InferenceJob.Status.FAILED, now);
+            failedJobs.increment();
+        } else {
+            job.setStatus(InferenceJob.Status.PENDING);
+            job.setLeaseOwner(null);
+            job.setLeaseExpiresAt(null);
+            job.setAvailableAt(now.plus(retryBackoff.multipliedBy(job.getAttempts())));
+            job.setUpdatedAt(now);
+            retriedJobs.increment();
+        }
+        inferenceJobRepository.save(job);
+        return last;
+    }
+
+    // Jobs among the given ones that are DONE or FAILED
+    public List<InferenceJob> findFinished(Collection<UUID> jobIds) {
+        return inferenceJobRepository.findAllById(jobIds).stream()
+                .filter(job -> job.getStatus() == InferenceJob.Status.DONE || job.getStatus() == InferenceJob.Status.FAILED)
+                .toList();
+    }
+
+    public Duration getLease() {
+        return lease;
+    }
+
+    @Scheduled(fixedDelayString = "${ai.queue.pending.refresh.ms:15000}")
+    public void refreshPendingCount() {
+        if (enabled) {
+            pendingJobs.set(inferenceJobRepository.countByStatus(InferenceJob.Status.PENDING));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ai.queue.cleanup.interval.ms:3600000}")
+    public void deleteFinishedJobs() {
+        if (!enabled) {
+            return;
+        }
+        int deleted = inferenceJobRepository.deleteFinishedBefore(LocalDateTime.now().minus(retention));
+        if (deleted > 0) {
+            logger.info("Deleted {} finished inference jobs older than {} hours", deleted, retention.toHours());
+        }
+    }
+
+    private Optional<InferenceJob> held(UUID jobId, String owner) {
+        Optional<InferenceJob> job = inferenceJobRepository.lockById(jobId)
+                .filter(candidate -> candidate.getStatus() == InferenceJob.Status.RUNNING && owner.equals(candidate.getLeaseOwner()));
+        if (job.isEmpty()) {
+            logger.warn("Inference job {} is no longer leased to {}; dropping its outcome", jobId, owner);
+        }
+        return job;
+    }
+
+    private static void finish(InferenceJob job, InferenceJob.Status status, LocalDateTime now) {
+        job.setStatus(status);
+        job.setLeaseOwner(null);
+        job.setLeaseExpiresAt(null);
+        job.setUpdatedAt(now);
+    }
+
+    private static Counter jobCounter(MeterRegistry meterRegistry, String name, String description) {
+        return Counter.builder(name).description(description).register(meterRegistry);
+    }
+}
@@ -0,0 +1,156 @@
+package org.example.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.backend.model.EcgRecord;
+import org.example.backend.model.InferenceJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs ECGs from the cluster-wide {@link InferenceJobQueue} on this node. Every poll it claims as
+ * many jobs as it has free places ({@code ai.queue.max.local} minus the jobs it is running), so
+ * busy nodes leave work to idle ones, and nothing is claimed before the models have warmed up.
+ * The outcome is stored on the ECG record here; the node that received the upload picks it up
+ * from the queue.
+ */
+@Service
+public class InferenceQueueWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceQueueWorker.class);
+
+    private final InferenceJobQueue inferenceJobQueue;
+    private final EcgUploadPipelineService uploadPipeline;
+    private final EcgRecordService ecgRecordService;
+    private final ModelWarmupService modelWarmupService;
+    private final Executor persistenceExecutor;
+    private final boolean enabled;
+    private final int maxLocal;
+    private final String nodeId;
+    private final AtomicInteger running = new AtomicInteger();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public InferenceQueueWorker(InferenceJobQueue inferenceJobQueue,
+                                EcgUploadPipelineService uploadPipeline,
+                                EcgRecordService ecgRecordService,
+                                ModelWarmupService modelWarmupService,
+                                @Qualifier("persistenceExecutor") Executor persistenceExecutor,
+                                MeterRegistry meterRegistry,
+                                @Value("${ai.queue.enabled:false}") boolean enabled,
+                                @Value("${ai.queue.max.local:8}") int maxLocal,
+                                @Value("${ai.queue.node.id:}") String nodeId) {
+        this.inferenceJobQueue = inferenceJobQueue;
+        this.uploadPipeline = uploadPipeline;
+        this.ecgRecordService = ecgRecordService;
+        this.modelWarmupService = modelWarmupService;
+        this.persistenceExecutor = persistenceExecutor;
+        this.enabled = enabled;
+        this.maxLocal = maxLocal;
+        this.nodeId = nodeId.isBlank() ? defaultNodeId() : nodeId;
+
+        Gauge.builder("inference.jobs.running", running, AtomicInteger::get)
+                .description("Queued inference jobs this node is running")
+                .register(meterRegistry);
+        if (enabled) {
+            logger.info("Cluster inference queue enabled: node {} runs up to {} queued ECGs at once", this.nodeId, maxLocal);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ai.queue.poll.interval.ms:500}")
+    public void claimAndRun() {
+        if (!enabled || !modelWarmupService.isReady()) {
+            return;
+        }
+        int free = maxLocal - running.get();
+        if (free <= 0) {
+            return;
+        }
+
+        InferenceJobQueue.Claim claim;
+        try {
+            claim = inferenceJobQueue.claim(nodeId, free);
+        } catch (Exception e) {
+            logger.warn("Could not claim queued inference jobs: {}", e.getMessage());
+            return;
+        }
+        for (InferenceJob abandoned : claim.abandoned()) {
+            EcgRecord record = ecgRecordService.getById(abandoned.getRecordId());
+            if (record != null) {
+                uploadPipeline.markFailed(record, abandoned.getLastError());
+            }
+        }
+        claim.claimed().forEach(this::run);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public int getRunning() {
+        return running.get();
+    }
+
+    private void run(InferenceJob job) {
+        EcgRecord record = ecgRecordService.getById(job.getRecordId());
+        if (record == null) {
+            inferenceJobQueue.retryOrFail(job.getId(), nodeId, "The ECG record was deleted", false);
+            return;
+        }
+
+        running.incrementAndGet();
+        uploadPipeline.infer(record, new File(job.getFilePath()), job.getPriority())
+                .thenAcceptAsync(predictionJson -> finish(job, record, predictionJson), persistenceExecutor)
+                .exceptionally(e -> {
+                    failed(job, record, e.getMessage());
+                    return null;
+                })
+                .whenComplete((ignored, error) -> running.decrementAndGet());
+    }
+
+    private void finish(InferenceJob job, EcgRecord record, String predictionJson) {
+        JsonNode predictionNode;
+        try {
+            predictionNode = objectMapper.readTree(predictionJson);
+        } catch (Exception e) {
+            failed(job, record, "Unreadable prediction: " + e.getMessage());
+            return;
+        }
+        if (predictionNode.has("error")) {
+            failed(job, record, predictionNode.get("error").asText());
+            return;
+        }
+        // Only stored on the record while this node still holds the job; a node that lost it leaves it alone
+        inferenceJobQueue.complete(job.getId(), nodeId, predictionJson,
+                () -> uploadPipeline.applyPrediction(record, predictionNode, true));
+    }
+
+    // Another node may succeed where this one failed, so the record only fails with the job's last attempt
+    private void failed(InferenceJob job, EcgRecord record, String error) {
+        logger.warn("Queued inference job {} failed on attempt {}: {}", job.getId(), job.getAttempts(), error);
+        if (inferenceJobQueue.retryOrFail(job.getId(), nodeId, error, true)) {
+            uploadPipeline.markFailed(record, error);
+        }
+    }
+
+    // host-pid; also names this node in backfill leases
+    static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+}
@@ -0,0 +1,106 @@
+package org.example.backend.service;
+
+import org.example.backend.service.inference.EcgImagePreprocessor;
+import org.example.backend.service.inference.ModelBackend;
+import org.example.backend.service.inference.ModelBackendRegistry;
+import org.example.backend.service.inference.ModelVersion;
+import org.example.backend.service.inference.PreparedImage;
+import org.example.backend.service.inference.SyntheticEcg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Which model versions are serving, and zero-downtime switches between them. A swap starts the
+ * new version's workers next to the old ones, warms them up on a synthetic ECG, moves traffic
+ * over atomically and stops the old workers once their running batches have drained; requests
+ * in flight are never failed by it.
+ */
+@Service
+public class ModelVersionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelVersionService.class);
+
+    public static final String SHADOW_ID = "shadow";
+
+    private final ModelBackendRegistry modelBackendRegistry;
+    private final EcgImagePreprocessor imagePreprocessor;
+    private final Duration timeout;
+    private final Set<String> swapping = ConcurrentHashMap.newKeySet();
+
+    public ModelVersionService(ModelBackendRegistry modelBackendRegistry,
+                               EcgImagePreprocessor imagePreprocessor,
+                               @Value("${ai.models.swap.timeout.ms:300000}") long timeoutMs) {
+        this.modelBackendRegistry = modelBackendRegistry;
+        this.imagePreprocessor = imagePreprocessor;
+        this.timeout = Duration.ofMillis(timeoutMs);
+    }
+
+    // Model id -> id, name and serving version, the shadow model last
+    public Map<String, Map<String, String>> getVersions() {
+        Map<String, Map<String, String>> versions = new LinkedHashMap<>();
+        modelBackendRegistry.getBackends().forEach(backend -> versions.put(backend.getId(), describe(backend)));
+        modelBackendRegistry.getShadowBackend().ifPresent(shadow -> versions.put(SHADOW_ID, describe(shadow)));
+        return versions;
+    }
+
+    /**
+     * Switches model {@code modelId} ("model1", ..., or "shadow") to another version and returns the
+     * version it replaced. Blocks until the old version is stopped.
+     *
+     * @throws NoSuchElementException if no such model is enabled
+     * @throws IllegalStateException  if the model is already being switched
+     */
+    public String swap(String modelId, ModelVersion version) throws Exception {
+        ModelBackend backend = find(modelId)
+                .orElseThrow(() -> new NoSuchElementException("No enabled model " + modelId));
+        if (!swapping.add(modelId)) {
+            throw new IllegalStateException(backend.getName() + " is already switching versions");
+        }
+
+        String previous = backend.getVersion();
+        logger.info("Switching {} from version {} to {} ({})", backend.getName(), previous, version.version(),
+                version.modelPath() != null ? version.modelPath() : "default weights");
+        File synthetic = null;
+        ExecutorService starter = Executors.newCachedThreadPool();
+        try {
+            synthetic = SyntheticEcg.writeTempPng();
+            try (PreparedImage image = imagePreprocessor.prepare(synthetic)) {
+                backend.swapVersion(version, image, starter, timeout);
+            }
+            return previous;
+        } finally {
+            starter.shutdown();
+            if (synthetic != null) {
+                synthetic.delete();
+            }
+            swapping.remove(modelId);
+        }
+    }
+
+    private Optional<ModelBackend> find(String modelId) {
+        if (SHADOW_ID.equals(modelId)) {
+            return modelBackendRegistry.getShadowBackend();
+        }
+        return modelBackendRegistry.getBackend(modelId);
+    }
+
+    private static Map<String, String> describe(ModelBackend backend) {
+        Map<String, String> description = new LinkedHashMap<>();
+        description.put("name", backend.getName());
+        description.put("version", backend.getVersion());
+        return description;
+    }
+}
@@ -0,0 +1,184 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.backend.service.inference.EcgImagePreprocessor;
+import org.example.backend.service.inference.ModelBackend;
+import org.example.backend.service.inference.ModelBackendRegistry;
+import org.example.backend.service.inference.ModelOutput;
+import org.example.backend.service.inference.PreparedImage;
+import org.example.backend.service.inference.SyntheticEcg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Loads every model before the node takes traffic. Once the application is up, the model
+ * workers are started and a synthetic 224x224 ECG is sent through each model
+ * {@code ai.warmup.iterations} times: the first pass pays for loading the model and tracing
+ * its graph, the later ones show the steady latency. The node reports ready (readiness probe,
+ * {@code /api/test/health}) only after every model has answered; failed models are retried.
+ */
+@Service
+public class ModelWarmupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelWarmupService.class);
+
+    public enum State { PENDING, WARMING_UP, READY, FAILED }
+
+    /**
+     * Warm-up progress of one model. {@code firstMs} covers loading plus the first prediction,
+     * {@code steadyMs} the last warm-up prediction.
+     */
+    public record ModelStatus(State state, Long firstMs, Long steadyMs, String error) {}
+
+    private final ModelBackendRegistry modelBackendRegistry;
+    private final EcgImagePreprocessor imagePreprocessor;
+    private final boolean enabled;
+    private final int iterations;
+    private final long timeoutMs;
+    private final long retryMs;
+    private final Map<String, ModelStatus> statuses = new ConcurrentHashMap<>();
+
+    public ModelWarmupService(ModelBackendRegistry modelBackendRegistry,
+                              EcgImagePreprocessor imagePreprocessor,
+                              MeterRegistry meterRegistry,
+                              @Value("${ai.warmup.enabled:true}") boolean enabled,
+                              @Value("${ai.warmup.iterations:2}") int iterations,
+                              @Value("${ai.warmup.timeout.ms:300000}") long timeoutMs,
+                              @Value("${ai.warmup.retry.ms:30000}") long retryMs) {
+        this.modelBackendRegistry = modelBackendRegistry;
+        this.imagePreprocessor = imagePreprocessor;
+        this.enabled = enabled;
+        this.iterations = Math.max(1, iterations);
+        this.timeoutMs = timeoutMs;
+        this.retryMs = retryMs;
+
+        for (ModelBackend backend : modelBackendRegistry.getBackends()) {
+            statuses.put(backend.getName(), new ModelStatus(enabled ? State.PENDING : State.READY, null, null, null));
+            Gauge.builder("inference.warmup.first.ms", statuses, s -> timing(s.get(backend.getName()).firstMs()))
+                    .description("Model loading plus first prediction during warm-up")
+                    .tag("model", backend.getName())
+                    .register(meterRegistry);
+            Gauge.builder("inference.warmup.steady.ms", statuses, s -> timing(s.get(backend.getName()).steadyMs()))
+                    .description("Last warm-up prediction, after the model was loaded")
+                    .tag("model", backend.getName())
+                    .register(meterRegistry);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWarmup() {
+        if (!enabled || modelBackendRegistry.getBackends().isEmpty()) {
+            return;
+        }
+        Thread warmup = new Thread(this::warmUpUntilReady, "model-warmup");
+        warmup.setDaemon(true);
+        warmup.start();
+    }
+
+    // Ready once every configured model has answered its warm-up requests
+    public boolean isReady() {
+        return statuses.values().stream().allMatch(status -> status.state() == State.READY);
+    }
+
+    public Map<String, ModelStatus> getStatuses() {
+        Map<String, ModelStatus> ordered = new LinkedHashMap<>();
+        modelBackendRegistry.getBackends().forEach(backend -> ordered.put(backend.getName(), statuses.get(backend.getName())));
+        return ordered;
+    }
+
+    void warmUpUntilReady() {
+        long started = System.nanoTime();
+        File synthetic = null;
+        // Models, and the workers of each model, load side by side; loading dominates warm-up time
+        ExecutorService starter = Executors.newCachedThreadPool();
+        try {
+            synthetic = SyntheticEcg.writeTempPng();
+            while (!isReady()) {
+                for (ModelBackend backend : modelBackendRegistry.getBackends()) {
+                    if (statuses.get(backend.getName()).state() != State.READY) {
+                        statuses.put(backend.getName(), new ModelStatus(State.WARMING_UP, null, null, null));
+                    }
+                }
+                List<CompletableFuture<Void>> warmups = new ArrayList<>();
+                for (ModelBackend backend : modelBackendRegistry.getBackends()) {
+                    if (statuses.get(backend.getName()).state() == State.WARMING_UP) {
+                        File image = synthetic;
+                        warmups.add(CompletableFuture.runAsync(() -> warmUp(backend, image, starter), starter));
+                    }
+                }
+                CompletableFuture.allOf(warmups.toArray(CompletableFuture[]::new)).join();
+                if (!isReady()) {
+                    logger.warn("Model warm-up incomplete, retrying failed models in {} ms", retryMs);
+                    Thread.sleep(retryMs);
+                }
+            }
+            logger.info("All {} models warmed up in {} ms; accepting traffic",
+                    statuses.size(), (System.nanoTime() - started) / 1_000_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.error("Could not create the synthetic warm-up ECG", e);
+            statuses.replaceAll((name, status) -> new ModelStatus(State.FAILED, null, null, e.getMessage()));
+        } finally {
+            starter.shutdown();
+            if (synthetic != null) {
+                synthetic.delete();
+            }
+        }
+    }
+
+    private void warmUp(ModelBackend backend, File synthetic, ExecutorService starter) {
+        Long firstMs = null;
+        long lastMs = 0;
+        try {
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                try (PreparedImage image = imagePreprocessor.prepare(synthetic)) {
+                    ModelOutput output = backend.warmUp(image, starter).get(timeoutMs, TimeUnit.MILLISECONDS);
+                    if (output.isFailed()) {
+                        throw new IOException(output.error());
+                    }
+                }
+                lastMs = (System.nanoTime() - start) / 1_000_000;
+                if (firstMs == null) {
+                    firstMs = lastMs;
+                }
+            }
+            logger.info("{} warmed up: first prediction {} ms (includes model loading), steady {} ms",
+                    backend.getName(), firstMs, lastMs);
+            statuses.put(backend.getName(), new ModelStatus(State.READY, firstMs, lastMs, null));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            statuses.put(backend.getName(), new ModelStatus(State.FAILED, firstMs, null, "Warm-up interrupted"));
+        } catch (TimeoutException e) {
+            logger.error("{} warm-up got no answer within {} ms", backend.getName(), timeoutMs);
+            statuses.put(backend.getName(), new ModelStatus(State.FAILED, firstMs, null, "No answer within " + timeoutMs + " ms"));
+        } catch (Exception e) {
+            String error = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            logger.error("{} warm-up failed: {}", backend.getName(), error);
+            statuses.put(backend.getName(), new ModelStatus(State.FAILED, firstMs, null, error));
+        }
+    }
+
+    private static double timing(Long ms) {
+        return ms != null ? ms : Double.NaN;
+    }
+}
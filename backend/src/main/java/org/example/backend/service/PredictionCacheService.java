@@ -0,0 +1,206 @@
+package org.example.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.backend.model.PredictionCacheEntry;
+import org.example.backend.repository.PredictionCacheRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Caches combined model output by the SHA-256 of the uploaded image, so re-uploads of the
+ * same ECG skip inference. Recent entries live in a bounded in-memory LRU in front of the
+ * prediction_cache table; concurrent requests for the same digest share one in-flight inference.
+ */
+@Service
+public class PredictionCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PredictionCacheService.class);
+
+    private final PredictionCacheRepository predictionCacheRepository;
+    private final Executor persistenceExecutor;
+    private final boolean enabled;
+    private final Duration ttl;
+
+    private final Map<String, String> recentEntries;
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter shared;
+
+    public PredictionCacheService(PredictionCacheRepository predictionCacheRepository,
+                                  @Qualifier("persistenceExecutor") Executor persistenceExecutor,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${ai.cache.enabled:true}") boolean enabled,
+                                  @Value("${ai.cache.max.entries:10000}") int maxEntries,
+                                  @Value("${ai.cache.ttl.days:30}") int ttlDays) {
+        this.predictionCacheRepository = predictionCacheRepository;
+        this.persistenceExecutor = persistenceExecutor;
+        this.enabled = enabled;
+        this.ttl = Duration.ofDays(ttlDays);
+
+        // Access-ordered map: the least recently used digest is evicted first
+        this.recentEntries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        this.hits = cacheCounter(meterRegistry, "hit");
+        this.misses = cacheCounter(meterRegistry, "miss");
+        this.shared = cacheCounter(meterRegistry, "shared");
+        Gauge.builder("inference.cache.size", this, PredictionCacheService::size)
+                .description("Predictions held in the in-memory cache")
+                .register(meterRegistry);
+        Gauge.builder("inference.cache.hit.ratio", this, PredictionCacheService::hitRatio)
+                .description("Share of lookups answered without running the models")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached prediction for the digest, joins an inference already running for it,
+     * or starts a new one with the given supplier. Error results and degraded results (made
+     * without a failed model) are never cached.
+     */
+    public CompletableFuture<String> getOrCompute(String digest, Supplier<CompletableFuture<String>> inference) {
+        if (!enabled || digest == null) {
+            return inference.get();
+        }
+
+        Optional<String> cached = lookup(digest);
+        if (cached.isPresent()) {
+            hits.increment();
+            return CompletableFuture.completedFuture(cached.get());
+        }
+
+        CompletableFuture<String> flight = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(digest, flight);
+        if (existing != null) {
+            shared.increment();
+            return existing;
+        }
+
+        // Another flight may have finished between the lookup and claiming the digest
+        cached = lookup(digest);
+        if (cached.isPresent()) {
+            inFlight.remove(digest, flight);
+            hits.increment();
+            flight.complete(cached.get());
+            return flight;
+        }
+
+        misses.increment();
+        CompletableFuture<String> result;
+        try {
+            result = inference.get();
+        } catch (RuntimeException e) {
+            inFlight.remove(digest, flight);
+            flight.completeExceptionally(e);
+            return flight;
+        }
+
+        result.whenComplete((json, error) -> {
+            if (error == null && cacheable(json)) {
+                store(digest, json);
+            }
+            inFlight.remove(digest, flight);
+            if (error != null) {
+                flight.completeExceptionally(error);
+            } else {
+                flight.complete(json);
+            }
+        });
+        return flight;
+    }
+
+    // Only complete answers are cached: no top-level error and not made without a failed model
+    private boolean cacheable(String json) {
+        try {
+            JsonNode prediction = objectMapper.readTree(json);
+            return prediction.isObject() && !prediction.has("error") && !prediction.path("degraded").asBoolean(false);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    // Drop persisted predictions that have outlived the TTL
+    @Scheduled(fixedDelayString = "${ai.cache.cleanup.interval.ms:3600000}")
+    public void evictExpired() {
+        if (!enabled) {
+            return;
+        }
+        int removed = predictionCacheRepository.deleteOlderThan(LocalDateTime.now().minus(ttl));
+        if (removed > 0) {
+            logger.info("Evicted {} expired prediction cache entries", removed);
+        }
+    }
+
+    public int size() {
+        synchronized (recentEntries) {
+            return recentEntries.size();
+        }
+    }
+
+    public double hitRatio() {
+        double lookups = hits.count() + misses.count() + shared.count();
+        return lookups == 0 ? 0.0 : (hits.count() + shared.count()) / lookups;
+    }
+
+    private Optional<String> lookup(String digest) {
+        synchronized (recentEntries) {
+            String json = recentEntries.get(digest);
+            if (json != null) {
+                return Optional.of(json);
+            }
+        }
+
+        Optional<PredictionCacheEntry> entry = predictionCacheRepository.findById(digest)
+                .filter(e -> e.getCreatedAt().isAfter(LocalDateTime.now().minus(ttl)));
+        entry.ifPresent(e -> remember(digest, e.getResultJson()));
+        return entry.map(PredictionCacheEntry::getResultJson);
+    }
+
+    private void store(String digest, String json) {
+        remember(digest, json);
+        persistenceExecutor.execute(() -> {
+            try {
+                predictionCacheRepository.save(new PredictionCacheEntry(digest, json));
+            } catch (Exception e) {
+                logger.warn("Could not persist prediction cache entry {}", digest, e);
+            }
+        });
+    }
+
+    private void remember(String digest, String json) {
+        synchronized (recentEntries) {
+            recentEntries.put(digest, json);
+        }
+    }
+
+    private static Counter cacheCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("inference.cache.requests")
+                .description("Prediction cache lookups by outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
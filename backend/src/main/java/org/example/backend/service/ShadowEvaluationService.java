@@ -0,0 +1,190 @@
+package org.example.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.backend.model.EcgRecord;
+import org.example.backend.model.Prediction;
+import org.example.backend.repository.EcgRecordRepository;
+import org.example.backend.repository.PredictionRepository;
+import org.example.backend.service.ensemble.EnsembleStrategy;
+import org.example.backend.service.inference.ModelBackend;
+import org.example.backend.service.inference.ModelBackendRegistry;
+import org.example.backend.service.inference.ModelOutput;
+import org.example.backend.service.inference.PreparedImage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Runs the shadow model ({@code ai.shadow.*}) on ECGs the ensemble is classifying, so a retrained
+ * model can be compared with production before it is promoted. The shadow answer never reaches the
+ * response: the ensemble's and the shadow's classification and latency are written to the
+ * {@code predictions} table (shadow rows flagged) for offline comparison.
+ * <p>
+ * Shadow work only uses spare capacity. It is skipped while more than {@code ai.shadow.max.load}
+ * of the admission capacity is in flight or {@code ai.shadow.max.in.flight} shadow requests are
+ * already running, and it never delays the ensemble's answer.
+ */
+@Service
+public class ShadowEvaluationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShadowEvaluationService.class);
+
+    private record ProductionRun(String predictionJson, long latencyMs) {}
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ModelBackendRegistry modelBackendRegistry;
+    private final UploadAdmissionService admissionService;
+    private final PredictionRepository predictionRepository;
+    private final EcgRecordRepository ecgRecordRepository;
+    private final Executor persistenceExecutor;
+    private final Semaphore slots;
+    private final double sampleRate;
+    private final double maxLoad;
+
+    private final Counter shedLoad;
+    private final Counter shedBusy;
+    private final Counter failures;
+    private final Counter agreed;
+    private final Counter disagreed;
+
+    public ShadowEvaluationService(ModelBackendRegistry modelBackendRegistry,
+                                   UploadAdmissionService admissionService,
+                                   PredictionRepository predictionRepository,
+                                   EcgRecordRepository ecgRecordRepository,
+                                   @Qualifier("persistenceExecutor") Executor persistenceExecutor,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${ai.shadow.max.in.flight:2}") int maxInFlight,
+                                   @Value("${ai.shadow.sample.rate:1.0}") double sampleRate,
+                                   @Value("${ai.shadow.max.load:0.5}") double maxLoad) {
+        this.modelBackendRegistry = modelBackendRegistry;
+        this.admissionService = admissionService;
+        this.predictionRepository = predictionRepository;
+        this.ecgRecordRepository = ecgRecordRepository;
+        this.persistenceExecutor = persistenceExecutor;
+        this.slots = new Semaphore(maxInFlight);
+        this.sampleRate = sampleRate;
+        this.maxLoad = maxLoad;
+
+        this.shedLoad = shedCounter(meterRegistry, "load");
+        this.shedBusy = shedCounter(meterRegistry, "busy");
+        this.failures = Counter.builder("inference.shadow.failures")
+                .description("Shadow predictions that failed or timed out")
+                .register(meterRegistry);
+        this.agreed = agreementCounter(meterRegistry, true);
+        this.disagreed = agreementCounter(meterRegistry, false);
+    }
+
+    /**
+     * Starts the shadow model on an image whose ensemble prediction is {@code production}, if there is
+     * spare capacity. The returned future completes, never exceptionally, once the shadow model is done
+     * with the image; the comparison is saved afterwards.
+     */
+    public CompletableFuture<Void> evaluate(UUID recordId, PreparedImage image, CompletableFuture<String> production) {
+        Optional<ModelBackend> shadow = modelBackendRegistry.getShadowBackend();
+        if (shadow.isEmpty() || recordId == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (admissionService.getInFlight() > maxLoad * admissionService.getCapacity()) {
+            shedLoad.increment();
+            return CompletableFuture.completedFuture(null);
+        }
+        if (!slots.tryAcquire()) {
+            shedBusy.increment();
+            return CompletableFuture.completedFuture(null);
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<ProductionRun> productionRun = production.thenApply(json -> new ProductionRun(json, elapsedMs(start)));
+        CompletableFuture<ModelOutput> shadowOutput;
+        try {
+            shadowOutput = shadow.get().predict(image);
+        } catch (RuntimeException e) {
+            shadowOutput = CompletableFuture.failedFuture(e);
+        }
+
+        return shadowOutput.handle((output, error) -> {
+            slots.release();
+            long shadowMs = elapsedMs(start);
+            if (error != null || output.isFailed()) {
+                failures.increment();
+                logger.debug("Shadow model {} failed: {}", shadow.get().getName(),
+                        error != null ? error.getMessage() : output.error());
+                return null;
+            }
+            productionRun.thenAcceptAsync(run -> save(recordId, run, shadow.get(), output, shadowMs), persistenceExecutor)
+                    .exceptionally(e -> {
+                        logger.warn("Could not save shadow comparison for record {}", recordId, e);
+                        return null;
+                    });
+            return null;
+        });
+    }
+
+    private void save(UUID recordId, ProductionRun production, ModelBackend shadow, ModelOutput output, long shadowMs) {
+        JsonNode prediction;
+        try {
+            prediction = objectMapper.readTree(production.predictionJson());
+        } catch (Exception e) {
+            throw new IllegalStateException("Unreadable ensemble prediction", e);
+        }
+        if (prediction.has("error")) {
+            return;
+        }
+
+        float[] probabilities = output.probabilities();
+        int primary = 0;
+        for (int label = 1; label < probabilities.length; label++) {
+            if (probabilities[label] > probabilities[primary]) {
+                primary = label;
+            }
+        }
+        String shadowClass = EnsembleStrategy.LABELS[primary];
+        String productionClass = prediction.get("classification").asText();
+        (shadowClass.equals(productionClass) ? agreed : disagreed).increment();
+
+        EcgRecord record = ecgRecordRepository.getReferenceById(recordId);
+        Prediction ensembleRow = new Prediction(record, productionClass, prediction.get("confidence").asDouble(), "ensemble", null);
+        ensembleRow.setLatencyMs(production.latencyMs());
+        ensembleRow.setModelVersion(AiPredictionService.modelVersions(prediction));
+        Prediction shadowRow = new Prediction(record, shadowClass,
+                Math.round(probabilities[primary] * 10000.0) / 100.0, shadow.getName(), null);
+        shadowRow.setLatencyMs(shadowMs);
+        shadowRow.setShadow(true);
+        shadowRow.setModelVersion(output.version());
+        predictionRepository.saveAll(List.of(ensembleRow, shadowRow));
+    }
+
+    private static long elapsedMs(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static Counter shedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("inference.shadow.shed")
+                .description("Shadow predictions skipped to keep capacity for production")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private static Counter agreementCounter(MeterRegistry meterRegistry, boolean agree) {
+        return Counter.builder("inference.shadow.agreement")
+                .description("Shadow predictions by whether they match the ensemble's classification")
+                .tag("agree", String.valueOf(agree))
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,161 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.backend.service.inference.Priority;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds the number of uploaded ECGs between admission and a finished prediction. Uploads
+ * that would exceed {@code ai.admission.max.in.flight} are turned away (HTTP 429) with a
+ * retry delay estimated from how fast in-flight ECGs are currently finishing.
+ * <p>
+ * Limits depend on the upload's {@link Priority}: bulk uploads may only fill
+ * {@code ai.admission.bulk.share} of the capacity, and STAT uploads may go
+ * {@code ai.admission.stat.reserve} ECGs beyond it, so an urgent ECG is admitted
+ * even while a backfill keeps the node busy.
+ */
+@Service
+public class UploadAdmissionService {
+
+    // Weight of the newest one-second sample in the drain rate average
+    private static final double DRAIN_RATE_SMOOTHING = 0.3;
+
+    private final int capacity;
+    private final int bulkLimit;
+    private final int statLimit;
+    private final long maxRetryAfterSeconds;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong finishedSinceSample = new AtomicLong();
+    private final Counter rejected;
+
+    private long lastSampleNanos = System.nanoTime();
+    private volatile double drainRatePerSecond = 0;
+
+    public UploadAdmissionService(MeterRegistry meterRegistry,
+                                  @Value("${ai.admission.max.in.flight:64}") int capacity,
+                                  @Value("${ai.admission.retry.after.max.seconds:60}") long maxRetryAfterSeconds,
+                                  @Value("${ai.admission.bulk.share:0.75}") double bulkShare,
+                                  @Value("${ai.admission.stat.reserve:16}") int statReserve) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("ai.admission.max.in.flight must be at least 1");
+        }
+        if (bulkShare <= 0 || bulkShare > 1) {
+            throw new IllegalArgumentException("ai.admission.bulk.share must be in (0, 1]");
+        }
+        this.capacity = capacity;
+        this.bulkLimit = Math.max(1, (int) (capacity * bulkShare));
+        this.statLimit = capacity + Math.max(0, statReserve);
+        this.maxRetryAfterSeconds = maxRetryAfterSeconds;
+
+        // Queue depth for autoscaling: admitted ECGs that have not finished yet
+        Gauge.builder("upload.admission.in.flight", inFlight, AtomicInteger::get)
+                .description("Uploaded ECGs admitted and not yet finished")
+                .register(meterRegistry);
+        Gauge.builder("upload.admission.capacity", this, UploadAdmissionService::getCapacity)
+                .description("Uploaded ECGs allowed in flight at once")
+                .register(meterRegistry);
+        Gauge.builder("upload.admission.drain.rate", this, UploadAdmissionService::getDrainRatePerSecond)
+                .description("ECGs finishing per second (moving average)")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("upload.admission.rejected")
+                .description("Uploads turned away because the node was saturated")
+                .register(meterRegistry);
+    }
+
+    public boolean tryAcquire(int files) {
+        return tryAcquire(files, Priority.ROUTINE);
+    }
+
+    /**
+     * Admits all files of one upload or none of them, against the limit of its priority. Each
+     * admitted file must be {@link #release() released} once it has finished, successfully or not.
+     */
+    public boolean tryAcquire(int files, Priority priority) {
+        int limit = limit(priority);
+        while (true) {
+            int current = inFlight.get();
+            if (current + files > limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + files)) {
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+        finishedSinceSample.incrementAndGet();
+    }
+
+    public boolean isSaturated() {
+        return isSaturated(Priority.ROUTINE);
+    }
+
+    public boolean isSaturated(Priority priority) {
+        return inFlight.get() >= limit(priority);
+    }
+
+    public long retryAfterSeconds(int files) {
+        return retryAfterSeconds(files, Priority.ROUTINE);
+    }
+
+    /**
+     * Seconds until enough in-flight ECGs should have finished to admit {@code files} more of
+     * the given priority, at the current drain rate. Falls back to the configured maximum while
+     * nothing is finishing.
+     */
+    public long retryAfterSeconds(int files, Priority priority) {
+        int excess = Math.max(1, inFlight.get() + files - limit(priority));
+        double rate = drainRatePerSecond;
+        if (rate <= 0) {
+            return maxRetryAfterSeconds;
+        }
+        return Math.max(1, Math.min(maxRetryAfterSeconds, (long) Math.ceil(excess / rate)));
+    }
+
+    // Samples the drain rate once a second; idle periods are skipped so they do not drag the average to zero
+    @Scheduled(fixedRate = 1000)
+    public synchronized void sampleDrainRate() {
+        long now = System.nanoTime();
+        double elapsedSeconds = (now - lastSampleNanos) / 1e9;
+        lastSampleNanos = now;
+        long finished = finishedSinceSample.getAndSet(0);
+        if (finished == 0 && inFlight.get() == 0) {
+            return;
+        }
+        double sample = finished / elapsedSeconds;
+        drainRatePerSecond = drainRatePerSecond <= 0
+                ? sample
+                : DRAIN_RATE_SMOOTHING * sample + (1 - DRAIN_RATE_SMOOTHING) * drainRatePerSecond;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Most ECGs that may be in flight once an upload of this priority is admitted
+    public int limit(Priority priority) {
+        return switch (priority) {
+            case STAT -> statLimit;
+            case ROUTINE -> capacity;
+            case BULK -> bulkLimit;
+        };
+    }
+
+    public double getDrainRatePerSecond() {
+        return drainRatePerSecond;
+    }
+}
@@ -0,0 +1,187 @@
+package org.example.backend.service;
+
+import org.example.backend.service.inference.Priority;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Progress of one upload request (one or more ECG files) through the
+ * storage -> inference -> persistence pipeline. Held in memory by {@link EcgUploadPipelineService}.
+ */
+public class UploadJob {
+
+    public enum Stage { STORAGE, INFERENCE, PERSISTENCE, DONE, FAILED }
+
+    private final UUID id = UUID.randomUUID();
+    private final UUID patientId;
+    private final String notes;
+    private final int totalFiles;
+    private final Priority priority;
+    private final LocalDateTime createdAt = LocalDateTime.now();
+    private final List<FileTask> files = new CopyOnWriteArrayList<>();
+    private final Runnable onFileFinished;
+    // Set when the last file reaches DONE or FAILED; retention is measured from here
+    private volatile LocalDateTime finishedAt;
+
+    public UploadJob(UUID patientId, String notes, int totalFiles) {
+        this(patientId, notes, totalFiles, Priority.ROUTINE, () -> {});
+    }
+
+    /**
+     * @param priority       scheduler lane the job's files are classified in
+     * @param onFileFinished runs once per file when it reaches DONE or FAILED
+     */
+    public UploadJob(UUID patientId, String notes, int totalFiles, Priority priority, Runnable onFileFinished) {
+        this.patientId = patientId;
+        this.notes = notes;
+        this.totalFiles = totalFiles;
+        this.priority = priority;
+        this.onFileFinished = onFileFinished;
+    }
+
+    public FileTask addFile(String fileName) {
+        FileTask task = new FileTask(fileName, () -> {
+            if (isFinished()) {
+                markFinished();
+            }
+            onFileFinished.run();
+        });
+        files.add(task);
+        return task;
+    }
+
+    public UUID getId() { return id; }
+    public UUID getPatientId() { return patientId; }
+    public String getNotes() { return notes; }
+    public int getTotalFiles() { return totalFiles; }
+    public Priority getPriority() { return priority; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public List<FileTask> getFiles() { return files; }
+    // Null while files are still running
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+
+    public long getCompletedFiles() {
+        return files.stream().filter(task -> task.getStage() == Stage.DONE).count();
+    }
+
+    public long getFailedFiles() {
+        return files.stream().filter(task -> task.getStage() == Stage.FAILED).count();
+    }
+
+    public boolean isFinished() {
+        return getCompletedFiles() + getFailedFiles() == totalFiles;
+    }
+
+    // Two files finishing together may both see the job finished; the first sets the time
+    private synchronized void markFinished() {
+        if (finishedAt == null) {
+            finishedAt = LocalDateTime.now();
+        }
+    }
+
+    // Once a finished job's results are past their retention, only their summaries are kept (see FileTask.compactResult)
+    public void compactResults() {
+        files.forEach(FileTask::compactResult);
+    }
+
+    // PENDING / RUNNING / COMPLETED / COMPLETED_WITH_ERRORS / FAILED
+    public String getStatus() {
+        long completed = getCompletedFiles();
+        long failed = getFailedFiles();
+        if (completed + failed < totalFiles) {
+            return files.stream().anyMatch(task -> task.getStage() != Stage.STORAGE) ? "RUNNING" : "PENDING";
+        }
+        if (failed == 0) return "COMPLETED";
+        return completed > 0 ? "COMPLETED_WITH_ERRORS" : "FAILED";
+    }
+
+    /**
+     * One file of the upload. Stage transitions happen on pipeline threads, so fields are volatile.
+     */
+    public static class FileTask {
+        // What a file's result keeps after compaction; the probabilities and per-model answers are on the record
+        private static final List<String> SUMMARY_KEYS =
+                List.of("id", "fileName", "status", "classification", "confidence", "description", "modelVersions");
+
+        private final String fileName;
+        private volatile UUID recordId;
+        private volatile Stage stage = Stage.STORAGE;
+        private volatile Map<String, Object> result;
+        private volatile String error;
+        private final Runnable onFinished;
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private final CompletableFuture<FileTask> outcome = new CompletableFuture<>();
+
+        FileTask(String fileName, Runnable onFinished) {
+            this.fileName = fileName;
+            this.onFinished = onFinished;
+        }
+
+        // The first of complete/fail wins; a later call (e.g. a timeout racing the result) leaves the task as it is
+        public void complete(Map<String, Object> result) {
+            if (finished.compareAndSet(false, true)) {
+                synchronized (this) {
+                    this.result = result;
+                    this.stage = Stage.DONE;
+                }
+                finish();
+            }
+        }
+
+        public void fail(String error) {
+            if (finished.compareAndSet(false, true)) {
+                synchronized (this) {
+                    this.error = error;
+                    this.stage = Stage.FAILED;
+                }
+                finish();
+            }
+        }
+
+        private void finish() {
+            onFinished.run();
+            outcome.complete(this);
+        }
+
+        // Completes with this task once it is DONE or FAILED, on the thread that finished it
+        public CompletableFuture<FileTask> whenFinished() {
+            return outcome;
+        }
+
+        public String getFileName() { return fileName; }
+
+        public UUID getRecordId() { return recordId; }
+        public void setRecordId(UUID recordId) { this.recordId = recordId; }
+
+        public Stage getStage() { return stage; }
+        // Ignored once the task is finished, so a late stage change cannot hide its outcome
+        public synchronized void setStage(Stage stage) {
+            if (!finished.get()) {
+                this.stage = stage;
+            }
+        }
+
+        public Map<String, Object> getResult() { return result; }
+
+        // Replaces the full result by its SUMMARY_KEYS entries
+        synchronized void compactResult() {
+            if (result != null && !SUMMARY_KEYS.containsAll(result.keySet())) {
+                Map<String, Object> summary = new LinkedHashMap<>();
+                for (String key : SUMMARY_KEYS) {
+                    if (result.containsKey(key)) {
+                        summary.put(key, result.get(key));
+                    }
+                }
+                result = summary;
+            }
+        }
+        public String getError() { return error; }
+    }
+}
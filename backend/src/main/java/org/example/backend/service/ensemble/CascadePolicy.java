@@ -0,0 +1,42 @@
+package org.example.backend.service.ensemble;
+
+import java.util.Set;
+
+/**
+ * Cascade inference ({@code ai.cascade.*}): the primary model answers alone when it is
+ * confident, and the other models are only run when its top probability is below
+ * {@code confidenceThreshold} (a fraction: 0.9 means 90%) or its top class is one the
+ * models often disagree on. Saves the secondary models' CPU on clear-cut ECGs.
+ */
+public record CascadePolicy(boolean enabled, String primaryModelId, double confidenceThreshold,
+                            Set<String> escalationClasses) {
+
+    public static final String LOW_CONFIDENCE = "low_confidence";
+    public static final String ESCALATION_CLASS = "escalation_class";
+    public static final String PRIMARY_UNAVAILABLE = "primary_unavailable";
+
+    public static final CascadePolicy DISABLED = new CascadePolicy(false, null, 1.0, Set.of());
+
+    public CascadePolicy {
+        escalationClasses = Set.copyOf(escalationClasses);
+    }
+
+    /**
+     * Why the primary model's answer is not enough, or null when it may stand alone.
+     */
+    public String escalationReason(float[] probabilities) {
+        int primary = 0;
+        for (int label = 1; label < probabilities.length; label++) {
+            if (probabilities[label] > probabilities[primary]) {
+                primary = label;
+            }
+        }
+        if (escalationClasses.contains(EnsembleStrategy.LABELS[primary])) {
+            return ESCALATION_CLASS;
+        }
+        if (probabilities[primary] < confidenceThreshold) {
+            return LOW_CONFIDENCE;
+        }
+        return null;
+    }
+}
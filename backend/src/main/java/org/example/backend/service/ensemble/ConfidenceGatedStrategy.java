@@ -0,0 +1,49 @@
+package org.example.backend.service.ensemble;
+
+/**
+ * Weighted average over only the models whose top probability reaches the threshold
+ * ({@code ai.ensemble.threshold}, a fraction: 0.5 means 50%). Unsure models are left
+ * out; if no model is confident enough, all of them are averaged.
+ */
+public class ConfidenceGatedStrategy implements EnsembleStrategy {
+
+    private final double thresholdPercent;
+
+    public ConfidenceGatedStrategy(double threshold) {
+        this.thresholdPercent = threshold * 100.0;
+    }
+
+    @Override
+    public String name() {
+        return "confidence_gated";
+    }
+
+    @Override
+    public int combine(double[][] probabilities, double[] weights, int models, double[] out) {
+        double totalWeight = 0.0;
+        for (int m = 0; m < models; m++) {
+            if (isConfident(probabilities[m])) {
+                totalWeight += weights[m];
+            }
+        }
+        if (totalWeight == 0.0) {
+            EnsembleStrategy.weightedAverage(probabilities, weights, models, out);
+            return EnsembleStrategy.argmax(out);
+        }
+
+        for (int label = 0; label < out.length; label++) {
+            double sum = 0.0;
+            for (int m = 0; m < models; m++) {
+                if (isConfident(probabilities[m])) {
+                    sum += weights[m] * probabilities[m][label];
+                }
+            }
+            out[label] = sum / totalWeight;
+        }
+        return EnsembleStrategy.argmax(out);
+    }
+
+    private boolean isConfident(double[] modelProbabilities) {
+        return modelProbabilities[EnsembleStrategy.argmax(modelProbabilities)] >= thresholdPercent;
+    }
+}
@@ -0,0 +1,28 @@
+package org.example.backend.service.ensemble;
+
+import java.util.Locale;
+
+/**
+ * Resolves {@code ai.ensemble.strategy} names to {@link EnsembleStrategy} implementations.
+ */
+public final class EnsembleStrategies {
+
+    private EnsembleStrategies() {}
+
+    public static EnsembleStrategy forName(String strategy, double threshold) {
+        switch (strategy.trim().toLowerCase(Locale.ROOT)) {
+            case "average":
+            case "weighted_average":
+                return new WeightedAverageStrategy();
+            case "max":
+                return new MaxProbabilityStrategy();
+            case "majority_vote":
+            case "vote":
+                return new MajorityVoteStrategy();
+            case "confidence_gated":
+                return new ConfidenceGatedStrategy(threshold);
+            default:
+                throw new IllegalArgumentException("Unknown ai.ensemble.strategy: " + strategy);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.example.backend.service.ensemble;
+
+/**
+ * Combines the class probabilities of several models into one prediction.
+ * <p>
+ * Probabilities are percentages indexed like {@link #LABELS}. Implementations must not
+ * allocate: they read {@code probabilities[0..models)} and write the combined
+ * distribution into the caller-owned {@code out} array.
+ */
+public interface EnsembleStrategy {
+
+    String[] LABELS = {"NORM", "MI", "STTC", "CD", "HYP"};
+
+    // Value of ai.ensemble.strategy that selects this strategy
+    String name();
+
+    /**
+     * @param probabilities one row of {@link #LABELS}-ordered percentages per model
+     * @param weights       ensemble weight per model, all positive
+     * @param models        number of rows to read
+     * @param out           receives the combined percentages, length {@code LABELS.length}
+     * @return index into {@link #LABELS} of the primary diagnosis
+     */
+    int combine(double[][] probabilities, double[] weights, int models, double[] out);
+
+    static int argmax(double[] values) {
+        int best = 0;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] > values[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    static void weightedAverage(double[][] probabilities, double[] weights, int models, double[] out) {
+        double totalWeight = 0.0;
+        for (int m = 0; m < models; m++) {
+            totalWeight += weights[m];
+        }
+        for (int label = 0; label < out.length; label++) {
+            double sum = 0.0;
+            for (int m = 0; m < models; m++) {
+                sum += weights[m] * probabilities[m][label];
+            }
+            out[label] = sum / totalWeight;
+        }
+    }
+}
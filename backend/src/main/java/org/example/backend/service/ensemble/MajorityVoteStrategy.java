@@ -0,0 +1,35 @@
+package org.example.backend.service.ensemble;
+
+/**
+ * Each model casts its weight as a vote for its own top class; the class with the
+ * most votes is the diagnosis. Ties go to the class with the higher averaged
+ * probability, which is also what {@code out} reports.
+ */
+public class MajorityVoteStrategy implements EnsembleStrategy {
+
+    @Override
+    public String name() {
+        return "majority_vote";
+    }
+
+    @Override
+    public int combine(double[][] probabilities, double[] weights, int models, double[] out) {
+        EnsembleStrategy.weightedAverage(probabilities, weights, models, out);
+
+        int winner = -1;
+        double winnerVotes = 0.0;
+        for (int label = 0; label < out.length; label++) {
+            double votes = 0.0;
+            for (int m = 0; m < models; m++) {
+                if (EnsembleStrategy.argmax(probabilities[m]) == label) {
+                    votes += weights[m];
+                }
+            }
+            if (votes > winnerVotes || (votes == winnerVotes && votes > 0 && out[label] > out[winner])) {
+                winner = label;
+                winnerVotes = votes;
+            }
+        }
+        return winner < 0 ? EnsembleStrategy.argmax(out) : winner;
+    }
+}
@@ -0,0 +1,25 @@
+package org.example.backend.service.ensemble;
+
+/**
+ * Takes each class's highest probability across models, so a finding reported
+ * strongly by any single model is not averaged away. Weights are ignored.
+ */
+public class MaxProbabilityStrategy implements EnsembleStrategy {
+
+    @Override
+    public String name() {
+        return "max";
+    }
+
+    @Override
+    public int combine(double[][] probabilities, double[] weights, int models, double[] out) {
+        for (int label = 0; label < out.length; label++) {
+            double max = 0.0;
+            for (int m = 0; m < models; m++) {
+                max = Math.max(max, probabilities[m][label]);
+            }
+            out[label] = max;
+        }
+        return EnsembleStrategy.argmax(out);
+    }
+}
@@ -0,0 +1,19 @@
+package org.example.backend.service.ensemble;
+
+/**
+ * Used when {@code ai.ensemble.enabled=false}: the first configured model decides alone
+ * and the others are reported for reference only.
+ */
+public class PrimaryModelStrategy implements EnsembleStrategy {
+
+    @Override
+    public String name() {
+        return "primary_model";
+    }
+
+    @Override
+    public int combine(double[][] probabilities, double[] weights, int models, double[] out) {
+        System.arraycopy(probabilities[0], 0, out, 0, out.length);
+        return EnsembleStrategy.argmax(out);
+    }
+}
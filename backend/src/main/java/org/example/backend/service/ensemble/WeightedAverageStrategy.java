@@ -0,0 +1,18 @@
+package org.example.backend.service.ensemble;
+
+/**
+ * Weighted mean of every model's probabilities; the most likely class wins.
+ */
+public class WeightedAverageStrategy implements EnsembleStrategy {
+
+    @Override
+    public String name() {
+        return "average";
+    }
+
+    @Override
+    public int combine(double[][] probabilities, double[] weights, int models, double[] out) {
+        EnsembleStrategy.weightedAverage(probabilities, weights, models, out);
+        return EnsembleStrategy.argmax(out);
+    }
+}
@@ -0,0 +1,177 @@
+package org.example.backend.service.inference;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.stream.IntStream;
+
+/**
+ * Splits the host's CPUs between model worker processes. Left alone, every TensorFlow worker sizes its
+ * thread pools to all cores, so a few concurrent workers oversubscribe the CPU. The CPUs are cut into
+ * one group per planned worker ({@code threads} CPUs each, wrapping around when there are more workers
+ * than CPUs); a starting worker takes the least used group for its lifetime, its OpenMP/BLAS and
+ * TensorFlow intra-op pools are sized to the group and, with pinning, {@code taskset} binds it to the
+ * group's CPUs. Workers started beyond the plan (recycling, version swaps) share the least used group.
+ */
+public class CpuPartition {
+
+    // One group of CPUs, shared by the workers that acquired it
+    public record Slot(int index, List<Integer> cpus) {
+        public int threads() {
+            return cpus.size();
+        }
+    }
+
+    // Leaves thread pools and affinity to TensorFlow
+    public static final CpuPartition NONE = new CpuPartition(List.of(new Slot(0, List.of())), 0, null);
+
+    private final List<Slot> slots;
+    private final int[] workers;
+    private final int interOpThreads;
+    private final String taskset;
+
+    private CpuPartition(List<Slot> slots, int interOpThreads, String taskset) {
+        this.slots = List.copyOf(slots);
+        this.workers = new int[slots.size()];
+        this.interOpThreads = interOpThreads;
+        this.taskset = taskset;
+    }
+
+    /**
+     * @param cpus             CPU ids to share, see {@link #availableCpus()}
+     * @param plannedWorkers   workers expected to run at once across all models
+     * @param threadsPerWorker CPUs per worker; 0 divides the CPUs evenly between the planned workers
+     * @param interOpThreads   TensorFlow inter-op threads per worker
+     * @param taskset          {@code taskset} executable to pin workers with, or null to leave affinity alone
+     */
+    public static CpuPartition of(List<Integer> cpus, int plannedWorkers, int threadsPerWorker, int interOpThreads,
+                                  String taskset) {
+        if (cpus.isEmpty() || plannedWorkers < 1) {
+            throw new IllegalArgumentException("A CPU partition needs at least one CPU and one worker");
+        }
+        int threads = threadsPerWorker > 0 ? Math.min(threadsPerWorker, cpus.size()) : Math.max(1, cpus.size() / plannedWorkers);
+        List<Slot> slots = new ArrayList<>(plannedWorkers);
+        for (int slot = 0; slot < plannedWorkers; slot++) {
+            List<Integer> group = new ArrayList<>(threads);
+            for (int k = 0; k < threads; k++) {
+                group.add(cpus.get((slot * threads + k) % cpus.size()));
+            }
+            slots.add(new Slot(slot, List.copyOf(group)));
+        }
+        return new CpuPartition(slots, Math.max(1, interOpThreads), taskset);
+    }
+
+    public boolean isManaged() {
+        return this != NONE;
+    }
+
+    public synchronized Slot acquire() {
+        Slot leastUsed = slots.stream().min(Comparator.comparingInt(slot -> workers[slot.index()])).orElseThrow();
+        workers[leastUsed.index()]++;
+        return leastUsed;
+    }
+
+    public synchronized void release(Slot slot) {
+        if (workers[slot.index()] > 0) {
+            workers[slot.index()]--;
+        }
+    }
+
+    // The worker command, prefixed with "taskset -c <cpus>" when pinning
+    public List<String> command(Slot slot, List<String> command) {
+        if (taskset == null || slot.cpus().isEmpty()) {
+            return command;
+        }
+        List<String> pinned = new ArrayList<>(command.size() + 3);
+        pinned.add(taskset);
+        pinned.add("-c");
+        pinned.add(cpuList(slot.cpus()));
+        pinned.addAll(command);
+        return pinned;
+    }
+
+    // Thread pool sizes for the worker's native libraries; empty when unmanaged
+    public Map<String, String> environment(Slot slot) {
+        Map<String, String> environment = new LinkedHashMap<>();
+        if (slot.cpus().isEmpty()) {
+            return environment;
+        }
+        String threads = String.valueOf(slot.threads());
+        environment.put("OMP_NUM_THREADS", threads);
+        environment.put("MKL_NUM_THREADS", threads);
+        environment.put("OPENBLAS_NUM_THREADS", threads);
+        environment.put("TF_NUM_INTRAOP_THREADS", threads);
+        environment.put("TF_NUM_INTEROP_THREADS", String.valueOf(interOpThreads));
+        return environment;
+    }
+
+    public List<Slot> getSlots() {
+        return slots;
+    }
+
+    @Override
+    public String toString() {
+        if (!isManaged()) {
+            return "unmanaged";
+        }
+        return slots.size() + " workers x " + slots.get(0).threads() + " threads" + (taskset != null ? ", pinned" : "");
+    }
+
+    /**
+     * The CPUs this process may use: the affinity list from {@code /proc/self/status}, cut to the CPU count
+     * the JVM sees (which honours container quotas), or CPUs 0..n-1 where there is no such file.
+     */
+    public static List<Integer> availableCpus() {
+        int count = Runtime.getRuntime().availableProcessors();
+        List<Integer> allowed = allowedCpus(Path.of("/proc/self/status"));
+        if (allowed.isEmpty()) {
+            return IntStream.range(0, count).boxed().toList();
+        }
+        return allowed.subList(0, Math.min(count, allowed.size()));
+    }
+
+    // Reads the "Cpus_allowed_list:  0-3,8" line of a /proc/<pid>/status file
+    static List<Integer> allowedCpus(Path status) {
+        try {
+            for (String line : Files.readAllLines(status, StandardCharsets.UTF_8)) {
+                if (line.startsWith("Cpus_allowed_list:")) {
+                    return parseCpuList(line.substring("Cpus_allowed_list:".length()));
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // not Linux, or an unexpected format
+        }
+        return List.of();
+    }
+
+    // "0-3,8,10-11" -> [0, 1, 2, 3, 8, 10, 11]
+    public static List<Integer> parseCpuList(String list) {
+        List<Integer> cpus = new ArrayList<>();
+        for (String range : list.trim().split(",")) {
+            if (range.isBlank()) {
+                continue;
+            }
+            String[] bounds = range.trim().split("-");
+            int from = Integer.parseInt(bounds[0].trim());
+            int to = bounds.length > 1 ? Integer.parseInt(bounds[1].trim()) : from;
+            if (to < from) {
+                throw new IllegalArgumentException("Invalid CPU range " + range);
+            }
+            IntStream.rangeClosed(from, to).forEach(cpus::add);
+        }
+        return cpus;
+    }
+
+    private static String cpuList(List<Integer> cpus) {
+        StringJoiner joined = new StringJoiner(",");
+        cpus.forEach(cpu -> joined.add(String.valueOf(cpu)));
+        return joined.toString();
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.backend.service.inference;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Decodes an uploaded ECG image and writes the model input tensor into the arena:
+ * RGB, resized to 224x224 with nearest-neighbour sampling and scaled to [0, 1] -- the
+ * same input the models were trained on through Keras' {@code load_img} / 255.
+ */
+public class EcgImagePreprocessor {
+
+    private static final int SIZE = TensorArena.IMAGE_SIZE;
+
+    private final TensorArena arena;
+    private final Duration slotTimeout;
+
+    public EcgImagePreprocessor(TensorArena arena, Duration slotTimeout) {
+        this.arena = arena;
+        this.slotTimeout = slotTimeout;
+    }
+
+    public PreparedImage prepare(File imageFile) throws IOException, InterruptedException {
+        return prepare(imageFile, Priority.ROUTINE);
+    }
+
+    public PreparedImage prepare(File imageFile, Priority priority) throws IOException, InterruptedException {
+        BufferedImage image = ImageIO.read(imageFile);
+        if (image == null) {
+            throw new IOException("Unsupported image format: " + imageFile.getName());
+        }
+
+        int slot = arena.acquire(slotTimeout);
+        try {
+            writeTensor(image, slot);
+        } catch (RuntimeException e) {
+            arena.release(slot);
+            throw e;
+        }
+        return new PreparedImage(imageFile, slot, arena, priority);
+    }
+
+    private void writeTensor(BufferedImage image, int slot) {
+        // Source column/row for each target pixel, matching PIL's NEAREST resize
+        int[] sourceX = sampleIndices(image.getWidth());
+        int[] sourceY = sampleIndices(image.getHeight());
+
+        int index = 0;
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                int rgb = image.getRGB(sourceX[x], sourceY[y]);
+                arena.put(slot, index++, ((rgb >> 16) & 0xFF) / 255f);
+                arena.put(slot, index++, ((rgb >> 8) & 0xFF) / 255f);
+                arena.put(slot, index++, (rgb & 0xFF) / 255f);
+            }
+        }
+    }
+
+    private static int[] sampleIndices(int sourceSize) {
+        int[] indices = new int[SIZE];
+        double scale = (double) sourceSize / SIZE;
+        for (int i = 0; i < SIZE; i++) {
+            indices[i] = Math.min(sourceSize - 1, (int) ((i + 0.5) * scale));
+        }
+        return indices;
+    }
+}
@@ -0,0 +1,6 @@
+package org.example.backend.service.inference;
+
+/**
+ * What a Grad-CAM heatmap explains: the model's top class for the image and its confidence in percent.
+ */
+public record Heatmap(String classification, double confidence) {}
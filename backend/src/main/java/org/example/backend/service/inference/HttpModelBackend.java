@@ -0,0 +1,192 @@
+package org.example.backend.service.inference;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A model served by the HTTP model server ({@code ai_models/api/app.py}), possibly on another host.
+ * Requests are micro-batched like {@link PythonModelBackend}'s and each batch is one
+ * {@code POST <url>/models/<remoteModel>/predict/batch} carrying the images' arena tensors, so both
+ * transports see the same preprocessed input. The answer is streamed as one NDJSON line per image,
+ * {@code {"index", "probabilities"}} or {@code {"index", "error"}}: a chunk the server fails on, or a
+ * stream cut short, only fails its own images. At most {@code maxConcurrency} batches of this model are
+ * in flight; they share the {@link HttpClient}'s keep-alive connections. Grad-CAM heatmaps are one
+ * {@code POST <url>/models/<remoteModel>/gradcam} with the image file, answered with the PNG.
+ */
+public class HttpModelBackend implements ModelBackend {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final String id;
+    private final String name;
+    private final double weight;
+    private final String version;
+    private final HttpClient httpClient;
+    private final URI batchEndpoint;
+    private final URI heatmapEndpoint;
+    private final Duration requestTimeout;
+    private final MicroBatchScheduler<PreparedImage, ModelOutput> scheduler;
+
+    public HttpModelBackend(String id, String name, double weight, String version, HttpClient httpClient,
+                            URI serverUrl, String remoteModel, Duration requestTimeout, int maxConcurrency,
+                            int maxBatchSize, Duration maxBatchWait, LanePolicy lanePolicy,
+                            Executor inferenceExecutor, MeterRegistry meterRegistry) {
+        this.id = id;
+        this.name = name;
+        this.weight = weight;
+        this.version = version;
+        this.httpClient = httpClient;
+        this.batchEndpoint = serverUrl.resolve("/models/" + remoteModel + "/predict/batch");
+        this.heatmapEndpoint = serverUrl.resolve("/models/" + remoteModel + "/gradcam");
+        this.requestTimeout = requestTimeout;
+        this.scheduler = new MicroBatchScheduler<>(name, this::predictBatch, maxBatchSize, maxBatchWait,
+                maxConcurrency, PreparedImage::priority, lanePolicy, inferenceExecutor, meterRegistry);
+    }
+
+    @Override
+    public String getId() { return id; }
+
+    @Override
+    public String getName() { return name; }
+
+    @Override
+    public double getWeight() { return weight; }
+
+    @Override
+    public String getVersion() { return version; }
+
+    @Override
+    public CompletableFuture<ModelOutput> predict(PreparedImage image) {
+        return scheduler.submit(image);
+    }
+
+    @Override
+    public Heatmap writeHeatmap(File image, File output, Duration timeout) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(heatmapEndpoint)
+                .timeout(timeout)
+                .header("Content-Type", "application/octet-stream")
+                .POST(HttpRequest.BodyPublishers.ofFile(image.toPath()))
+                .build();
+
+        HttpResponse<byte[]> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (HttpTimeoutException e) {
+            throw new IOException(name + " model server did not send the heatmap within " + timeout.toMillis() + " ms", e);
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException(name + " model server answered " + response.statusCode() + " for the heatmap: "
+                    + readBody(response).path("error").asText("no details"));
+        }
+
+        Files.write(output.toPath(), response.body());
+        return new Heatmap(response.headers().firstValue("X-Classification").orElse(null),
+                Double.parseDouble(response.headers().firstValue("X-Confidence").orElse("0")));
+    }
+
+    public URI getBatchEndpoint() { return batchEndpoint; }
+
+    @Override
+    public void close() {
+        scheduler.close();
+    }
+
+    private List<ModelOutput> predictBatch(List<PreparedImage> images) throws IOException, InterruptedException {
+        List<byte[]> tensors = new ArrayList<>(images.size());
+        for (PreparedImage image : images) {
+            tensors.add(image.arena().slotBytes(image.slot()));
+        }
+        HttpRequest request = HttpRequest.newBuilder(batchEndpoint)
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/octet-stream")
+                .header("Accept", NDJSON)
+                .POST(HttpRequest.BodyPublishers.ofByteArrays(tensors))
+                .build();
+
+        // The request timeout only covers the response headers, which a streaming server sends at once
+        CompletableFuture<HttpResponse<byte[]>> exchange = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        HttpResponse<byte[]> response;
+        try {
+            response = exchange.get(requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            exchange.cancel(true);
+            throw new IOException(name + " model server did not answer within " + requestTimeout.toMillis() + " ms", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof HttpTimeoutException) {
+                throw new IOException(name + " model server did not answer within " + requestTimeout.toMillis() + " ms", e.getCause());
+            }
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        }
+
+        if (response.statusCode() != 200) {
+            throw new IOException(name + " model server answered " + response.statusCode() + ": "
+                    + readBody(response).path("error").asText("no details"));
+        }
+        return readResults(new String(response.body(), StandardCharsets.UTF_8), images.size());
+    }
+
+    // Lines may come in any order; an image the server sent no line for fails on its own
+    private List<ModelOutput> readResults(String body, int size) throws IOException {
+        ModelOutput[] outputs = new ModelOutput[size];
+        for (String line : body.split("\n")) {
+            if (line.isBlank()) {
+                continue;
+            }
+            JsonNode result;
+            try {
+                result = objectMapper.readTree(line);
+            } catch (IOException e) {
+                throw new IOException(name + " model server sent an unreadable result line", e);
+            }
+            int index = result.path("index").asInt(-1);
+            if (index < 0 || index >= size) {
+                throw new IOException(name + " model server sent a result for image " + index + " of " + size);
+            }
+            outputs[index] = result.has("error")
+                    ? ModelOutput.failed(name + " prediction failed: " + result.get("error").asText())
+                    : ModelOutput.of(probabilities(result.path("probabilities"))).withVersion(version);
+        }
+
+        List<ModelOutput> results = new ArrayList<>(size);
+        for (ModelOutput output : outputs) {
+            results.add(output != null ? output : ModelOutput.failed(name + " model server sent no result for the image"));
+        }
+        return results;
+    }
+
+    private static float[] probabilities(JsonNode values) {
+        float[] probabilities = new float[values.size()];
+        for (int label = 0; label < probabilities.length; label++) {
+            probabilities[label] = (float) values.get(label).asDouble();
+        }
+        return probabilities;
+    }
+
+    private JsonNode readBody(HttpResponse<byte[]> response) throws IOException {
+        try {
+            return objectMapper.readTree(response.body());
+        } catch (IOException e) {
+            throw new IOException(name + " model server sent an unreadable answer (HTTP " + response.statusCode() + ")", e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.example.backend.service.inference;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * How a {@link MicroBatchScheduler} picks the next request among its priority lanes.
+ * {@link Mode#STRICT} always serves the most urgent non-empty lane; {@link Mode#WEIGHTED}
+ * shares batch places between the non-empty lanes in proportion to their weights. In both
+ * modes a request that has waited longer than its lane's {@code maxWait} is served before
+ * anything else, so lower lanes cannot starve.
+ */
+public record LanePolicy(Mode mode, Map<Priority, Integer> weights, Map<Priority, Duration> maxWait) {
+
+    public enum Mode { STRICT, WEIGHTED }
+
+    public static final LanePolicy DEFAULT = new LanePolicy(Mode.STRICT,
+            Map.of(Priority.STAT, 8, Priority.ROUTINE, 3, Priority.BULK, 1),
+            Map.of(Priority.ROUTINE, Duration.ofSeconds(2), Priority.BULK, Duration.ofSeconds(10)));
+
+    public LanePolicy {
+        weights = weights.isEmpty() ? new EnumMap<>(Priority.class) : new EnumMap<>(weights);
+        maxWait = maxWait.isEmpty() ? new EnumMap<>(Priority.class) : new EnumMap<>(maxWait);
+        for (Priority priority : Priority.values()) {
+            if (weights.getOrDefault(priority, 1) < 1) {
+                throw new IllegalArgumentException("Lane weight of " + priority + " must be at least 1");
+            }
+        }
+    }
+
+    public int weight(Priority priority) {
+        return weights.getOrDefault(priority, 1);
+    }
+
+    // Waiting time after which a request jumps the lanes; null means it never needs to
+    public Duration maxWait(Priority priority) {
+        return maxWait.get(priority);
+    }
+}
@@ -0,0 +1,355 @@
+package org.example.backend.service.inference;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Collects concurrent prediction requests for one model and sends them to the
+ * model as a single batch. A batch is flushed as soon as it holds {@code maxBatchSize}
+ * requests or its oldest request has waited {@code maxWait}, whichever comes first.
+ * While every worker is busy, requests keep accumulating so the next batch is fuller.
+ * <p>
+ * Requests wait in one lane per {@link Priority}. A batch is only formed once a worker
+ * is free, and its places go to the lanes as the {@link LanePolicy} says, so an urgent
+ * request never queues behind bulk work that arrived before it.
+ */
+public class MicroBatchScheduler<I, T> implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MicroBatchScheduler.class);
+
+    /**
+     * Runs one batch through the model and returns one result per input, in input order.
+     */
+    @FunctionalInterface
+    public interface BatchPredictor<I, T> {
+        List<T> predict(List<I> inputs) throws Exception;
+    }
+
+    private record PendingRequest<I, T>(I input, Priority priority, long enqueuedAt, CompletableFuture<T> result) {}
+
+    private final String modelName;
+    private final BatchPredictor<I, T> predictor;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final Function<I, Priority> priorityOf;
+    private final LanePolicy lanePolicy;
+    private final Executor dispatchExecutor;
+    private final Semaphore dispatchSlots;
+    private final Thread collector;
+
+    // Lanes and the weighted round-robin credit per lane, guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition arrived = lock.newCondition();
+    private final Map<Priority, ArrayDeque<PendingRequest<I, T>>> lanes = new EnumMap<>(Priority.class);
+    private final Map<Priority, Integer> credit = new EnumMap<>(Priority.class);
+    private int pending = 0;
+
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary batchSizes;
+    private final Map<Priority, Timer> queueDelays = new EnumMap<>(Priority.class);
+
+    private volatile boolean running = true;
+
+    public MicroBatchScheduler(String modelName, BatchPredictor<I, T> predictor, int maxBatchSize, Duration maxWait,
+                               int maxConcurrentBatches, Executor dispatchExecutor, MeterRegistry meterRegistry) {
+        this(modelName, predictor, maxBatchSize, maxWait, maxConcurrentBatches, input -> Priority.ROUTINE,
+                LanePolicy.DEFAULT, dispatchExecutor, meterRegistry);
+    }
+
+    public MicroBatchScheduler(String modelName, BatchPredictor<I, T> predictor, int maxBatchSize, Duration maxWait,
+                               int maxConcurrentBatches, Function<I, Priority> priorityOf, LanePolicy lanePolicy,
+                               Executor dispatchExecutor, MeterRegistry meterRegistry) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Max batch size must be at least 1");
+        }
+        this.modelName = modelName;
+        this.predictor = predictor;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.priorityOf = priorityOf;
+        this.lanePolicy = lanePolicy;
+        this.dispatchExecutor = dispatchExecutor;
+        this.dispatchSlots = new Semaphore(maxConcurrentBatches);
+        this.meterRegistry = meterRegistry;
+
+        for (Priority priority : Priority.values()) {
+            lanes.put(priority, new ArrayDeque<>());
+            credit.put(priority, 0);
+            Gauge.builder("inference.queue.depth", this, scheduler -> scheduler.getQueueDepth(priority))
+                    .description("Requests waiting for a batch")
+                    .tag("model", modelName)
+                    .tag("priority", priority.name())
+                    .register(meterRegistry);
+        }
+        this.batchSizes = DistributionSummary.builder("inference.batch.size")
+                .description("Number of images sent to the model in one batch")
+                .tag("model", modelName)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+
+        this.collector = new Thread(this::collectBatches, modelName + "-batcher");
+        this.collector.setDaemon(true);
+        this.collector.start();
+    }
+
+    /**
+     * A dispatch executor for one scheduler: a thread per batch it may run at once, so a formed batch never
+     * waits for a thread behind batches of other models or lower lanes. A batch frees its dispatch slot just
+     * before its thread is idle again, so the next batch may wait that long in a hand-off queue of
+     * {@code threads} places. A batch dispatched beyond that (during shutdown, or with fewer threads than
+     * dispatch slots) is rejected and failed instead of running on the collector thread.
+     */
+    public static ExecutorService dispatchExecutor(String modelName, int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(threads), runnable -> {
+            Thread thread = new Thread(runnable, modelName + "-dispatch-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Queues one input in its priority lane; the future completes with its result once its batch has run.
+     */
+    public CompletableFuture<T> submit(I input) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        lock.lock();
+        try {
+            if (!running) {
+                result.completeExceptionally(new RejectedExecutionException(modelName + " scheduler is shut down"));
+                return result;
+            }
+            Priority priority = priorityOf.apply(input);
+            lanes.get(priority).add(new PendingRequest<>(input, priority, System.nanoTime(), result));
+            pending++;
+            arrived.signal();
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueDepth(Priority priority) {
+        lock.lock();
+        try {
+            return lanes.get(priority).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void collectBatches() {
+        RejectedExecutionException shutDown = new RejectedExecutionException(modelName + " scheduler is shut down");
+        while (running) {
+            try {
+                if (!awaitRequest()) {
+                    continue;
+                }
+
+                // Form the batch only once a worker is free, from whatever is most urgent by then
+                dispatchSlots.acquire();
+                List<PendingRequest<I, T>> batch = nextBatch();
+                if (batch.isEmpty()) {
+                    dispatchSlots.release();
+                    continue;
+                }
+                dispatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        failPending(shutDown);
+    }
+
+    private boolean awaitRequest() throws InterruptedException {
+        lock.lock();
+        try {
+            if (pending == 0) {
+                arrived.await(100, TimeUnit.MILLISECONDS);
+            }
+            return pending > 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Waits until the batch is full or its oldest request has waited maxWait, then fills it lane by lane
+    private List<PendingRequest<I, T>> nextBatch() throws InterruptedException {
+        lock.lock();
+        try {
+            if (pending > 0) {
+                long deadline = oldestEnqueuedAt() + maxWaitNanos;
+                while (pending < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    arrived.awaitNanos(remaining);
+                }
+            }
+
+            List<PendingRequest<I, T>> batch = new ArrayList<>(Math.min(pending, maxBatchSize));
+            long now = System.nanoTime();
+            while (batch.size() < maxBatchSize && pending > 0) {
+                batch.add(lanes.get(nextLane(now)).poll());
+                pending--;
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long oldestEnqueuedAt() {
+        long oldest = Long.MAX_VALUE;
+        for (ArrayDeque<PendingRequest<I, T>> lane : lanes.values()) {
+            PendingRequest<I, T> head = lane.peek();
+            if (head != null && head.enqueuedAt() - oldest < 0) {
+                oldest = head.enqueuedAt();
+            }
+        }
+        return oldest;
+    }
+
+    private Priority nextLane(long now) {
+        // Starvation protection: the request furthest past its lane's max wait goes first
+        Priority overdue = null;
+        long mostOverdue = -1;
+        for (Map.Entry<Priority, ArrayDeque<PendingRequest<I, T>>> lane : lanes.entrySet()) {
+            PendingRequest<I, T> head = lane.getValue().peek();
+            Duration maxWait = lanePolicy.maxWait(lane.getKey());
+            if (head == null || maxWait == null) {
+                continue;
+            }
+            long overdueBy = now - head.enqueuedAt() - maxWait.toNanos();
+            if (overdueBy > mostOverdue) {
+                overdue = lane.getKey();
+                mostOverdue = overdueBy;
+            }
+        }
+        if (overdue != null) {
+            return overdue;
+        }
+
+        if (lanePolicy.mode() == LanePolicy.Mode.STRICT) {
+            for (Priority priority : Priority.values()) {
+                if (!lanes.get(priority).isEmpty()) {
+                    return priority;
+                }
+            }
+        }
+
+        // Smooth weighted round-robin over the non-empty lanes
+        Priority best = null;
+        int total = 0;
+        for (Priority priority : Priority.values()) {
+            if (lanes.get(priority).isEmpty()) {
+                continue;
+            }
+            int weight = lanePolicy.weight(priority);
+            credit.merge(priority, weight, Integer::sum);
+            total += weight;
+            if (best == null || credit.get(priority) > credit.get(best)) {
+                best = priority;
+            }
+        }
+        credit.merge(best, -total, Integer::sum);
+        return best;
+    }
+
+    private void dispatch(List<PendingRequest<I, T>> batch) {
+        long now = System.nanoTime();
+        batchSizes.record(batch.size());
+        for (PendingRequest<I, T> request : batch) {
+            queueDelay(request.priority()).record(now - request.enqueuedAt(), TimeUnit.NANOSECONDS);
+        }
+
+        // The collector never runs a batch itself: that would stop batch forming for every lane until it finished
+        try {
+            dispatchExecutor.execute(() -> runBatch(batch));
+        } catch (RejectedExecutionException e) {
+            logger.warn("{} dispatch threads are all busy, failing a batch of {}", modelName, batch.size());
+            dispatchSlots.release();
+            batch.forEach(request -> request.result().completeExceptionally(e));
+        }
+    }
+
+    // Registered on first use, so only lanes that saw traffic show up
+    private Timer queueDelay(Priority priority) {
+        return queueDelays.computeIfAbsent(priority, lane -> Timer.builder("inference.queue.delay")
+                .description("Time a request waited before its batch was dispatched")
+                .tag("model", modelName)
+                .tag("priority", lane.name())
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    private void runBatch(List<PendingRequest<I, T>> batch) {
+        try {
+            List<I> inputs = new ArrayList<>(batch.size());
+            for (PendingRequest<I, T> request : batch) {
+                inputs.add(request.input());
+            }
+
+            List<T> results = predictor.predict(inputs);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(results.get(i));
+            }
+        } catch (Exception e) {
+            logger.error("{} batch of {} failed", modelName, batch.size(), e);
+            batch.forEach(request -> request.result().completeExceptionally(e));
+        } finally {
+            dispatchSlots.release();
+        }
+    }
+
+    private void failPending(Exception cause) {
+        List<PendingRequest<I, T>> dropped = new ArrayList<>();
+        lock.lock();
+        try {
+            lanes.values().forEach(lane -> {
+                dropped.addAll(lane);
+                lane.clear();
+            });
+            pending = 0;
+        } finally {
+            lock.unlock();
+        }
+        dropped.forEach(request -> request.result().completeExceptionally(cause));
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        collector.interrupt();
+        // Requests queued after the collector's last look are failed here
+        failPending(new RejectedExecutionException(modelName + " scheduler is shut down"));
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.backend.service.inference;
+
+import java.io.Closeable;
+import java.io.File;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * One ECG classification model the ensemble can call. Implementations decide how the
+ * model is hosted and how many requests it may serve at once.
+ */
+public interface ModelBackend extends Closeable {
+
+    // Stable key used in prediction results, e.g. "model1"
+    String getId();
+
+    // Human-readable model name, e.g. "DenseNet121"
+    String getName();
+
+    // Relative weight of this model's probabilities in the ensemble
+    double getWeight();
+
+    /**
+     * Classifies one preprocessed image and completes with the model's class probabilities.
+     * The image's tensor slot stays reserved until the returned future completes.
+     */
+    CompletableFuture<ModelOutput> predict(PreparedImage image);
+
+    /**
+     * Loads the model and runs the image through every process that will serve it, so real
+     * requests never pay for startup. {@code executor} may be used to start processes in parallel.
+     */
+    default CompletableFuture<ModelOutput> warmUp(PreparedImage image, Executor executor) {
+        return predict(image);
+    }
+
+    // Version of the weights now serving, e.g. "v3"; null when the backend is not versioned
+    default String getVersion() {
+        return null;
+    }
+
+    /**
+     * Replaces the served weights without downtime: starts the new version next to the current one,
+     * warms it up with {@code warmupImage}, switches new requests over atomically and returns once
+     * requests still running on the old version have drained and its processes are stopped.
+     * {@code timeout} bounds the warm-up and the drain each; if the warm-up fails the old version keeps serving.
+     */
+    default void swapVersion(ModelVersion version, PreparedImage warmupImage, Executor executor, Duration timeout)
+            throws Exception {
+        throw new UnsupportedOperationException(getName() + " cannot switch model versions");
+    }
+
+    /**
+     * Writes a Grad-CAM heatmap of the model's top class for {@code image} to {@code output} as a PNG and
+     * returns the class it explains. Heatmaps are computed apart from the prediction path and may take as
+     * long as loading the model; {@code timeout} bounds the call.
+     */
+    default Heatmap writeHeatmap(File image, File output, Duration timeout) throws Exception {
+        throw new UnsupportedOperationException(getName() + " cannot compute heatmaps");
+    }
+
+    @Override
+    void close();
+}
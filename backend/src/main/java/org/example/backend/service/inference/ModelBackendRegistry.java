@@ -0,0 +1,314 @@
+package org.example.backend.service.inference;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+
+import java.io.Closeable;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * The enabled {@link ModelBackend}s, in configuration order. Models are declared as
+ * numbered property groups ({@code ai.model1.*}, {@code ai.model2.*}, ...); scanning stops
+ * at the first number with neither a {@code script.path} nor an {@code http.model}.
+ */
+public class ModelBackendRegistry implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelBackendRegistry.class);
+
+    private static final String SHADOW_PREFIX = "ai.shadow.";
+
+    private final List<ModelBackend> backends;
+    private final ModelBackend shadowBackend;
+    // Batch dispatch threads of each model built from the environment, stopped on close
+    private final List<ExecutorService> dispatchExecutors = new ArrayList<>();
+
+    public ModelBackendRegistry(List<ModelBackend> backends) {
+        this(backends, null);
+    }
+
+    /**
+     * @param shadowBackend model evaluated next to the ensemble without affecting its results; may be null
+     */
+    public ModelBackendRegistry(List<ModelBackend> backends, ModelBackend shadowBackend) {
+        this.backends = List.copyOf(backends);
+        this.shadowBackend = shadowBackend;
+    }
+
+    /**
+     * Builds a {@link PythonModelBackend} for every enabled {@code ai.model<N>} group, guarded by a
+     * {@link ResilientModelBackend}. Per-model {@code worker.pool.size}, {@code worker.pipeline.depth},
+     * {@code worker.recycle.*}, {@code batching.max.size}, {@code timeout.ms}, {@code max.pending} and
+     * {@code circuit.*} fall back to the global {@code ai.worker.*} / {@code ai.batching.*} / {@code ai.inference.*} settings;
+     * {@code concurrency} defaults to workers x pipeline depth. {@code version} (default "1") is stamped on
+     * every prediction and {@code model.path} overrides the weights file the script loads. With {@code ai.stub.enabled} (profile
+     * {@code stub-models}) every model is a {@link StubModelBackend} instead and no Python is started.
+     * A shadow model is declared the same way under {@code ai.shadow.*}.
+     * <p>
+     * With {@code transport=http} (default {@code ai.inference.transport}) a model is served by the HTTP
+     * model server at {@code http.url} (default {@code ai.inference.http.url}) as {@code http.model}
+     * instead, through an {@link HttpModelBackend}; all such models share one keep-alive HTTP client.
+     * <p>
+     * Python workers of every model share one {@link CpuPartition}, see {@link #cpuPartition}.
+     * <p>
+     * Every model dispatches its batches on threads of its own, one per batch it may run at once
+     * ({@code concurrency}), so a batch never waits for a thread behind another model's, or a lower lane's, batches.
+     */
+    public static ModelBackendRegistry fromEnvironment(Environment environment, TensorArena tensorArena,
+                                                       MeterRegistry meterRegistry) {
+        LanePolicy lanePolicy = lanePolicy(environment);
+        Supplier<HttpClient> httpClient = new SharedHttpClient(Duration.ofMillis(
+                environment.getProperty("ai.inference.http.connect.timeout.ms", Long.class, 2000L)));
+        CpuPartition cpuPartition = cpuPartition(environment);
+
+        List<ModelBackend> backends = new ArrayList<>();
+        List<ExecutorService> dispatchExecutors = new ArrayList<>();
+        for (int n = 1; isDeclared(environment, prefix(n)); n++) {
+            String prefix = prefix(n);
+            String id = "model" + n;
+            if (!environment.getProperty(prefix + "enabled", Boolean.class, true)) {
+                logger.info("Model {} is disabled", id);
+                continue;
+            }
+            backends.add(createBackend(environment, prefix, id, tensorArena, lanePolicy, httpClient, cpuPartition,
+                    null, dispatchExecutors, meterRegistry));
+        }
+
+        if (backends.isEmpty()) {
+            logger.warn("No AI models are enabled; ECG predictions will fail until ai.model<N>.* is configured");
+        }
+
+        ModelBackend shadowBackend = null;
+        if (isDeclared(environment, SHADOW_PREFIX) && environment.getProperty(SHADOW_PREFIX + "enabled", Boolean.class, true)) {
+            // The shadow model's batches get threads of their own too, so they never hold up the ensemble's
+            shadowBackend = createBackend(environment, SHADOW_PREFIX, "shadow", tensorArena, lanePolicy, httpClient,
+                    cpuPartition, environment.getProperty(SHADOW_PREFIX + "executor.threads", Integer.class, 2),
+                    dispatchExecutors, meterRegistry);
+            logger.info("Shadow model {} is evaluated next to the ensemble", shadowBackend.getName());
+        }
+        ModelBackendRegistry registry = new ModelBackendRegistry(backends, shadowBackend);
+        registry.dispatchExecutors.addAll(dispatchExecutors);
+        return registry;
+    }
+
+    private static ModelBackend createBackend(Environment environment, String prefix, String id, TensorArena tensorArena,
+                                              LanePolicy lanePolicy, Supplier<HttpClient> httpClient,
+                                              CpuPartition cpuPartition, Integer dispatchThreads,
+                                              List<ExecutorService> dispatchExecutors, MeterRegistry meterRegistry) {
+        String pythonPath = environment.getProperty("ai.python.path", "python3");
+        int defaultPoolSize = environment.getProperty("ai.worker.pool.size", Integer.class, 1);
+        int defaultPipelineDepth = environment.getProperty("ai.worker.pipeline.depth", Integer.class, 2);
+        long defaultMaxRssMb = environment.getProperty("ai.worker.recycle.max.rss.mb", Long.class, 0L);
+        long defaultMaxPredictions = environment.getProperty("ai.worker.recycle.max.predictions", Long.class, 0L);
+        int defaultBatchSize = environment.getProperty("ai.batching.max.size", Integer.class, 8);
+        long defaultBatchWaitMs = environment.getProperty("ai.batching.max.wait.ms", Long.class, 10L);
+        long defaultTimeoutMs = environment.getProperty("ai.inference.timeout.ms", Long.class, 30000L);
+        int defaultMaxPending = environment.getProperty("ai.inference.max.pending", Integer.class, 200);
+        int defaultFailureThreshold = environment.getProperty("ai.inference.circuit.failure.threshold", Integer.class, 5);
+        long defaultOpenMs = environment.getProperty("ai.inference.circuit.open.ms", Long.class, 30000L);
+        boolean stubModels = environment.getProperty("ai.stub.enabled", Boolean.class, false);
+        String defaultTransport = environment.getProperty("ai.inference.transport", "process");
+        String defaultServerUrl = environment.getProperty("ai.inference.http.url", "http://localhost:5000");
+
+        String name = environment.getProperty(prefix + "name", id);
+        double weight = environment.getProperty(prefix + "weight", Double.class, 1.0);
+        int poolSize = environment.getProperty(prefix + "worker.pool.size", Integer.class, defaultPoolSize);
+        int pipelineDepth = environment.getProperty(prefix + "worker.pipeline.depth", Integer.class, defaultPipelineDepth);
+        int concurrency = environment.getProperty(prefix + "concurrency", Integer.class, poolSize * pipelineDepth);
+        WorkerRecyclePolicy recyclePolicy = new WorkerRecyclePolicy(
+                environment.getProperty(prefix + "worker.recycle.max.rss.mb", Long.class, defaultMaxRssMb) * 1024 * 1024,
+                environment.getProperty(prefix + "worker.recycle.max.predictions", Long.class, defaultMaxPredictions));
+        int batchSize = environment.getProperty(prefix + "batching.max.size", Integer.class, defaultBatchSize);
+        long batchWaitMs = environment.getProperty(prefix + "batching.max.wait.ms", Long.class, defaultBatchWaitMs);
+        long timeoutMs = environment.getProperty(prefix + "timeout.ms", Long.class, defaultTimeoutMs);
+        int maxPending = environment.getProperty(prefix + "max.pending", Integer.class, defaultMaxPending);
+        int failureThreshold = environment.getProperty(prefix + "circuit.failure.threshold", Integer.class, defaultFailureThreshold);
+        long openMs = environment.getProperty(prefix + "circuit.open.ms", Long.class, defaultOpenMs);
+        boolean http = "http".equalsIgnoreCase(environment.getProperty(prefix + "transport", defaultTransport).trim());
+        ModelVersion version = new ModelVersion(environment.getProperty(prefix + "version", "1"),
+                environment.getProperty(prefix + "model.path"));
+
+        if (weight <= 0) {
+            throw new IllegalStateException(prefix + "weight must be positive");
+        }
+
+        Duration timeout = Duration.ofMillis(timeoutMs);
+        // The shadow model keeps ai.shadow.executor.threads, so a busy shadow fails batches instead of queueing them
+        ExecutorService inferenceExecutor = MicroBatchScheduler.dispatchExecutor(id,
+                dispatchThreads != null ? dispatchThreads : concurrency);
+        dispatchExecutors.add(inferenceExecutor);
+        ModelBackend backend;
+        if (stubModels) {
+            StubModelBackend.Behaviour behaviour = stubBehaviour(environment, prefix, timeout);
+            logger.info("Registering stub model {} ({}) version {}: weight={}, concurrency={}, {}",
+                    id, name, version.version(), weight, concurrency, behaviour);
+            backend = new StubModelBackend(id, name, weight, behaviour, version.version(), concurrency, batchSize,
+                    Duration.ofMillis(batchWaitMs), lanePolicy, inferenceExecutor, meterRegistry);
+        } else if (http) {
+            URI serverUrl = URI.create(environment.getProperty(prefix + "http.url", defaultServerUrl));
+            String remoteModel = environment.getProperty(prefix + "http.model", id);
+            logger.info("Registering HTTP model {} ({}) version {}: server={}, model={}, weight={}, concurrency={}, timeout={} ms",
+                    id, name, version.version(), serverUrl, remoteModel, weight, concurrency, timeoutMs);
+            backend = new HttpModelBackend(id, name, weight, version.version(), httpClient.get(), serverUrl, remoteModel,
+                    timeout, concurrency, batchSize, Duration.ofMillis(batchWaitMs), lanePolicy, inferenceExecutor,
+                    meterRegistry);
+        } else {
+            String scriptPath = environment.getRequiredProperty(prefix + "script.path");
+            logger.info("Registering model {} ({}) version {}: script={}, weight={}, workers={}, concurrency={}, timeout={} ms, {}",
+                    id, name, version.version(), scriptPath, weight, poolSize, concurrency, timeoutMs, recyclePolicy);
+            List<String> script = List.of(pythonPath, scriptPath);
+            List<String> command = List.of(pythonPath, scriptPath, "--worker", "--arena", tensorArena.getPath().toString());
+            backend = new PythonModelBackend(id, name, weight, command, script, version,
+                    poolSize, pipelineDepth, recyclePolicy, cpuPartition, concurrency, batchSize, Duration.ofMillis(batchWaitMs), lanePolicy,
+                    timeout, inferenceExecutor, meterRegistry);
+        }
+        return new ResilientModelBackend(backend, timeout, maxPending,
+                new CircuitBreaker(name, failureThreshold, Duration.ofMillis(openMs)), meterRegistry);
+    }
+
+    /**
+     * Splits the CPUs ({@code ai.worker.cpu.list}, default the ones this process may use) between the Python
+     * workers of every enabled model and the shadow model, {@code ai.worker.cpu.threads} each (0 divides them
+     * evenly); {@code ai.worker.cpu.interop.threads} sets TensorFlow's inter-op pool and {@code ai.worker.cpu.pin}
+     * binds each worker to its CPUs with {@code taskset}. With {@code ai.worker.cpu.partition=false}, stub models
+     * or only HTTP models the workers are left to size themselves.
+     */
+    static CpuPartition cpuPartition(Environment environment) {
+        if (!environment.getProperty("ai.worker.cpu.partition", Boolean.class, true)
+                || environment.getProperty("ai.stub.enabled", Boolean.class, false)) {
+            return CpuPartition.NONE;
+        }
+        int defaultPoolSize = environment.getProperty("ai.worker.pool.size", Integer.class, 1);
+        String defaultTransport = environment.getProperty("ai.inference.transport", "process");
+        List<String> prefixes = new ArrayList<>();
+        for (int n = 1; isDeclared(environment, prefix(n)); n++) {
+            prefixes.add(prefix(n));
+        }
+        if (isDeclared(environment, SHADOW_PREFIX)) {
+            prefixes.add(SHADOW_PREFIX);
+        }
+        int workers = 0;
+        for (String prefix : prefixes) {
+            if (environment.getProperty(prefix + "enabled", Boolean.class, true)
+                    && !"http".equalsIgnoreCase(environment.getProperty(prefix + "transport", defaultTransport).trim())) {
+                workers += environment.getProperty(prefix + "worker.pool.size", Integer.class, defaultPoolSize);
+            }
+        }
+        if (workers == 0) {
+            return CpuPartition.NONE;
+        }
+
+        String cpuList = environment.getProperty("ai.worker.cpu.list", "");
+        List<Integer> cpus = cpuList.isBlank() ? CpuPartition.availableCpus() : CpuPartition.parseCpuList(cpuList);
+        String taskset = environment.getProperty("ai.worker.cpu.pin", Boolean.class, false)
+                ? environment.getProperty("ai.worker.cpu.taskset.path", "taskset")
+                : null;
+        CpuPartition partition = CpuPartition.of(cpus, workers,
+                environment.getProperty("ai.worker.cpu.threads", Integer.class, 0),
+                environment.getProperty("ai.worker.cpu.interop.threads", Integer.class, 1), taskset);
+        logger.info("Model workers share {} CPUs: {}", cpus.size(), partition);
+        return partition;
+    }
+
+    public List<ModelBackend> getBackends() {
+        return backends;
+    }
+
+    public Optional<ModelBackend> getBackend(String id) {
+        return backends.stream().filter(backend -> backend.getId().equals(id)).findFirst();
+    }
+
+    public Optional<ModelBackend> getShadowBackend() {
+        return Optional.ofNullable(shadowBackend);
+    }
+
+    @Override
+    public void close() {
+        backends.forEach(ModelBackend::close);
+        if (shadowBackend != null) {
+            shadowBackend.close();
+        }
+        dispatchExecutors.forEach(ExecutorService::shutdownNow);
+    }
+
+    // ai.scheduler.lanes.weights lists the STAT, ROUTINE and BULK weights in that order
+    private static LanePolicy lanePolicy(Environment environment) {
+        LanePolicy.Mode mode = LanePolicy.Mode.valueOf(
+                environment.getProperty("ai.scheduler.lanes.mode", "strict").trim().toUpperCase(Locale.ROOT));
+        Integer[] weights = environment.getProperty("ai.scheduler.lanes.weights", Integer[].class, new Integer[] {8, 3, 1});
+        if (weights.length != Priority.values().length) {
+            throw new IllegalStateException("ai.scheduler.lanes.weights needs one weight per priority: STAT,ROUTINE,BULK");
+        }
+        Map<Priority, Integer> laneWeights = new EnumMap<>(Priority.class);
+        Map<Priority, Duration> maxWait = new EnumMap<>(Priority.class);
+        for (Priority priority : Priority.values()) {
+            laneWeights.put(priority, weights[priority.ordinal()]);
+            Long agingMs = environment.getProperty(
+                    "ai.scheduler.aging." + priority.name().toLowerCase(Locale.ROOT) + ".ms", Long.class);
+            if (agingMs != null && agingMs > 0) {
+                maxWait.put(priority, Duration.ofMillis(agingMs));
+            } else if (agingMs == null && LanePolicy.DEFAULT.maxWait(priority) != null) {
+                maxWait.put(priority, LanePolicy.DEFAULT.maxWait(priority));
+            }
+        }
+        LanePolicy policy = new LanePolicy(mode, laneWeights, maxWait);
+        logger.info("Scheduler lanes: {}", policy);
+        return policy;
+    }
+
+    // ai.model<N>.stub.* overrides the global ai.stub.* behaviour
+    private static StubModelBackend.Behaviour stubBehaviour(Environment environment, String prefix, Duration timeout) {
+        long medianMs = environment.getProperty(prefix + "stub.latency.median.ms", Long.class,
+                environment.getProperty("ai.stub.latency.median.ms", Long.class, 150L));
+        long p99Ms = environment.getProperty(prefix + "stub.latency.p99.ms", Long.class,
+                environment.getProperty("ai.stub.latency.p99.ms", Long.class, 600L));
+        double failureRate = environment.getProperty(prefix + "stub.failure.rate", Double.class,
+                environment.getProperty("ai.stub.failure.rate", Double.class, 0.0));
+        double hangRate = environment.getProperty(prefix + "stub.hang.rate", Double.class,
+                environment.getProperty("ai.stub.hang.rate", Double.class, 0.0));
+        return new StubModelBackend.Behaviour(Duration.ofMillis(medianMs), Duration.ofMillis(p99Ms),
+                failureRate, hangRate, timeout);
+    }
+
+    private static boolean isDeclared(Environment environment, String prefix) {
+        return environment.containsProperty(prefix + "script.path") || environment.containsProperty(prefix + "http.model");
+    }
+
+    // One keep-alive connection pool for every HTTP model, built only if some model uses it
+    private static final class SharedHttpClient implements Supplier<HttpClient> {
+        private final Duration connectTimeout;
+        private HttpClient client;
+
+        SharedHttpClient(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        @Override
+        public synchronized HttpClient get() {
+            if (client == null) {
+                client = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .connectTimeout(connectTimeout)
+                        .build();
+            }
+            return client;
+        }
+    }
+
+    private static String prefix(int n) {
+        return "ai.model" + n + ".";
+    }
+}
@@ -0,0 +1,25 @@
+package org.example.backend.service.inference;
+
+/**
+ * What one model produced for one image: class probabilities (fractions summing to 1,
+ * ordered like {@code EnsembleStrategy.LABELS}) or the reason the image could not be scored,
+ * and the version of the model that produced it, when known.
+ */
+public record ModelOutput(float[] probabilities, String error, String version) {
+
+    public static ModelOutput of(float[] probabilities) {
+        return new ModelOutput(probabilities, null, null);
+    }
+
+    public static ModelOutput failed(String error) {
+        return new ModelOutput(null, error, null);
+    }
+
+    public ModelOutput withVersion(String version) {
+        return new ModelOutput(probabilities, error, version);
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+}
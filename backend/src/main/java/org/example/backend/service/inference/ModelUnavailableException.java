@@ -0,0 +1,21 @@
+package org.example.backend.service.inference;
+
+/**
+ * A model refused a request without running it: its circuit is open or its bulkhead is full.
+ */
+public class ModelUnavailableException extends RuntimeException {
+
+    public static final String CIRCUIT_OPEN = "circuit_open";
+    public static final String OVERLOADED = "overloaded";
+
+    private final String status;
+
+    public ModelUnavailableException(String message, String status) {
+        super(message);
+        this.status = status;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+}
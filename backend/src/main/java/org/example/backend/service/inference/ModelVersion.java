@@ -0,0 +1,15 @@
+package org.example.backend.service.inference;
+
+/**
+ * A version of a model's weights: an identifier stamped on every prediction it makes (e.g. "v3" or a
+ * training run id) and the {@code .keras} file the workers load ({@code --model}), or null for the
+ * file the model script loads by default.
+ */
+public record ModelVersion(String version, String modelPath) {
+
+    public ModelVersion {
+        if (version == null || version.isBlank()) {
+            throw new IllegalArgumentException("Model version must not be blank");
+        }
+    }
+}
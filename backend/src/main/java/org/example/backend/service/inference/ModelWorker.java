@@ -0,0 +1,259 @@
+package org.example.backend.service.inference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One long-lived Python process that has its model loaded and answers prediction
+ * requests over stdin/stdout using the binary frames in {@link WorkerProtocol}.
+ * Requests are pipelined: several batches can be outstanding at once, and a reader
+ * thread matches each response to its request by id. Thread-safe.
+ */
+public class ModelWorker implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelWorker.class);
+
+    private final String modelName;
+    private final Process process;
+    private final CpuPartition cpuPartition;
+    private final CpuPartition.Slot cpus;
+    private final AtomicBoolean cpusReleased = new AtomicBoolean();
+    private final DataOutputStream requests;
+    private final DataInputStream responses;
+    private final AtomicInteger nextRequestId = new AtomicInteger(1);
+    private final Map<Integer, PendingBatch> pending = new ConcurrentHashMap<>();
+    private final AtomicLong predictions = new AtomicLong();
+
+    private volatile IOException failure;
+
+    private record PendingBatch(int size, CompletableFuture<List<ModelOutput>> result) {}
+
+    private ModelWorker(String modelName, Process process, CpuPartition cpuPartition, CpuPartition.Slot cpus) {
+        this.modelName = modelName;
+        this.process = process;
+        this.cpuPartition = cpuPartition;
+        this.cpus = cpus;
+        this.requests = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+        this.responses = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+    }
+
+    /**
+     * Starts the process on CPUs taken from {@code cpuPartition} and blocks until the script reports
+     * that its model is loaded. The CPUs are given back when the worker is closed.
+     */
+    public static ModelWorker start(String modelName, List<String> command, CpuPartition cpuPartition) throws IOException {
+        CpuPartition.Slot cpus = cpuPartition.acquire();
+        Process process;
+        try {
+            ProcessBuilder builder = new ProcessBuilder(cpuPartition.command(cpus, command));
+            builder.environment().putAll(cpuPartition.environment(cpus));
+            process = builder.start();
+        } catch (IOException | RuntimeException e) {
+            cpuPartition.release(cpus);
+            throw e;
+        }
+        ModelWorker worker = new ModelWorker(modelName, process, cpuPartition, cpus);
+        worker.drainLogs();
+
+        try {
+            WorkerProtocol.Frame ready = worker.readFrame();
+            if (ready.type() != WorkerProtocol.READY) {
+                throw new IOException(modelName + " worker sent unexpected handshake frame type " + ready.type());
+            }
+            logger.info("{} worker started (pid {}, model {}, {} labels, cpus {})",
+                    modelName, process.pid(), ready.message(), ready.labels(), cpus.cpus().isEmpty() ? "any" : cpus.cpus());
+        } catch (IOException e) {
+            worker.close();
+            throw e;
+        }
+
+        worker.readResponses();
+        return worker;
+    }
+
+    /**
+     * Sends a batch of prepared images to the model in one request without waiting for the
+     * answer. The future completes with one {@link ModelOutput} per image, in input order, or
+     * exceptionally if the whole batch failed or the worker died.
+     */
+    public CompletableFuture<List<ModelOutput>> submit(List<PreparedImage> images) {
+        CompletableFuture<List<ModelOutput>> result = new CompletableFuture<>();
+        int requestId = nextRequestId.getAndIncrement();
+        pending.put(requestId, new PendingBatch(images.size(), result));
+
+        try {
+            synchronized (requests) {
+                if (failure != null) {
+                    throw failure;
+                }
+                WorkerProtocol.writePredict(requests, requestId, images);
+            }
+        } catch (IOException e) {
+            pending.remove(requestId);
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Blocking form of {@link #submit(List)} with a deadline. A worker that misses it is presumed
+     * hung and is killed, which also fails every other batch waiting in its pipeline.
+     */
+    public List<ModelOutput> predictBatch(List<PreparedImage> images, Duration timeout) throws IOException, InterruptedException {
+        try {
+            return submit(images).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            IOException hung = new IOException(modelName + " worker (pid " + process.pid() + ") did not answer within "
+                    + timeout.toMillis() + " ms and was killed");
+            kill(hung);
+            throw hung;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(modelName + " prediction failed", e.getCause());
+        }
+    }
+
+    // Batches sent to this worker that have not been answered yet
+    public int getInFlight() {
+        return pending.size();
+    }
+
+    // Images this worker has answered since it started
+    public long getPredictions() {
+        return predictions.get();
+    }
+
+    // Resident memory of the process, or -1 where /proc is not available
+    public long rssBytes() {
+        return rssBytes(Path.of("/proc", String.valueOf(process.pid()), "status"));
+    }
+
+    // Reads the "VmRSS:  123456 kB" line of a /proc/<pid>/status file
+    static long rssBytes(Path status) {
+        try {
+            for (String line : Files.readAllLines(status, StandardCharsets.UTF_8)) {
+                if (line.startsWith("VmRSS:")) {
+                    String[] fields = line.substring("VmRSS:".length()).trim().split("\\s+");
+                    return Long.parseLong(fields[0]) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // the process is gone, or this is not Linux
+        }
+        return -1;
+    }
+
+    public boolean isAlive() {
+        return failure == null && process.isAlive();
+    }
+
+    public long pid() {
+        return process.pid();
+    }
+
+    @Override
+    public void close() {
+        try {
+            requests.close();
+        } catch (IOException ignored) {
+            // the process may already be gone
+        }
+        process.destroy();
+        if (cpusReleased.compareAndSet(false, true)) {
+            cpuPartition.release(cpus);
+        }
+    }
+
+    // A hung model never reads its pipe again, so closing stdin is not enough
+    private void kill(IOException cause) {
+        logger.warn("Killing {} worker (pid {}): {}", modelName, process.pid(), cause.getMessage());
+        failure = cause;
+        process.destroyForcibly();
+        pending.values().forEach(batch -> batch.result().completeExceptionally(cause));
+        pending.clear();
+    }
+
+    private WorkerProtocol.Frame readFrame() throws IOException {
+        try {
+            return WorkerProtocol.readFrame(responses);
+        } catch (EOFException e) {
+            throw new IOException(modelName + " worker exited with code " + exitCode(), e);
+        }
+    }
+
+    // Completes pending batches as their responses arrive, in whatever order the worker answers
+    private void readResponses() {
+        Thread reader = new Thread(() -> {
+            try {
+                while (true) {
+                    WorkerProtocol.Frame frame = readFrame();
+                    PendingBatch batch = pending.remove(frame.requestId());
+                    if (batch == null) {
+                        logger.warn("{} worker answered unknown request {}", modelName, frame.requestId());
+                        continue;
+                    }
+                    if (frame.type() == WorkerProtocol.ERROR) {
+                        batch.result().completeExceptionally(new IOException(modelName + " prediction failed: " + frame.message()));
+                    } else if (frame.outputs().size() != batch.size()) {
+                        batch.result().completeExceptionally(new IOException(modelName + " worker returned "
+                                + frame.outputs().size() + " results for " + batch.size() + " images"));
+                    } else {
+                        predictions.addAndGet(batch.size());
+                        batch.result().complete(frame.outputs());
+                    }
+                }
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+                pending.values().forEach(batch -> batch.result().completeExceptionally(e));
+                pending.clear();
+            }
+        }, modelName + "-worker-reader-" + process.pid());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private String exitCode() {
+        try {
+            return String.valueOf(process.waitFor());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "unknown";
+        }
+    }
+
+    // Worker logs (Python and TensorFlow alike) arrive on stderr; forward them so the pipe never fills up
+    private void drainLogs() {
+        Thread drain = new Thread(() -> {
+            try (BufferedReader err = new BufferedReader(new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = err.readLine()) != null) {
+                    logger.debug("{} says: {}", modelName, line);
+                }
+            } catch (IOException ignored) {
+                // stream closed with the process
+            }
+        }, modelName + "-worker-log-" + process.pid());
+        drain.setDaemon(true);
+        drain.start();
+    }
+}
@@ -0,0 +1,266 @@
+package org.example.backend.service.inference;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A bounded pool of warm {@link ModelWorker}s for one model. Workers are started lazily
+ * on demand. Each worker accepts up to {@code pipelineDepth} outstanding batches, so the
+ * next batch is already waiting in its pipe when the current one finishes. A worker
+ * that dies, or is killed for missing the batch deadline, is discarded and replaced on a
+ * later request.
+ * <p>
+ * After every batch the worker is checked against the {@link WorkerRecyclePolicy}. A worker over
+ * its memory or prediction limit keeps serving while a replacement loads in the background; once
+ * the replacement is ready it takes the worker's place, and the retired worker is stopped as soon
+ * as the batches it is still running have finished. The pool never drops below its size for a
+ * recycle, at the cost of one extra process while the replacement loads.
+ * <p>
+ * Each worker runs on CPUs of the {@link CpuPartition} shared by every model's pool.
+ */
+public class ModelWorkerPool implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelWorkerPool.class);
+
+    private final String modelName;
+    private final List<String> command;
+    private final int size;
+    private final int pipelineDepth;
+    private final Duration batchTimeout;
+    private final Semaphore permits;
+    private final WorkerRecyclePolicy recyclePolicy;
+    private final CpuPartition cpuPartition;
+    private final MeterRegistry meterRegistry;
+    private final List<ModelWorker> workers = new ArrayList<>();
+
+    // Batches handed to each worker and not finished yet, including ones not yet on its pipe
+    private final Map<ModelWorker, Integer> assigned = new HashMap<>();
+    // Workers whose replacement is loading, and retired workers finishing their last batches
+    private final Set<ModelWorker> replacing = new HashSet<>();
+    private final Set<ModelWorker> draining = new HashSet<>();
+
+    // Workers being started outside the lock; counted against the pool size
+    private int starting = 0;
+    private volatile boolean closed = false;
+
+    public ModelWorkerPool(String modelName, List<String> command, int size, int pipelineDepth, Duration batchTimeout,
+                           WorkerRecyclePolicy recyclePolicy, CpuPartition cpuPartition, MeterRegistry meterRegistry) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Worker pool size must be at least 1");
+        }
+        if (pipelineDepth < 1) {
+            throw new IllegalArgumentException("Worker pipeline depth must be at least 1");
+        }
+        this.modelName = modelName;
+        this.command = List.copyOf(command);
+        this.size = size;
+        this.pipelineDepth = pipelineDepth;
+        this.batchTimeout = batchTimeout;
+        this.permits = new Semaphore(size * pipelineDepth, true);
+        this.recyclePolicy = recyclePolicy;
+        this.cpuPartition = cpuPartition;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs one batch on the least busy worker, waiting while every worker's pipeline is full.
+     * The deadline starts once the batch is on the worker's pipe.
+     */
+    public List<ModelOutput> predictBatch(List<PreparedImage> images) throws IOException, InterruptedException {
+        if (closed) {
+            throw new IOException(modelName + " worker pool is shut down");
+        }
+        permits.acquire();
+        try {
+            ModelWorker worker = pickWorker();
+            try {
+                return worker.predictBatch(images, batchTimeout);
+            } finally {
+                finished(worker);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private ModelWorker pickWorker() throws IOException, InterruptedException {
+        synchronized (workers) {
+            while (true) {
+                workers.removeIf(worker -> {
+                    if (worker.isAlive()) {
+                        return false;
+                    }
+                    logger.warn("{} worker (pid {}) died, discarding it", modelName, worker.pid());
+                    worker.close();
+                    return true;
+                });
+
+                // By batches handed out, not by the worker's own count: a batch is assigned before it is submitted
+                ModelWorker leastBusy = workers.stream().min(Comparator.comparingInt(this::assignedTo)).orElse(null);
+                int load = leastBusy != null ? assignedTo(leastBusy) : 0;
+                boolean canGrow = workers.size() + starting < size;
+                if (leastBusy != null && (load == 0 || (!canGrow && load < pipelineDepth))) {
+                    return assign(leastBusy);
+                }
+                if (canGrow) {
+                    starting++;
+                    break;
+                }
+                // Every allowed worker is still loading its model or has a full pipeline
+                workers.wait();
+            }
+        }
+
+        // Loading a model takes seconds; do it without blocking requests to the running workers
+        ModelWorker worker = null;
+        try {
+            worker = ModelWorker.start(modelName, command, cpuPartition);
+            return worker;
+        } finally {
+            synchronized (workers) {
+                starting--;
+                if (worker != null) {
+                    if (closed) {
+                        worker.close();
+                    } else {
+                        workers.add(worker);
+                        assign(worker);
+                    }
+                }
+                workers.notifyAll();
+            }
+        }
+    }
+
+    private int assignedTo(ModelWorker worker) {
+        return assigned.getOrDefault(worker, 0);
+    }
+
+    private ModelWorker assign(ModelWorker worker) {
+        assigned.merge(worker, 1, Integer::sum);
+        return worker;
+    }
+
+    // Discards a failed worker, stops a retired one that has drained, or starts recycling one over its limits
+    private void finished(ModelWorker worker) {
+        String recycleReason = worker.isAlive() && recyclePolicy.isEnabled()
+                ? recyclePolicy.recycleReason(worker.getPredictions(), worker::rssBytes)
+                : null;
+        boolean stop = false;
+        boolean recycle = false;
+        synchronized (workers) {
+            assigned.computeIfPresent(worker, (w, batches) -> batches > 1 ? batches - 1 : null);
+            workers.notifyAll();
+            if (!worker.isAlive()) {
+                if (workers.remove(worker) || draining.remove(worker)) {
+                    logger.warn("{} worker (pid {}) failed, discarding it", modelName, worker.pid());
+                    stop = true;
+                }
+            } else if (draining.contains(worker)) {
+                stop = !assigned.containsKey(worker) && draining.remove(worker);
+            } else if (recycleReason != null && !closed && workers.contains(worker)) {
+                recycle = replacing.add(worker);
+            }
+        }
+        if (stop) {
+            worker.close();
+        }
+        if (recycle) {
+            logger.info("Recycling {} worker (pid {}): {} predictions, {} MB resident ({} limit reached)",
+                    modelName, worker.pid(), worker.getPredictions(), worker.rssBytes() / (1024 * 1024), recycleReason);
+            Thread replacement = new Thread(() -> replace(worker, recycleReason),
+                    modelName + "-worker-recycler-" + worker.pid());
+            replacement.setDaemon(true);
+            replacement.start();
+        }
+    }
+
+    // Loads a fresh worker and swaps it in for the retiring one, which is stopped once it has drained
+    private void replace(ModelWorker retiring, String reason) {
+        ModelWorker replacement = null;
+        try {
+            replacement = ModelWorker.start(modelName, command, cpuPartition);
+        } catch (IOException e) {
+            logger.warn("Could not start a replacement {} worker, keeping pid {} for now: {}",
+                    modelName, retiring.pid(), e.getMessage());
+        }
+
+        boolean stopRetiring = false;
+        synchronized (workers) {
+            replacing.remove(retiring);
+            if (replacement == null) {
+                return;
+            }
+            boolean retired = workers.remove(retiring);
+            if (closed || (!retired && workers.size() + starting >= size)) {
+                // Shut down meanwhile, or the retiring worker died and was already replaced on demand
+                replacement.close();
+                return;
+            }
+            workers.add(replacement);
+            if (retired) {
+                draining.add(retiring);
+                stopRetiring = !assigned.containsKey(retiring) && draining.remove(retiring);
+            }
+            workers.notifyAll();
+        }
+
+        Counter.builder("inference.worker.recycled")
+                .description("Model workers replaced for crossing their memory or prediction limit")
+                .tag("model", modelName)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        logger.info("{} worker (pid {}) replaced by pid {}", modelName, retiring.pid(), replacement.pid());
+        if (stopRetiring) {
+            retiring.close();
+        }
+    }
+
+    public String getModelName() {
+        return modelName;
+    }
+
+    public List<String> getCommand() {
+        return command;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getPipelineDepth() {
+        return pipelineDepth;
+    }
+
+    public int getRunningCount() {
+        synchronized (workers) {
+            return workers.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (workers) {
+            workers.forEach(ModelWorker::close);
+            workers.clear();
+            draining.forEach(ModelWorker::close);
+            draining.clear();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package org.example.backend.service.inference;
+
+import java.io.File;
+
+/**
+ * An uploaded image that has been decoded once and written into a {@link TensorArena}
+ * slot. Closing it hands the slot back; do so once every model has answered.
+ * {@code priority} picks the scheduler lane the image waits in.
+ */
+public record PreparedImage(File source, int slot, TensorArena arena, Priority priority) implements AutoCloseable {
+
+    public PreparedImage(File source, int slot, TensorArena arena) {
+        this(source, slot, arena, Priority.ROUTINE);
+    }
+
+    @Override
+    public void close() {
+        if (arena != null) {
+            arena.release(slot);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.example.backend.service.inference;
+
+import java.util.Locale;
+
+/**
+ * Urgency of an ECG, chosen at upload time. Declared from most to least urgent; the
+ * inference scheduler keeps one lane per priority.
+ */
+public enum Priority {
+
+    // Suspected acute event, e.g. MI in the emergency department
+    STAT,
+    // Regular clinical uploads
+    ROUTINE,
+    // Screening batches and backfills
+    BULK;
+
+    /**
+     * Parses an upload's priority parameter (case-insensitive); blank means {@link #ROUTINE}.
+     */
+    public static Priority parse(String value) {
+        if (value == null || value.isBlank()) {
+            return ROUTINE;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown priority '" + value + "', expected STAT, ROUTINE or BULK");
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package org.example.backend.service.inference;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A model served by warm Python worker processes ({@code <script> --worker --arena <path>}). Requests are
+ * micro-batched and at most {@code maxConcurrency} batches of this model run at the same time; a
+ * worker that takes longer than {@code batchTimeout} for a batch is killed, and one that crosses the
+ * {@link WorkerRecyclePolicy} limits is replaced.
+ * <p>
+ * The workers of one {@link ModelVersion} form a generation. A version swap starts and warms up a new
+ * generation ({@code --model <path>}) while the current one keeps serving, then switches batches over and
+ * stops the old workers once the batches they were running have finished.
+ * <p>
+ * Grad-CAM heatmaps run the script once per image ({@code <script> --gradcam <image> <output>}) with the
+ * serving version's weights, so they never hold a worker that predictions are waiting for.
+ * <p>
+ * Workers run on CPUs of the {@link CpuPartition} shared by all models, with native thread pools sized to them.
+ */
+public class PythonModelBackend implements ModelBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(PythonModelBackend.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Workers of one model version and the batches they are running
+    private record Generation(ModelVersion version, ModelWorkerPool workerPool, AtomicInteger inFlight) {}
+
+    private final String id;
+    private final String name;
+    private final double weight;
+    private final List<String> command;
+    private final List<String> heatmapCommand;
+    private final int poolSize;
+    private final int pipelineDepth;
+    private final WorkerRecyclePolicy recyclePolicy;
+    private final CpuPartition cpuPartition;
+    private final Duration batchTimeout;
+    private final MeterRegistry meterRegistry;
+    private final MicroBatchScheduler<PreparedImage, ModelOutput> scheduler;
+
+    private volatile Generation current;
+
+    public PythonModelBackend(String id, String name, double weight, List<String> command,
+                              List<String> heatmapCommand, ModelVersion version,
+                              int poolSize, int pipelineDepth, WorkerRecyclePolicy recyclePolicy,
+                              CpuPartition cpuPartition, int maxConcurrency, int maxBatchSize, Duration maxBatchWait,
+                              LanePolicy lanePolicy, Duration batchTimeout, Executor inferenceExecutor,
+                              MeterRegistry meterRegistry) {
+        this.id = id;
+        this.name = name;
+        this.weight = weight;
+        this.command = List.copyOf(command);
+        this.heatmapCommand = List.copyOf(heatmapCommand);
+        this.poolSize = poolSize;
+        this.pipelineDepth = pipelineDepth;
+        this.recyclePolicy = recyclePolicy;
+        this.cpuPartition = cpuPartition;
+        this.batchTimeout = batchTimeout;
+        this.meterRegistry = meterRegistry;
+        this.current = newGeneration(version);
+        this.scheduler = new MicroBatchScheduler<>(name, this::predictBatch, maxBatchSize, maxBatchWait,
+                maxConcurrency, PreparedImage::priority, lanePolicy, inferenceExecutor, meterRegistry);
+    }
+
+    @Override
+    public String getId() { return id; }
+
+    @Override
+    public String getName() { return name; }
+
+    @Override
+    public double getWeight() { return weight; }
+
+    @Override
+    public String getVersion() { return current.version().version(); }
+
+    // The serving version's worker command, for tools that start their own workers
+    public List<String> getWorkerCommand() {
+        return current.workerPool().getCommand();
+    }
+
+    @Override
+    public CompletableFuture<ModelOutput> predict(PreparedImage image) {
+        return scheduler.submit(image);
+    }
+
+    /**
+     * Starts every worker of the pool at once (model loading dominates) and sends the image to each.
+     */
+    @Override
+    public CompletableFuture<ModelOutput> warmUp(PreparedImage image, Executor executor) {
+        return warmUp(current.workerPool(), image, executor);
+    }
+
+    @Override
+    public synchronized void swapVersion(ModelVersion version, PreparedImage warmupImage, Executor executor,
+                                         Duration timeout) throws Exception {
+        Generation next = newGeneration(version);
+        try {
+            ModelOutput output = warmUp(next.workerPool(), warmupImage, executor).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            if (output.isFailed()) {
+                throw new IOException(output.error());
+            }
+        } catch (Exception e) {
+            next.workerPool().close();
+            throw e instanceof ExecutionException && e.getCause() instanceof Exception cause ? cause : e;
+        }
+
+        Generation previous = current;
+        current = next;
+        logger.info("{} switched from version {} to {}", name, previous.version().version(), version.version());
+
+        // Batches already on the old workers finish there before they are stopped
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (previous.inFlight().get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        if (previous.inFlight().get() > 0) {
+            logger.warn("{} version {} still had {} batches running after {} ms; stopping it anyway",
+                    name, previous.version().version(), previous.inFlight().get(), timeout.toMillis());
+        }
+        previous.workerPool().close();
+    }
+
+    @Override
+    public Heatmap writeHeatmap(File image, File output, Duration timeout) throws IOException, InterruptedException {
+        List<String> gradcam = new ArrayList<>(heatmapCommand);
+        gradcam.addAll(List.of("--gradcam", image.getAbsolutePath(), output.getAbsolutePath()));
+        String modelPath = current.version().modelPath();
+        if (modelPath != null && !modelPath.isBlank()) {
+            gradcam.add("--model");
+            gradcam.add(modelPath);
+        }
+
+        // Output and TensorFlow's logging go to a file, so the process can never block on a full pipe
+        Path log = Files.createTempFile("gradcam-", ".log");
+        try {
+            Process process = new ProcessBuilder(gradcam)
+                    .redirectErrorStream(true)
+                    .redirectOutput(log.toFile())
+                    .start();
+            if (!process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                throw new IOException(name + " heatmap took longer than " + timeout.toMillis() + " ms");
+            }
+
+            List<String> lines = Files.readAllLines(log);
+            String last = lines.isEmpty() ? "" : lines.get(lines.size() - 1);
+            if (process.exitValue() != 0 || !last.startsWith("{")) {
+                throw new IOException(name + " heatmap failed (exit " + process.exitValue() + "): " + last);
+            }
+            JsonNode result = objectMapper.readTree(last);
+            return new Heatmap(result.get("classification").asText(), result.get("confidence").asDouble());
+        } finally {
+            Files.deleteIfExists(log);
+        }
+    }
+
+    public ModelWorkerPool getWorkerPool() { return current.workerPool(); }
+
+    @Override
+    public void close() {
+        scheduler.close();
+        current.workerPool().close();
+    }
+
+    private List<ModelOutput> predictBatch(List<PreparedImage> images) throws IOException, InterruptedException {
+        Generation generation = enter();
+        try {
+            List<ModelOutput> outputs = generation.workerPool().predictBatch(images);
+            List<ModelOutput> versioned = new ArrayList<>(outputs.size());
+            for (ModelOutput output : outputs) {
+                versioned.add(output.withVersion(generation.version().version()));
+            }
+            return versioned;
+        } finally {
+            generation.inFlight().decrementAndGet();
+        }
+    }
+
+    // Counts the batch against the current generation; retries if a swap happened in between
+    private Generation enter() {
+        while (true) {
+            Generation generation = current;
+            generation.inFlight().incrementAndGet();
+            if (generation == current) {
+                return generation;
+            }
+            generation.inFlight().decrementAndGet();
+        }
+    }
+
+    private Generation newGeneration(ModelVersion version) {
+        List<String> versionCommand = new ArrayList<>(command);
+        if (version.modelPath() != null && !version.modelPath().isBlank()) {
+            versionCommand.add("--model");
+            versionCommand.add(version.modelPath());
+        }
+        return new Generation(version, new ModelWorkerPool(name, versionCommand, poolSize, pipelineDepth, batchTimeout,
+                recyclePolicy, cpuPartition, meterRegistry),
+                new AtomicInteger());
+    }
+
+    private static CompletableFuture<ModelOutput> warmUp(ModelWorkerPool workerPool, PreparedImage image, Executor executor) {
+        List<CompletableFuture<List<ModelOutput>>> workers = new ArrayList<>();
+        for (int i = 0; i < workerPool.getSize(); i++) {
+            workers.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return workerPool.predictBatch(List.of(image));
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+        return CompletableFuture.allOf(workers.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> workers.get(0).join().get(0));
+    }
+}
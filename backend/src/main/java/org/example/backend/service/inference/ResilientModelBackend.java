@@ -0,0 +1,143 @@
+package org.example.backend.service.inference;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Guards another {@link ModelBackend} with a deadline, a bulkhead and a circuit breaker.
+ * At most {@code maxPending} requests may be queued or running for the model, including ones whose
+ * caller already timed out; beyond that,
+ * and while the circuit is open, requests fail at once with a {@link ModelUnavailableException}
+ * instead of waiting behind a model that cannot keep up.
+ */
+public class ResilientModelBackend implements ModelBackend {
+
+    private final ModelBackend delegate;
+    private final Duration timeout;
+    private final Semaphore bulkhead;
+    private final CircuitBreaker circuitBreaker;
+
+    private final Counter overloaded;
+    private final Counter circuitOpen;
+    private final Counter timeouts;
+
+    public ResilientModelBackend(ModelBackend delegate, Duration timeout, int maxPending,
+                                 CircuitBreaker circuitBreaker, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.timeout = timeout;
+        this.bulkhead = new Semaphore(maxPending);
+        this.circuitBreaker = circuitBreaker;
+
+        this.overloaded = rejectionCounter(meterRegistry, ModelUnavailableException.OVERLOADED);
+        this.circuitOpen = rejectionCounter(meterRegistry, ModelUnavailableException.CIRCUIT_OPEN);
+        this.timeouts = Counter.builder("inference.timeouts")
+                .description("Requests that missed the model deadline")
+                .tag("model", delegate.getName())
+                .register(meterRegistry);
+        // 0 = closed, 1 = half-open, 2 = open
+        Gauge.builder("inference.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .description("Circuit breaker state of the model")
+                .tag("model", delegate.getName())
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String getId() { return delegate.getId(); }
+
+    @Override
+    public String getName() { return delegate.getName(); }
+
+    @Override
+    public double getWeight() { return delegate.getWeight(); }
+
+    @Override
+    public CompletableFuture<ModelOutput> predict(PreparedImage image) {
+        if (!bulkhead.tryAcquire()) {
+            overloaded.increment();
+            return CompletableFuture.failedFuture(new ModelUnavailableException(
+                    getName() + " is overloaded, try again later", ModelUnavailableException.OVERLOADED));
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            bulkhead.release();
+            circuitOpen.increment();
+            return CompletableFuture.failedFuture(new ModelUnavailableException(
+                    getName() + " is unavailable after repeated failures, retrying in "
+                            + circuitBreaker.getRetryAfter().toSeconds() + " s", ModelUnavailableException.CIRCUIT_OPEN));
+        }
+
+        CompletableFuture<ModelOutput> result;
+        try {
+            result = delegate.predict(image);
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+
+        // The permit is held until the delegate is done with the request, not just until the caller gave up:
+        // a request past its deadline is still queued or running and still takes model capacity
+        result.whenComplete((output, error) -> bulkhead.release());
+
+        // A copy, so the timeout does not complete the delegate's own future
+        return result.copy()
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((output, error) -> {
+                    if (error == null) {
+                        circuitBreaker.onSuccess();
+                        return;
+                    }
+                    if (error instanceof TimeoutException) {
+                        timeouts.increment();
+                    }
+                    circuitBreaker.onFailure(error);
+                });
+    }
+
+    // Warm-up runs before traffic and may take as long as model loading does; it bypasses the guards
+    @Override
+    public CompletableFuture<ModelOutput> warmUp(PreparedImage image, Executor executor) {
+        return delegate.warmUp(image, executor);
+    }
+
+    @Override
+    public String getVersion() { return delegate.getVersion(); }
+
+    // Like warm-up, a swap prepares the new version before any request can reach it
+    @Override
+    public void swapVersion(ModelVersion version, PreparedImage warmupImage, Executor executor, Duration timeout)
+            throws Exception {
+        delegate.swapVersion(version, warmupImage, executor, timeout);
+    }
+
+    // Heatmaps run on their own executor and never take a prediction permit or trip the breaker
+    @Override
+    public Heatmap writeHeatmap(File image, File output, Duration timeout) throws Exception {
+        return delegate.writeHeatmap(image, output, timeout);
+    }
+
+    public ModelBackend getDelegate() { return delegate; }
+
+    public CircuitBreaker getCircuitBreaker() { return circuitBreaker; }
+
+    public int getAvailablePermits() { return bulkhead.availablePermits(); }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private Counter rejectionCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("inference.rejected")
+                .description("Requests refused without running the model")
+                .tag("model", delegate.getName())
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,155 @@
+package org.example.backend.service.inference;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A model that needs no Python or TensorFlow, for load and soak tests (profile {@code stub-models}).
+ * Probabilities are derived from the SHA-256 of the image, so the same ECG always gets the same
+ * answer. Each batch holds a dispatch slot for a log-normally distributed time and fails or hangs
+ * at the configured rates. Requests go through the same micro-batching as {@link PythonModelBackend}.
+ * A version swap runs one simulated batch and then stamps the new version on every answer.
+ */
+public class StubModelBackend implements ModelBackend {
+
+    // z-score of the 99th percentile of the standard normal distribution
+    private static final double Z_99 = 2.326;
+
+    /**
+     * Simulated model behaviour: batch latency by median and 99th percentile, the share of batches
+     * that fail, and the share that hang until {@code timeout} as a stuck worker would.
+     */
+    public record Behaviour(Duration latencyMedian, Duration latencyP99, double failureRate, double hangRate,
+                            Duration timeout) {}
+
+    private final String id;
+    private final String name;
+    private final double weight;
+    private final Behaviour behaviour;
+    private final MicroBatchScheduler<PreparedImage, ModelOutput> scheduler;
+    private volatile String version;
+
+    public StubModelBackend(String id, String name, double weight, Behaviour behaviour, String version, int maxConcurrency,
+                            int maxBatchSize, Duration maxBatchWait, LanePolicy lanePolicy,
+                            Executor inferenceExecutor, MeterRegistry meterRegistry) {
+        this.id = id;
+        this.name = name;
+        this.weight = weight;
+        this.behaviour = behaviour;
+        this.version = version;
+        this.scheduler = new MicroBatchScheduler<>(name, this::predictBatch, maxBatchSize, maxBatchWait,
+                maxConcurrency, PreparedImage::priority, lanePolicy, inferenceExecutor, meterRegistry);
+    }
+
+    @Override
+    public String getId() { return id; }
+
+    @Override
+    public String getName() { return name; }
+
+    @Override
+    public double getWeight() { return weight; }
+
+    @Override
+    public String getVersion() { return version; }
+
+    @Override
+    public CompletableFuture<ModelOutput> predict(PreparedImage image) {
+        return scheduler.submit(image);
+    }
+
+    @Override
+    public void swapVersion(ModelVersion next, PreparedImage warmupImage, Executor executor, Duration timeout)
+            throws Exception {
+        predictBatch(List.of(warmupImage));
+        version = next.version();
+    }
+
+    @Override
+    public void close() {
+        scheduler.close();
+    }
+
+    private List<ModelOutput> predictBatch(List<PreparedImage> images) throws IOException, InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double roll = random.nextDouble();
+        if (roll < behaviour.hangRate()) {
+            Thread.sleep(behaviour.timeout().toMillis());
+            throw new IOException(name + " stub worker did not answer within " + behaviour.timeout().toMillis() + " ms");
+        }
+        Thread.sleep(sampleLatencyMs(random));
+        if (roll < behaviour.hangRate() + behaviour.failureRate()) {
+            throw new IOException(name + " stub worker failed (simulated)");
+        }
+
+        String batchVersion = version;
+        List<ModelOutput> outputs = new ArrayList<>(images.size());
+        for (PreparedImage image : images) {
+            try {
+                outputs.add(ModelOutput.of(probabilities(digest(image))).withVersion(batchVersion));
+            } catch (IOException e) {
+                outputs.add(ModelOutput.failed("Could not read " + image.source().getName() + ": " + e.getMessage()));
+            }
+        }
+        return outputs;
+    }
+
+    private long sampleLatencyMs(ThreadLocalRandom random) {
+        double median = behaviour.latencyMedian().toMillis();
+        if (median <= 0) {
+            return 0;
+        }
+        double sigma = Math.log(Math.max(behaviour.latencyP99().toMillis(), median) / median) / Z_99;
+        return Math.round(median * Math.exp(sigma * random.nextGaussian()));
+    }
+
+    // SHA-256 of the image bytes followed by the model id, so models differ but stay stable per image
+    private byte[] digest(PreparedImage image) throws IOException {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        try (InputStream in = new DigestInputStream(Files.newInputStream(image.source().toPath()), sha256)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        sha256.update(id.getBytes(StandardCharsets.UTF_8));
+        return sha256.digest();
+    }
+
+    /**
+     * Turns digest bytes into five probabilities that sum to 1, with one label usually clearly ahead,
+     * like the normalized sigmoid outputs of the real models.
+     */
+    static float[] probabilities(byte[] digest) {
+        double[] scores = new double[5];
+        double total = 0;
+        for (int label = 0; label < scores.length; label++) {
+            // Two digest bytes per label give a uniform value in (0, 1)
+            double uniform = (((digest[2 * label] & 0xff) << 8 | (digest[2 * label + 1] & 0xff)) + 0.5) / 65536.0;
+            double exponential = -Math.log(uniform);
+            scores[label] = exponential * exponential;
+            total += scores[label];
+        }
+        float[] probabilities = new float[scores.length];
+        for (int label = 0; label < scores.length; label++) {
+            probabilities[label] = (float) (scores[label] / total);
+        }
+        return probabilities;
+    }
+}
@@ -0,0 +1,51 @@
+package org.example.backend.service.inference;
+
+import javax.imageio.ImageIO;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * A 224x224 ECG-like test image for bringing models up before they take traffic: white ECG paper
+ * with a pink grid and a repeating beat, roughly what the models see in real uploads.
+ */
+public final class SyntheticEcg {
+
+    private SyntheticEcg() {}
+
+    // Written to a temp file, which the caller deletes
+    public static File writeTempPng() throws IOException {
+        int size = TensorArena.IMAGE_SIZE;
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, size, size);
+            graphics.setColor(new Color(255, 192, 203));
+            for (int line = 0; line < size; line += 8) {
+                graphics.drawLine(line, 0, line, size);
+                graphics.drawLine(0, line, size, line);
+            }
+            graphics.setColor(Color.BLACK);
+            graphics.setStroke(new BasicStroke(1.5f));
+            int baseline = size / 2;
+            int previousY = baseline;
+            for (int x = 1; x < size; x++) {
+                int phase = x % 56;
+                int y = baseline - (phase == 20 ? 40 : phase == 22 ? -12 : phase > 30 && phase < 40 ? 6 : 0);
+                graphics.drawLine(x - 1, previousY, x, y);
+                previousY = y;
+            }
+        } finally {
+            graphics.dispose();
+        }
+
+        File file = Files.createTempFile("deepheart-warmup-", ".png").toFile();
+        ImageIO.write(image, "png", file);
+        return file;
+    }
+}
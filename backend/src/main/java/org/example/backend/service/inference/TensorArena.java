@@ -0,0 +1,113 @@
+package org.example.backend.service.inference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A memory-mapped file divided into fixed-size slots, each holding one preprocessed
+ * image as little-endian float32 in height x width x channel order. The backend writes
+ * a slot once; every model worker maps the same file and reads the slot in place, so
+ * pixel data never lives on the JVM heap and is decoded only once per upload.
+ */
+public class TensorArena implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TensorArena.class);
+
+    public static final int IMAGE_SIZE = 224;
+    public static final int CHANNELS = 3;
+    public static final int FLOATS_PER_SLOT = IMAGE_SIZE * IMAGE_SIZE * CHANNELS;
+
+    private final Path path;
+    private final int slotCount;
+    private final FileChannel channel;
+    private final MappedByteBuffer mapped;
+    private final FloatBuffer tensors;
+    private final BlockingQueue<Integer> freeSlots;
+
+    public TensorArena(Path path, int slotCount) throws IOException {
+        if (slotCount < 1) {
+            throw new IllegalArgumentException("Tensor arena needs at least one slot");
+        }
+        this.path = path;
+        this.slotCount = slotCount;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        long bytes = (long) slotCount * FLOATS_PER_SLOT * Float.BYTES;
+        this.mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        this.tensors = mapped.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+
+        this.freeSlots = new ArrayBlockingQueue<>(slotCount);
+        for (int slot = 0; slot < slotCount; slot++) {
+            freeSlots.add(slot);
+        }
+        logger.info("Tensor arena {} mapped: {} slots, {} MB", path, slotCount, bytes / (1024 * 1024));
+    }
+
+    /**
+     * Reserves a free slot, waiting up to {@code timeout} for one to be released.
+     */
+    public int acquire(Duration timeout) throws InterruptedException {
+        Integer slot = freeSlots.poll(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        if (slot == null) {
+            throw new IllegalStateException("No free tensor slot after " + timeout.toMillis() + " ms");
+        }
+        return slot;
+    }
+
+    public void release(int slot) {
+        freeSlots.offer(slot);
+    }
+
+    // Absolute put, so threads filling different slots never share buffer position state
+    void put(int slot, int index, float value) {
+        tensors.put(slot * FLOATS_PER_SLOT + index, value);
+    }
+
+    float get(int slot, int index) {
+        return tensors.get(slot * FLOATS_PER_SLOT + index);
+    }
+
+    // A copy of the slot's little-endian float32 bytes, for model transports that cannot map the arena
+    public byte[] slotBytes(int slot) {
+        byte[] copy = new byte[FLOATS_PER_SLOT * Float.BYTES];
+        mapped.get(slot * copy.length, copy);
+        return copy;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    public int getFreeSlots() {
+        return freeSlots.size();
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not remove tensor arena {}", path, e);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.example.backend.service.inference;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary framing used on a model worker's stdin/stdout (mirrored in ai_models/src/model_worker.py).
+ * Every frame is a big-endian {@code u32} payload length followed by the payload, whose first
+ * byte is the frame type. Strings are {@code u16} length + UTF-8. Images are not sent on the
+ * pipe: a request names {@link TensorArena} slots the worker reads from its own mapping of
+ * the arena file (passed as {@code --arena <path>}). Worker logs go to stderr only.
+ *
+ * <pre>
+ * READY   worker -&gt; backend   type, model_type: str, labels: u16
+ * PREDICT backend -&gt; worker   type, id: u32, count: u16, count x tensor_slot: u32
+ * RESULT  worker -&gt; backend   type, id: u32, count: u16, labels: u16,
+ *                             count x (status: u8, 0 -&gt; labels x f32 | 1 -&gt; error: str)
+ * ERROR   worker -&gt; backend   type, id: u32, message: str
+ * </pre>
+ */
+final class WorkerProtocol {
+
+    static final byte READY = 0;
+    static final byte PREDICT = 1;
+    static final byte RESULT = 2;
+    static final byte ERROR = 3;
+
+    private static final byte ITEM_OK = 0;
+
+    // Guards against reading garbage as a length if the stream is ever out of sync
+    private static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+    private WorkerProtocol() {}
+
+    /**
+     * A decoded worker frame; {@code outputs} is set for RESULT, {@code message} for READY and ERROR.
+     */
+    record Frame(byte type, int requestId, String message, int labels, List<ModelOutput> outputs) {}
+
+    static void writePredict(DataOutputStream out, int requestId, List<PreparedImage> images) throws IOException {
+        out.writeInt(1 + 4 + 2 + 4 * images.size());
+        out.writeByte(PREDICT);
+        out.writeInt(requestId);
+        out.writeShort(images.size());
+        for (PreparedImage image : images) {
+            out.writeInt(image.slot());
+        }
+        out.flush();
+    }
+
+    static Frame readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 1 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Invalid worker frame length " + length);
+        }
+
+        byte type = in.readByte();
+        switch (type) {
+            case READY: {
+                String modelType = readString(in);
+                return new Frame(type, 0, modelType, in.readUnsignedShort(), null);
+            }
+            case RESULT: {
+                int requestId = in.readInt();
+                int count = in.readUnsignedShort();
+                int labels = in.readUnsignedShort();
+                List<ModelOutput> outputs = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    if (in.readByte() == ITEM_OK) {
+                        float[] probabilities = new float[labels];
+                        for (int label = 0; label < labels; label++) {
+                            probabilities[label] = in.readFloat();
+                        }
+                        outputs.add(ModelOutput.of(probabilities));
+                    } else {
+                        outputs.add(ModelOutput.failed(readString(in)));
+                    }
+                }
+                return new Frame(type, requestId, null, labels, outputs);
+            }
+            case ERROR: {
+                int requestId = in.readInt();
+                return new Frame(type, requestId, readString(in), 0, null);
+            }
+            default:
+                throw new IOException("Unknown worker frame type " + type);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,41 @@
+package org.example.backend.service.inference;
+
+import java.util.function.LongSupplier;
+
+/**
+ * When a {@link ModelWorkerPool} retires a worker and starts a fresh one in its place. TensorFlow
+ * processes grow slowly over thousands of predictions, so a worker is recycled once its resident
+ * memory reaches {@code maxRssBytes} or it has made {@code maxPredictions} predictions. Zero turns
+ * a limit off.
+ */
+public record WorkerRecyclePolicy(long maxRssBytes, long maxPredictions) {
+
+    public static final String MEMORY = "memory";
+    public static final String REQUESTS = "requests";
+
+    public static final WorkerRecyclePolicy DISABLED = new WorkerRecyclePolicy(0, 0);
+
+    public WorkerRecyclePolicy {
+        if (maxRssBytes < 0 || maxPredictions < 0) {
+            throw new IllegalArgumentException("Worker recycle limits must not be negative");
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxRssBytes > 0 || maxPredictions > 0;
+    }
+
+    /**
+     * {@link #MEMORY} or {@link #REQUESTS} when a worker with these counters should be recycled, else
+     * null. The resident memory (-1 when unknown) is only read while the memory limit is on.
+     */
+    public String recycleReason(long predictions, LongSupplier rssBytes) {
+        if (maxPredictions > 0 && predictions >= maxPredictions) {
+            return REQUESTS;
+        }
+        if (maxRssBytes > 0 && rssBytes.getAsLong() >= maxRssBytes) {
+            return MEMORY;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,97 @@
+-- Run on every start (spring.sql.init.mode); each statement must leave an existing schema untouched.
+
+CREATE TABLE IF NOT EXISTS users (
+    id                 UUID         NOT NULL PRIMARY KEY,
+    username           VARCHAR(50)  NOT NULL UNIQUE,
+    email              VARCHAR(100) NOT NULL UNIQUE,
+    password           VARCHAR(255) NOT NULL,
+    role               VARCHAR(20)  NOT NULL,
+    name               VARCHAR(100) NOT NULL,
+    phone              VARCHAR(15),
+    birthdate          DATE,
+    gender             VARCHAR(10),
+    smoking_status     VARCHAR(50),
+    blood_pressure     VARCHAR(20),
+    registration_date  DATE,
+    doctor_id          UUID REFERENCES users (id),
+    reset_token        VARCHAR(255),
+    reset_token_expiry TIMESTAMP(6)
+);
+
+CREATE TABLE IF NOT EXISTS user_medical_history (
+    user_id   UUID NOT NULL REFERENCES users (id),
+    condition VARCHAR(255)
+);
+
+CREATE TABLE IF NOT EXISTS ecg_records (
+    id             UUID             NOT NULL PRIMARY KEY,
+    user_id        UUID             NOT NULL REFERENCES users (id),
+    doctor_id      UUID REFERENCES users (id),
+    filename       VARCHAR(255)     NOT NULL,
+    status         VARCHAR(255)     NOT NULL,
+    date_added     TIMESTAMP(6)     NOT NULL,
+    image_digest   VARCHAR(64),
+    model_versions VARCHAR(255),
+    norm_prob      DOUBLE PRECISION NOT NULL,
+    mi_prob        DOUBLE PRECISION NOT NULL,
+    sttc_prob      DOUBLE PRECISION NOT NULL,
+    cd_prob        DOUBLE PRECISION NOT NULL,
+    hyp_prob       DOUBLE PRECISION NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS predictions (
+    id              UUID             NOT NULL PRIMARY KEY,
+    ecg_record_id   UUID             NOT NULL REFERENCES ecg_records (id),
+    class_name      VARCHAR(255)     NOT NULL,
+    confidence      DOUBLE PRECISION NOT NULL,
+    model_name      VARCHAR(255),
+    model_version   VARCHAR(255),
+    heatmap_path    VARCHAR(255),
+    latency_ms      BIGINT,
+    shadow          BOOLEAN          NOT NULL,
+    backfill_run_id UUID,
+    created_at      TIMESTAMP(6)
+);
+
+-- Shared by every node; rows are only ever removed by InferenceJobQueue.deleteFinishedJobs
+CREATE TABLE IF NOT EXISTS inference_jobs (
+    id               UUID          NOT NULL PRIMARY KEY,
+    record_id        UUID          NOT NULL,
+    file_path        VARCHAR(1024) NOT NULL,
+    priority         VARCHAR(16)   NOT NULL,
+    status           VARCHAR(16)   NOT NULL,
+    attempts         INTEGER       NOT NULL,
+    lease_owner      VARCHAR(255),
+    lease_expires_at TIMESTAMP(6),
+    available_at     TIMESTAMP(6)  NOT NULL,
+    result_json      VARCHAR(8192),
+    last_error       VARCHAR(1024),
+    created_at       TIMESTAMP(6)  NOT NULL,
+    updated_at       TIMESTAMP(6)  NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_inference_jobs_status ON inference_jobs (status, available_at);
+
+CREATE TABLE IF NOT EXISTS prediction_cache (
+    digest      VARCHAR(64)   NOT NULL PRIMARY KEY,
+    result_json VARCHAR(8192) NOT NULL,
+    created_at  TIMESTAMP(6)  NOT NULL
+);
+
+-- lastRecordId is the checkpoint an adopted run continues after
+CREATE TABLE IF NOT EXISTS backfill_runs (
+    id               UUID             NOT NULL PRIMARY KEY,
+    status           VARCHAR(16)      NOT NULL,
+    last_record_id   UUID,
+    scored_records   BIGINT           NOT NULL,
+    failed_records   BIGINT           NOT NULL,
+    rate_per_second  DOUBLE PRECISION NOT NULL,
+    batch_size       INTEGER          NOT NULL,
+    model_versions   VARCHAR(255),
+    lease_owner      VARCHAR(255),
+    lease_expires_at TIMESTAMP(6),
+    last_error       VARCHAR(1024),
+    created_at       TIMESTAMP(6)     NOT NULL,
+    updated_at       TIMESTAMP(6)     NOT NULL,
+    finished_at      TIMESTAMP(6)
+);
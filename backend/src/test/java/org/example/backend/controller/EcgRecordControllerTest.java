@@ -0,0 +1,139 @@
+package org.example.backend.controller;
+
+import org.example.backend.repository.UserRepository;
+import org.example.backend.service.EcgRecordService;
+import org.example.backend.service.EcgUploadPipelineService;
+import org.example.backend.service.HeatmapService;
+import org.example.backend.service.UploadAdmissionService;
+import org.example.backend.service.UploadJob;
+import org.example.backend.service.UserService;
+import org.example.backend.service.inference.Priority;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = EcgRecordController.class)
+public class EcgRecordControllerTest {
+
+    // Stream events are written on the calling thread, so each one is in the response as soon as its file finishes
+    @TestConfiguration
+    static class DirectStreamExecutor {
+        @Bean(name = "streamExecutor")
+        Executor streamExecutor() {
+            return Runnable::run;
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private EcgRecordService ecgRecordService;
+
+    @MockitoBean
+    private UserService userService;
+
+    @MockitoBean
+    private EcgUploadPipelineService uploadPipeline;
+
+    @MockitoBean
+    private UploadAdmissionService admissionService;
+
+    @MockitoBean
+    private HeatmapService heatmapService;
+
+    @MockitoBean
+    private UserRepository userRepository;
+
+    @Test
+    @WithMockUser(username = "doctor@test.com", roles = {"DOCTOR"})
+    public void testJobStreamSendsEachFileAsItFinishesThenTheSummary() throws Exception {
+        UploadJob job = new UploadJob(UUID.randomUUID(), null, 2, Priority.ROUTINE, () -> {});
+        UploadJob.FileTask broken = job.addFile("broken.txt");
+        UploadJob.FileTask slow = job.addFile("slow.png");
+        broken.fail("Unsupported file format.");
+        Mockito.when(uploadPipeline.getJob(job.getId())).thenReturn(Optional.of(job));
+
+        MvcResult result = mockMvc.perform(get("/api/ecg/jobs/" + job.getId() + "/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // The failed file is on the stream before the other one has a result
+        assertThat(result.getResponse().getContentAsString()).contains("\"event\":\"result\"", "broken.txt")
+                .doesNotContain("slow.png");
+
+        slow.complete(Map.of("fileName", "slow.png", "status", "SUCCESS", "classification", "NORM"));
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"));
+        String[] lines = result.getResponse().getContentAsString().trim().split("\n");
+        assertThat(lines).hasSize(4);
+        assertThat(lines[0]).contains("\"event\":\"job\"", job.getId().toString());
+        assertThat(lines[1]).contains("\"status\":\"ERROR\"", "Unsupported file format.");
+        assertThat(lines[2]).contains("\"event\":\"result\"", "\"classification\":\"NORM\"");
+        assertThat(lines[3]).contains("\"event\":\"done\"", "\"status\":\"COMPLETED_WITH_ERRORS\"");
+    }
+
+    @Test
+    @WithMockUser(username = "doctor@test.com", roles = {"DOCTOR"})
+    public void testServerSentEventsWhenRequested() throws Exception {
+        UploadJob job = new UploadJob(UUID.randomUUID(), null, 1, Priority.ROUTINE, () -> {});
+        job.addFile("a.png").complete(Map.of("fileName", "a.png", "status", "SUCCESS"));
+        Mockito.when(uploadPipeline.getJob(job.getId())).thenReturn(Optional.of(job));
+
+        MvcResult result = mockMvc.perform(get("/api/ecg/jobs/" + job.getId() + "/stream")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+        assertThat(result.getResponse().getContentType()).startsWith(MediaType.TEXT_EVENT_STREAM_VALUE);
+        assertThat(result.getResponse().getContentAsString())
+                .contains("event:job", "event:result", "event:done", "\"fileName\":\"a.png\"");
+    }
+
+    @Test
+    @WithMockUser(username = "doctor@test.com", roles = {"DOCTOR"})
+    public void testFinishedJobKeepsFullResultsAcrossStreamsAndPolls() throws Exception {
+        UploadJob job = new UploadJob(UUID.randomUUID(), null, 1, Priority.ROUTINE, () -> {});
+        job.addFile("a.png").complete(Map.of("id", "r1", "fileName", "a.png", "status", "SUCCESS",
+                "classification", "MI", "allPredictions", Map.of("model1", Map.of("classification", "MI"))));
+        Mockito.when(uploadPipeline.getJob(job.getId())).thenReturn(Optional.of(job));
+
+        MvcResult stream = mockMvc.perform(get("/api/ecg/jobs/" + job.getId() + "/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(stream)).andExpect(status().isOk());
+        assertThat(stream.getResponse().getContentAsString()).contains("\"allPredictions\"");
+
+        mockMvc.perform(get("/api/ecg/jobs/" + job.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].allPredictions.model1.classification").value("MI"));
+
+        mockMvc.perform(get("/api/ecg/jobs/" + job.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].id").value("r1"))
+                .andExpect(jsonPath("$.results[0].allPredictions.model1.classification").value("MI"));
+    }
+}
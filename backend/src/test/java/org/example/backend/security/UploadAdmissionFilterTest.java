@@ -0,0 +1,72 @@
+package org.example.backend.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.backend.service.UploadAdmissionService;
+import org.example.backend.service.inference.Priority;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UploadAdmissionFilterTest {
+
+    private UploadAdmissionFilter filter;
+
+    @BeforeEach
+    public void setup() {
+        UploadAdmissionService admissionService = new UploadAdmissionService(new SimpleMeterRegistry(), 2, 60, 0.75, 0);
+        // Saturated for ROUTINE uploads
+        assertThat(admissionService.tryAcquire(2, Priority.ROUTINE)).isTrue();
+        filter = new UploadAdmissionFilter(admissionService);
+    }
+
+    @AfterEach
+    public void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testSaturatedUploadOfSignedInUserGets429() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "doctor@test.com", null, AuthorityUtils.createAuthorityList("ROLE_DOCTOR")));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(upload(), response, chain);
+
+        assertThat(response.getStatus()).isEqualTo(429);
+        assertThat(response.getHeader("Retry-After")).isNotNull();
+        assertThat(chain.getRequest()).isNull();
+    }
+
+    @Test
+    public void testUploadWithoutSignedInUserIsLeftToAuthorization() throws Exception {
+        for (boolean anonymous : new boolean[]{false, true}) {
+            if (anonymous) {
+                SecurityContextHolder.getContext().setAuthentication(new AnonymousAuthenticationToken(
+                        "key", "anonymousUser", AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS")));
+            }
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            MockFilterChain chain = new MockFilterChain();
+
+            filter.doFilter(upload(), response, chain);
+
+            assertThat(response.getStatus()).isEqualTo(200);
+            assertThat(chain.getRequest()).isNotNull();
+        }
+    }
+
+    private static MockHttpServletRequest upload() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/ecg/upload");
+        request.setQueryString("priority=ROUTINE");
+        return request;
+    }
+}
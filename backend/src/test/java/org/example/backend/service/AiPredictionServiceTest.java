@@ -0,0 +1,195 @@
+package org.example.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.assertj.core.api.Assertions;
+import org.example.backend.service.ensemble.CascadePolicy;
+import org.example.backend.service.ensemble.WeightedAverageStrategy;
+import org.example.backend.service.inference.EcgImagePreprocessor;
+import org.example.backend.service.inference.ModelBackend;
+import org.example.backend.service.inference.ModelBackendRegistry;
+import org.example.backend.service.inference.ModelOutput;
+import org.example.backend.service.inference.ModelUnavailableException;
+import org.example.backend.service.inference.PreparedImage;
+import org.example.backend.service.inference.Priority;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+public class AiPredictionServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private EcgImagePreprocessor imagePreprocessor;
+    private final ShadowEvaluationService shadowEvaluation = Mockito.mock(ShadowEvaluationService.class);
+
+    @BeforeEach
+    public void setup() throws Exception {
+        imagePreprocessor = Mockito.mock(EcgImagePreprocessor.class);
+        Mockito.when(imagePreprocessor.prepare(Mockito.any(File.class), Mockito.any(Priority.class)))
+                .thenAnswer(invocation -> new PreparedImage(invocation.getArgument(0), 0, null, invocation.getArgument(1)));
+    }
+
+    @Test
+    public void testEnsembleWeightsEachModel() throws Exception {
+        AiPredictionService service = new AiPredictionService(new ModelBackendRegistry(List.of(
+                new FixedBackend("model1", "DenseNet121", 3.0, result("MI", 80, 10)),
+                new FixedBackend("model2", "ResNet", 1.0, result("NORM", 20, 70)))), new WeightedAverageStrategy(), imagePreprocessor, true, CascadePolicy.DISABLED, shadowEvaluation);
+
+        JsonNode prediction = objectMapper.readTree(service.predictEcgImage(new File("ecg.png")));
+
+        // MI: (3 * 80 + 20) / 4 = 65, NORM: (3 * 10 + 70) / 4 = 25
+        Assertions.assertThat(prediction.get("classification").asText()).isEqualTo("MI");
+        Assertions.assertThat(prediction.get("probabilities").get("MI").asDouble()).isEqualTo(65.0);
+        Assertions.assertThat(prediction.get("probabilities").get("NORM").asDouble()).isEqualTo(25.0);
+        Assertions.assertThat(prediction.get("model_ids")).extracting(JsonNode::asText).containsExactly("model1", "model2");
+        Assertions.assertThat(prediction.has("model2")).isTrue();
+        Assertions.assertThat(prediction.get("ensemble").get("model_agreement").get("models_agree").asBoolean()).isFalse();
+        Assertions.assertThat(prediction.get("model_timings_ms").has("ResNet")).isTrue();
+        Assertions.assertThat(prediction.get("model1").get("classification").asText()).isEqualTo("MI");
+        Assertions.assertThat(prediction.get("model1").get("probabilities").get("MI").asDouble()).isEqualTo(80.0);
+    }
+
+    @Test
+    public void testSingleModelIsPassedThrough() throws Exception {
+        AiPredictionService service = new AiPredictionService(new ModelBackendRegistry(List.of(
+                new FixedBackend("model1", "DenseNet121", 1.0, result("NORM", 5, 90)))), new WeightedAverageStrategy(), imagePreprocessor, true, CascadePolicy.DISABLED, shadowEvaluation);
+
+        JsonNode prediction = objectMapper.readTree(service.predictEcgImage(new File("ecg.png")));
+
+        Assertions.assertThat(prediction.get("classification").asText()).isEqualTo("NORM");
+        Assertions.assertThat(prediction.get("prediction_method").asText()).isEqualTo("single_model");
+    }
+
+    @Test
+    public void testModelErrorFailsThePredictionWithoutDegradedMode() throws Exception {
+        AiPredictionService service = new AiPredictionService(new ModelBackendRegistry(List.of(
+                new FixedBackend("model1", "DenseNet121", 1.0, result("NORM", 5, 90)),
+                new FixedBackend("model2", "ResNet", 1.0, ModelOutput.failed("model file missing")))), new WeightedAverageStrategy(), imagePreprocessor, false, CascadePolicy.DISABLED, shadowEvaluation);
+
+        JsonNode prediction = objectMapper.readTree(service.predictEcgImage(new File("ecg.png")));
+
+        Assertions.assertThat(prediction.get("error").asText()).contains("model file missing");
+    }
+
+    @Test
+    public void testDegradedModeAnswersFromRemainingModel() throws Exception {
+        AiPredictionService service = new AiPredictionService(new ModelBackendRegistry(List.of(
+                new FixedBackend("model1", "DenseNet121", 1.0, result("MI", 80, 10)),
+                new FailingBackend("model2", "ResNet", new ModelUnavailableException("ResNet is overloaded", ModelUnavailableException.OVERLOADED)))),
+                new WeightedAverageStrategy(), imagePreprocessor, true, CascadePolicy.DISABLED, shadowEvaluation);
+
+        JsonNode prediction = objectMapper.readTree(service.predictEcgImage(new File("ecg.png")));
+
+        Assertions.assertThat(prediction.has("error")).isFalse();
+        Assertions.assertThat(prediction.get("classification").asText()).isEqualTo("MI");
+        Assertions.assertThat(prediction.get("degraded").asBoolean()).isTrue();
+        Assertions.assertThat(prediction.get("prediction_method").asText()).isEqualTo("degraded_single_model");
+        Assertions.assertThat(prediction.get("model_ids")).extracting(JsonNode::asText).containsExactly("model1");
+        Assertions.assertThat(prediction.get("unavailable_models").get("ResNet").get("status").asText()).isEqualTo("overloaded");
+    }
+
+    @Test
+    public void testAllModelsFailingReportsEachStatus() throws Exception {
+        AiPredictionService service = new AiPredictionService(new ModelBackendRegistry(List.of(
+                new FailingBackend("model1", "DenseNet121", new ModelUnavailableException("DenseNet121 is unavailable", ModelUnavailableException.CIRCUIT_OPEN)),
+                new FailingBackend("model2", "ResNet", new TimeoutException()))),
+                new WeightedAverageStrategy(), imagePreprocessor, true, CascadePolicy.DISABLED, shadowEvaluation);
+
+        JsonNode prediction = objectMapper.readTree(service.predictEcgImage(new File("ecg.png")));
+
+        Assertions.assertThat(prediction.get("error").asText()).contains("DenseNet121 is unavailable");
+        Assertions.assertThat(prediction.get("unavailable_models").get("DenseNet121").get("status").asText()).isEqualTo("circuit_open");
+        Assertions.assertThat(prediction.get("unavailable_models").get("ResNet").get("status").asText()).isEqualTo("timeout");
+    }
+
+    @Test
+    public void testUnreadableImageIsReported() throws Exception {
+        Mockito.when(imagePreprocessor.prepare(Mockito.any(File.class), Mockito.any(Priority.class)))
+                .thenThrow(new IOException("Unsupported image format: ecg.dcm"));
+        AiPredictionService service = new AiPredictionService(new ModelBackendRegistry(List.of(
+                new FixedBackend("model1", "DenseNet121", 1.0, result("NORM", 5, 90)))), new WeightedAverageStrategy(), imagePreprocessor, true, CascadePolicy.DISABLED, shadowEvaluation);
+
+        JsonNode prediction = objectMapper.readTree(service.predictEcgImage(new File("ecg.dcm")));
+
+        Assertions.assertThat(prediction.get("error").asText()).contains("Unsupported image format");
+    }
+
+    @Test
+    public void testNoEnabledModels() throws Exception {
+        AiPredictionService service = new AiPredictionService(new ModelBackendRegistry(List.of()), new WeightedAverageStrategy(), imagePreprocessor, true, CascadePolicy.DISABLED, shadowEvaluation);
+
+        JsonNode prediction = objectMapper.readTree(service.predictEcgImage(new File("ecg.png")));
+
+        Assertions.assertThat(prediction.has("error")).isTrue();
+    }
+
+    @Test
+    public void testCascadeSkipsSecondModelWhenPrimaryIsConfident() throws Exception {
+        CascadePolicy cascade = new CascadePolicy(true, "model1", 0.9, Set.of("MI"));
+        AiPredictionService service = new AiPredictionService(new ModelBackendRegistry(List.of(
+                new FixedBackend("model1", "DenseNet121", 1.0, result("NORM", 2, 95)),
+                new FailingBackend("model2", "ResNet", new IllegalStateException("must not run")))),
+                new WeightedAverageStrategy(), imagePreprocessor, true, cascade, shadowEvaluation);
+
+        JsonNode prediction = objectMapper.readTree(service.predictEcgImage(new File("ecg.png")));
+
+        Assertions.assertThat(prediction.get("inference_path").asText()).isEqualTo("primary_only");
+        Assertions.assertThat(prediction.get("model_ids")).extracting(JsonNode::asText).containsExactly("model1");
+        Assertions.assertThat(prediction.get("classification").asText()).isEqualTo("NORM");
+        Assertions.assertThat(prediction.get("cascade").get("primary_confidence").asDouble()).isEqualTo(95.0);
+        Assertions.assertThat(prediction.has("degraded")).isFalse();
+    }
+
+    @Test
+    public void testCascadeEscalatesUnsurePrimaryAndDisagreementProneClasses() throws Exception {
+        CascadePolicy cascade = new CascadePolicy(true, "model1", 0.9, Set.of("MI"));
+
+        AiPredictionService unsure = new AiPredictionService(new ModelBackendRegistry(List.of(
+                new FixedBackend("model1", "DenseNet121", 1.0, result("NORM", 20, 70)),
+                new FixedBackend("model2", "ResNet", 1.0, result("NORM", 10, 80)))),
+                new WeightedAverageStrategy(), imagePreprocessor, true, cascade, shadowEvaluation);
+        JsonNode lowConfidence = objectMapper.readTree(unsure.predictEcgImage(new File("ecg.png")));
+
+        AiPredictionService infarction = new AiPredictionService(new ModelBackendRegistry(List.of(
+                new FixedBackend("model1", "DenseNet121", 1.0, result("MI", 96, 2)),
+                new FixedBackend("model2", "ResNet", 1.0, result("MI", 90, 5)))),
+                new WeightedAverageStrategy(), imagePreprocessor, true, cascade, shadowEvaluation);
+        JsonNode escalationClass = objectMapper.readTree(infarction.predictEcgImage(new File("ecg.png")));
+
+        Assertions.assertThat(lowConfidence.get("inference_path").asText()).isEqualTo("escalated");
+        Assertions.assertThat(lowConfidence.get("cascade").get("escalation_reason").asText()).isEqualTo(CascadePolicy.LOW_CONFIDENCE);
+        Assertions.assertThat(lowConfidence.get("model_ids")).extracting(JsonNode::asText).containsExactly("model1", "model2");
+        Assertions.assertThat(lowConfidence.get("probabilities").get("NORM").asDouble()).isEqualTo(75.0);
+        Assertions.assertThat(escalationClass.get("cascade").get("escalation_reason").asText()).isEqualTo(CascadePolicy.ESCALATION_CLASS);
+        Assertions.assertThat(escalationClass.get("model_ids")).hasSize(2);
+    }
+
+    // Probabilities in percent; the rest is spread evenly over STTC, CD and HYP
+    private ModelOutput result(String classification, double mi, double norm) {
+        float rest = (float) ((100 - mi - norm) / 300);
+        return ModelOutput.of(new float[]{(float) (norm / 100), (float) (mi / 100), rest, rest, rest});
+    }
+
+    private record FixedBackend(String id, String name, double weight, ModelOutput output) implements ModelBackend {
+        @Override public String getId() { return id; }
+        @Override public String getName() { return name; }
+        @Override public double getWeight() { return weight; }
+        @Override public CompletableFuture<ModelOutput> predict(PreparedImage image) { return CompletableFuture.completedFuture(output); }
+        @Override public void close() {}
+    }
+
+    private record FailingBackend(String id, String name, Throwable error) implements ModelBackend {
+        @Override public String getId() { return id; }
+        @Override public String getName() { return name; }
+        @Override public double getWeight() { return 1.0; }
+        @Override public CompletableFuture<ModelOutput> predict(PreparedImage image) { return CompletableFuture.failedFuture(error); }
+        @Override public void close() {}
+    }
+}
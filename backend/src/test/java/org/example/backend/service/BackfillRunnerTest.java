@@ -0,0 +1,141 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.example.backend.model.BackfillRun;
+import org.example.backend.model.EcgRecord;
+import org.example.backend.model.Prediction;
+import org.example.backend.repository.EcgRecordRepository;
+import org.example.backend.service.inference.Priority;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+public class BackfillRunnerTest {
+
+    private static final String PREDICTION_JSON = "{"
+            + "\"classification\":\"MI\",\"confidence\":61.5,"
+            + "\"probabilities\":{\"NORM\":10.0,\"MI\":61.5,\"STTC\":20.0,\"CD\":5.0,\"HYP\":3.5},"
+            + "\"model_ids\":[\"model1\"],\"model_versions\":{\"DenseNet121\":\"2\"},"
+            + "\"model1\":{\"classification\":\"MI\",\"confidence\":60.0,"
+            + "\"model_info\":{\"model_type\":\"DenseNet121\",\"model_version\":\"2\"}}"
+            + "}";
+
+    @TempDir
+    Path uploadDir;
+
+    private BackfillService backfillService;
+    private EcgRecordRepository ecgRecordRepository;
+    private EcgUploadPipelineService uploadPipeline;
+    private ModelWarmupService modelWarmupService;
+    private BackfillRunner runner;
+    private BackfillRun run;
+
+    @BeforeEach
+    public void setup() {
+        backfillService = Mockito.mock(BackfillService.class);
+        ecgRecordRepository = Mockito.mock(EcgRecordRepository.class);
+        uploadPipeline = Mockito.mock(EcgUploadPipelineService.class);
+        UploadAdmissionService admissionService = Mockito.mock(UploadAdmissionService.class);
+        Mockito.when(admissionService.getCapacity()).thenReturn(10);
+        modelWarmupService = Mockito.mock(ModelWarmupService.class);
+
+        runner = new BackfillRunner(backfillService, ecgRecordRepository, uploadPipeline, admissionService,
+                modelWarmupService, new SimpleMeterRegistry(), uploadDir.toString(), "node-a", 0.5, 10);
+        run = new BackfillRun(1000, 2, "DenseNet121=2");
+        ReflectionTestUtils.setField(run, "id", UUID.randomUUID());
+        Mockito.when(uploadPipeline.infer(Mockito.any(), Mockito.any(File.class), Mockito.eq(Priority.BULK)))
+                .thenReturn(CompletableFuture.completedFuture(PREDICTION_JSON));
+    }
+
+    @Test
+    public void testBatchesAreCheckpointedInKeysetOrderUntilNoRecordsRemain() throws IOException {
+        EcgRecord first = storedRecord("a.png");
+        EcgRecord missing = record("gone.png");
+        Mockito.when(ecgRecordRepository.findBackfillPage(ArgumentMatchers.eq(new UUID(0, 0)), Mockito.any(Pageable.class)))
+                .thenReturn(List.of(first, missing));
+        Mockito.when(ecgRecordRepository.findBackfillPage(ArgumentMatchers.eq(missing.getId()), Mockito.any(Pageable.class)))
+                .thenReturn(List.of());
+        Mockito.when(backfillService.checkpoint(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.anyList(),
+                Mockito.anyInt(), Mockito.anyInt())).thenReturn(true);
+
+        runner.runToEnd(run);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Prediction>> rows = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(backfillService).checkpoint(Mockito.eq(run.getId()), Mockito.eq("node-a"), Mockito.eq(missing.getId()),
+                rows.capture(), Mockito.eq(1), Mockito.eq(1));
+        Assertions.assertThat(rows.getValue()).extracting(Prediction::getModelName).containsExactly("ensemble", "DenseNet121");
+        Assertions.assertThat(rows.getValue()).allSatisfy(row -> {
+            Assertions.assertThat(row.getBackfillRunId()).isEqualTo(run.getId());
+            Assertions.assertThat(row.getEcgRecord()).isSameAs(first);
+        });
+        Assertions.assertThat(rows.getValue().get(0).getModelVersion()).isEqualTo("DenseNet121=2");
+        Mockito.verify(backfillService).finish(run.getId(), "node-a");
+    }
+
+    @Test
+    public void testRunStopsWhenCheckpointIsRejected() throws IOException {
+        EcgRecord first = storedRecord("a.png");
+        Mockito.when(ecgRecordRepository.findBackfillPage(Mockito.any(), Mockito.any(Pageable.class))).thenReturn(List.of(first));
+        Mockito.when(backfillService.checkpoint(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.anyList(),
+                Mockito.anyInt(), Mockito.anyInt())).thenReturn(false);
+
+        runner.runToEnd(run);
+
+        Mockito.verify(ecgRecordRepository, Mockito.times(1)).findBackfillPage(Mockito.any(), Mockito.any(Pageable.class));
+        Mockito.verify(backfillService, Mockito.never()).finish(Mockito.any(), Mockito.any());
+        Mockito.verify(backfillService, Mockito.never()).fail(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void testAdoptedRunResumesAfterItsStoredCheckpoint() throws IOException {
+        // A run stored by a node that stopped half way through
+        EcgRecord checkpoint = record("done.png");
+        EcgRecord next = storedRecord("b.png");
+        run.setLastRecordId(checkpoint.getId());
+        run.setScoredRecords(40);
+        Mockito.when(modelWarmupService.isReady()).thenReturn(true);
+        Mockito.when(backfillService.findRunning()).thenReturn(List.of(run.getId()));
+        Mockito.when(backfillService.adopt(run.getId(), "node-a")).thenReturn(Optional.of(run));
+        Mockito.when(ecgRecordRepository.findBackfillPage(ArgumentMatchers.eq(checkpoint.getId()), Mockito.any(Pageable.class)))
+                .thenReturn(List.of(next));
+        Mockito.when(ecgRecordRepository.findBackfillPage(ArgumentMatchers.eq(next.getId()), Mockito.any(Pageable.class)))
+                .thenReturn(List.of());
+        Mockito.when(backfillService.checkpoint(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.anyList(),
+                Mockito.anyInt(), Mockito.anyInt())).thenReturn(true);
+
+        runner.adoptRuns();
+
+        Mockito.verify(backfillService, Mockito.timeout(5000)).finish(run.getId(), "node-a");
+        Mockito.verify(backfillService).checkpoint(Mockito.eq(run.getId()), Mockito.eq("node-a"), Mockito.eq(next.getId()),
+                Mockito.anyList(), Mockito.eq(1), Mockito.eq(0));
+        Mockito.verify(ecgRecordRepository, Mockito.never())
+                .findBackfillPage(ArgumentMatchers.eq(new UUID(0, 0)), Mockito.any(Pageable.class));
+    }
+
+    private EcgRecord storedRecord(String filename) throws IOException {
+        Files.write(uploadDir.resolve(filename), new byte[]{1});
+        return record(filename);
+    }
+
+    private static EcgRecord record(String filename) {
+        EcgRecord record = new EcgRecord(null, null, filename, "Processed");
+        ReflectionTestUtils.setField(record, "id", UUID.randomUUID());
+        return record;
+    }
+}
@@ -0,0 +1,222 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.assertj.core.api.InstanceOfAssertFactories;
+import org.example.backend.model.EcgRecord;
+import org.example.backend.model.InferenceJob;
+import org.example.backend.repository.PredictionCacheRepository;
+import org.example.backend.service.inference.Priority;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+public class EcgUploadPipelineServiceTest {
+
+    private static final String PREDICTION_JSON = "{"
+            + "\"classification\":\"MI\",\"confidence\":61.5,"
+            + "\"probabilities\":{\"NORM\":10.0,\"MI\":61.5,\"STTC\":20.0,\"CD\":5.0,\"HYP\":3.5},"
+            + "\"model_ids\":[\"model1\"],"
+            + "\"model1\":{\"classification\":\"MI\",\"confidence\":60.0,"
+            + "\"probabilities\":{\"NORM\":10.0,\"MI\":60.0,\"STTC\":20.0,\"CD\":6.0,\"HYP\":4.0}}"
+            + "}";
+
+    private AiPredictionService aiPredictionService;
+    private EcgRecordService ecgRecordService;
+    private InferenceJobQueue inferenceJobQueue;
+    private HeatmapService heatmapService;
+    private PredictionCacheService predictionCacheService;
+    private EcgUploadPipelineService pipelineService;
+
+    @BeforeEach
+    public void setup() {
+        aiPredictionService = Mockito.mock(AiPredictionService.class);
+        ecgRecordService = Mockito.mock(EcgRecordService.class);
+        inferenceJobQueue = Mockito.mock(InferenceJobQueue.class);
+        heatmapService = Mockito.mock(HeatmapService.class);
+        predictionCacheService = new PredictionCacheService(
+                Mockito.mock(PredictionCacheRepository.class), Runnable::run, new SimpleMeterRegistry(), true, 100, 30);
+        pipelineService = pipeline(false);
+    }
+
+    @Test
+    public void testSubmitPersistsPredictionAndCompletesJob() {
+        UUID patientId = UUID.randomUUID();
+        UploadJob job = pipelineService.createJob(patientId, "routine check", 1).orElseThrow();
+        UploadJob.FileTask task = job.addFile("ecg.png");
+        EcgRecord record = pendingRecord();
+
+        Mockito.when(aiPredictionService.predictEcgImageAsync(Mockito.any(File.class), Mockito.any(Priority.class), Mockito.any()))
+                .thenReturn(CompletableFuture.completedFuture(PREDICTION_JSON));
+
+        pipelineService.submit(job, task, record, new File("ecg.png"));
+
+        Assertions.assertThat(task.getStage()).isEqualTo(UploadJob.Stage.DONE);
+        Assertions.assertThat(task.getResult()).containsEntry("classification", "MI");
+        Assertions.assertThat(task.getResult()).containsEntry("patientId", patientId.toString());
+        Assertions.assertThat(task.getResult().get("allPredictions")).asInstanceOf(InstanceOfAssertFactories.MAP).containsKey("model1");
+        Assertions.assertThat(record.getStatus()).isEqualTo("Processed");
+        Assertions.assertThat(record.getMiProbability()).isEqualTo(61.5);
+        Assertions.assertThat(job.getStatus()).isEqualTo("COMPLETED");
+        Mockito.verify(ecgRecordService).save(record);
+        Mockito.verify(heatmapService).schedule(record);
+    }
+
+    @Test
+    public void testHeatmapFailureDoesNotChangeTheResult() {
+        UploadJob job = pipelineService.createJob(UUID.randomUUID(), null, 1).orElseThrow();
+        UploadJob.FileTask task = job.addFile("ecg.png");
+        EcgRecord record = pendingRecord();
+
+        Mockito.when(aiPredictionService.predictEcgImageAsync(Mockito.any(File.class), Mockito.any(Priority.class), Mockito.any()))
+                .thenReturn(CompletableFuture.completedFuture(PREDICTION_JSON));
+        Mockito.doThrow(new IllegalStateException("heatmap queue broken")).when(heatmapService).schedule(record);
+
+        pipelineService.submit(job, task, record, new File("ecg.png"));
+
+        Assertions.assertThat(task.getStage()).isEqualTo(UploadJob.Stage.DONE);
+        Assertions.assertThat(task.getError()).isNull();
+        Assertions.assertThat(record.getStatus()).isEqualTo("Processed");
+        Assertions.assertThat(job.getStatus()).isEqualTo("COMPLETED");
+    }
+
+    @Test
+    public void testModelErrorMarksRecordFailed() {
+        UploadJob job = pipelineService.createJob(UUID.randomUUID(), null, 1).orElseThrow();
+        UploadJob.FileTask task = job.addFile("ecg.png");
+        EcgRecord record = pendingRecord();
+
+        Mockito.when(aiPredictionService.predictEcgImageAsync(Mockito.any(File.class), Mockito.any(Priority.class), Mockito.any()))
+                .thenReturn(CompletableFuture.completedFuture("{\"error\":\"DenseNet prediction failed\"}"));
+
+        pipelineService.submit(job, task, record, new File("ecg.png"));
+
+        Assertions.assertThat(task.getStage()).isEqualTo(UploadJob.Stage.FAILED);
+        Assertions.assertThat(task.getError()).contains("DenseNet");
+        Assertions.assertThat(record.getStatus()).isEqualTo("Failed");
+        Assertions.assertThat(job.getStatus()).isEqualTo("FAILED");
+    }
+
+    @Test
+    public void testFirstOutcomeOfAFileWins() {
+        UploadJob job = pipelineService.createJob(UUID.randomUUID(), null, 1).orElseThrow();
+        UploadJob.FileTask task = job.addFile("ecg.png");
+
+        task.complete(Map.of("status", "SUCCESS"));
+        task.fail("Timed out");
+        task.setStage(UploadJob.Stage.PERSISTENCE);
+
+        Assertions.assertThat(task.getStage()).isEqualTo(UploadJob.Stage.DONE);
+        Assertions.assertThat(task.getError()).isNull();
+        Assertions.assertThat(task.getResult()).containsEntry("status", "SUCCESS");
+        Assertions.assertThat(job.getStatus()).isEqualTo("COMPLETED");
+        // The admission slot was given back exactly once
+        Assertions.assertThat(pipelineService.createJob(UUID.randomUUID(), null, 2)).isPresent();
+    }
+
+    @Test
+    public void testJobIsRunningUntilEveryFileFinishes() {
+        UploadJob job = pipelineService.createJob(UUID.randomUUID(), null, 2).orElseThrow();
+        UploadJob.FileTask first = job.addFile("a.png");
+        EcgRecord record = pendingRecord();
+
+        Mockito.when(aiPredictionService.predictEcgImageAsync(Mockito.any(File.class), Mockito.any(Priority.class), Mockito.any()))
+                .thenReturn(new CompletableFuture<>());
+
+        pipelineService.submit(job, first, record, new File("a.png"));
+
+        Assertions.assertThat(first.getStage()).isEqualTo(UploadJob.Stage.INFERENCE);
+        Assertions.assertThat(job.getStatus()).isEqualTo("RUNNING");
+        Assertions.assertThat(pipelineService.getJob(job.getId())).contains(job);
+    }
+
+    @Test
+    public void testUploadsAreRejectedUntilAdmittedFilesFinish() {
+        UploadJob job = pipelineService.createJob(UUID.randomUUID(), null, 2).orElseThrow();
+        UploadJob.FileTask first = job.addFile("a.png");
+
+        Assertions.assertThat(pipelineService.createJob(UUID.randomUUID(), null, 1)).isEmpty();
+
+        Mockito.when(aiPredictionService.predictEcgImageAsync(Mockito.any(File.class), Mockito.any(Priority.class), Mockito.any()))
+                .thenReturn(CompletableFuture.completedFuture(PREDICTION_JSON));
+        pipelineService.submit(job, first, pendingRecord(), new File("a.png"));
+
+        Assertions.assertThat(first.getStage()).isEqualTo(UploadJob.Stage.DONE);
+        Assertions.assertThat(pipelineService.createJob(UUID.randomUUID(), null, 1)).isPresent();
+    }
+
+    @Test
+    public void testQueuedUploadCompletesWhenAnyNodeFinishedIt() {
+        pipelineService = pipeline(true);
+        UUID patientId = UUID.randomUUID();
+        UploadJob job = pipelineService.createJob(patientId, null, 1, Priority.STAT).orElseThrow();
+        UploadJob.FileTask task = job.addFile("ecg.png");
+        EcgRecord record = pendingRecord();
+
+        InferenceJob queued = new InferenceJob(record.getId(), "/shared/uploads/ecg.png", Priority.STAT);
+        ReflectionTestUtils.setField(queued, "id", UUID.randomUUID());
+        Mockito.when(inferenceJobQueue.enqueue(Mockito.eq(record.getId()), Mockito.anyString(), Mockito.eq(Priority.STAT)))
+                .thenReturn(queued);
+
+        pipelineService.submit(job, task, record, new File("ecg.png"));
+
+        Assertions.assertThat(task.getStage()).isEqualTo(UploadJob.Stage.INFERENCE);
+        Mockito.verifyNoInteractions(aiPredictionService);
+
+        queued.setStatus(InferenceJob.Status.DONE);
+        queued.setResultJson(PREDICTION_JSON);
+        Mockito.when(inferenceJobQueue.findFinished(Mockito.anyCollection())).thenReturn(List.of(queued));
+        pipelineService.collectQueuedResults();
+
+        Assertions.assertThat(task.getStage()).isEqualTo(UploadJob.Stage.DONE);
+        Assertions.assertThat(task.getResult()).containsEntry("classification", "MI");
+        Assertions.assertThat(record.getMiProbability()).isEqualTo(61.5);
+        // The node that ran the models has already saved the record
+        Mockito.verify(ecgRecordService, Mockito.never()).save(record);
+    }
+
+    @Test
+    public void testRetentionIsMeasuredFromWhenTheJobFinished() {
+        UploadJob job = pipelineService.createJob(UUID.randomUUID(), null, 1).orElseThrow();
+        UploadJob.FileTask task = job.addFile("ecg.png");
+        // A job that ran for two hours
+        ReflectionTestUtils.setField(job, "createdAt", LocalDateTime.now().minusHours(2));
+        Mockito.when(aiPredictionService.predictEcgImageAsync(Mockito.any(File.class), Mockito.any(Priority.class), Mockito.any()))
+                .thenReturn(CompletableFuture.completedFuture(PREDICTION_JSON));
+        pipelineService.submit(job, task, pendingRecord(), new File("ecg.png"));
+        Assertions.assertThat(job.getFinishedAt()).isNotNull();
+
+        pipelineService.purgeFinishedJobs();
+        Assertions.assertThat(pipelineService.getJob(job.getId())).contains(job);
+        Assertions.assertThat(task.getResult()).containsKey("allPredictions");
+
+        ReflectionTestUtils.setField(job, "finishedAt", LocalDateTime.now().minusMinutes(10));
+        pipelineService.purgeFinishedJobs();
+        Assertions.assertThat(pipelineService.getJob(job.getId())).contains(job);
+        Assertions.assertThat(task.getResult()).containsEntry("classification", "MI").doesNotContainKey("allPredictions");
+
+        ReflectionTestUtils.setField(job, "finishedAt", LocalDateTime.now().minusHours(2));
+        pipelineService.purgeFinishedJobs();
+        Assertions.assertThat(pipelineService.getJob(job.getId())).isEmpty();
+    }
+
+    private EcgUploadPipelineService pipeline(boolean queueEnabled) {
+        return new EcgUploadPipelineService(aiPredictionService, predictionCacheService, ecgRecordService, Runnable::run,
+                new UploadAdmissionService(new SimpleMeterRegistry(), 2, 60, 0.75, 0), heatmapService, inferenceJobQueue,
+                queueEnabled);
+    }
+
+    private EcgRecord pendingRecord() {
+        EcgRecord record = new EcgRecord(null, null, "ecg.png", "Pending");
+        ReflectionTestUtils.setField(record, "id", UUID.randomUUID());
+        return record;
+    }
+}
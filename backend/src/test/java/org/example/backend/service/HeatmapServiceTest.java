@@ -0,0 +1,140 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.example.backend.model.EcgRecord;
+import org.example.backend.model.Prediction;
+import org.example.backend.repository.EcgRecordRepository;
+import org.example.backend.repository.PredictionRepository;
+import org.example.backend.service.inference.Heatmap;
+import org.example.backend.service.inference.ModelBackend;
+import org.example.backend.service.inference.ModelBackendRegistry;
+import org.example.backend.service.inference.ModelOutput;
+import org.example.backend.service.inference.PreparedImage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HeatmapServiceTest {
+
+    @TempDir
+    Path uploadDir;
+
+    private EcgRecordRepository ecgRecordRepository;
+    private PredictionRepository predictionRepository;
+    private UploadAdmissionService admissionService;
+    private EcgRecord record;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        Files.write(uploadDir.resolve("ecg.png"), new byte[]{1, 2, 3});
+        record = new EcgRecord(null, null, "ecg.png", "Processed");
+        ReflectionTestUtils.setField(record, "id", UUID.randomUUID());
+        record.setImageDigest("abc123");
+
+        ecgRecordRepository = Mockito.mock(EcgRecordRepository.class);
+        Mockito.when(ecgRecordRepository.findById(record.getId())).thenReturn(Optional.of(record));
+        Mockito.when(ecgRecordRepository.getReferenceById(record.getId())).thenReturn(record);
+        predictionRepository = Mockito.mock(PredictionRepository.class);
+        admissionService = Mockito.mock(UploadAdmissionService.class);
+        Mockito.when(admissionService.getCapacity()).thenReturn(10);
+    }
+
+    @Test
+    public void testHeatmapIsComputedOnceAndStoredNextToUpload() throws Exception {
+        HeatmapBackend densenet = new HeatmapBackend("model1", "2", true);
+        HeatmapService service = service(densenet, false);
+
+        String fileName = service.heatmap(record.getId(), "model1").get();
+        String again = service.heatmap(record.getId(), "model1").get();
+
+        Assertions.assertThat(fileName).isEqualTo("abc123_model1_2.gradcam.png").isEqualTo(again);
+        Assertions.assertThat(uploadDir.resolve(fileName)).exists();
+        Assertions.assertThat(uploadDir.resolve(fileName + ".tmp")).doesNotExist();
+        Assertions.assertThat(densenet.calls.get()).isEqualTo(1);
+
+        ArgumentCaptor<Prediction> saved = ArgumentCaptor.forClass(Prediction.class);
+        Mockito.verify(predictionRepository).save(saved.capture());
+        Assertions.assertThat(saved.getValue().getHeatmapPath()).isEqualTo(fileName);
+        Assertions.assertThat(saved.getValue().getClassName()).isEqualTo("MI");
+        Assertions.assertThat(saved.getValue().getModelVersion()).isEqualTo("2");
+    }
+
+    @Test
+    public void testUnknownOrUnsupportedModelFails() {
+        HeatmapService service = service(new HeatmapBackend("model1", "1", false), false);
+
+        Assertions.assertThatThrownBy(() -> service.heatmap(record.getId(), "model9"))
+                .isInstanceOf(NoSuchElementException.class);
+        Assertions.assertThatThrownBy(() -> service.heatmap(record.getId(), "model1").get())
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    public void testScheduleIsSkippedUnderLoad() {
+        HeatmapBackend densenet = new HeatmapBackend("model1", "1", true);
+        HeatmapService service = service(densenet, true);
+
+        Mockito.when(admissionService.getInFlight()).thenReturn(8);
+        service.schedule(record);
+        Assertions.assertThat(densenet.calls.get()).isZero();
+
+        Mockito.when(admissionService.getInFlight()).thenReturn(1);
+        service.schedule(record);
+        Assertions.assertThat(densenet.calls.get()).isEqualTo(1);
+    }
+
+    private HeatmapService service(ModelBackend backend, boolean enabled) {
+        return new HeatmapService(new ModelBackendRegistry(List.of(backend)), admissionService, ecgRecordRepository,
+                predictionRepository, Runnable::run, new SimpleMeterRegistry(), uploadDir.toString(), enabled, 0.5,
+                1000, 1000);
+    }
+
+    // Writes a fixed PNG body; without heatmap support it keeps the interface default
+    private static class HeatmapBackend implements ModelBackend {
+        final String id;
+        final String version;
+        final boolean supported;
+        final AtomicInteger calls = new AtomicInteger();
+
+        HeatmapBackend(String id, String version, boolean supported) {
+            this.id = id;
+            this.version = version;
+            this.supported = supported;
+        }
+
+        @Override public String getId() { return id; }
+        @Override public String getName() { return "DenseNet121"; }
+        @Override public double getWeight() { return 1.0; }
+        @Override public String getVersion() { return version; }
+        @Override public CompletableFuture<ModelOutput> predict(PreparedImage image) {
+            return CompletableFuture.completedFuture(ModelOutput.of(new float[]{0.6f, 0.1f, 0.1f, 0.1f, 0.1f}));
+        }
+        @Override public Heatmap writeHeatmap(File image, File output, Duration timeout) throws Exception {
+            if (!supported) {
+                return ModelBackend.super.writeHeatmap(image, output, timeout);
+            }
+            calls.incrementAndGet();
+            Files.write(output.toPath(), new byte[]{(byte) 0x89, 'P', 'N', 'G'});
+            return new Heatmap("MI", 72.5);
+        }
+        @Override public void close() {}
+    }
+}
@@ -0,0 +1,122 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.example.backend.model.InferenceJob;
+import org.example.backend.repository.InferenceJobRepository;
+import org.example.backend.service.inference.Priority;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public class InferenceJobQueueTest {
+
+    private InferenceJobRepository inferenceJobRepository;
+    private InferenceJobQueue queue;
+
+    @BeforeEach
+    public void setup() {
+        inferenceJobRepository = Mockito.mock(InferenceJobRepository.class);
+        queue = new InferenceJobQueue(inferenceJobRepository, new SimpleMeterRegistry(), true, 60000, 2, 1000, 24);
+    }
+
+    @Test
+    public void testPendingGaugeReadsTheLastRefreshedCount() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        queue = new InferenceJobQueue(inferenceJobRepository, meterRegistry, true, 60000, 2, 1000, 24);
+        Mockito.when(inferenceJobRepository.countByStatus(InferenceJob.Status.PENDING)).thenReturn(7L);
+
+        Assertions.assertThat(meterRegistry.get("inference.jobs.pending").gauge().value()).isZero();
+        queue.refreshPendingCount();
+        Assertions.assertThat(meterRegistry.get("inference.jobs.pending").gauge().value()).isEqualTo(7.0);
+        Assertions.assertThat(meterRegistry.get("inference.jobs.pending").gauge().value()).isEqualTo(7.0);
+        Mockito.verify(inferenceJobRepository, Mockito.times(1)).countByStatus(InferenceJob.Status.PENDING);
+    }
+
+    @Test
+    public void testDisabledQueueLeavesTheTableAlone() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        queue = new InferenceJobQueue(inferenceJobRepository, meterRegistry, false, 60000, 2, 1000, 24);
+
+        queue.refreshPendingCount();
+        queue.deleteFinishedJobs();
+
+        Assertions.assertThat(meterRegistry.find("inference.jobs.pending").gauge()).isNull();
+        Mockito.verifyNoInteractions(inferenceJobRepository);
+    }
+
+    @Test
+    public void testClaimLeasesJobsAndGivesUpOnExhaustedOnes() {
+        InferenceJob fresh = job(InferenceJob.Status.PENDING, 0, null);
+        InferenceJob crashed = job(InferenceJob.Status.RUNNING, 1, "node-a");
+        InferenceJob exhausted = job(InferenceJob.Status.RUNNING, 2, "node-a");
+        Mockito.when(inferenceJobRepository.lockClaimable(Mockito.any(), Mockito.eq(3)))
+                .thenReturn(List.of(fresh, crashed, exhausted));
+
+        InferenceJobQueue.Claim claim = queue.claim("node-b", 3);
+
+        Assertions.assertThat(claim.claimed()).containsExactly(fresh, crashed);
+        Assertions.assertThat(claim.claimed()).allSatisfy(job -> {
+            Assertions.assertThat(job.getStatus()).isEqualTo(InferenceJob.Status.RUNNING);
+            Assertions.assertThat(job.getLeaseOwner()).isEqualTo("node-b");
+            Assertions.assertThat(job.getLeaseExpiresAt()).isAfter(LocalDateTime.now());
+        });
+        Assertions.assertThat(fresh.getAttempts()).isEqualTo(1);
+        Assertions.assertThat(crashed.getAttempts()).isEqualTo(2);
+        Assertions.assertThat(claim.abandoned()).containsExactly(exhausted);
+        Assertions.assertThat(exhausted.getStatus()).isEqualTo(InferenceJob.Status.FAILED);
+    }
+
+    @Test
+    public void testFailedAttemptIsRetriedAfterBackoffUntilAttemptsRunOut() {
+        InferenceJob job = job(InferenceJob.Status.RUNNING, 1, "node-a");
+        Mockito.when(inferenceJobRepository.lockById(job.getId())).thenReturn(Optional.of(job));
+
+        Assertions.assertThat(queue.retryOrFail(job.getId(), "node-a", "worker died", true)).isFalse();
+        Assertions.assertThat(job.getStatus()).isEqualTo(InferenceJob.Status.PENDING);
+        Assertions.assertThat(job.getLeaseOwner()).isNull();
+        Assertions.assertThat(job.getAvailableAt()).isAfter(LocalDateTime.now());
+
+        job.setStatus(InferenceJob.Status.RUNNING);
+        job.setLeaseOwner("node-b");
+        job.setAttempts(2);
+        Assertions.assertThat(queue.retryOrFail(job.getId(), "node-b", "worker died again", true)).isTrue();
+        Assertions.assertThat(job.getStatus()).isEqualTo(InferenceJob.Status.FAILED);
+        Assertions.assertThat(job.getLastError()).isEqualTo("worker died again");
+    }
+
+    @Test
+    public void testResultOfLostLeaseIsDropped() {
+        InferenceJob job = job(InferenceJob.Status.RUNNING, 2, "node-b");
+        Mockito.when(inferenceJobRepository.lockById(job.getId())).thenReturn(Optional.of(job));
+
+        List<String> applied = new ArrayList<>();
+        Assertions.assertThat(queue.complete(job.getId(), "node-a", "{}", () -> applied.add("node-a"))).isFalse();
+        Assertions.assertThat(job.getStatus()).isEqualTo(InferenceJob.Status.RUNNING);
+
+        Assertions.assertThat(queue.complete(job.getId(), "node-b", "{\"classification\":\"MI\"}", () -> applied.add("node-b"))).isTrue();
+        Assertions.assertThat(job.getStatus()).isEqualTo(InferenceJob.Status.DONE);
+        // Only the lease holder stores the prediction on the record
+        Assertions.assertThat(applied).containsExactly("node-b");
+        Assertions.assertThat(job.getResultJson()).contains("MI");
+    }
+
+    private InferenceJob job(InferenceJob.Status status, int attempts, String leaseOwner) {
+        InferenceJob job = new InferenceJob(UUID.randomUUID(), "/shared/uploads/ecg.png", Priority.ROUTINE);
+        ReflectionTestUtils.setField(job, "id", UUID.randomUUID());
+        job.setStatus(status);
+        job.setAttempts(attempts);
+        job.setLeaseOwner(leaseOwner);
+        if (status == InferenceJob.Status.RUNNING) {
+            job.setLeaseExpiresAt(LocalDateTime.now().minusSeconds(1));
+        }
+        return job;
+    }
+}
@@ -0,0 +1,128 @@
+package org.example.backend.service;
+
+import org.assertj.core.api.Assertions;
+import org.example.backend.service.inference.EcgImagePreprocessor;
+import org.example.backend.service.inference.ModelBackend;
+import org.example.backend.service.inference.ModelBackendRegistry;
+import org.example.backend.service.inference.ModelOutput;
+import org.example.backend.service.inference.ModelVersion;
+import org.example.backend.service.inference.PreparedImage;
+import org.example.backend.service.inference.TensorArena;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+public class ModelVersionServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private TensorArena tensorArena;
+    private EcgImagePreprocessor imagePreprocessor;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        tensorArena = new TensorArena(tempDir.resolve("tensors.bin"), 2);
+        imagePreprocessor = new EcgImagePreprocessor(tensorArena, Duration.ofSeconds(1));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        tensorArena.close();
+    }
+
+    @Test
+    public void testSwapReturnsPreviousVersionAndFreesWarmupSlot() throws Exception {
+        VersionedBackend densenet = new VersionedBackend("model1", "DenseNet121", "1");
+        ModelVersionService service = service(new ModelBackendRegistry(List.of(densenet)));
+
+        String previous = service.swap("model1", new ModelVersion("2", "/models/densenet_v2.h5"));
+
+        Assertions.assertThat(previous).isEqualTo("1");
+        Assertions.assertThat(service.getVersions().get("model1")).containsEntry("version", "2");
+        Assertions.assertThat(densenet.modelPath).isEqualTo("/models/densenet_v2.h5");
+        Assertions.assertThat(tensorArena.getFreeSlots()).isEqualTo(2);
+    }
+
+    @Test
+    public void testUnknownModelIsRejected() {
+        ModelVersionService service = service(new ModelBackendRegistry(List.of(new VersionedBackend("model1", "DenseNet121", "1"))));
+
+        Assertions.assertThatThrownBy(() -> service.swap("model9", new ModelVersion("2", null)))
+                .isInstanceOf(NoSuchElementException.class);
+        Assertions.assertThatThrownBy(() -> service.swap(ModelVersionService.SHADOW_ID, new ModelVersion("2", null)))
+                .isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    public void testConcurrentSwapOfSameModelIsRejected() throws Exception {
+        VersionedBackend densenet = new VersionedBackend("model1", "DenseNet121", "1");
+        densenet.release = new CountDownLatch(1);
+        ModelVersionService service = service(new ModelBackendRegistry(List.of(densenet)));
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return service.swap("model1", new ModelVersion("2", null));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Assertions.assertThat(densenet.started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        Assertions.assertThatThrownBy(() -> service.swap("model1", new ModelVersion("3", null)))
+                .isInstanceOf(IllegalStateException.class);
+
+        densenet.release.countDown();
+        Assertions.assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("1");
+        Assertions.assertThat(densenet.getVersion()).isEqualTo("2");
+    }
+
+    private ModelVersionService service(ModelBackendRegistry registry) {
+        return new ModelVersionService(registry, imagePreprocessor, 1000);
+    }
+
+    // Switches its version in place; optionally holds the swap until released
+    private static class VersionedBackend implements ModelBackend {
+        final String id;
+        final String name;
+        final CountDownLatch started = new CountDownLatch(1);
+        volatile CountDownLatch release;
+        volatile String version;
+        volatile String modelPath;
+
+        VersionedBackend(String id, String name, String version) {
+            this.id = id;
+            this.name = name;
+            this.version = version;
+        }
+
+        @Override public String getId() { return id; }
+        @Override public String getName() { return name; }
+        @Override public double getWeight() { return 1.0; }
+        @Override public String getVersion() { return version; }
+        @Override public CompletableFuture<ModelOutput> predict(PreparedImage image) {
+            return CompletableFuture.completedFuture(ModelOutput.of(new float[]{0.6f, 0.1f, 0.1f, 0.1f, 0.1f}).withVersion(version));
+        }
+        @Override public void swapVersion(ModelVersion next, PreparedImage warmupImage, Executor executor, Duration timeout)
+                throws Exception {
+            started.countDown();
+            if (release != null) {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            modelPath = next.modelPath();
+            version = next.version();
+        }
+        @Override public void close() {}
+    }
+}
@@ -0,0 +1,113 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.example.backend.service.inference.EcgImagePreprocessor;
+import org.example.backend.service.inference.ModelBackend;
+import org.example.backend.service.inference.ModelBackendRegistry;
+import org.example.backend.service.inference.ModelOutput;
+import org.example.backend.service.inference.PreparedImage;
+import org.example.backend.service.inference.TensorArena;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ModelWarmupServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private TensorArena tensorArena;
+    private EcgImagePreprocessor imagePreprocessor;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        tensorArena = new TensorArena(tempDir.resolve("tensors.bin"), 2);
+        imagePreprocessor = new EcgImagePreprocessor(tensorArena, Duration.ofSeconds(1));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        tensorArena.close();
+    }
+
+    @Test
+    public void testReadyOnlyAfterEveryModelAnswered() {
+        WarmupBackend densenet = new WarmupBackend("model1", "DenseNet121", 0);
+        WarmupBackend resnet = new WarmupBackend("model2", "ResNet", 0);
+        ModelWarmupService service = service(new ModelBackendRegistry(List.of(densenet, resnet)));
+
+        Assertions.assertThat(service.isReady()).isFalse();
+        Assertions.assertThat(service.getStatuses().get("ResNet").state()).isEqualTo(ModelWarmupService.State.PENDING);
+
+        service.warmUpUntilReady();
+
+        Assertions.assertThat(service.isReady()).isTrue();
+        Assertions.assertThat(densenet.calls.get()).isEqualTo(2);
+        Assertions.assertThat(service.getStatuses()).containsOnlyKeys("DenseNet121", "ResNet");
+        Assertions.assertThat(service.getStatuses().get("DenseNet121").firstMs()).isNotNull();
+        Assertions.assertThat(service.getStatuses().get("DenseNet121").steadyMs()).isNotNull();
+        Assertions.assertThat(tensorArena.getFreeSlots()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFailedModelIsRetried() {
+        WarmupBackend flaky = new WarmupBackend("model1", "DenseNet121", 1);
+        ModelWarmupService service = service(new ModelBackendRegistry(List.of(flaky)));
+
+        service.warmUpUntilReady();
+
+        Assertions.assertThat(service.isReady()).isTrue();
+        Assertions.assertThat(flaky.calls.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void testDisabledWarmupIsReadyAtOnce() {
+        ModelWarmupService service = new ModelWarmupService(
+                new ModelBackendRegistry(List.of(new WarmupBackend("model1", "DenseNet121", 0))),
+                imagePreprocessor, new SimpleMeterRegistry(), false, 2, 1000, 1);
+
+        Assertions.assertThat(service.isReady()).isTrue();
+    }
+
+    private ModelWarmupService service(ModelBackendRegistry registry) {
+        return new ModelWarmupService(registry, imagePreprocessor, new SimpleMeterRegistry(), true, 2, 1000, 1);
+    }
+
+    // Answers warm-up requests after failing the first `failures` of them
+    private static class WarmupBackend implements ModelBackend {
+        final String id;
+        final String name;
+        final int failures;
+        final AtomicInteger calls = new AtomicInteger();
+
+        WarmupBackend(String id, String name, int failures) {
+            this.id = id;
+            this.name = name;
+            this.failures = failures;
+        }
+
+        @Override public String getId() { return id; }
+        @Override public String getName() { return name; }
+        @Override public double getWeight() { return 1.0; }
+        @Override public CompletableFuture<ModelOutput> predict(PreparedImage image) {
+            return CompletableFuture.failedFuture(new AssertionError("warm-up must not use predict"));
+        }
+        @Override public CompletableFuture<ModelOutput> warmUp(PreparedImage image, Executor executor) {
+            if (calls.incrementAndGet() <= failures) {
+                return CompletableFuture.failedFuture(new IOException(name + " worker exited with code 1"));
+            }
+            return CompletableFuture.completedFuture(ModelOutput.of(new float[]{0.6f, 0.1f, 0.1f, 0.1f, 0.1f}));
+        }
+        @Override public void close() {}
+    }
+}
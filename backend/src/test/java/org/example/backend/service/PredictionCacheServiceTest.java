@@ -0,0 +1,122 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.example.backend.model.PredictionCacheEntry;
+import org.example.backend.repository.PredictionCacheRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PredictionCacheServiceTest {
+
+    private static final String DIGEST = "ab".repeat(32);
+    private static final String PREDICTION_JSON = "{\"classification\":\"NORM\",\"confidence\":90.0}";
+
+    private PredictionCacheRepository predictionCacheRepository;
+    private PredictionCacheService predictionCacheService;
+
+    @BeforeEach
+    public void setup() {
+        predictionCacheRepository = Mockito.mock(PredictionCacheRepository.class);
+        Mockito.when(predictionCacheRepository.findById(Mockito.anyString())).thenReturn(Optional.empty());
+        predictionCacheService = new PredictionCacheService(
+                predictionCacheRepository, Runnable::run, new SimpleMeterRegistry(), true, 100, 30);
+    }
+
+    @Test
+    public void testSecondLookupIsServedFromCache() {
+        AtomicInteger inferences = new AtomicInteger();
+
+        String first = predictionCacheService.getOrCompute(DIGEST, () -> {
+            inferences.incrementAndGet();
+            return CompletableFuture.completedFuture(PREDICTION_JSON);
+        }).join();
+        String second = predictionCacheService.getOrCompute(DIGEST, () -> {
+            inferences.incrementAndGet();
+            return CompletableFuture.completedFuture(PREDICTION_JSON);
+        }).join();
+
+        Assertions.assertThat(first).isEqualTo(PREDICTION_JSON);
+        Assertions.assertThat(second).isEqualTo(PREDICTION_JSON);
+        Assertions.assertThat(inferences).hasValue(1);
+        Assertions.assertThat(predictionCacheService.hitRatio()).isEqualTo(0.5);
+        Mockito.verify(predictionCacheRepository).save(Mockito.any(PredictionCacheEntry.class));
+    }
+
+    @Test
+    public void testConcurrentRequestsShareOneInference() {
+        CompletableFuture<String> running = new CompletableFuture<>();
+        AtomicInteger inferences = new AtomicInteger();
+
+        CompletableFuture<String> first = predictionCacheService.getOrCompute(DIGEST, () -> {
+            inferences.incrementAndGet();
+            return running;
+        });
+        CompletableFuture<String> second = predictionCacheService.getOrCompute(DIGEST, () -> {
+            inferences.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+
+        Assertions.assertThat(second.isDone()).isFalse();
+        running.complete(PREDICTION_JSON);
+
+        Assertions.assertThat(first.join()).isEqualTo(PREDICTION_JSON);
+        Assertions.assertThat(second.join()).isEqualTo(PREDICTION_JSON);
+        Assertions.assertThat(inferences).hasValue(1);
+    }
+
+    @Test
+    public void testErrorResultsAreNotCached() {
+        String errorJson = "{\"error\":\"DenseNet prediction failed\"}";
+
+        predictionCacheService.getOrCompute(DIGEST, () -> CompletableFuture.completedFuture(errorJson)).join();
+        String retried = predictionCacheService.getOrCompute(DIGEST,
+                () -> CompletableFuture.completedFuture(PREDICTION_JSON)).join();
+
+        Assertions.assertThat(retried).isEqualTo(PREDICTION_JSON);
+        Mockito.verify(predictionCacheRepository, Mockito.times(1)).save(Mockito.any(PredictionCacheEntry.class));
+    }
+
+    @Test
+    public void testCacheabilityIsReadFromTheJsonFields() {
+        // Degraded, however it is formatted, is never cached; the word "error" inside a value does not matter
+        String degraded = "{\"classification\":\"NORM\", \"degraded\" : true}";
+        String mentionsError = "{\"classification\":\"NORM\",\"lastCheck\":\"error\"}";
+
+        predictionCacheService.getOrCompute(DIGEST, () -> CompletableFuture.completedFuture(degraded)).join();
+        Mockito.verify(predictionCacheRepository, Mockito.never()).save(Mockito.any(PredictionCacheEntry.class));
+
+        predictionCacheService.getOrCompute(DIGEST, () -> CompletableFuture.completedFuture(mentionsError)).join();
+        Mockito.verify(predictionCacheRepository).save(Mockito.any(PredictionCacheEntry.class));
+    }
+
+    @Test
+    public void testPersistedEntryIsUsedAfterRestart() {
+        PredictionCacheEntry entry = new PredictionCacheEntry(DIGEST, PREDICTION_JSON);
+        Mockito.when(predictionCacheRepository.findById(DIGEST)).thenReturn(Optional.of(entry));
+
+        String result = predictionCacheService.getOrCompute(DIGEST,
+                () -> CompletableFuture.failedFuture(new IllegalStateException("models should not run"))).join();
+
+        Assertions.assertThat(result).isEqualTo(PREDICTION_JSON);
+        Assertions.assertThat(predictionCacheService.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testExpiredPersistedEntryIsIgnored() {
+        PredictionCacheEntry entry = new PredictionCacheEntry(DIGEST, "{\"classification\":\"MI\"}");
+        entry.setCreatedAt(LocalDateTime.now().minusDays(31));
+        Mockito.when(predictionCacheRepository.findById(DIGEST)).thenReturn(Optional.of(entry));
+
+        String result = predictionCacheService.getOrCompute(DIGEST,
+                () -> CompletableFuture.completedFuture(PREDICTION_JSON)).join();
+
+        Assertions.assertThat(result).isEqualTo(PREDICTION_JSON);
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.example.backend.model.EcgRecord;
+import org.example.backend.model.Prediction;
+import org.example.backend.repository.EcgRecordRepository;
+import org.example.backend.repository.PredictionRepository;
+import org.example.backend.service.inference.ModelBackend;
+import org.example.backend.service.inference.ModelBackendRegistry;
+import org.example.backend.service.inference.ModelOutput;
+import org.example.backend.service.inference.PreparedImage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+public class ShadowEvaluationServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PreparedImage image = new PreparedImage(new File("ecg.png"), 0, null);
+    private PredictionRepository predictionRepository;
+    private EcgRecordRepository ecgRecordRepository;
+    private UploadAdmissionService admissionService;
+
+    @BeforeEach
+    public void setup() {
+        predictionRepository = Mockito.mock(PredictionRepository.class);
+        ecgRecordRepository = Mockito.mock(EcgRecordRepository.class);
+        Mockito.when(ecgRecordRepository.getReferenceById(Mockito.any())).thenReturn(new EcgRecord());
+        admissionService = new UploadAdmissionService(meterRegistry, 10, 60, 0.75, 0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testShadowAndEnsembleAnswersAreStoredSideBySide() {
+        ShadowEvaluationService service = service(new FixedBackend(ModelOutput.of(new float[]{0.1f, 0.8f, 0.05f, 0.03f, 0.02f})));
+        CompletableFuture<String> production = new CompletableFuture<>();
+
+        CompletableFuture<Void> done = service.evaluate(UUID.randomUUID(), image, production);
+        production.complete("{\"classification\":\"MI\",\"confidence\":72.5}");
+
+        Assertions.assertThat(done).isCompleted();
+        ArgumentCaptor<List<Prediction>> rows = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(predictionRepository).saveAll(rows.capture());
+        Assertions.assertThat(rows.getValue()).extracting(Prediction::getModelName).containsExactly("ensemble", "DenseNet-v2");
+        Assertions.assertThat(rows.getValue()).extracting(Prediction::isShadow).containsExactly(false, true);
+        Assertions.assertThat(rows.getValue().get(1).getClassName()).isEqualTo("MI");
+        Assertions.assertThat(rows.getValue().get(1).getConfidence()).isEqualTo(80.0);
+        Assertions.assertThat(meterRegistry.get("inference.shadow.agreement").tag("agree", "true").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void testShadowIsShedUnderLoad() {
+        FixedBackend shadow = new FixedBackend(ModelOutput.of(new float[]{0.9f, 0.025f, 0.025f, 0.025f, 0.025f}));
+        ShadowEvaluationService service = service(shadow);
+        admissionService.tryAcquire(6);
+
+        CompletableFuture<Void> done = service.evaluate(UUID.randomUUID(), image, CompletableFuture.completedFuture("{}"));
+
+        Assertions.assertThat(done).isCompleted();
+        Assertions.assertThat(shadow.calls).isZero();
+        Assertions.assertThat(meterRegistry.get("inference.shadow.shed").tag("reason", "load").counter().count()).isEqualTo(1.0);
+        Mockito.verifyNoInteractions(predictionRepository);
+    }
+
+    private ShadowEvaluationService service(ModelBackend shadow) {
+        return new ShadowEvaluationService(new ModelBackendRegistry(List.of(), shadow), admissionService,
+                predictionRepository, ecgRecordRepository, Runnable::run, meterRegistry, 2, 1.0, 0.5);
+    }
+
+    private static class FixedBackend implements ModelBackend {
+        private final ModelOutput output;
+        private int calls;
+
+        FixedBackend(ModelOutput output) {
+            this.output = output;
+        }
+
+        @Override public String getId() { return "shadow"; }
+        @Override public String getName() { return "DenseNet-v2"; }
+        @Override public double getWeight() { return 1.0; }
+        @Override public CompletableFuture<ModelOutput> predict(PreparedImage image) {
+            calls++;
+            return CompletableFuture.completedFuture(output);
+        }
+        @Override public void close() {}
+    }
+}
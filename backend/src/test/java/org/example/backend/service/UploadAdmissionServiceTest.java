@@ -0,0 +1,52 @@
+package org.example.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.example.backend.service.inference.Priority;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class UploadAdmissionServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UploadAdmissionService admissionService = new UploadAdmissionService(meterRegistry, 4, 60, 0.5, 2);
+
+    @Test
+    public void testAdmitsWholeUploadsUpToCapacity() {
+        Assertions.assertThat(admissionService.tryAcquire(3)).isTrue();
+        Assertions.assertThat(admissionService.tryAcquire(2)).isFalse();
+        Assertions.assertThat(admissionService.tryAcquire(1)).isTrue();
+        Assertions.assertThat(admissionService.isSaturated()).isTrue();
+
+        admissionService.release();
+
+        Assertions.assertThat(admissionService.tryAcquire(1)).isTrue();
+        Assertions.assertThat(meterRegistry.get("upload.admission.in.flight").gauge().value()).isEqualTo(4.0);
+        Assertions.assertThat(meterRegistry.get("upload.admission.rejected").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void testRetryAfterFollowsDrainRate() {
+        admissionService.tryAcquire(4);
+        Assertions.assertThat(admissionService.retryAfterSeconds(1)).isEqualTo(60);
+
+        // Two ECGs per second are finishing; three more need room
+        ReflectionTestUtils.setField(admissionService, "drainRatePerSecond", 2.0);
+
+        Assertions.assertThat(admissionService.retryAfterSeconds(3)).isEqualTo(2);
+        Assertions.assertThat(admissionService.retryAfterSeconds(1)).isEqualTo(1);
+    }
+
+    @Test
+    public void testStatUploadsUseReserveAndBulkUploadsLeaveHeadroom() {
+        // Bulk may fill half of the 4 places, STAT may go 2 beyond them
+        Assertions.assertThat(admissionService.tryAcquire(2, Priority.BULK)).isTrue();
+        Assertions.assertThat(admissionService.tryAcquire(1, Priority.BULK)).isFalse();
+        Assertions.assertThat(admissionService.tryAcquire(2, Priority.ROUTINE)).isTrue();
+        Assertions.assertThat(admissionService.isSaturated(Priority.ROUTINE)).isTrue();
+        Assertions.assertThat(admissionService.isSaturated(Priority.STAT)).isFalse();
+
+        Assertions.assertThat(admissionService.tryAcquire(2, Priority.STAT)).isTrue();
+        Assertions.assertThat(admissionService.tryAcquire(1, Priority.STAT)).isFalse();
+    }
+}
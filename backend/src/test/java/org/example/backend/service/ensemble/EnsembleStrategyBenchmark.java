@@ -0,0 +1,66 @@
+package org.example.backend.service.ensemble;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of combining one upload's model outputs, per strategy. Not run by surefire;
+ * start {@link #main} from the IDE. Run with {@code -prof gc} to confirm the strategies
+ * allocate nothing ({@code gc.alloc.rate.norm} = 0 B/op).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EnsembleStrategyBenchmark {
+
+    @Param({"2", "4"})
+    public int models;
+
+    @Param({"average", "max", "majority_vote", "confidence_gated"})
+    public String strategyName;
+
+    private EnsembleStrategy strategy;
+    private double[][] probabilities;
+    private double[] weights;
+    private final double[] out = new double[EnsembleStrategy.LABELS.length];
+
+    @Setup
+    public void setup() {
+        strategy = EnsembleStrategies.forName(strategyName, 0.5);
+        Random random = new Random(42);
+        probabilities = new double[models][EnsembleStrategy.LABELS.length];
+        weights = new double[models];
+        for (int m = 0; m < models; m++) {
+            double total = 0.0;
+            for (int label = 0; label < EnsembleStrategy.LABELS.length; label++) {
+                probabilities[m][label] = random.nextDouble();
+                total += probabilities[m][label];
+            }
+            for (int label = 0; label < EnsembleStrategy.LABELS.length; label++) {
+                probabilities[m][label] = probabilities[m][label] / total * 100.0;
+            }
+            weights[m] = 1.0 + m;
+        }
+    }
+
+    @Benchmark
+    public int combine() {
+        return strategy.combine(probabilities, weights, models, out);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(EnsembleStrategyBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
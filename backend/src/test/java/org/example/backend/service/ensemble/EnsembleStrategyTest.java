@@ -0,0 +1,89 @@
+package org.example.backend.service.ensemble;
+
+import org.assertj.core.api.Assertions;
+import org.assertj.core.data.Offset;
+import org.junit.jupiter.api.Test;
+
+public class EnsembleStrategyTest {
+
+    // NORM, MI, STTC, CD, HYP
+    private static final double[] CONFIDENT_MI = {10, 70, 10, 5, 5};
+    private static final double[] UNSURE_NORM = {40, 30, 10, 10, 10};
+    private static final double[] CONFIDENT_STTC = {5, 20, 65, 5, 5};
+
+    private final double[] out = new double[EnsembleStrategy.LABELS.length];
+
+    @Test
+    public void testWeightedAverage() {
+        int primary = new WeightedAverageStrategy()
+                .combine(new double[][]{CONFIDENT_MI, UNSURE_NORM}, new double[]{1, 3}, 2, out);
+
+        // NORM: (10 + 3 * 40) / 4 = 32.5, MI: (70 + 3 * 30) / 4 = 40
+        Assertions.assertThat(EnsembleStrategy.LABELS[primary]).isEqualTo("MI");
+        Assertions.assertThat(out[0]).isCloseTo(32.5, Offset.offset(1e-9));
+        Assertions.assertThat(out[1]).isCloseTo(40.0, Offset.offset(1e-9));
+    }
+
+    @Test
+    public void testMaxKeepsStrongestFindingPerClass() {
+        int primary = new MaxProbabilityStrategy()
+                .combine(new double[][]{CONFIDENT_MI, CONFIDENT_STTC}, new double[]{1, 1}, 2, out);
+
+        Assertions.assertThat(EnsembleStrategy.LABELS[primary]).isEqualTo("MI");
+        Assertions.assertThat(out).containsExactly(10, 70, 65, 5, 5);
+    }
+
+    @Test
+    public void testMajorityVoteFollowsMostModels() {
+        double[][] probabilities = {UNSURE_NORM, UNSURE_NORM, CONFIDENT_MI};
+
+        int primary = new MajorityVoteStrategy().combine(probabilities, new double[]{1, 1, 1}, 3, out);
+
+        Assertions.assertThat(EnsembleStrategy.LABELS[primary]).isEqualTo("NORM");
+    }
+
+    @Test
+    public void testMajorityVoteTieGoesToHigherAverage() {
+        int primary = new MajorityVoteStrategy()
+                .combine(new double[][]{CONFIDENT_MI, UNSURE_NORM}, new double[]{1, 1}, 2, out);
+
+        Assertions.assertThat(EnsembleStrategy.LABELS[primary]).isEqualTo("MI");
+    }
+
+    @Test
+    public void testConfidenceGateDropsUnsureModels() {
+        int primary = new ConfidenceGatedStrategy(0.5)
+                .combine(new double[][]{UNSURE_NORM, CONFIDENT_STTC}, new double[]{5, 1}, 2, out);
+
+        Assertions.assertThat(EnsembleStrategy.LABELS[primary]).isEqualTo("STTC");
+        Assertions.assertThat(out).containsExactly(CONFIDENT_STTC);
+    }
+
+    @Test
+    public void testConfidenceGateFallsBackToAverage() {
+        int primary = new ConfidenceGatedStrategy(0.9)
+                .combine(new double[][]{CONFIDENT_MI, UNSURE_NORM}, new double[]{1, 1}, 2, out);
+
+        Assertions.assertThat(EnsembleStrategy.LABELS[primary]).isEqualTo("MI");
+        Assertions.assertThat(out[1]).isCloseTo(50.0, Offset.offset(1e-9));
+    }
+
+    @Test
+    public void testOnlyFirstRowsAreRead() {
+        double[][] probabilities = {CONFIDENT_MI, CONFIDENT_STTC, null};
+
+        int primary = new WeightedAverageStrategy().combine(probabilities, new double[]{1, 1, 1}, 1, out);
+
+        Assertions.assertThat(EnsembleStrategy.LABELS[primary]).isEqualTo("MI");
+    }
+
+    @Test
+    public void testForNameResolvesConfiguredStrategies() {
+        Assertions.assertThat(EnsembleStrategies.forName("average", 0.5)).isInstanceOf(WeightedAverageStrategy.class);
+        Assertions.assertThat(EnsembleStrategies.forName("MAX", 0.5)).isInstanceOf(MaxProbabilityStrategy.class);
+        Assertions.assertThat(EnsembleStrategies.forName("majority_vote", 0.5)).isInstanceOf(MajorityVoteStrategy.class);
+        Assertions.assertThat(EnsembleStrategies.forName("confidence_gated", 0.5)).isInstanceOf(ConfidenceGatedStrategy.class);
+        Assertions.assertThatThrownBy(() -> EnsembleStrategies.forName("median", 0.5))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
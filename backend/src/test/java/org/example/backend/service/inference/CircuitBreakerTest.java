@@ -0,0 +1,62 @@
+package org.example.backend.service.inference;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final CircuitBreaker breaker = new CircuitBreaker("Test", 3, Duration.ofSeconds(10), now::get);
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() {
+        fail(2);
+        breaker.onSuccess();
+        fail(2);
+        Assertions.assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        fail(1);
+
+        Assertions.assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        Assertions.assertThat(breaker.tryAcquire()).isFalse();
+        Assertions.assertThat(breaker.getRetryAfter()).isEqualTo(Duration.ofSeconds(10));
+    }
+
+    @Test
+    public void testHalfOpenLetsOneTrialThroughAndClosesOnSuccess() {
+        fail(3);
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        Assertions.assertThat(breaker.tryAcquire()).isTrue();
+        Assertions.assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        Assertions.assertThat(breaker.tryAcquire()).isFalse();
+
+        breaker.onSuccess();
+
+        Assertions.assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        Assertions.assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    public void testFailedTrialOpensAgain() {
+        fail(3);
+        now.addAndGet(Duration.ofSeconds(11).toNanos());
+        Assertions.assertThat(breaker.tryAcquire()).isTrue();
+
+        breaker.onFailure(new IOException("still broken"));
+
+        Assertions.assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        Assertions.assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            Assertions.assertThat(breaker.tryAcquire()).isTrue();
+            breaker.onFailure(new IOException("worker died"));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.backend.service.inference;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class CpuPartitionTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testCpusAreSplitEvenlyBetweenPlannedWorkers() {
+        CpuPartition partition = CpuPartition.of(CpuPartition.parseCpuList("0-7"), 3, 0, 1, null);
+
+        Assertions.assertThat(partition.getSlots()).extracting(CpuPartition.Slot::cpus)
+                .containsExactly(List.of(0, 1), List.of(2, 3), List.of(4, 5));
+        // More workers than CPUs: the groups wrap around
+        Assertions.assertThat(CpuPartition.of(List.of(0, 1), 3, 0, 1, null).getSlots()).extracting(CpuPartition.Slot::cpus)
+                .containsExactly(List.of(0), List.of(1), List.of(0));
+    }
+
+    @Test
+    public void testWorkersTakeTheLeastUsedGroup() {
+        CpuPartition partition = CpuPartition.of(List.of(0, 1, 2, 3), 2, 0, 1, null);
+
+        CpuPartition.Slot first = partition.acquire();
+        CpuPartition.Slot second = partition.acquire();
+        Assertions.assertThat(second.index()).isNotEqualTo(first.index());
+
+        partition.release(first);
+        Assertions.assertThat(partition.acquire()).isEqualTo(first);
+    }
+
+    @Test
+    public void testThreadPoolsAndAffinityFollowTheGroup() {
+        CpuPartition pinned = CpuPartition.of(List.of(4, 5, 6, 7), 2, 0, 2, "/usr/bin/taskset");
+        CpuPartition.Slot slot = pinned.acquire();
+
+        Assertions.assertThat(pinned.environment(slot))
+                .containsEntry("OMP_NUM_THREADS", "2")
+                .containsEntry("TF_NUM_INTRAOP_THREADS", "2")
+                .containsEntry("TF_NUM_INTEROP_THREADS", "2");
+        Assertions.assertThat(pinned.command(slot, List.of("python3", "model.py")))
+                .containsExactly("/usr/bin/taskset", "-c", "4,5", "python3", "model.py");
+
+        CpuPartition unpinned = CpuPartition.of(List.of(4, 5, 6, 7), 2, 0, 1, null);
+        Assertions.assertThat(unpinned.command(unpinned.acquire(), List.of("python3"))).containsExactly("python3");
+        Assertions.assertThat(CpuPartition.NONE.environment(CpuPartition.NONE.acquire())).isEmpty();
+    }
+
+    @Test
+    public void testReadsTheAllowedCpuList() throws Exception {
+        Path status = tempDir.resolve("status");
+        Files.writeString(status, "Name:\tjava\nCpus_allowed:\tff0f\nCpus_allowed_list:\t0-3,8,10-11\n");
+
+        Assertions.assertThat(CpuPartition.allowedCpus(status)).containsExactly(0, 1, 2, 3, 8, 10, 11);
+        Assertions.assertThat(CpuPartition.allowedCpus(tempDir.resolve("missing"))).isEmpty();
+        Assertions.assertThatThrownBy(() -> CpuPartition.parseCpuList("3-1")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,105 @@
+package org.example.backend.service.inference;
+
+import org.assertj.core.api.Assertions;
+import org.assertj.core.data.Offset;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+public class EcgImagePreprocessorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private TensorArena arena;
+    private EcgImagePreprocessor preprocessor;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        arena = new TensorArena(tempDir.resolve("tensors.bin"), 2);
+        preprocessor = new EcgImagePreprocessor(arena, Duration.ofMillis(50));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        arena.close();
+    }
+
+    @Test
+    public void testImageIsResizedAndNormalizedIntoSlot() throws Exception {
+        // Left half red, right half blue, at twice the model resolution
+        BufferedImage image = new BufferedImage(448, 448, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 448; y++) {
+            for (int x = 0; x < 448; x++) {
+                image.setRGB(x, y, x < 224 ? 0xFF0000 : 0x0000FF);
+            }
+        }
+        File png = tempDir.resolve("ecg.png").toFile();
+        ImageIO.write(image, "png", png);
+
+        try (PreparedImage prepared = preprocessor.prepare(png)) {
+            int left = pixel(0, 0);
+            int right = pixel(0, 223);
+            Assertions.assertThat(arena.get(prepared.slot(), left)).isEqualTo(1f);
+            Assertions.assertThat(arena.get(prepared.slot(), left + 2)).isEqualTo(0f);
+            Assertions.assertThat(arena.get(prepared.slot(), right)).isEqualTo(0f);
+            Assertions.assertThat(arena.get(prepared.slot(), right + 2)).isEqualTo(1f);
+            Assertions.assertThat(arena.getFreeSlots()).isEqualTo(1);
+        }
+        Assertions.assertThat(arena.getFreeSlots()).isEqualTo(2);
+    }
+
+    @Test
+    public void testWorkersSeeLittleEndianFloatsInTheFile() throws Exception {
+        BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, 0x336699);
+        File png = tempDir.resolve("small.png").toFile();
+        ImageIO.write(image, "png", png);
+
+        try (PreparedImage prepared = preprocessor.prepare(png)) {
+            ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(arena.getPath())).order(ByteOrder.LITTLE_ENDIAN);
+            int offset = prepared.slot() * TensorArena.FLOATS_PER_SLOT * Float.BYTES;
+            Assertions.assertThat(file.getFloat(offset)).isCloseTo(0x33 / 255f, Offset.offset(1e-6f));
+            Assertions.assertThat(file.getFloat(offset + 4)).isCloseTo(0x66 / 255f, Offset.offset(1e-6f));
+            Assertions.assertThat(file.getFloat(offset + 8)).isCloseTo(0x99 / 255f, Offset.offset(1e-6f));
+        }
+    }
+
+    @Test
+    public void testUndecodableFileIsRejectedWithoutUsingASlot() throws Exception {
+        File notAnImage = tempDir.resolve("ecg.dcm").toFile();
+        Files.writeString(notAnImage.toPath(), "DICM");
+
+        Assertions.assertThatThrownBy(() -> preprocessor.prepare(notAnImage))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Unsupported image format");
+        Assertions.assertThat(arena.getFreeSlots()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFullArenaTimesOut() throws Exception {
+        File png = tempDir.resolve("ecg.png").toFile();
+        ImageIO.write(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB), "png", png);
+
+        try (PreparedImage first = preprocessor.prepare(png); PreparedImage second = preprocessor.prepare(png)) {
+            Assertions.assertThatThrownBy(() -> preprocessor.prepare(png))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("No free tensor slot");
+        }
+    }
+
+    private static int pixel(int row, int column) {
+        return (row * TensorArena.IMAGE_SIZE + column) * TensorArena.CHANNELS;
+    }
+}
@@ -0,0 +1,85 @@
+package org.example.backend.service.inference;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Drives src/test/resources/fake_model_worker.py, a worker that speaks {@link WorkerProtocol} without a
+ * model. The first tensor slot of a batch tells the fake what to do (see the script).
+ */
+final class FakeModelWorker {
+
+    static final int HANG = 7777;
+    static final int EXIT = 9999;
+
+    private final Path directory;
+    private final int maxStarts;
+
+    FakeModelWorker(Path directory) {
+        this(directory, 1000);
+    }
+
+    // Workers started after the first maxStarts fail before their handshake
+    FakeModelWorker(Path directory, int maxStarts) {
+        this.directory = directory;
+        this.maxStarts = maxStarts;
+    }
+
+    List<String> command() {
+        try {
+            Path script = Path.of(FakeModelWorker.class.getResource("/fake_model_worker.py").toURI());
+            return List.of("python3", script.toString(), directory.toString(), String.valueOf(maxStarts));
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // A batch answered at once with probabilities [value, pid, 0, 0, 0]
+    static List<PreparedImage> batch(int value) {
+        return List.of(new PreparedImage(new File(value + ".png"), value, null));
+    }
+
+    // A batch held by the worker until gate n is opened
+    static List<PreparedImage> gated(int n) {
+        return batch(1000 + n);
+    }
+
+    // Blocks until gated batch n is on a worker
+    void awaitReceived(int n) throws InterruptedException {
+        await(() -> Files.exists(directory.resolve("received-" + n)));
+    }
+
+    void open(int n) throws IOException {
+        Files.createFile(directory.resolve("gate-" + n));
+    }
+
+    // Workers started so far, including ones that refused to start
+    int starts() throws IOException {
+        Path starts = directory.resolve("starts");
+        return Files.exists(starts) ? Files.readAllLines(starts).size() : 0;
+    }
+
+    static long pid(List<ModelOutput> outputs) {
+        return (long) outputs.get(0).probabilities()[1];
+    }
+
+    static boolean isRunning(long pid) {
+        return ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false);
+    }
+
+    static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Condition not met within 10 s");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package org.example.backend.service.inference;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HttpModelBackendTest {
+
+    private static final int TENSOR_BYTES = TensorArena.FLOATS_PER_SLOT * Float.BYTES;
+
+    @TempDir
+    Path tempDir;
+
+    private TensorArena arena;
+    private HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final AtomicInteger receivedBytes = new AtomicInteger();
+    private volatile String receivedAccept;
+    private volatile int status = 200;
+    private volatile String answer;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        arena = new TensorArena(tempDir.resolve("tensors.bin"), 2);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/models/densenet/predict/batch", exchange -> {
+            receivedBytes.set(exchange.getRequestBody().readAllBytes().length);
+            receivedAccept = exchange.getRequestHeaders().getFirst("Accept");
+            byte[] body = answer.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+        arena.close();
+    }
+
+    @Test
+    public void testBatchIsSentAsTensorsAndAnswersAreVersioned() throws Exception {
+        answer = "{\"index\":0,\"probabilities\":[0.1,0.6,0.1,0.1,0.1]}\n";
+
+        try (HttpModelBackend backend = backend()) {
+            ModelOutput output = backend.predict(new PreparedImage(null, 1, arena)).join();
+
+            Assertions.assertThat(output.isFailed()).isFalse();
+            Assertions.assertThat(output.probabilities()).containsExactly(0.1f, 0.6f, 0.1f, 0.1f, 0.1f);
+            Assertions.assertThat(output.version()).isEqualTo("2");
+            Assertions.assertThat(receivedBytes.get()).isEqualTo(TENSOR_BYTES);
+            Assertions.assertThat(receivedAccept).isEqualTo("application/x-ndjson");
+        }
+    }
+
+    @Test
+    public void testStreamedResultsAreMatchedByIndexAndFailPerImage() {
+        // Out of order, image 0 failed on the server and image 2 never came back
+        answer = "{\"index\":3,\"probabilities\":[0.0,0.0,0.0,0.0,1.0]}\n"
+                + "{\"index\":0,\"error\":\"could not read tensor\"}\n"
+                + "{\"index\":1,\"probabilities\":[0.0,1.0,0.0,0.0,0.0]}\n";
+
+        try (HttpModelBackend backend = backend(4, Duration.ofSeconds(5))) {
+            List<CompletableFuture<ModelOutput>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(backend.predict(new PreparedImage(null, i % 2, arena)));
+            }
+
+            Assertions.assertThat(results.get(0).join().error()).contains("could not read tensor");
+            Assertions.assertThat(results.get(1).join().probabilities()).containsExactly(0f, 1f, 0f, 0f, 0f);
+            Assertions.assertThat(results.get(2).join().error()).contains("no result");
+            Assertions.assertThat(results.get(3).join().probabilities()).containsExactly(0f, 0f, 0f, 0f, 1f);
+            Assertions.assertThat(receivedBytes.get()).isEqualTo(4 * TENSOR_BYTES);
+        }
+    }
+
+    @Test
+    public void testResultForAnUnknownImageFailsTheBatch() {
+        answer = "{\"index\":5,\"probabilities\":[0.1,0.6,0.1,0.1,0.1]}\n";
+
+        try (HttpModelBackend backend = backend()) {
+            Assertions.assertThatThrownBy(() -> backend.predict(new PreparedImage(null, 0, arena)).join())
+                    .hasCauseInstanceOf(IOException.class)
+                    .hasMessageContaining("image 5 of 1");
+        }
+    }
+
+    @Test
+    public void testServerErrorFailsTheBatch() {
+        status = 500;
+        answer = "{\"error\":\"out of memory\"}";
+
+        try (HttpModelBackend backend = backend()) {
+            Assertions.assertThatThrownBy(() -> backend.predict(new PreparedImage(null, 0, arena)).join())
+                    .hasCauseInstanceOf(IOException.class)
+                    .hasMessageContaining("500")
+                    .hasMessageContaining("out of memory");
+        }
+    }
+
+    private HttpModelBackend backend() {
+        return backend(4, Duration.ofMillis(1));
+    }
+
+    private HttpModelBackend backend(int maxBatchSize, Duration maxBatchWait) {
+        URI url = URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+        return new HttpModelBackend("model1", "DenseNet121", 1.0, "2", HttpClient.newHttpClient(), url, "densenet",
+                Duration.ofSeconds(5), 2, maxBatchSize, maxBatchWait, LanePolicy.DEFAULT, executor, new SimpleMeterRegistry());
+    }
+}
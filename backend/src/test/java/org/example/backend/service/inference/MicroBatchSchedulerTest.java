@@ -0,0 +1,236 @@
+package org.example.backend.service.inference;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MicroBatchSchedulerTest {
+
+    private ExecutorService executor;
+    private SimpleMeterRegistry meterRegistry;
+    private MicroBatchScheduler<File, String> scheduler;
+
+    @BeforeEach
+    public void setup() {
+        executor = Executors.newFixedThreadPool(2);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (scheduler != null) {
+            scheduler.close();
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testFullBatchIsFlushedAndResultsAreSplitInOrder() throws Exception {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        scheduler = new MicroBatchScheduler<>("Test", files -> {
+            batchSizes.add(files.size());
+            List<String> results = new ArrayList<>();
+            for (File file : files) {
+                results.add("{\"file\":\"" + file.getName() + "\"}");
+            }
+            return results;
+        }, 4, Duration.ofSeconds(10), 1, executor, meterRegistry);
+
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(scheduler.submit(new File("ecg" + i + ".png")));
+        }
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(futures.get(i).get(2, TimeUnit.SECONDS)).isEqualTo("{\"file\":\"ecg" + i + ".png\"}");
+        }
+        assertThat(batchSizes).containsExactly(4);
+        assertThat(meterRegistry.get("inference.batch.size").summary().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("inference.queue.delay").timer().count()).isEqualTo(4);
+    }
+
+    @Test
+    public void testPartialBatchIsFlushedAfterMaxWait() throws Exception {
+        scheduler = new MicroBatchScheduler<>("Test", files -> List.of("{}"),
+                8, Duration.ofMillis(20), 1, executor, meterRegistry);
+
+        long start = System.nanoTime();
+        String result = scheduler.submit(new File("single.png")).get(2, TimeUnit.SECONDS);
+
+        assertThat(result).isEqualTo("{}");
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(20));
+        assertThat(meterRegistry.get("inference.batch.size").summary().max()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void testBatchFailureFailsEveryCaller() {
+        scheduler = new MicroBatchScheduler<>("Test", files -> {
+            throw new IllegalStateException("worker died");
+        }, 2, Duration.ofMillis(5), 1, executor, meterRegistry);
+
+        CompletableFuture<String> first = scheduler.submit(new File("a.png"));
+        CompletableFuture<String> second = scheduler.submit(new File("b.png"));
+
+        assertThatThrownBy(() -> first.get(2, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> second.get(2, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void testSubmitAfterCloseIsRejected() {
+        scheduler = new MicroBatchScheduler<>("Test", files -> List.of("{}"),
+                1, Duration.ofMillis(5), 1, executor, meterRegistry);
+        scheduler.close();
+
+        assertThatThrownBy(() -> scheduler.submit(new File("late.png")).get(2, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test
+    public void testRejectedDispatchFailsTheBatchAndFreesItsSlot() throws Exception {
+        AtomicBoolean reject = new AtomicBoolean(true);
+        Executor rejecting = command -> {
+            if (reject.get()) {
+                throw new RejectedExecutionException("all dispatch threads busy");
+            }
+            executor.execute(command);
+        };
+        scheduler = new MicroBatchScheduler<>("Test", files -> files.stream().map(file -> "{}").toList(),
+                1, Duration.ZERO, 1, rejecting, meterRegistry);
+
+        assertThatThrownBy(() -> scheduler.submit(new File("a.png")).get(2, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+
+        // The only dispatch slot was given back, so the collector keeps forming batches
+        reject.set(false);
+        assertThat(scheduler.submit(new File("b.png")).get(2, TimeUnit.SECONDS)).isEqualTo("{}");
+    }
+
+    @Test
+    public void testStrictLanesServeStatBeforeQueuedBulkWork() throws Exception {
+        List<String> served = runBehindBusyWorker(new LanePolicy(LanePolicy.Mode.STRICT, Map.of(), Map.of()),
+                List.of("bulk1", "bulk2", "routine1", "stat1"), Duration.ZERO);
+
+        assertThat(served).containsExactly("bulk0", "stat1", "routine1", "bulk1", "bulk2");
+        assertThat(meterRegistry.get("inference.queue.delay").tag("priority", "STAT").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testWeightedLanesShareBatchPlaces() throws Exception {
+        LanePolicy policy = new LanePolicy(LanePolicy.Mode.WEIGHTED,
+                Map.of(Priority.STAT, 2, Priority.ROUTINE, 1, Priority.BULK, 1), Map.of());
+
+        List<String> served = runBehindBusyWorker(policy,
+                List.of("bulk1", "bulk2", "bulk3", "stat1", "stat2", "stat3"), Duration.ZERO);
+
+        assertThat(served).containsExactly("bulk0", "stat1", "bulk1", "stat2", "stat3", "bulk2", "bulk3");
+    }
+
+    @Test
+    public void testAgedBulkRequestIsNotStarvedByStatTraffic() throws Exception {
+        LanePolicy policy = new LanePolicy(LanePolicy.Mode.STRICT, Map.of(),
+                Map.of(Priority.BULK, Duration.ofMillis(50)));
+
+        // bulk1 has waited past its 50 ms when the STAT requests arrive
+        List<String> served = runBehindBusyWorker(policy, List.of("bulk1", "stat1", "stat2"), Duration.ofMillis(100));
+
+        assertThat(served).containsExactly("bulk0", "bulk1", "stat1", "stat2");
+    }
+
+    @Test
+    public void testStatLatencyWhileBulkBatchesHoldEveryDispatchThread() throws Exception {
+        // Both models run all their bulk batches on dispatch threads that stay blocked
+        Semaphore busyRuns = new Semaphore(0);
+        Semaphore otherRuns = new Semaphore(0);
+        CountDownLatch bulkStarted = new CountDownLatch(4);
+        ExecutorService busyDispatch = MicroBatchScheduler.dispatchExecutor("Busy", 2);
+        ExecutorService otherDispatch = MicroBatchScheduler.dispatchExecutor("Other", 2);
+        MicroBatchScheduler<File, String> busy = new MicroBatchScheduler<>("Busy", blockingBulk(busyRuns, bulkStarted), 1,
+                Duration.ZERO, 2, file -> Priority.parse(file.getName().replaceAll("\\d+$", "")), LanePolicy.DEFAULT, busyDispatch, meterRegistry);
+        MicroBatchScheduler<File, String> other = new MicroBatchScheduler<>("Other", blockingBulk(otherRuns, bulkStarted), 1,
+                Duration.ZERO, 2, file -> Priority.parse(file.getName().replaceAll("\\d+$", "")), LanePolicy.DEFAULT, otherDispatch, meterRegistry);
+        try {
+            List<CompletableFuture<String>> bulk = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                bulk.add((i % 2 == 0 ? busy : other).submit(new File("bulk" + i)));
+            }
+            assertThat(bulkStarted.await(2, TimeUnit.SECONDS)).isTrue();
+
+            // Another model's dispatch threads being saturated does not delay this one's STAT batch...
+            ExecutorService freshDispatch = MicroBatchScheduler.dispatchExecutor("Fresh", 1);
+            try (MicroBatchScheduler<File, String> fresh = new MicroBatchScheduler<>("Fresh", blockingBulk(otherRuns, bulkStarted), 1,
+                    Duration.ZERO, 1, file -> Priority.STAT, LanePolicy.DEFAULT, freshDispatch, meterRegistry)) {
+                assertThat(fresh.submit(new File("stat1")).get(500, TimeUnit.MILLISECONDS)).isEqualTo("{}");
+            } finally {
+                freshDispatch.shutdownNow();
+            }
+
+            // ...and within a saturated model the first freed thread goes to STAT, ahead of the queued bulk batches
+            CompletableFuture<String> stat = busy.submit(new File("stat2"));
+            busyRuns.release();
+            assertThat(stat.get(500, TimeUnit.MILLISECONDS)).isEqualTo("{}");
+            assertThat(busy.getQueueDepth(Priority.BULK)).isGreaterThanOrEqualTo(7);
+
+            busyRuns.release(100);
+            otherRuns.release(100);
+            CompletableFuture.allOf(bulk.toArray(CompletableFuture[]::new)).get(2, TimeUnit.SECONDS);
+        } finally {
+            busy.close();
+            other.close();
+            busyDispatch.shutdownNow();
+            otherDispatch.shutdownNow();
+        }
+    }
+
+    // Bulk batches wait for a permit of runs; everything else answers at once
+    private static MicroBatchScheduler.BatchPredictor<File, String> blockingBulk(Semaphore runs, CountDownLatch started) {
+        return files -> {
+            if (files.get(0).getName().startsWith("bulk")) {
+                started.countDown();
+                runs.acquire();
+            }
+            return files.stream().map(file -> "{}").toList();
+        };
+    }
+
+    // Queues the given requests (priority taken from the name) while one worker is busy with bulk0,
+    // pausing after the first of them, and returns the order in which the model saw them
+    private List<String> runBehindBusyWorker(LanePolicy policy, List<String> names, Duration pauseAfterFirst)
+            throws Exception {
+        List<String> served = new CopyOnWriteArrayList<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler = new MicroBatchScheduler<>("Test", files -> {
+            started.countDown();
+            release.await();
+            files.forEach(file -> served.add(file.getName()));
+            return files.stream().map(file -> "{}").toList();
+        }, 1, Duration.ZERO, 1, file -> Priority.parse(file.getName().replaceAll("\\d+$", "")),
+                policy, executor, meterRegistry);
+
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        futures.add(scheduler.submit(new File("bulk0")));
+        assertThat(started.await(2, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < names.size(); i++) {
+            futures.add(scheduler.submit(new File(names.get(i))));
+            if (i == 0) {
+                Thread.sleep(pauseAfterFirst.toMillis());
+            }
+        }
+        release.countDown();
+
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(2, TimeUnit.SECONDS);
+        return served;
+    }
+}
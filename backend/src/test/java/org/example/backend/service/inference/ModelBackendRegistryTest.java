@@ -0,0 +1,98 @@
+package org.example.backend.service.inference;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class ModelBackendRegistryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private TensorArena tensorArena;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        tensorArena = new TensorArena(tempDir.resolve("tensors.bin"), 1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        tensorArena.close();
+    }
+
+    @Test
+    public void testRegistersEnabledModelsInOrder() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("ai.worker.pool.size", "2")
+                .withProperty("ai.model1.script.path", "/models/densenet.py")
+                .withProperty("ai.model1.name", "DenseNet121")
+                .withProperty("ai.model2.script.path", "/models/resnet.py")
+                .withProperty("ai.model2.enabled", "false")
+                .withProperty("ai.model3.script.path", "/models/effnet.py")
+                .withProperty("ai.model3.name", "EfficientNet")
+                .withProperty("ai.model3.weight", "0.5")
+                .withProperty("ai.model3.worker.pool.size", "3");
+
+        try (ModelBackendRegistry registry = fromEnvironment(environment)) {
+            Assertions.assertThat(registry.getBackends())
+                    .extracting(ModelBackend::getId)
+                    .containsExactly("model1", "model3");
+            Assertions.assertThat(registry.getBackend("model3")).get()
+                    .extracting(ModelBackend::getName, ModelBackend::getWeight)
+                    .containsExactly("EfficientNet", 0.5);
+            Assertions.assertThat(((PythonModelBackend) ((ResilientModelBackend) registry.getBackend("model1").get()).getDelegate()).getWorkerPool().getSize())
+                    .isEqualTo(2);
+            Assertions.assertThat(((PythonModelBackend) ((ResilientModelBackend) registry.getBackend("model3").get()).getDelegate()).getWorkerPool().getSize())
+                    .isEqualTo(3);
+        }
+    }
+
+    @Test
+    public void testScanningStopsAtFirstMissingModel() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("ai.model1.script.path", "/models/densenet.py")
+                .withProperty("ai.model3.script.path", "/models/effnet.py");
+
+        try (ModelBackendRegistry registry = fromEnvironment(environment)) {
+            Assertions.assertThat(registry.getBackends()).extracting(ModelBackend::getId).containsExactly("model1");
+            Assertions.assertThat(registry.getBackend("model1").get().getName()).isEqualTo("model1");
+        }
+    }
+
+    @Test
+    public void testStubProfileReplacesPythonModels() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("ai.stub.enabled", "true")
+                .withProperty("ai.model1.script.path", "/models/densenet.py")
+                .withProperty("ai.model1.name", "DenseNet121");
+
+        try (ModelBackendRegistry registry = fromEnvironment(environment)) {
+            ModelBackend backend = registry.getBackend("model1").get();
+            Assertions.assertThat(((ResilientModelBackend) backend).getDelegate()).isInstanceOf(StubModelBackend.class);
+            Assertions.assertThat(backend.getName()).isEqualTo("DenseNet121");
+        }
+    }
+
+    @Test
+    public void testRejectsNonPositiveWeight() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("ai.model1.script.path", "/models/densenet.py")
+                .withProperty("ai.model1.weight", "0");
+
+        Assertions.assertThatThrownBy(() -> fromEnvironment(environment))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("weight");
+    }
+
+    private ModelBackendRegistry fromEnvironment(MockEnvironment environment) {
+        return ModelBackendRegistry.fromEnvironment(environment, tensorArena, new SimpleMeterRegistry());
+    }
+}
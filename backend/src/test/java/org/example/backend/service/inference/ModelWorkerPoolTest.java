@@ -0,0 +1,156 @@
+package org.example.backend.service.inference;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class ModelWorkerPoolTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ModelWorkerPool pool;
+
+    @AfterEach
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testWorkersStartOnlyWhenEveryRunningOneIsBusy() throws Exception {
+        FakeModelWorker fake = new FakeModelWorker(tempDir);
+        pool = pool(fake, 2, WorkerRecyclePolicy.DISABLED);
+        Assertions.assertThat(pool.getRunningCount()).isZero();
+
+        // An idle worker is reused rather than a second one started
+        long first = FakeModelWorker.pid(pool.predictBatch(FakeModelWorker.batch(1)));
+        Assertions.assertThat(FakeModelWorker.pid(pool.predictBatch(FakeModelWorker.batch(2)))).isEqualTo(first);
+        Assertions.assertThat(pool.getRunningCount()).isEqualTo(1);
+
+        // With the first worker busy, the pool grows
+        CompletableFuture<List<ModelOutput>> held = predictAsync(FakeModelWorker.gated(0));
+        fake.awaitReceived(0);
+        long second = FakeModelWorker.pid(pool.predictBatch(FakeModelWorker.batch(3)));
+        Assertions.assertThat(second).isNotEqualTo(first);
+        Assertions.assertThat(pool.getRunningCount()).isEqualTo(2);
+
+        // ...and the least busy worker gets the next batch
+        Assertions.assertThat(FakeModelWorker.pid(pool.predictBatch(FakeModelWorker.batch(4)))).isEqualTo(second);
+        Assertions.assertThat(fake.starts()).isEqualTo(2);
+
+        fake.open(0);
+        Assertions.assertThat(FakeModelWorker.pid(held.get(5, TimeUnit.SECONDS))).isEqualTo(first);
+    }
+
+    @Test
+    public void testDeadWorkerIsDiscardedAndReplacedOnDemand() throws Exception {
+        FakeModelWorker fake = new FakeModelWorker(tempDir);
+        pool = pool(fake, 1, WorkerRecyclePolicy.DISABLED);
+        long crashed = FakeModelWorker.pid(pool.predictBatch(FakeModelWorker.batch(1)));
+
+        Assertions.assertThatThrownBy(() -> pool.predictBatch(FakeModelWorker.batch(FakeModelWorker.EXIT)))
+                .isInstanceOf(IOException.class);
+        Assertions.assertThat(pool.getRunningCount()).isZero();
+
+        Assertions.assertThat(FakeModelWorker.pid(pool.predictBatch(FakeModelWorker.batch(2)))).isNotEqualTo(crashed);
+        Assertions.assertThat(pool.getRunningCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testHungWorkerIsKilledAtTheDeadlineAndReplaced() throws Exception {
+        FakeModelWorker fake = new FakeModelWorker(tempDir);
+        pool = new ModelWorkerPool("Fake", fake.command(), 1, 2, Duration.ofMillis(300), WorkerRecyclePolicy.DISABLED,
+                CpuPartition.NONE, meterRegistry);
+        long hung = FakeModelWorker.pid(pool.predictBatch(FakeModelWorker.batch(1)));
+
+        Assertions.assertThatThrownBy(() -> pool.predictBatch(FakeModelWorker.batch(FakeModelWorker.HANG)))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("did not answer");
+        FakeModelWorker.await(() -> !FakeModelWorker.isRunning(hung));
+
+        Assertions.assertThat(FakeModelWorker.pid(pool.predictBatch(FakeModelWorker.batch(2)))).isNotEqualTo(hung);
+        Assertions.assertThat(fake.starts()).isEqualTo(2);
+    }
+
+    @Test
+    public void testRecycledWorkerIsReplacedAndStoppedOnceDrained() throws Exception {
+        FakeModelWorker fake = new FakeModelWorker(tempDir);
+        pool = pool(fake, 1, new WorkerRecyclePolicy(0, 2));
+        long retiring = FakeModelWorker.pid(pool.predictBatch(FakeModelWorker.batch(1)));
+
+        // The retiring worker still has a batch in its pipe when it reaches its limit
+        CompletableFuture<List<ModelOutput>> held = predictAsync(FakeModelWorker.gated(0));
+        fake.awaitReceived(0);
+        Assertions.assertThat(FakeModelWorker.pid(pool.predictBatch(FakeModelWorker.batch(2)))).isEqualTo(retiring);
+
+        // New batches go to the replacement once it has loaded; the pool never has fewer workers than its size
+        long replacement = retiring;
+        while (replacement == retiring) {
+            Assertions.assertThat(pool.getRunningCount()).isEqualTo(1);
+            replacement = FakeModelWorker.pid(pool.predictBatch(FakeModelWorker.batch(3)));
+        }
+        Assertions.assertThat(pool.getRunningCount()).isEqualTo(1);
+        // Counted just after the swap
+        FakeModelWorker.await(() -> meterRegistry.find("inference.worker.recycled").counter() != null);
+        Assertions.assertThat(meterRegistry.get("inference.worker.recycled").tag("reason", WorkerRecyclePolicy.REQUESTS)
+                .counter().count()).isEqualTo(1.0);
+
+        // The retired worker finishes its batch before it is stopped
+        Thread.sleep(200);
+        Assertions.assertThat(FakeModelWorker.isRunning(retiring)).isTrue();
+        Assertions.assertThat(held.isDone()).isFalse();
+        fake.open(0);
+        Assertions.assertThat(FakeModelWorker.pid(held.get(5, TimeUnit.SECONDS))).isEqualTo(retiring);
+        FakeModelWorker.await(() -> !FakeModelWorker.isRunning(retiring));
+        Assertions.assertThat(FakeModelWorker.isRunning(replacement)).isTrue();
+    }
+
+    @Test
+    public void testFailedReplacementKeepsTheOldWorker() throws Exception {
+        FakeModelWorker fake = new FakeModelWorker(tempDir, 1);
+        pool = pool(fake, 1, new WorkerRecyclePolicy(0, 1));
+        long worker = FakeModelWorker.pid(pool.predictBatch(FakeModelWorker.batch(1)));
+
+        // The replacement refuses to start; the worker over its limit keeps serving
+        FakeModelWorker.await(() -> {
+            try {
+                return fake.starts() >= 2;
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertThat(FakeModelWorker.pid(pool.predictBatch(FakeModelWorker.batch(2)))).isEqualTo(worker);
+            Assertions.assertThat(pool.getRunningCount()).isEqualTo(1);
+        }
+        Assertions.assertThat(FakeModelWorker.isRunning(worker)).isTrue();
+        Assertions.assertThat(meterRegistry.find("inference.worker.recycled").counter()).isNull();
+    }
+
+    private ModelWorkerPool pool(FakeModelWorker fake, int size, WorkerRecyclePolicy recyclePolicy) {
+        return new ModelWorkerPool("Fake", fake.command(), size, 2, Duration.ofSeconds(10), recyclePolicy,
+                CpuPartition.NONE, meterRegistry);
+    }
+
+    private CompletableFuture<List<ModelOutput>> predictAsync(List<PreparedImage> images) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.predictBatch(images);
+            } catch (IOException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,81 @@
+package org.example.backend.service.inference;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class ModelWorkerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FakeModelWorker fake;
+    private ModelWorker worker;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        fake = new FakeModelWorker(tempDir);
+        worker = ModelWorker.start("Fake", fake.command(), CpuPartition.NONE);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        worker.close();
+    }
+
+    @Test
+    public void testPipelinedBatchesAreMatchedToTheirRequests() throws Exception {
+        CompletableFuture<List<ModelOutput>> held = worker.submit(FakeModelWorker.gated(0));
+        fake.awaitReceived(0);
+
+        // The second batch is answered first, while the first is still in the pipe
+        List<ModelOutput> second = worker.submit(FakeModelWorker.batch(5)).get(5, TimeUnit.SECONDS);
+        Assertions.assertThat(second.get(0).probabilities()[0]).isEqualTo(5f);
+        Assertions.assertThat(held.isDone()).isFalse();
+        Assertions.assertThat(worker.getInFlight()).isEqualTo(1);
+
+        fake.open(0);
+        Assertions.assertThat(held.get(5, TimeUnit.SECONDS).get(0).probabilities()[0]).isEqualTo(1000f);
+        Assertions.assertThat(worker.getInFlight()).isZero();
+        Assertions.assertThat(worker.getPredictions()).isEqualTo(2);
+        Assertions.assertThat(FakeModelWorker.pid(second)).isEqualTo(worker.pid());
+    }
+
+    @Test
+    public void testWorkerThatMissesTheDeadlineIsKilled() throws Exception {
+        CompletableFuture<List<ModelOutput>> queued = worker.submit(FakeModelWorker.gated(0));
+        fake.awaitReceived(0);
+
+        Assertions.assertThatThrownBy(() -> worker.predictBatch(FakeModelWorker.batch(FakeModelWorker.HANG), Duration.ofMillis(300)))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("did not answer within 300 ms");
+
+        // Every other batch in its pipeline fails with it, and the process is gone
+        Assertions.assertThatThrownBy(() -> queued.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IOException.class);
+        Assertions.assertThat(worker.isAlive()).isFalse();
+        long pid = worker.pid();
+        FakeModelWorker.await(() -> !FakeModelWorker.isRunning(pid));
+        Assertions.assertThatThrownBy(() -> worker.submit(FakeModelWorker.batch(1)).get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void testWorkerExitFailsItsBatches() throws Exception {
+        Assertions.assertThatThrownBy(() -> worker.predictBatch(FakeModelWorker.batch(FakeModelWorker.EXIT), Duration.ofSeconds(5)))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("exited with code 3");
+        Assertions.assertThat(worker.isAlive()).isFalse();
+    }
+}
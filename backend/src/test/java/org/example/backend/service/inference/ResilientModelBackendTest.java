@@ -0,0 +1,121 @@
+package org.example.backend.service.inference;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+public class ResilientModelBackendTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PreparedImage image = new PreparedImage(new File("ecg.png"), 0, null);
+
+    @Test
+    public void testBulkheadRejectsBeyondMaxPending() {
+        StubBackend stub = new StubBackend();
+        ResilientModelBackend backend = guard(stub, Duration.ofSeconds(5), 1);
+
+        CompletableFuture<ModelOutput> first = backend.predict(image);
+        CompletableFuture<ModelOutput> second = backend.predict(image);
+
+        Assertions.assertThatThrownBy(second::join)
+                .isInstanceOf(CompletionException.class)
+                .cause()
+                .isInstanceOf(ModelUnavailableException.class)
+                .extracting("status").isEqualTo(ModelUnavailableException.OVERLOADED);
+
+        stub.next.complete(ModelOutput.of(new float[5]));
+        Assertions.assertThat(first.join().isFailed()).isFalse();
+        Assertions.assertThat(backend.getAvailablePermits()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDeadlineFailsTheRequestAndCountsAsFailure() {
+        StubBackend stub = new StubBackend();
+        ResilientModelBackend backend = guard(stub, Duration.ofMillis(20), 10);
+
+        Assertions.assertThatThrownBy(() -> backend.predict(image).join())
+                .hasCauseInstanceOf(TimeoutException.class);
+        Assertions.assertThat(meterRegistry.get("inference.timeouts").counter().count()).isEqualTo(1.0);
+
+        // The permit comes back once the model is done with the request
+        Assertions.assertThat(backend.getAvailablePermits()).isEqualTo(9);
+        stub.next.complete(ModelOutput.of(new float[5]));
+        Assertions.assertThat(backend.getAvailablePermits()).isEqualTo(10);
+    }
+
+    @Test
+    public void testTimedOutRequestsStillCountAgainstTheBulkhead() {
+        StubBackend stub = new StubBackend();
+        ResilientModelBackend backend = guard(stub, Duration.ofMillis(20), 2);
+
+        // A slow model: the first request misses its deadline but stays queued behind the model
+        Assertions.assertThatThrownBy(() -> backend.predict(image).join())
+                .hasCauseInstanceOf(TimeoutException.class);
+        CompletableFuture<ModelOutput> slow = stub.next;
+
+        // More requests keep arriving; only one more fits next to the one still queued
+        backend.predict(image);
+        Assertions.assertThatThrownBy(() -> backend.predict(image).join())
+                .hasCauseInstanceOf(ModelUnavailableException.class)
+                .hasMessageContaining("overloaded");
+        Assertions.assertThat(stub.calls).isEqualTo(2);
+
+        slow.complete(ModelOutput.of(new float[5]));
+        CompletableFuture<ModelOutput> third = backend.predict(image);
+        Assertions.assertThat(stub.calls).isEqualTo(3);
+
+        stub.next.complete(ModelOutput.of(new float[5]));
+        Assertions.assertThat(third.join().isFailed()).isFalse();
+        // The second request is still with the model
+        Assertions.assertThat(backend.getAvailablePermits()).isEqualTo(1);
+    }
+
+    @Test
+    public void testOpenCircuitFailsFast() {
+        StubBackend stub = new StubBackend();
+        ResilientModelBackend backend = guard(stub, Duration.ofSeconds(5), 10);
+
+        for (int i = 0; i < 2; i++) {
+            CompletableFuture<ModelOutput> result = backend.predict(image);
+            stub.next.completeExceptionally(new IOException("worker exited with code 1"));
+            Assertions.assertThat(result).isCompletedExceptionally();
+        }
+        int calls = stub.calls;
+
+        CompletableFuture<ModelOutput> rejected = backend.predict(image);
+
+        Assertions.assertThat(stub.calls).isEqualTo(calls);
+        Assertions.assertThat(backend.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        Assertions.assertThatThrownBy(rejected::join)
+                .hasCauseInstanceOf(ModelUnavailableException.class)
+                .hasMessageContaining("unavailable");
+    }
+
+    private ResilientModelBackend guard(ModelBackend backend, Duration timeout, int maxPending) {
+        return new ResilientModelBackend(backend, timeout, maxPending,
+                new CircuitBreaker("Test", 2, Duration.ofMinutes(1)), meterRegistry);
+    }
+
+    // Hands out futures the test completes by hand
+    private static class StubBackend implements ModelBackend {
+        CompletableFuture<ModelOutput> next;
+        int calls;
+
+        @Override public String getId() { return "model1"; }
+        @Override public String getName() { return "Test"; }
+        @Override public double getWeight() { return 1.0; }
+        @Override public CompletableFuture<ModelOutput> predict(PreparedImage image) {
+            calls++;
+            next = new CompletableFuture<>();
+            return next;
+        }
+        @Override public void close() {}
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.backend.service.inference;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class StubModelBackendTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testSameImageGetsSameProbabilities() throws Exception {
+        File ecg = write("ecg.png", new byte[]{1, 2, 3});
+        File other = write("other.png", new byte[]{4, 5, 6});
+
+        try (StubModelBackend densenet = stub("model1", 0.0);
+             StubModelBackend resnet = stub("model2", 0.0)) {
+            float[] first = densenet.predict(image(ecg)).join().probabilities();
+            float[] again = densenet.predict(image(ecg)).join().probabilities();
+
+            Assertions.assertThat(again).containsExactly(first);
+            Assertions.assertThat(first).hasSize(5);
+            Assertions.assertThat(sum(first)).isCloseTo(1.0, Assertions.within(1e-5));
+            Assertions.assertThat(densenet.predict(image(other)).join().probabilities()).isNotEqualTo(first);
+            Assertions.assertThat(resnet.predict(image(ecg)).join().probabilities()).isNotEqualTo(first);
+        }
+    }
+
+    @Test
+    public void testFailureRateFailsBatches() throws Exception {
+        File ecg = write("ecg.png", new byte[]{1, 2, 3});
+
+        try (StubModelBackend backend = stub("model1", 1.0)) {
+            Assertions.assertThatThrownBy(() -> backend.predict(image(ecg)).join())
+                    .hasCauseInstanceOf(IOException.class)
+                    .hasMessageContaining("simulated");
+        }
+    }
+
+    @Test
+    public void testSwapStampsNewVersionOnLaterPredictions() throws Exception {
+        File ecg = write("ecg.png", new byte[]{1, 2, 3});
+
+        try (StubModelBackend backend = stub("model1", 0.0)) {
+            Assertions.assertThat(backend.predict(image(ecg)).join().version()).isEqualTo("1");
+
+            backend.swapVersion(new ModelVersion("2", null), image(ecg), executor, Duration.ofSeconds(1));
+
+            Assertions.assertThat(backend.getVersion()).isEqualTo("2");
+            Assertions.assertThat(backend.predict(image(ecg)).join().version()).isEqualTo("2");
+        }
+    }
+
+    private StubModelBackend stub(String id, double failureRate) {
+        StubModelBackend.Behaviour behaviour = new StubModelBackend.Behaviour(
+                Duration.ofMillis(1), Duration.ofMillis(5), failureRate, 0.0, Duration.ofSeconds(1));
+        return new StubModelBackend(id, id, 1.0, behaviour, "1", 2, 4, Duration.ofMillis(1), LanePolicy.DEFAULT, executor, new SimpleMeterRegistry());
+    }
+
+    private PreparedImage image(File file) {
+        return new PreparedImage(file, 0, null);
+    }
+
+    private File write(String name, byte[] bytes) throws IOException {
+        return Files.write(tempDir.resolve(name), bytes).toFile();
+    }
+
+    private double sum(float[] values) {
+        double total = 0;
+        for (float value : values) {
+            total += value;
+        }
+        return total;
+    }
+}
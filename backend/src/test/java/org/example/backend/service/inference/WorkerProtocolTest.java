@@ -0,0 +1,99 @@
+package org.example.backend.service.inference;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class WorkerProtocolTest {
+
+    @Test
+    public void testPredictFrameLayout() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        List<PreparedImage> images = List.of(
+                new PreparedImage(new File("a.png"), 3, null),
+                new PreparedImage(new File("b.png"), 12, null));
+
+        WorkerProtocol.writePredict(new DataOutputStream(bytes), 7, images);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Assertions.assertThat(in.readInt()).isEqualTo(1 + 4 + 2 + 2 * 4);
+        Assertions.assertThat(in.readByte()).isEqualTo(WorkerProtocol.PREDICT);
+        Assertions.assertThat(in.readInt()).isEqualTo(7);
+        Assertions.assertThat(in.readUnsignedShort()).isEqualTo(2);
+        Assertions.assertThat(in.readInt()).isEqualTo(3);
+        Assertions.assertThat(in.readInt()).isEqualTo(12);
+        Assertions.assertThat(in.available()).isZero();
+    }
+
+    @Test
+    public void testReadsResultWithPerImageErrors() throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeByte(WorkerProtocol.RESULT);
+        out.writeInt(42);
+        out.writeShort(2);
+        out.writeShort(5);
+        out.writeByte(0);
+        for (float p : new float[]{0.1f, 0.6f, 0.1f, 0.1f, 0.1f}) {
+            out.writeFloat(p);
+        }
+        out.writeByte(1);
+        writeString(out, "cannot read image");
+
+        WorkerProtocol.Frame frame = WorkerProtocol.readFrame(framed(payload.toByteArray()));
+
+        Assertions.assertThat(frame.type()).isEqualTo(WorkerProtocol.RESULT);
+        Assertions.assertThat(frame.requestId()).isEqualTo(42);
+        Assertions.assertThat(frame.outputs()).hasSize(2);
+        Assertions.assertThat(frame.outputs().get(0).probabilities()).containsExactly(0.1f, 0.6f, 0.1f, 0.1f, 0.1f);
+        Assertions.assertThat(frame.outputs().get(1).isFailed()).isTrue();
+        Assertions.assertThat(frame.outputs().get(1).error()).isEqualTo("cannot read image");
+    }
+
+    @Test
+    public void testReadsHandshakeAndBatchError() throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeByte(WorkerProtocol.READY);
+        writeString(out, "DenseNet121");
+        out.writeShort(5);
+        WorkerProtocol.Frame ready = WorkerProtocol.readFrame(framed(payload.toByteArray()));
+
+        payload.reset();
+        out.writeByte(WorkerProtocol.ERROR);
+        out.writeInt(3);
+        writeString(out, "out of memory");
+        WorkerProtocol.Frame error = WorkerProtocol.readFrame(framed(payload.toByteArray()));
+
+        Assertions.assertThat(ready.message()).isEqualTo("DenseNet121");
+        Assertions.assertThat(ready.labels()).isEqualTo(5);
+        Assertions.assertThat(error.requestId()).isEqualTo(3);
+        Assertions.assertThat(error.message()).isEqualTo("out of memory");
+    }
+
+    @Test
+    public void testRejectsCorruptLength() {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(new byte[]{'{', '"', 'i', 'd'}));
+
+        Assertions.assertThatThrownBy(() -> WorkerProtocol.readFrame(in))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("frame length");
+    }
+
+    private DataInputStream framed(byte[] payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(payload.length);
+        out.write(payload);
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.backend.service.inference;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class WorkerRecyclePolicyTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRecyclesOnPredictionCountOrMemory() {
+        WorkerRecyclePolicy policy = new WorkerRecyclePolicy(2L * 1024 * 1024 * 1024, 1000);
+
+        Assertions.assertThat(policy.recycleReason(999, () -> 1024)).isNull();
+        Assertions.assertThat(policy.recycleReason(1000, () -> 1024)).isEqualTo(WorkerRecyclePolicy.REQUESTS);
+        Assertions.assertThat(policy.recycleReason(10, () -> 3L * 1024 * 1024 * 1024)).isEqualTo(WorkerRecyclePolicy.MEMORY);
+        // Memory is unknown where /proc is missing
+        Assertions.assertThat(policy.recycleReason(10, () -> -1)).isNull();
+    }
+
+    @Test
+    public void testDisabledLimitsAreNotChecked() {
+        Assertions.assertThat(WorkerRecyclePolicy.DISABLED.isEnabled()).isFalse();
+        Assertions.assertThat(new WorkerRecyclePolicy(0, 10).recycleReason(5, () -> {
+            throw new AssertionError("memory must not be read");
+        })).isNull();
+    }
+
+    @Test
+    public void testReadsResidentMemoryFromProcStatus() throws Exception {
+        Path status = Files.writeString(tempDir.resolve("status"),
+                "Name:\tpython3\nVmPeak:\t 2400000 kB\nVmRSS:\t  1536000 kB\nThreads:\t42\n");
+
+        Assertions.assertThat(ModelWorker.rssBytes(status)).isEqualTo(1536000L * 1024);
+        Assertions.assertThat(ModelWorker.rssBytes(tempDir.resolve("missing"))).isEqualTo(-1);
+    }
+}
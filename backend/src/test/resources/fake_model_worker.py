@@ -0,0 +1,93 @@
+"""
+Stand-in for ai_models/src/model_worker.py in the backend tests: speaks the same binary frames
+(see WorkerProtocol.java) without loading a model.
+
+    python3 fake_model_worker.py <dir> [max_starts]
+
+Every start appends a line to <dir>/starts; once max_starts workers have started, further ones
+exit before sending READY, like a worker whose model fails to load. Each PREDICT frame is answered
+on its own thread, so answers may come back out of order. The first tensor slot of a batch says
+what to do with it:
+
+    slot < 1000    answer at once, every image with probabilities [slot, pid, 0, 0, 0]
+    1000 + n       creates <dir>/received-n, then answers like the above once <dir>/gate-n exists
+    7777           never answer (a hung model)
+    9999           exit with code 3 (a crashed model)
+"""
+
+import os
+import struct
+import sys
+import threading
+import time
+
+FRAME_READY = 0
+FRAME_PREDICT = 1
+FRAME_RESULT = 2
+
+LABELS = 5
+
+
+def _pack_str(text):
+    data = text.encode('utf-8')
+    return struct.pack('>H', len(data)) + data
+
+
+def _read_exact(stream, size):
+    data = stream.read(size)
+    if len(data) < size:
+        raise EOFError
+    return data
+
+
+def _read_request(stream):
+    length, = struct.unpack('>I', _read_exact(stream, 4))
+    payload = _read_exact(stream, length)
+    frame_type, request_id, count = struct.unpack_from('>BIH', payload, 0)
+    if frame_type != FRAME_PREDICT:
+        raise ValueError("unexpected frame type %d" % frame_type)
+    return request_id, list(struct.unpack_from('>%dI' % count, payload, struct.calcsize('>BIH')))
+
+
+def main(directory, max_starts):
+    with open(os.path.join(directory, 'starts'), 'a+') as starts:
+        starts.write('%d\n' % os.getpid())
+        starts.seek(0)
+        if len(starts.read().split()) > max_starts:
+            print("fake worker %d refuses to start" % os.getpid(), file=sys.stderr)
+            sys.exit(2)
+
+    out = sys.stdout.buffer
+    lock = threading.Lock()
+
+    def send(payload):
+        with lock:
+            out.write(struct.pack('>I', len(payload)) + payload)
+            out.flush()
+
+    def answer(request_id, slots):
+        action = slots[0]
+        if action == 7777:
+            return
+        if action >= 1000:
+            open(os.path.join(directory, 'received-%d' % (action - 1000)), 'w').close()
+            gate = os.path.join(directory, 'gate-%d' % (action - 1000))
+            while not os.path.exists(gate):
+                time.sleep(0.01)
+        probabilities = struct.pack('>5f', action, os.getpid(), 0, 0, 0)
+        send(struct.pack('>BIHH', FRAME_RESULT, request_id, len(slots), LABELS)
+             + b''.join(b'\x00' + probabilities for _ in slots))
+
+    send(struct.pack('>B', FRAME_READY) + _pack_str('fake') + struct.pack('>H', LABELS))
+    while True:
+        try:
+            request_id, slots = _read_request(sys.stdin.buffer)
+        except EOFError:
+            return
+        if slots[0] == 9999:
+            os._exit(3)
+        threading.Thread(target=answer, args=(request_id, slots), daemon=True).start()
+
+
+if __name__ == '__main__':
+    main(sys.argv[1], int(sys.argv[2]) if len(sys.argv) > 2 else 1000)
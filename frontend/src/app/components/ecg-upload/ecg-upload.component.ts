@@ -507,6 +507,9 @@ export class EcgUploadComponent implements OnInit {
     let errorMessage = 'Upload failed';
     if (error.error?.message) {
       errorMessage = error.error.message;
+    } else if (error.error?.error) {
+      // Backend validation / backpressure (429 carries the Retry-After estimate in the text)
+      errorMessage = error.error.error;
     } else if (error.message) {
       errorMessage = error.message;
     }
@@ -15,8 +15,7 @@ export interface ECGResult {
   model_info: { [key: string]: any };
   model_agreement?: {
     models_agree: boolean;
-    densenet_primary: string;
-    resnet_primary: string;
+    primary_by_model: { [model: string]: string };
     agreement_note: string;
   };
   patientId?: string;
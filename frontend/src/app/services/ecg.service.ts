@@ -7,10 +7,10 @@ import {
   HttpResponse,
   HttpHeaders
 } from '@angular/common/http';
-import {Observable, map, BehaviorSubject, of, throwError} from 'rxjs';
+import {Observable, map, BehaviorSubject, of, throwError, timer} from 'rxjs';
 import { environment } from '../../environments/environment';
 import {ECGResult} from '../models/ecgresult';
-import {catchError, tap} from 'rxjs/operators';
+import {catchError, filter, switchMap, takeWhile, tap} from 'rxjs/operators';
 import { EcgRecordDTO } from '../models/ecg-record.dto';
 import {ECGHistoryResult} from '../models/ecg-history-result';
 
@@ -75,24 +75,37 @@ export class ECGService {
     });
 
     return this.http.request(req).pipe(
-      map((event: HttpEvent<any>) => {
+      switchMap((event: HttpEvent<any>) => {
         switch (event.type) {
           case HttpEventType.UploadProgress:
             const progress = event.total ? Math.round(100 * event.loaded / event.total) : 0;
             this.uploadProgressSubject.next(progress);
-            return { type: 'progress', progress };
+            return of({ type: 'progress', progress });
 
           case HttpEventType.Response:
-            this.uploadProgressSubject.next(100);
-            return { type: 'result', data: event.body };
+            // The backend answers with a job id right away; wait for the job to finish
+            return this.waitForUploadJob(event.body.jobId, headers).pipe(
+              tap(() => this.uploadProgressSubject.next(100)),
+              map(job => ({ type: 'result', data: job }))
+            );
 
           default:
-            return { type: 'other', event };
+            return of({ type: 'other', event });
         }
       })
     );
   }
 
+  private waitForUploadJob(jobId: string, headers: HttpHeaders): Observable<any> {
+    const finished = (job: any) => job.status !== 'PENDING' && job.status !== 'RUNNING';
+
+    return timer(0, 1000).pipe(
+      switchMap(() => this.http.get<any>(`${this.apiUrl}/jobs/${jobId}`, { headers })),
+      takeWhile(job => !finished(job), true),
+      filter(job => finished(job))
+    );
+  }
+
   downloadReport(ecgId: string): Observable<Blob> {
     return this.http.get(`${this.apiUrl}/${ecgId}/report`, {
       responseType: 'blob'